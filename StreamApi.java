@@ -10,6 +10,8 @@ public class StreamApi {
  /**
   *  Методы Stream API
   *
+  *  Замеры (ops/s и байт на операцию) всех примеров ниже - модуль jmh/ (см. jmh/pom.xml).
+  *
   * *************************************************************************************************************
   *  Получение объекта Stream
   *
@@ -33,6 +35,9 @@ public class StreamApi {
   *         .limit(3)
   *         .forEach(System.out::print);
   *
+  *  Один и тот же конвейер на маленьких коллекциях миллионы раз (обработка запроса) - построение стадий
+  *  дороже самой работы; шаблон filter/map собирается один раз: см. streamapi.PipelineTemplate.
+  *
   * *************************************************************************************************************
   *  Параллельные стримы
   *
@@ -48,6 +53,12 @@ public class StreamApi {
   *         .map(x -> x *10)
   *         .sum();
   *
+  *  Оба примера работают в общем ForkJoinPool. Для map с блокирующим I/O (сеть, БД) -
+  *  виртуальные потоки с ограничением числа одновременных вызовов, см. streamapi.VirtualThreads.
+  *  Свой именованный пул вместо общего (изоляция тяжелых конвейеров, метрики) - см. streamapi.StreamPools.
+  *  parallel() не всегда быстрее (мелкие источники, sorted/distinct/forEachOrdered); выбор режима
+  *  по размеру, стадиям и замерам прошлых запусков - см. streamapi.Planner.
+  *
   *  *************************************************************************************************************
   *  Стримы для примитивов
   *
@@ -55,6 +66,8 @@ public class StreamApi {
   *   - LongStream()
   *   - DoubleStream()
   *
+  *   Источник и приемник вне кучи (memory-mapped файл, direct-буферы) - см. streamapi.OffHeapColumn.
+  *
   * *************************************************************************************************************
   *  ИСТОЧНИКИ - Операторы Stream API (всего 10 методов)
   *
@@ -97,12 +110,18 @@ public class StreamApi {
   *                 .forEach (System.out::println);
   *              // 2, 8, 14, 20
   *
+  *    Источники 4-6 тянут элементы по одному (pull). Для внешнего бесконечного потока событий (push)
+  *    с пачками, окнами и backpressure - см. streamapi.MicroBatchStream.
+  *
   * 7. concat (Stream a, Stream b)  - объединяет два стрима так, что вначале идут элементы стрима А, а потом В.
   *             Stream.concat(
   *                     Stream.of(1, 2, 3),
   *                     Stream.of(4, 5, 6))
   *                 .forEach(System.out::println);
   *
+  *    Сотни стримов через reduce(Stream::concat) - глубокое дерево, которое плохо делится в parallel();
+  *    N-way склейка с делением пополам - см. streamapi.Concat.
+  *
   * 8. builder()  - создает мутабельный объект для добавление элементов в стрим без использования контейнера.
   *              Stream.Builder<Integer> streamBuilder = Stream.<Integer>builder()
   *                         .add(0)
@@ -117,6 +136,8 @@ public class StreamApi {
   *                         .forEach(System.out::println);
   *                 // 0, 1, 5, 10, 15, 20, 100, 101
   *
+  *    Builder для больших parallel() источников (чанки, точные размеры частей) - см. streamapi.ChunkedStreamBuilder.
+  *
   * 9.1. IntStream.range(int startInclusive, int endExclusive) - создает стрим из числового промежутка "[start..end)"!!!
   * 9.2. LongStream.range (long startInclusive, long endExclusive)
   *                 IntStream.range(0, 10)
@@ -205,6 +226,9 @@ public class StreamApi {
   *                     .forEach(System.out::print);
   *                 //bde
   *
+  *    Stream на каждый элемент можно не создавать: mapMulti (Java 16) и готовые mapper,
+  *    а для int[][] / long[][] / List<List<T>> - плоский источник с делением внутри строк: см. streamapi.Expand.
+  *
   * 4. limit(long maxSize) - ограничивает стрим maxSize элементами
   *             Stream.of(120, 410, 85, 32, 314, 12)
   *                 .limit(3)
@@ -217,21 +241,32 @@ public class StreamApi {
   *                 .forEach(System.out::println);
   *             // 314, 12
   *
+  *  limit/skip (а также takeWhile/dropWhile, п.9, п.10) на ordered parallel стриме буферизуют части -
+  *  для SIZED источников см. streamapi.OrderedSlices.
+  *
   * 6. sorted(Comparator comparator) - сортирует элементы стрима.
   *             IntStream.range(0, 100)
   *                 .sorted()
   *                 .limit(3)
   *                 .forEach(System.out::println);
   *             // 0, 1, 2
+  *             sorted().limit(k) сортирует весь стрим ради k элементов - см. streamapi.TopK.
+  *             Стрим больше памяти - сортировка с бюджетом, отрезки на диске и ленивое слияние:
+  *             см. streamapi.ExternalSort.
   *
   * 7. distinct() - убирает повторяющиеся элементы и возвращает стрим с уникальными элементами
   *             Stream.of (2, 1, 8, 1, 3, 2)
   *                 .distinct()
   *                 .forEach(System.out::println);
   *             // 2, 1, 8, 3
+  *             distinct() хранит все элементы в памяти; с ограничением памяти (сброс на диск)
+  *             или приближенно (фильтр Блума) - см. streamapi.BoundedDistinct.
   *
   * 8. peek(Consumer action) - служит для отладки кода (дебагера) - передает элемент куда-нибудь,
   *                            не разрывая при этом цепочку операторов.
+  *             Длинные цепочки filter/map/peek - по стадии (Sink) на оператор; склейка в одну стадию
+  *             и выброс лишних sorted/distinct - см. streamapi.Fused.
+  *             Для метрик по стадиям в продакшене (элементы, время, кражи частей) - см. streamapi.Instrumented.
   *             Stream.of("one", "two", "three", "four")
   *                 .filter(e -> e.length() > 3)
   *                 .peek(e -> System.out.print("Filter value: " + e))
@@ -296,6 +331,8 @@ public class StreamApi {
   *                |     .map(x -> x / 10)              |           |      .map(x -> x / 10)                      |
   *                |     .forEach(System.out::println); |   <<==>>  |      .forEachOrdered(System.out::println);  |
   *                [  // 3, 0, 1, 5, 4, 2               ]           [   // 0, 1, 2, 3, 4                          ]
+  *             В parallel() forEachOrdered копит обогнавшие части без ограничения, а action - узкое место;
+  *             упорядоченная выдача с окном и backpressure - см. streamapi.OrderedEmitter.
   *
   * 3. long count() - возвращает количество элементов стрима.
   *                 long x = Stream.of(10, 20, 30, 40)
@@ -364,6 +401,9 @@ public class StreamApi {
   *                 System.out.println(min.get());
   *                 // 2
   *
+  *             Нарастающий итог (reduce по каждому префиксу: баланс, накопленный max), в том числе
+  *             в parallel() - см. streamapi.Scan.
+  *
   * 8.1. Optional min(Comparator comparator) - поиск минимального значения
   *                 int min = Stream.of(20, 11, 45, 78, 13)
   *                      .min(Integer::compare).get();
@@ -501,6 +541,10 @@ public class StreamApi {
   *                             LinkedHashMap::new
   *                     ));
   *
+  *  toMap по одному стриму, чтобы потом искать в нем элементы другого (обогащение событий по справочнику), -
+  *  это hash join: inner/left/semi/anti и coGroup двух стримов, параллельная проба, ключи int/long без
+  *  упаковки, сброс на диск при нехватке памяти - см. streamapi.HashJoin.
+  *
   * 5.1. toConcurrentMap(Function keyMapper, Function valueMapper) - concurrent это параллель.
   *                                 Идентично toMap, только работаем с ConcurrentMap (потокобезопасная карта)
   *
@@ -510,6 +554,8 @@ public class StreamApi {
   * 5.3. toConcurrentMap(Function keyMapper, Function valueMapper, BinaryOperator mergeFunction, Supplier mapFactory) -
   *                                 cм. п. 4.3.(+ потокобезопасная карта)
   *
+  *  На многих ядрах одна ConcurrentMap становится узким местом - см. streamapi.ShardedCollectors (и для п.14).
+  *
   * 6. collectingAndThen(Collector downstream, Function finisher) - собирает элементы с помощью указанного коллектора,
   *                                а потом применяет к полученому результату функции.
   *
@@ -528,6 +574,11 @@ public class StreamApi {
   *               System.out.println(list);
   *               // [1, 2, 3, 9, 5, 4, 8]
   *
+  *  Один и тот же collect снова и снова над неизменным источником (groupingBy по справочнику и т.п.) -
+  *  кеш результатов по источнику, его версии и отпечатку конвейера: см. streamapi.ResultCache.
+  *  Неизменяемый результат без запаса емкости и без обертки (массив ровно по размеру, int[]/long[]/double[]
+  *  для примитивных стримов, множество и словарь с открытой адресацией) - см. streamapi.Compact.
+  *
   * 7.1. joining()
   * 7.2. joining(CharSequence delimiter)
   * 7.3. joining(CharSequence delimiter, CharSequence prefix, CharSequence syffix)
@@ -548,6 +599,11 @@ public class StreamApi {
   *                System.out.println(s7_3);
   *                // [ a => b => c => d ]
   *
+  *  joining сразу в StringBuilder/Writer/CharBuffer, числа без промежуточных строк - см. streamapi.Joining.
+  *
+  *  Несколько агрегатов из п.8-12 (и дисперсия, перцентили, число различных) за один проход -
+  *  см. streamapi.MultiAggregate.
+  *
   * 8.1. summingInt(ToIntFunction mapper)
   * 8.2. summingLong(ToLongFunction mapper)
   * 8.3. summingDouble(ToDoubleFunction mapper)
@@ -556,6 +612,8 @@ public class StreamApi {
   *                         .collect(Collectors.summingInt(Integer::parseInt));
   *                 System.out.println(sum);
   *                 // 10
+  *             Объекты-строки из многих полей, а суммируется одно (после фильтра по другому) - колонки
+  *             в примитивных массивах, фильтр и проекция без объектов строк - см. streamapi.Columnar.
   * 9.1. averagingInt(ToIntFunction mapper)
   * 9.2. averagingLong(ToLongFunction mapper)
   * 9.3. averagingDouble(ToDoubleFunction mapper)
@@ -635,6 +693,8 @@ public class StreamApi {
   *                  //3=[BDC]
   *                 //{2=[AB, LF], 1=[A, W], 3=[BDC]}
   *
+  *  Для int/long ключей без упаковки (п.13, п.15) - см. streamapi.PrimitiveCollectors.
+  *
   * 14.1. groupingByConcurrent(Function classifier) - см. п. 13.1. (только для параллели)
   * 14.2. groupingByConcurrent(Functional classifier, Collector downstream) - см. п. 13.2. (только для параллели)
   * 14.3. groupingByConcurrent(Functional classifier, Supplier mapFactory, Collector downstream) - см. п. 13.3. (только для параллели)
@@ -0,0 +1,27 @@
+package streamapi.jmh;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ *  Точка входа benchmarks.jar.
+ *
+ *  Принимает те же аргументы, что и org.openjdk.jmh.Main, но всегда подключает GCProfiler,
+ *  чтобы рядом с ops/s печатался gc.alloc.rate.norm (байт на операцию).
+ *
+ *      java -jar target/benchmarks.jar SourcesBenchmark -p size=10,1000
+ */
+public class BenchmarkMain {
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions cmd = new CommandLineOptions(args);
+        Options options = new OptionsBuilder()
+                .parent(cmd)
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,98 @@
+package streamapi.jmh;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import streamapi.BoundedDistinct;
+import streamapi.Codec;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static streamapi.jmh.Modes.mode;
+
+/**
+ *  Промежуточный оператор п.7: distinct() против BoundedDistinct с бюджетом
+ *  (maxInMemory = cardinality / 10, то есть со сбросом на диск) и приближенного режима.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+@State(Scope.Benchmark)
+public class BoundedDistinctBenchmark {
+
+    @Param({"100000", "10000000"})
+    int size;
+
+    /** Доля различных элементов. */
+    @Param({"0.1", "0.9"})
+    double cardinality;
+
+    @Param({"false", "true"})
+    boolean parallel;
+
+    int[] ints;
+    List<String> strings;
+    int budget;
+    long expectedDistinct;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        int bound = Math.max(1, (int) (size * cardinality));
+        ints = random.ints(size, 0, bound).toArray();
+        strings = new ArrayList<>(size);
+        for (int x : ints) {
+            strings.add("key-" + x);
+        }
+        expectedDistinct = bound;
+        budget = Math.max(1, bound / 10);
+    }
+
+    @Benchmark
+    public long stockDistinct() {
+        return mode(strings.stream(), parallel).distinct().count();
+    }
+
+    @Benchmark
+    public long spillingDistinct() {
+        try (Stream<String> s = BoundedDistinct.distinct(mode(strings.stream(), parallel), budget, Codec.strings())) {
+            return s.count();
+        }
+    }
+
+    @Benchmark
+    public long approximateDistinct() {
+        return BoundedDistinct.approximate(mode(strings.stream(), parallel), expectedDistinct, 0.01).count();
+    }
+
+    @Benchmark
+    public long stockIntDistinct() {
+        return mode(Arrays.stream(ints), parallel).distinct().count();
+    }
+
+    @Benchmark
+    public long spillingIntDistinct() {
+        return BoundedDistinct.distinct(mode(Arrays.stream(ints), parallel), budget).count();
+    }
+
+    @Benchmark
+    public long approximateIntDistinct() {
+        return BoundedDistinct.approximate(mode(Arrays.stream(ints), parallel), expectedDistinct, 0.01)
+                .count();
+    }
+}
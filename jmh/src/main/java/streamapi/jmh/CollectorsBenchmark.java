@@ -0,0 +1,313 @@
+package streamapi.jmh;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.DoubleSummaryStatistics;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static streamapi.jmh.Modes.mode;
+
+/**
+ *  "Методы Collectors" из StreamApi.java (п.1 - п.15.2).
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+@State(Scope.Benchmark)
+public class CollectorsBenchmark {
+
+    @Param({"10", "1000", "100000", "10000000"})
+    int size;
+
+    @Param({"false", "true"})
+    boolean parallel;
+
+    /** Уникальные числа 0..size-1 в случайном порядке. */
+    Integer[] unique;
+    /** Числа с повторами. */
+    Integer[] repeated;
+    String[] numerals;
+    String[] decimals;
+    String[] words;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        List<Integer> values = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            values.add(i);
+        }
+        Collections.shuffle(values, random);
+        unique = values.toArray(new Integer[0]);
+        repeated = new Integer[size];
+        numerals = new String[size];
+        decimals = new String[size];
+        words = new String[size];
+        for (int i = 0; i < size; i++) {
+            repeated[i] = random.nextInt(100);
+            numerals[i] = String.valueOf(i % 1000);
+            decimals[i] = String.valueOf(random.nextDouble() * 10);
+            words[i] = "abcdefghij".substring(0, 1 + random.nextInt(10));
+        }
+    }
+
+    // п.1
+    @Benchmark
+    public List<Integer> toList() {
+        return mode(Arrays.stream(unique), parallel).collect(Collectors.toList());
+    }
+
+    // п.2
+    @Benchmark
+    public Set<Integer> toSet() {
+        return mode(Arrays.stream(repeated), parallel).collect(Collectors.toSet());
+    }
+
+    // п.3
+    @Benchmark
+    public Deque<Integer> toCollectionArrayDeque() {
+        return mode(Arrays.stream(unique), parallel).collect(Collectors.toCollection(ArrayDeque::new));
+    }
+
+    // п.3
+    @Benchmark
+    public Set<Integer> toCollectionLinkedHashSet() {
+        return mode(Arrays.stream(repeated), parallel).collect(Collectors.toCollection(LinkedHashSet::new));
+    }
+
+    // п.4.1
+    @Benchmark
+    public Map<Integer, Integer> toMapIdentity() {
+        return mode(Arrays.stream(unique), parallel)
+                .collect(Collectors.toMap(Function.identity(), Function.identity()));
+    }
+
+    // п.4.1
+    @Benchmark
+    public Map<Integer, String> toMapFormat() {
+        return mode(Arrays.stream(unique), parallel)
+                .collect(Collectors.toMap(
+                        Function.identity(),
+                        i -> String.format("%d * 2 = %d", i, i * 2)));
+    }
+
+    // п.4.1, ключ char: на больших размерах ключи повторяются, поэтому берется первый
+    @Benchmark
+    public Map<Character, String> toMapCharKey() {
+        return mode(Arrays.stream(unique), parallel)
+                .collect(Collectors.toMap(
+                        i -> (char) i.intValue(),
+                        i -> String.format("<%d>", i),
+                        (a, b) -> a));
+    }
+
+    // п.4.2
+    @Benchmark
+    public Map<Integer, Integer> toMapMerge() {
+        return mode(Arrays.stream(repeated), parallel)
+                .collect(Collectors.toMap(
+                        i -> i % 5,
+                        Function.identity(),
+                        Integer::sum));
+    }
+
+    // п.4.3
+    @Benchmark
+    public Map<Integer, Integer> toMapLinkedHashMap() {
+        return mode(Arrays.stream(repeated), parallel)
+                .collect(Collectors.toMap(
+                        i -> i % 5,
+                        Function.identity(),
+                        Integer::sum,
+                        LinkedHashMap::new));
+    }
+
+    // п.5.1
+    @Benchmark
+    public ConcurrentMap<Integer, Integer> toConcurrentMap() {
+        return mode(Arrays.stream(unique), parallel)
+                .collect(Collectors.toConcurrentMap(Function.identity(), Function.identity()));
+    }
+
+    // п.5.2
+    @Benchmark
+    public ConcurrentMap<Integer, Integer> toConcurrentMapMerge() {
+        return mode(Arrays.stream(repeated), parallel)
+                .collect(Collectors.toConcurrentMap(i -> i % 5, Function.identity(), Integer::sum));
+    }
+
+    // п.5.3
+    @Benchmark
+    public ConcurrentMap<Integer, Integer> toConcurrentMapFactory() {
+        return mode(Arrays.stream(repeated), parallel)
+                .collect(Collectors.toConcurrentMap(
+                        i -> i % 5,
+                        Function.identity(),
+                        Integer::sum,
+                        ConcurrentHashMap::new));
+    }
+
+    // п.6
+    @Benchmark
+    public List<Integer> collectingAndThenUnmodifiable() {
+        return mode(Arrays.stream(unique), parallel)
+                .collect(Collectors.collectingAndThen(
+                        Collectors.toList(),
+                        Collections::unmodifiableList));
+    }
+
+    // п.6
+    @Benchmark
+    public ArrayList<Integer> collectingAndThenLinkedHashSet() {
+        return mode(Arrays.stream(repeated), parallel)
+                .collect(Collectors.collectingAndThen(
+                        Collectors.toCollection(LinkedHashSet::new),
+                        ArrayList::new));
+    }
+
+    // п.7.1
+    @Benchmark
+    public String joining() {
+        return mode(Arrays.stream(numerals), parallel).collect(Collectors.joining());
+    }
+
+    // п.7.2
+    @Benchmark
+    public String joiningDelimiter() {
+        return mode(Arrays.stream(numerals), parallel).collect(Collectors.joining("-"));
+    }
+
+    // п.7.3
+    @Benchmark
+    public String joiningPrefixSuffix() {
+        return mode(Arrays.stream(numerals), parallel).collect(Collectors.joining(" => ", "[ ", " ]"));
+    }
+
+    // п.8.1
+    @Benchmark
+    public Integer summingInt() {
+        return mode(Arrays.stream(numerals), parallel).collect(Collectors.summingInt(Integer::parseInt));
+    }
+
+    // п.9.3
+    @Benchmark
+    public Double averagingDouble() {
+        return mode(Arrays.stream(decimals), parallel).collect(Collectors.averagingDouble(Double::parseDouble));
+    }
+
+    // п.10.3
+    @Benchmark
+    public DoubleSummaryStatistics summarizingDouble() {
+        return mode(Arrays.stream(decimals), parallel).collect(Collectors.summarizingDouble(Double::parseDouble));
+    }
+
+    // п.11.1
+    @Benchmark
+    public Long counting() {
+        return mode(Arrays.stream(numerals), parallel).collect(Collectors.counting());
+    }
+
+    // п.12.1
+    @Benchmark
+    public Optional<String> minBy() {
+        return mode(Arrays.stream(words), parallel).collect(Collectors.minBy(Comparator.comparing(String::length)));
+    }
+
+    // п.12.2
+    @Benchmark
+    public Optional<String> maxBy() {
+        return mode(Arrays.stream(words), parallel).collect(Collectors.maxBy(Comparator.comparing(String::length)));
+    }
+
+    // п.13.1
+    @Benchmark
+    public Map<Integer, List<String>> groupingBy() {
+        return mode(Arrays.stream(words), parallel).collect(Collectors.groupingBy(String::length));
+    }
+
+    // п.13.2
+    @Benchmark
+    public Map<Integer, String> groupingByDownstream() {
+        return mode(Arrays.stream(words), parallel)
+                .collect(Collectors.groupingBy(
+                        String::length,
+                        Collectors.mapping(String::toUpperCase, Collectors.joining())));
+    }
+
+    // п.13.3
+    @Benchmark
+    public Map<Integer, List<String>> groupingByMapFactory() {
+        return mode(Arrays.stream(words), parallel)
+                .collect(Collectors.groupingBy(
+                        String::length,
+                        LinkedHashMap::new,
+                        Collectors.mapping(String::toUpperCase, Collectors.toList())));
+    }
+
+    // п.14.1
+    @Benchmark
+    public ConcurrentMap<Integer, List<String>> groupingByConcurrent() {
+        return mode(Arrays.stream(words), parallel).collect(Collectors.groupingByConcurrent(String::length));
+    }
+
+    // п.14.2
+    @Benchmark
+    public ConcurrentMap<Integer, Long> groupingByConcurrentDownstream() {
+        return mode(Arrays.stream(words), parallel)
+                .collect(Collectors.groupingByConcurrent(String::length, Collectors.counting()));
+    }
+
+    // п.14.3
+    @Benchmark
+    public ConcurrentMap<Integer, Long> groupingByConcurrentMapFactory() {
+        return mode(Arrays.stream(words), parallel)
+                .collect(Collectors.groupingByConcurrent(
+                        String::length,
+                        ConcurrentHashMap::new,
+                        Collectors.counting()));
+    }
+
+    // п.15.1
+    @Benchmark
+    public Map<Boolean, List<String>> partitioningBy() {
+        return mode(Arrays.stream(words), parallel).collect(Collectors.partitioningBy(s -> s.length() <= 2));
+    }
+
+    // п.15.2
+    @Benchmark
+    public Map<Boolean, String> partitioningByDownstream() {
+        return mode(Arrays.stream(words), parallel)
+                .collect(Collectors.partitioningBy(
+                        s -> s.length() <= 2,
+                        Collectors.mapping(String::toUpperCase, Collectors.joining())));
+    }
+}
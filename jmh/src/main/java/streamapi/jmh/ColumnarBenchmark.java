@@ -0,0 +1,125 @@
+package streamapi.jmh;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import streamapi.Columnar;
+import streamapi.IntLongHashMap;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static streamapi.jmh.Modes.mode;
+
+/**
+ *  Список объектов-строк из 6 полей против Columnar: filter + summingLong по одной колонке
+ *  и groupingBy + summingLong (Collectors п.13.2). Columnar читает только нужные колонки.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+@State(Scope.Benchmark)
+public class ColumnarBenchmark {
+
+    public static final class Order {
+
+        final int region;
+        final long customer;
+        final long amount;
+        final double price;
+        final int quantity;
+        final int day;
+
+        Order(int region, long customer, long amount, double price, int quantity, int day) {
+            this.region = region;
+            this.customer = customer;
+            this.amount = amount;
+            this.price = price;
+            this.quantity = quantity;
+            this.day = day;
+        }
+
+        public int getRegion() {
+            return region;
+        }
+
+        public long getAmount() {
+            return amount;
+        }
+    }
+
+    @Param({"2000000"})
+    int size;
+
+    @Param({"false", "true"})
+    boolean parallel;
+
+    List<Order> orders;
+    Columnar table;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        orders = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            orders.add(new Order(random.nextInt(64), random.nextLong(), random.nextInt(10_000),
+                    random.nextDouble(), random.nextInt(10), random.nextInt(365)));
+        }
+        table = orders.stream().collect(Columnar.<Order>layout()
+                .intColumn("region", o -> o.region)
+                .longColumn("customer", o -> o.customer)
+                .longColumn("amount", o -> o.amount)
+                .doubleColumn("price", o -> o.price)
+                .intColumn("quantity", o -> o.quantity)
+                .intColumn("day", o -> o.day)
+                .collector());
+    }
+
+    private Columnar.Query query() {
+        return parallel ? table.query().parallel() : table.query();
+    }
+
+    @Benchmark
+    public long objectsFilterSum() {
+        return mode(orders.stream(), parallel)
+                .filter(o -> o.region == 3)
+                .mapToLong(Order::getAmount)
+                .sum();
+    }
+
+    @Benchmark
+    public long columnarFilterSum() {
+        return query()
+                .whereInt("region", r -> r == 3)
+                .longs("amount")
+                .sum();
+    }
+
+    @Benchmark
+    public Map<Integer, Long> objectsSumBy() {
+        return mode(orders.stream(), parallel)
+                .filter(o -> o.amount > 100)
+                .collect(Collectors.groupingBy(Order::getRegion, Collectors.summingLong(Order::getAmount)));
+    }
+
+    @Benchmark
+    public IntLongHashMap columnarSumBy() {
+        return query()
+                .whereLong("amount", a -> a > 100)
+                .sumBy("region", "amount");
+    }
+}
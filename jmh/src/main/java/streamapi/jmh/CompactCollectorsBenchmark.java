@@ -0,0 +1,93 @@
+package streamapi.jmh;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import streamapi.Compact;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ *  Collectors п.6: collectingAndThen(toList(), unmodifiableList), toSet(), toMap() против
+ *  Compact - время и память на операцию (gc.alloc.rate.norm; результат целиком живет в кеше,
+ *  поэтому это же и его размер с точностью до временных буферов).
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+@State(Scope.Benchmark)
+public class CompactCollectorsBenchmark {
+
+    @Param({"10", "1000", "100000"})
+    int size;
+
+    Integer[] boxed;
+
+    @Setup
+    public void setUp() {
+        boxed = IntStream.range(0, size).map(i -> i * 31).boxed().toArray(Integer[]::new);
+    }
+
+    @Benchmark
+    public List<Integer> unmodifiableList() {
+        return List.of(boxed).stream()
+                .collect(Collectors.collectingAndThen(Collectors.toList(), Collections::unmodifiableList));
+    }
+
+    @Benchmark
+    public List<Integer> compactCollector() {
+        return List.of(boxed).stream().collect(Compact.toList());
+    }
+
+    @Benchmark
+    public List<Integer> compactSized() {
+        return Compact.toList(List.of(boxed).stream());
+    }
+
+    @Benchmark
+    public List<Integer> boxedIntList() {
+        return IntStream.range(0, size).map(i -> i * 31).boxed().collect(Collectors.toUnmodifiableList());
+    }
+
+    @Benchmark
+    public Compact.IntList compactIntList() {
+        return Compact.toList(IntStream.range(0, size).map(i -> i * 31));
+    }
+
+    @Benchmark
+    public Set<Integer> hashSet() {
+        return List.of(boxed).stream().collect(Collectors.toSet());
+    }
+
+    @Benchmark
+    public Set<Integer> compactSet() {
+        return List.of(boxed).stream().collect(Compact.toSet());
+    }
+
+    @Benchmark
+    public Map<Integer, Integer> hashMap() {
+        return List.of(boxed).stream().collect(Collectors.toMap(Function.identity(), i -> i));
+    }
+
+    @Benchmark
+    public Map<Integer, Integer> compactMap() {
+        return List.of(boxed).stream().collect(Compact.toMap(Function.identity(), i -> i));
+    }
+}
@@ -0,0 +1,112 @@
+package streamapi.jmh;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import streamapi.ChunkedStreamBuilder;
+import streamapi.Concat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static streamapi.jmh.Modes.mode;
+
+/**
+ *  Источники п.7 и п.8: склейка parts стримов (reduce(Stream::concat), flatMap, Concat.of)
+ *  и поэлементная сборка (Stream.builder() против ChunkedStreamBuilder).
+ *  Части разного размера - как ответы подзапросов.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g", "-Xss4m"})
+@State(Scope.Benchmark)
+public class ConcatBenchmark {
+
+    @Param({"1000"})
+    int parts;
+
+    @Param({"1000000"})
+    int size;
+
+    @Param({"false", "true"})
+    boolean parallel;
+
+    List<List<Integer>> lists;
+    List<Integer> flat;
+
+    @Setup
+    public void setUp() {
+        lists = new ArrayList<>();
+        flat = new ArrayList<>();
+        for (int p = 0; p < parts; p++) {
+            // размеры частей от 0 до 2 * size / parts
+            int n = (int) ((long) size * 2 * p / ((long) parts * parts));
+            List<Integer> list = new ArrayList<>(n);
+            for (int i = 0; i < n; i++) {
+                list.add(flat.size());
+                flat.add(flat.size());
+            }
+            lists.add(list);
+        }
+    }
+
+    @Benchmark
+    public long reduceConcat() {
+        Stream<Integer> all = lists.stream().map(List::stream).reduce(Stream.empty(), Stream::concat);
+        return sum(all);
+    }
+
+    @Benchmark
+    public long flatMap() {
+        return sum(lists.stream().flatMap(List::stream));
+    }
+
+    @Benchmark
+    public long concat() {
+        return sum(Concat.of(lists.stream().map(List::stream).collect(Collectors.toList())));
+    }
+
+    @Benchmark
+    public long streamBuilder() {
+        Stream.Builder<Integer> builder = Stream.builder();
+        flat.forEach(builder);
+        return sum(builder.build());
+    }
+
+    @Benchmark
+    public long chunkedBuilder() {
+        ChunkedStreamBuilder<Integer> builder = new ChunkedStreamBuilder<>();
+        flat.forEach(builder);
+        return sum(builder.build());
+    }
+
+    private long sum(Stream<Integer> stream) {
+        return mode(stream, parallel)
+                .map(Function.identity())
+                .mapToLong(ConcatBenchmark::work)
+                .sum();
+    }
+
+    /** Немного работы на элемент, чтобы parallel() было что делить. */
+    private static long work(int x) {
+        long h = x;
+        for (int i = 0; i < 32; i++) {
+            h = h * 31 + i;
+        }
+        return h;
+    }
+}
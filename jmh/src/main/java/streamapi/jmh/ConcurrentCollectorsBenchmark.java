@@ -0,0 +1,111 @@
+package streamapi.jmh;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import streamapi.ShardedCollectors;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ *  Collectors п.5 и п.14 (одна ConcurrentHashMap на весь стрим) против ShardedCollectors
+ *  на 1/4/16/64 потоках, с равномерным и зипфовским (горячие ключи) распределением.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+@State(Scope.Benchmark)
+public class ConcurrentCollectorsBenchmark {
+
+    private static final int DISTINCT_KEYS = 100_000;
+
+    @Param({"1000000"})
+    int size;
+
+    @Param({"1", "4", "16", "64"})
+    int threads;
+
+    @Param({"uniform", "zipf"})
+    String distribution;
+
+    Integer[] keys;
+    ForkJoinPool pool;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        keys = new Integer[size];
+        if ("zipf".equals(distribution)) {
+            double[] cumulative = zipfCumulative(DISTINCT_KEYS, 1.0);
+            for (int i = 0; i < size; i++) {
+                int k = Arrays.binarySearch(cumulative, random.nextDouble());
+                keys[i] = k >= 0 ? k : -k - 1;
+            }
+        } else {
+            for (int i = 0; i < size; i++) {
+                keys[i] = random.nextInt(DISTINCT_KEYS);
+            }
+        }
+        pool = new ForkJoinPool(threads);
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public ConcurrentMap<Integer, Integer> jdkToConcurrentMap() {
+        return pool.submit(() -> Arrays.stream(keys).parallel()
+                .collect(Collectors.toConcurrentMap(Function.identity(), k -> 1, Integer::sum))).join();
+    }
+
+    @Benchmark
+    public ConcurrentMap<Integer, Integer> shardedToConcurrentMap() {
+        return pool.submit(() -> Arrays.stream(keys).parallel()
+                .collect(ShardedCollectors.toConcurrentMap(Function.identity(), k -> 1, Integer::sum))).join();
+    }
+
+    @Benchmark
+    public ConcurrentMap<Integer, Long> jdkGroupingByConcurrent() {
+        return pool.submit(() -> Arrays.stream(keys).parallel()
+                .collect(Collectors.groupingByConcurrent(Function.identity(), Collectors.counting()))).join();
+    }
+
+    @Benchmark
+    public ConcurrentMap<Integer, Long> shardedGroupingByConcurrent() {
+        return pool.submit(() -> Arrays.stream(keys).parallel()
+                .collect(ShardedCollectors.groupingByConcurrent(Function.identity(), Collectors.counting()))).join();
+    }
+
+    /** Функция распределения Зипфа: P(k) ~ 1 / (k + 1)^s. */
+    static double[] zipfCumulative(int n, double s) {
+        double[] cumulative = new double[n];
+        double sum = 0;
+        for (int k = 0; k < n; k++) {
+            sum += 1.0 / Math.pow(k + 1, s);
+            cumulative[k] = sum;
+        }
+        for (int k = 0; k < n; k++) {
+            cumulative[k] /= sum;
+        }
+        return cumulative;
+    }
+}
@@ -0,0 +1,97 @@
+package streamapi.jmh;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import streamapi.Expand;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static streamapi.jmh.Modes.mode;
+
+/**
+ *  Промежуточный оператор п.3 на рваном int[][] (короткие строки и редкие очень длинные):
+ *  flatMapToInt(Arrays::stream) против mapMultiToInt и Expand.flatten.
+ *  Аллокации на элемент смотреть в gc.alloc.rate.norm (профайлер gc включен в BenchmarkMain).
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+@State(Scope.Benchmark)
+public class ExpandBenchmark {
+
+    @Param({"100000"})
+    int rows;
+
+    @Param({"false", "true"})
+    boolean parallel;
+
+    int[][] jagged;
+    List<List<Integer>> lists;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        jagged = new int[rows][];
+        lists = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            // каждая тысячная строка - в 1000 раз длиннее
+            int length = i % 1000 == 0 ? 10_000 : random.nextInt(20);
+            jagged[i] = random.ints(length, 0, 1000).toArray();
+            lists.add(Arrays.stream(jagged[i]).boxed().collect(Collectors.toList()));
+        }
+    }
+
+    @Benchmark
+    public long flatMapToInt() {
+        return mode(Arrays.stream(jagged), parallel)
+                .flatMapToInt(Arrays::stream)
+                .asLongStream()
+                .sum();
+    }
+
+    @Benchmark
+    public long mapMultiToInt() {
+        return mode(Arrays.stream(jagged), parallel)
+                .mapMultiToInt(Expand.intArrays())
+                .asLongStream()
+                .sum();
+    }
+
+    @Benchmark
+    public long flatten() {
+        return mode(Expand.flatten(jagged), parallel)
+                .asLongStream()
+                .sum();
+    }
+
+    @Benchmark
+    public long flatMapCollections() {
+        return mode(lists.stream(), parallel)
+                .flatMap(List::stream)
+                .mapToLong(Integer::longValue)
+                .sum();
+    }
+
+    @Benchmark
+    public long flattenCollections() {
+        return mode(Expand.<Integer>flatten(lists), parallel)
+                .mapToLong(Integer::longValue)
+                .sum();
+    }
+}
@@ -0,0 +1,76 @@
+package streamapi.jmh;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import streamapi.ExternalSort;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.LongStream;
+
+import static streamapi.jmh.Modes.mode;
+
+/**
+ *  Промежуточный оператор п.6: sorted() против ExternalSort с бюджетом в 10% стрима
+ *  (полный обход и sorted().limit(10)). Цена диска видна в полном обходе, ленивое слияние -
+ *  в limit. Память на операцию - gc.alloc.rate.norm.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+@State(Scope.Benchmark)
+public class ExternalSortBenchmark {
+
+    @Param({"5000000"})
+    int size;
+
+    @Param({"false", "true"})
+    boolean parallel;
+
+    long[] values;
+
+    @Setup
+    public void setUp() {
+        values = new Random(42).longs(size).toArray();
+    }
+
+    private LongStream external() {
+        return ExternalSort.sorted(mode(Arrays.stream(values), parallel), size / 10);
+    }
+
+    @Benchmark
+    public long sorted() {
+        return mode(Arrays.stream(values), parallel).sorted().reduce(0, (a, b) -> a ^ b);
+    }
+
+    @Benchmark
+    public long externalSorted() {
+        try (LongStream stream = external()) {
+            return stream.reduce(0, (a, b) -> a ^ b);
+        }
+    }
+
+    @Benchmark
+    public long sortedLimit() {
+        return mode(Arrays.stream(values), parallel).sorted().limit(10).sum();
+    }
+
+    @Benchmark
+    public long externalSortedLimit() {
+        try (LongStream stream = external()) {
+            return stream.limit(10).sum();
+        }
+    }
+}
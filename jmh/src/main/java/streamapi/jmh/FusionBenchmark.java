@@ -0,0 +1,131 @@
+package streamapi.jmh;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import streamapi.Fused;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+import static streamapi.jmh.Modes.mode;
+
+/**
+ *  Цепочки из 3, 6 и 12 filter/map (промежуточные операторы п.1, п.2): по стадии на оператор
+ *  против streamapi.Fused (одна склеенная стадия). В setUp конвейеры всех длин прогоняются заранее,
+ *  чтобы места вызова в стадиях JDK видели много разных лямбд - как в большой программе,
+ *  а не в бенчмарке с единственным конвейером.
+ *
+ *  redundantSorted* - sorted(comparator) на TreeSet с тем же компаратором: JDK пропускает сортировку
+ *  по флагу SORTED только для естественного порядка, Fused - и для компаратора источника.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+@State(Scope.Benchmark)
+public class FusionBenchmark {
+
+    private static final List<Function<Long, Long>> MAPPERS = List.of(
+            x -> x + 1,
+            x -> x ^ 0x5DEECE66DL,
+            x -> x * 3,
+            x -> x >>> 1);
+
+    private static final List<Predicate<Long>> FILTERS = List.of(
+            x -> (x & 63) != 0,
+            x -> x % 7 != 3,
+            x -> x != 42,
+            x -> (x & 1023) != 1);
+
+    private static final Comparator<Long> ORDER = Comparator.reverseOrder();
+
+    @Param({"3", "6", "12"})
+    int stages;
+
+    @Param({"false", "true"})
+    boolean parallel;
+
+    List<Long> values;
+    TreeSet<Long> sorted;
+
+    @Setup
+    public void setUp() {
+        values = LongStream.range(0, 200_000).boxed().collect(Collectors.toList());
+        sorted = new TreeSet<>(ORDER);
+        sorted.addAll(values);
+        for (int n : new int[]{3, 6, 12}) {
+            for (int i = 0; i < 20; i++) {
+                jdk(values.stream(), n, false).count();
+                fused(values.stream(), n, false).stream().count();
+            }
+        }
+    }
+
+    /** Чередование map и filter: на каждой позиции - своя лямбда (свой класс). */
+    private static Stream<Long> jdk(Stream<Long> stream, int stages, boolean parallel) {
+        stream = mode(stream, parallel);
+        for (int i = 0; i < stages; i++) {
+            stream = i % 2 == 0 ? stream.map(MAPPERS.get(i / 2 % 4)) : stream.filter(FILTERS.get(i / 2 % 4));
+        }
+        return stream;
+    }
+
+    private static Fused<Long> fused(Stream<Long> stream, int stages, boolean parallel) {
+        Fused<Long> fused = Fused.of(mode(stream, parallel));
+        for (int i = 0; i < stages; i++) {
+            fused = i % 2 == 0 ? fused.map(MAPPERS.get(i / 2 % 4)) : fused.filter(FILTERS.get(i / 2 % 4));
+        }
+        return fused;
+    }
+
+    @Benchmark
+    public long chain() {
+        return jdk(values.stream(), stages, parallel)
+                .mapToLong(Long::longValue)
+                .sum();
+    }
+
+    @Benchmark
+    public long fusedChain() {
+        return fused(values.stream(), stages, parallel)
+                .mapToLong(Long::longValue)
+                .sum();
+    }
+
+    @Benchmark
+    public long redundantSorted() {
+        return mode(sorted.stream(), parallel)
+                .sorted(ORDER)
+                .distinct()
+                .filter(FILTERS.get(0))
+                .mapToLong(Long::longValue)
+                .sum();
+    }
+
+    @Benchmark
+    public long fusedRedundantSorted() {
+        return Fused.of(mode(sorted.stream(), parallel))
+                .sorted(ORDER)
+                .distinct()
+                .filter(FILTERS.get(0))
+                .mapToLong(Long::longValue)
+                .sum();
+    }
+}
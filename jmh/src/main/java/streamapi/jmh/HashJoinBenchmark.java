@@ -0,0 +1,143 @@
+package streamapi.jmh;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import streamapi.Codec;
+import streamapi.HashJoin;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static streamapi.jmh.Modes.mode;
+
+/**
+ *  Collectors п.4: обогащение событий по справочнику - toMap и ручной поиск против HashJoin
+ *  (ключ int без упаковки; с бюджетом в 10% справочника - grace hash join через диск).
+ *  Память на операцию - gc.alloc.rate.norm, у hashJoinSpill число сбросов за итерацию - счетчик spills.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+@State(Scope.Benchmark)
+public class HashJoinBenchmark {
+
+    public record Event(int refId, long amount) {
+    }
+
+    public record Ref(int id, int region) {
+    }
+
+    private static final Codec<Event> EVENTS = Codec.of(
+            (out, e) -> {
+                out.writeInt(e.refId());
+                out.writeLong(e.amount());
+            },
+            in -> new Event(in.readInt(), in.readLong()));
+
+    private static final Codec<Ref> REFS = Codec.of(
+            (out, r) -> {
+                out.writeInt(r.id());
+                out.writeInt(r.region());
+            },
+            in -> new Ref(in.readInt(), in.readInt()));
+
+    @Param({"2000000"})
+    int events;
+
+    @Param({"200000"})
+    int refs;
+
+    @Param({"false", "true"})
+    boolean parallel;
+
+    Event[] eventData;
+    List<Ref> refData;
+    HashJoin inMemory;
+    HashJoin bounded;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        eventData = random.ints(events, 0, refs * 2)
+                .mapToObj(id -> new Event(id, random.nextInt(1000)))
+                .toArray(Event[]::new);
+        refData = IntStream.range(0, refs)
+                .mapToObj(id -> new Ref(id, random.nextInt(16)))
+                .toList();
+        inMemory = HashJoin.builder().build();
+        bounded = HashJoin.builder().maxInMemory(refs / 10).build();
+    }
+
+    @Benchmark
+    public long handRolled() {
+        Map<Integer, Ref> byId = refData.stream().collect(Collectors.toMap(Ref::id, Function.identity()));
+        return mode(Arrays.stream(eventData), parallel)
+                .filter(e -> byId.containsKey(e.refId()))
+                .mapToLong(e -> e.amount() * byId.get(e.refId()).region())
+                .sum();
+    }
+
+    @Benchmark
+    public long hashJoinRef() {
+        return join(inMemory, HashJoin.side(mode(Arrays.stream(eventData), parallel), Event::refId),
+                HashJoin.side(refData.stream(), Ref::id));
+    }
+
+    @Benchmark
+    public long hashJoinInt() {
+        return join(inMemory, HashJoin.intSide(mode(Arrays.stream(eventData), parallel), Event::refId),
+                HashJoin.intSide(refData.stream(), Ref::id));
+    }
+
+    @Benchmark
+    public long hashJoinSpill(SpillCounters counters) {
+        return join(bounded,
+                HashJoin.intSide(mode(Arrays.stream(eventData), parallel), Event::refId).codec(EVENTS),
+                HashJoin.intSide(refData.stream(), Ref::id).codec(REFS));
+    }
+
+    private static <K> long join(HashJoin join, HashJoin.Side<Event, K> events, HashJoin.Side<Ref, K> refs) {
+        try (Stream<Long> joined = join.inner(events, refs, (e, r) -> e.amount() * r.region())) {
+            return joined.mapToLong(Long::longValue).sum();
+        }
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class SpillCounters {
+
+        public long spills;
+        private long start;
+
+        @Setup(Level.Iteration)
+        public void start(HashJoinBenchmark benchmark) {
+            start = benchmark.bounded.spills();
+        }
+
+        @TearDown(Level.Iteration)
+        public void stop(HashJoinBenchmark benchmark) {
+            spills = benchmark.bounded.spills() - start;
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package streamapi.jmh;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import streamapi.Instrumented;
+
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static streamapi.jmh.Modes.mode;
+
+/**
+ *  Промежуточный оператор п.8: цена Instrumented на конвейере из 10 стадий -
+ *  без оберток, выключенный экземпляр (должен совпасть с "без оберток") и включенный.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+@State(Scope.Benchmark)
+public class InstrumentedBenchmark {
+
+    @Param({"1000", "1000000"})
+    int size;
+
+    @Param({"false", "true"})
+    boolean parallel;
+
+    Instrumented disabled;
+    Instrumented enabled;
+
+    @Setup
+    public void setUp() {
+        disabled = Instrumented.disabled();
+        enabled = Instrumented.builder("bench").build();
+    }
+
+    @Benchmark
+    public long plain() {
+        return mode(IntStream.range(0, size), parallel)
+                .map(x -> x + 1).filter(x -> x % 3 != 0)
+                .map(x -> x * 7).filter(x -> x % 5 != 0)
+                .map(x -> x ^ 0x5f).filter(x -> (x & 1) == 0)
+                .map(x -> x >>> 1).filter(x -> x % 7 != 0)
+                .map(x -> x - 3).filter(x -> x > 0)
+                .asLongStream().sum();
+    }
+
+    @Benchmark
+    public long disabled() {
+        return run(disabled);
+    }
+
+    @Benchmark
+    public long enabled() {
+        return run(enabled);
+    }
+
+    private long run(Instrumented m) {
+        return m.source("range", mode(IntStream.range(0, size), parallel))
+                .map(m.mapInt("inc", x -> x + 1)).filter(m.filterInt("not3", x -> x % 3 != 0))
+                .map(m.mapInt("mul", x -> x * 7)).filter(m.filterInt("not5", x -> x % 5 != 0))
+                .map(m.mapInt("xor", x -> x ^ 0x5f)).filter(m.filterInt("even", x -> (x & 1) == 0))
+                .map(m.mapInt("half", x -> x >>> 1)).filter(m.filterInt("not7", x -> x % 7 != 0))
+                .map(m.mapInt("dec", x -> x - 3)).filter(m.filterInt("positive", x -> x > 0))
+                .asLongStream().sum();
+    }
+}
@@ -0,0 +1,232 @@
+package streamapi.jmh;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static streamapi.jmh.Modes.mode;
+
+/**
+ *  "Промежуточные операторы" из StreamApi.java (п.1 - п.11).
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+@State(Scope.Benchmark)
+public class IntermediateBenchmark {
+
+    @Param({"10", "1000", "100000", "10000000"})
+    int size;
+
+    @Param({"false", "true"})
+    boolean parallel;
+
+    Integer[] numbers;
+    Integer[] shuffled;
+    String[] numerals;
+    String[] words;
+    String[][] pairs;
+    int[][] intPairs;
+    double[] doubles;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        numbers = new Integer[size];
+        shuffled = new Integer[size];
+        numerals = new String[size];
+        words = new String[size];
+        doubles = new double[size];
+        for (int i = 0; i < size; i++) {
+            numbers[i] = i;
+            shuffled[i] = random.nextInt(size);
+            numerals[i] = String.valueOf(i);
+            words[i] = "w" + (i % 97);
+            doubles[i] = random.nextDouble();
+        }
+        pairs = new String[Math.max(1, size / 2)][];
+        intPairs = new int[pairs.length][];
+        for (int i = 0; i < pairs.length; i++) {
+            pairs[i] = new String[]{i % 3 == 0 ? "a" : words[2 * i % size], words[(2 * i + 1) % size]};
+            intPairs[i] = new int[]{2 * i, 2 * i + 1};
+        }
+    }
+
+    // п.1
+    @Benchmark
+    public void filter(Blackhole bh) {
+        mode(Arrays.stream(shuffled), parallel)
+                .filter(x -> x > size / 2)
+                .forEach(bh::consume);
+    }
+
+    // п.2
+    @Benchmark
+    public void mapToIntParseInt(Blackhole bh) {
+        mode(Arrays.stream(numerals), parallel)
+                .mapToInt(Integer::parseInt)
+                .map(x -> x + 10)
+                .forEach(bh::consume);
+    }
+
+    // п.2, правая колонка: map(Integer::parseInt) с упаковкой
+    @Benchmark
+    public void mapParseIntBoxed(Blackhole bh) {
+        mode(Arrays.stream(numerals), parallel)
+                .map(Integer::parseInt)
+                .map(x -> x + 10)
+                .forEach(bh::consume);
+    }
+
+    // п.2
+    @Benchmark
+    public void mapToIntLength(Blackhole bh) {
+        mode(Arrays.stream(words), parallel)
+                .mapToInt(String::length)
+                .forEach(bh::consume);
+    }
+
+    // п.3
+    @Benchmark
+    public List<String> flatMapStreamOf() {
+        return mode(Arrays.stream(pairs), parallel)
+                .flatMap(Stream::of)
+                .collect(Collectors.toList());
+    }
+
+    // п.3.2
+    @Benchmark
+    public void flatMapToInt(Blackhole bh) {
+        mode(Arrays.stream(intPairs), parallel)
+                .flatMapToInt(x -> Arrays.stream(x))
+                .forEach(bh::consume);
+    }
+
+    // п.3, фильтр массивов без "a"
+    @Benchmark
+    public List<String[]> filterArrays() {
+        return mode(Arrays.stream(pairs), parallel)
+                .filter(x -> {
+                    for (String s : x) {
+                        if (s.equals("a")) {
+                            return false;
+                        }
+                    }
+                    return true;
+                })
+                .collect(Collectors.toList());
+    }
+
+    // п.3, flatMap + filter
+    @Benchmark
+    public List<String> flatMapFilter() {
+        return mode(Arrays.stream(pairs), parallel)
+                .flatMap(Stream::of)
+                .filter(x -> !x.equals("a"))
+                .collect(Collectors.toList());
+    }
+
+    // п.4
+    @Benchmark
+    public void limit(Blackhole bh) {
+        mode(Arrays.stream(numbers), parallel)
+                .limit(3)
+                .forEach(bh::consume);
+    }
+
+    // п.4, отсечение половины - то, что реально дорого на ordered parallel
+    @Benchmark
+    public void limitHalf(Blackhole bh) {
+        mode(Arrays.stream(numbers), parallel)
+                .limit(size / 2)
+                .forEach(bh::consume);
+    }
+
+    // п.5
+    @Benchmark
+    public void skip(Blackhole bh) {
+        mode(Arrays.stream(numbers), parallel)
+                .skip(3)
+                .forEach(bh::consume);
+    }
+
+    // п.6
+    @Benchmark
+    public void sortedLimit(Blackhole bh) {
+        mode(IntStream.range(0, size), parallel)
+                .sorted()
+                .limit(3)
+                .forEach(bh::consume);
+    }
+
+    // п.6, на неотсортированных данных
+    @Benchmark
+    public void sortedShuffled(Blackhole bh) {
+        mode(Arrays.stream(shuffled), parallel)
+                .sorted()
+                .forEach(bh::consume);
+    }
+
+    // п.7
+    @Benchmark
+    public void distinct(Blackhole bh) {
+        mode(Arrays.stream(shuffled), parallel)
+                .distinct()
+                .forEach(bh::consume);
+    }
+
+    // п.8
+    @Benchmark
+    public List<String> peek(Blackhole bh) {
+        return mode(Arrays.stream(words), parallel)
+                .filter(e -> e.length() > 2)
+                .peek(bh::consume)
+                .map(String::toUpperCase)
+                .peek(bh::consume)
+                .collect(Collectors.toList());
+    }
+
+    // п.9
+    @Benchmark
+    public void takeWhile(Blackhole bh) {
+        mode(Arrays.stream(numbers), parallel)
+                .takeWhile(x -> x < size / 2)
+                .forEach(bh::consume);
+    }
+
+    // п.10
+    @Benchmark
+    public void dropWhile(Blackhole bh) {
+        mode(Arrays.stream(numbers), parallel)
+                .dropWhile(x -> x < size / 2)
+                .forEach(bh::consume);
+    }
+
+    // п.11
+    @Benchmark
+    public void boxed(Blackhole bh) {
+        mode(Arrays.stream(doubles), parallel)
+                .boxed()
+                .map(Object::getClass)
+                .forEach(bh::consume);
+    }
+}
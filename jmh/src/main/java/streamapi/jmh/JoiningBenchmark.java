@@ -0,0 +1,102 @@
+package streamapi.jmh;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import streamapi.Joining;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static streamapi.jmh.Modes.mode;
+
+/**
+ *  Collectors п.7.3: map(String::valueOf).collect(joining(...)) против Joining
+ *  (цифры прямо в буфер, переиспользуемый StringBuilder); CSV-строки через конкатенацию и через Formatter
+ *  (коллектором с блоками и через join - прямо в target для последовательного стрима).
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+@State(Scope.Benchmark)
+public class JoiningBenchmark {
+
+    public static final class Row {
+        final long id;
+        final String name;
+        final int amount;
+
+        Row(long id, String name, int amount) {
+            this.id = id;
+            this.name = name;
+            this.amount = amount;
+        }
+    }
+
+    @Param({"10", "1000", "100000"})
+    int size;
+
+    @Param({"false", "true"})
+    boolean parallel;
+
+    List<Row> rows;
+
+    @Setup
+    public void setUp() {
+        rows = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            rows.add(new Row(1_000_000_000L + i, "name" + (i % 100), i * 7));
+        }
+    }
+
+    // п.7.3 как в шпаргалке
+    @Benchmark
+    public String stockJoining() {
+        return mode(IntStream.range(0, size), parallel)
+                .mapToObj(String::valueOf)
+                .collect(Collectors.joining("-", "<", ">"));
+    }
+
+    @Benchmark
+    public int joiningIntoPooledBuilder() {
+        return Joining.ints(Joining.pooledBuilder(), "-", "<", ">")
+                .collect(mode(IntStream.range(0, size), parallel))
+                .length();
+    }
+
+    @Benchmark
+    public String stockCsv() {
+        return mode(rows.stream(), parallel)
+                .map(r -> r.id + "," + r.name + "," + r.amount)
+                .collect(Collectors.joining("\n"));
+    }
+
+    @Benchmark
+    public int formatterCsv() {
+        return mode(rows.stream(), parallel)
+                .collect(Joining.to(Joining.pooledBuilder(), "\n", "", "",
+                        (Row r, Joining.Sink out) -> out.append(r.id).append(',').append(r.name).append(',').append(r.amount)))
+                .length();
+    }
+
+    /** То же через join: последовательный стрим пишет прямо в StringBuilder, без блоков. */
+    @Benchmark
+    public int formatterCsvJoin() {
+        return Joining.join(mode(rows.stream(), parallel), Joining.pooledBuilder(), "\n", "", "",
+                        (Row r, Joining.Sink out) -> out.append(r.id).append(',').append(r.name).append(',').append(r.amount))
+                .length();
+    }
+}
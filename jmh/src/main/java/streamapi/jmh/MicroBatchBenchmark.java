@@ -0,0 +1,71 @@
+package streamapi.jmh;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import streamapi.MicroBatchStream;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ *  Поток событий: сначала все в List, потом groupingBy/counting - против MicroBatchStream,
+ *  где события группируются пачками по мере поступления в одно окно.
+ *  Результат в операциях в секунду - одна операция = size событий.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+@State(Scope.Benchmark)
+public class MicroBatchBenchmark {
+
+    @Param({"200000"})
+    int size;
+
+    @Param({"1024", "16384"})
+    int batchSize;
+
+    @Benchmark
+    public Map<Integer, Long> bufferedList() {
+        List<Integer> events = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            events.add(i);
+        }
+        return events.stream()
+                .filter(x -> x % 3 != 0)
+                .collect(Collectors.groupingBy(x -> x & 15, Collectors.counting()));
+    }
+
+    @Benchmark
+    public Map<Integer, Long> microBatch() throws InterruptedException {
+        Map<Integer, Long> result = new HashMap<>();
+        MicroBatchStream<Integer> feed = MicroBatchStream.<Integer>builder()
+                .capacity(4 * batchSize)
+                .batchSize(batchSize)
+                .maxDelay(Duration.ofMillis(50))
+                .build();
+        feed.window(Duration.ofHours(1),
+                s -> s.filter(x -> x % 3 != 0),
+                Collectors.groupingBy(x -> x & 15, Collectors.counting()),
+                w -> result.putAll(w.result()));
+        for (int i = 0; i < size; i++) {
+            feed.push(i);
+        }
+        feed.close();
+        return result;
+    }
+}
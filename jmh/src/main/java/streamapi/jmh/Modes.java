@@ -0,0 +1,31 @@
+package streamapi.jmh;
+
+import java.util.stream.DoubleStream;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+/**
+ *  Переключение стрима в последовательный/параллельный режим по параметру бенчмарка.
+ */
+final class Modes {
+
+    private Modes() {
+    }
+
+    static <T> Stream<T> mode(Stream<T> stream, boolean parallel) {
+        return parallel ? stream.parallel() : stream.sequential();
+    }
+
+    static IntStream mode(IntStream stream, boolean parallel) {
+        return parallel ? stream.parallel() : stream.sequential();
+    }
+
+    static LongStream mode(LongStream stream, boolean parallel) {
+        return parallel ? stream.parallel() : stream.sequential();
+    }
+
+    static DoubleStream mode(DoubleStream stream, boolean parallel) {
+        return parallel ? stream.parallel() : stream.sequential();
+    }
+}
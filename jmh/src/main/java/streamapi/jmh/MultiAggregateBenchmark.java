@@ -0,0 +1,106 @@
+package streamapi.jmh;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import streamapi.MultiAggregate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.LongSummaryStatistics;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static streamapi.jmh.Modes.mode;
+
+/**
+ *  Collectors п.8-12: пять отдельных проходов по списку против одного прохода MultiAggregate.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+@State(Scope.Benchmark)
+public class MultiAggregateBenchmark {
+
+    public static final class Row {
+        final long amount;
+        final double price;
+
+        Row(long amount, double price) {
+            this.amount = amount;
+            this.price = price;
+        }
+    }
+
+    private static final MultiAggregate SUMMARY = MultiAggregate.builder().summary().build();
+    private static final MultiAggregate FULL = MultiAggregate.builder()
+            .summary().variance().percentiles(0.5, 0.99).distinctCount()
+            .build();
+
+    @Param({"1000", "1000000"})
+    int size;
+
+    @Param({"false", "true"})
+    boolean parallel;
+
+    List<Row> rows;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        rows = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            rows.add(new Row(random.nextInt(100_000), random.nextDouble() * 1000));
+        }
+    }
+
+    // п.8.3, п.9.3, п.11.1, п.12.1, п.12.2 - пять проходов
+    @Benchmark
+    public void fivePasses(Blackhole bh) {
+        bh.consume(mode(rows.stream(), parallel).collect(Collectors.summingLong(r -> r.amount)));
+        bh.consume(mode(rows.stream(), parallel).collect(Collectors.averagingLong(r -> r.amount)));
+        bh.consume(mode(rows.stream(), parallel).collect(Collectors.counting()));
+        bh.consume(mode(rows.stream(), parallel).mapToLong(r -> r.amount).min());
+        bh.consume(mode(rows.stream(), parallel).mapToLong(r -> r.amount).max());
+    }
+
+    // п.10.3
+    @Benchmark
+    public LongSummaryStatistics summarizing() {
+        return mode(rows.stream(), parallel).collect(Collectors.summarizingLong(r -> r.amount));
+    }
+
+    @Benchmark
+    public MultiAggregate.Result multiAggregateSummary() {
+        return mode(rows.stream(), parallel).collect(SUMMARY.collectingLong(r -> r.amount));
+    }
+
+    @Benchmark
+    public MultiAggregate.Result multiAggregateFull() {
+        return mode(rows.stream(), parallel).collect(FULL.collectingLong(r -> r.amount));
+    }
+
+    @Benchmark
+    public List<Object> teeingTwoFields() {
+        return mode(rows.stream(), parallel).collect(MultiAggregate.teeing(
+                FULL.collectingLong(r -> r.amount),
+                SUMMARY.collectingDouble(r -> r.price)));
+    }
+
+    @Benchmark
+    public MultiAggregate.Result primitiveFull() {
+        return FULL.longs().collect(mode(rows.stream(), parallel).mapToLong(r -> r.amount));
+    }
+}
@@ -0,0 +1,97 @@
+package streamapi.jmh;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import streamapi.OffHeapColumn;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.LongStream;
+
+import static streamapi.jmh.Modes.mode;
+
+/**
+ *  "Стримы для примитивов" над файлом long-значений: чтение в long[] + Arrays.stream(array)
+ *  против стрима прямо из отображенного файла; toArray() против toOffHeap().
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g", "-XX:MaxDirectMemorySize=4g"})
+@State(Scope.Benchmark)
+public class OffHeapBenchmark {
+
+    @Param({"1000000", "100000000"})
+    int size;
+
+    @Param({"false", "true"})
+    boolean parallel;
+
+    Path file;
+    OffHeapColumn mapped;
+
+    @Setup
+    public void setUp() throws IOException {
+        file = Files.createTempFile("column", ".bin");
+        OffHeapColumn.write(LongStream.range(0, size).map(x -> x * 31 % 1000), file);
+        mapped = OffHeapColumn.map(file, OffHeapColumn.Type.LONG);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        mapped = null;
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public long readIntoHeapArrayThenSum() throws IOException {
+        long[] array = new long[size];
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20).order(OffHeapColumn.FILE_ORDER);
+            int i = 0;
+            while (channel.read(buffer) > 0 || buffer.position() > 0) {
+                buffer.flip();
+                while (buffer.remaining() >= Long.BYTES) {
+                    array[i++] = buffer.getLong();
+                }
+                buffer.compact();
+                if (i == size) {
+                    break;
+                }
+            }
+        }
+        return mode(Arrays.stream(array), parallel).filter(x -> x > 500).sum();
+    }
+
+    @Benchmark
+    public long mappedSum() {
+        return mode(mapped.longs(), parallel).filter(x -> x > 500).sum();
+    }
+
+    @Benchmark
+    public long[] toHeapArray() {
+        return mode(mapped.longs(), parallel).map(x -> x * 2).toArray();
+    }
+
+    @Benchmark
+    public OffHeapColumn toOffHeap() {
+        return OffHeapColumn.toOffHeap(mode(mapped.longs(), parallel).map(x -> x * 2));
+    }
+}
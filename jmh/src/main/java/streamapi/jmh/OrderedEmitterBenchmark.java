@@ -0,0 +1,94 @@
+package streamapi.jmh;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import streamapi.OrderedEmitter;
+
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ *  Терминальный оператор п.2: упорядоченная выгрузка в Writer (action - узкое место)
+ *  после дорогого map - parallel().forEachOrdered против OrderedEmitter с окном.
+ *  У orderedEmitter счетчики итерации - peakHeld (пик удерживаемых элементов) и waits; эмиттер
+ *  свой на каждую итерацию. JMH суммирует счетчики по итерациям, так что пик одной итерации - в
+ *  строке итерации, а в итоге - сумма пиков. Общая память - gc.alloc.rate.norm.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+@State(Scope.Benchmark)
+public class OrderedEmitterBenchmark {
+
+    @Param({"1000000"})
+    int size;
+
+    @Param({"4096", "65536"})
+    int window;
+
+    PrintWriter out;
+    OrderedEmitter emitter;
+
+    @Setup
+    public void setUp() {
+        out = new PrintWriter(Writer.nullWriter());
+    }
+
+    @Setup(Level.Iteration)
+    public void newEmitter() {
+        emitter = OrderedEmitter.builder().window(window).build();
+    }
+
+    private static String format(int i) {
+        long h = i;
+        for (int k = 0; k < 50; k++) {
+            h = h * 6364136223846793005L + 1442695040888963407L;
+        }
+        return i + ";" + Long.toHexString(h);
+    }
+
+    @Benchmark
+    public void sequential() {
+        IntStream.range(0, size).mapToObj(OrderedEmitterBenchmark::format).forEach(out::println);
+    }
+
+    @Benchmark
+    public void parallelForEachOrdered() {
+        IntStream.range(0, size).parallel().mapToObj(OrderedEmitterBenchmark::format).forEachOrdered(out::println);
+    }
+
+    @Benchmark
+    public void orderedEmitter(EmitterCounters counters) {
+        emitter.forEachOrdered(IntStream.range(0, size).mapToObj(OrderedEmitterBenchmark::format), out::println);
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class EmitterCounters {
+
+        public long peakHeld;
+        public long waits;
+
+        @TearDown(Level.Iteration)
+        public void stop(OrderedEmitterBenchmark benchmark) {
+            peakHeld = benchmark.emitter.peakHeld();
+            waits = benchmark.emitter.waits();
+        }
+    }
+}
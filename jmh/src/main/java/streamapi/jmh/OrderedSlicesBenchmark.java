@@ -0,0 +1,132 @@
+package streamapi.jmh;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import streamapi.OrderedSlices;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static streamapi.jmh.Modes.mode;
+
+/**
+ *  Промежуточные операторы п.4, п.5, п.9, п.10 против OrderedSlices.
+ *  Отсечка посередине источника - худший случай для ordered parallel limit/skip.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+@State(Scope.Benchmark)
+public class OrderedSlicesBenchmark {
+
+    @Param({"100000", "10000000", "100000000"})
+    int size;
+
+    @Param({"false", "true"})
+    boolean parallel;
+
+    List<Integer> list;
+    int[] array;
+
+    @Setup
+    public void setUp() {
+        // список и массив только для takeWhile/dropWhile; 10^8 упакованных значений не создаем
+        int n = Math.min(size, 10_000_000);
+        list = new ArrayList<>(n);
+        array = new int[n];
+        for (int i = 0; i < n; i++) {
+            list.add(i);
+            array[i] = i;
+        }
+    }
+
+    @Benchmark
+    public long rangeLimit() {
+        return mode(IntStream.range(0, size), parallel)
+                .limit(size / 2)
+                .mapToLong(x -> x * 3L)
+                .sum();
+    }
+
+    @Benchmark
+    public long rangeLimitSliced() {
+        return OrderedSlices.limit(mode(IntStream.range(0, size), parallel), size / 2)
+                .mapToLong(x -> x * 3L)
+                .sum();
+    }
+
+    @Benchmark
+    public long rangeSkip() {
+        return mode(IntStream.range(0, size), parallel)
+                .skip(size / 2)
+                .mapToLong(x -> x * 3L)
+                .sum();
+    }
+
+    @Benchmark
+    public long rangeSkipSliced() {
+        return OrderedSlices.skip(mode(IntStream.range(0, size), parallel), size / 2)
+                .mapToLong(x -> x * 3L)
+                .sum();
+    }
+
+    @Benchmark
+    public Object[] listLimitToArray() {
+        return mode(list.stream(), parallel)
+                .limit(list.size() / 2)
+                .toArray();
+    }
+
+    @Benchmark
+    public Object[] listLimitToArraySliced() {
+        return OrderedSlices.limit(mode(list.stream(), parallel), list.size() / 2)
+                .toArray();
+    }
+
+    @Benchmark
+    public long arrayTakeWhile() {
+        int bound = array.length / 2;
+        return mode(IntStream.of(array), parallel)
+                .takeWhile(x -> x < bound)
+                .asLongStream()
+                .sum();
+    }
+
+    @Benchmark
+    public long arrayTakeWhileSliced() {
+        int bound = array.length / 2;
+        return mode(OrderedSlices.takeWhile(array, x -> x < bound), parallel)
+                .asLongStream()
+                .sum();
+    }
+
+    @Benchmark
+    public long listDropWhile() {
+        int bound = list.size() / 2;
+        return mode(list.stream(), parallel)
+                .dropWhile(x -> x < bound)
+                .mapToLong(x -> x)
+                .sum();
+    }
+
+    @Benchmark
+    public long listDropWhileSliced() {
+        int bound = list.size() / 2;
+        return mode(OrderedSlices.dropWhile(list, x -> x < bound), parallel)
+                .mapToLong(x -> x)
+                .sum();
+    }
+}
@@ -0,0 +1,92 @@
+package streamapi.jmh;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import streamapi.PipelineTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collector;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ *  Получение объекта Stream, пример 1: filter -> map -> collect на маленьких списках
+ *  (1-1000 элементов) - новый стрим на каждый вызов против PipelineTemplate и ручного цикла.
+ *  На малых размерах разница - построение конвейера; байт на операцию - gc.alloc.rate.norm.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+@State(Scope.Benchmark)
+public class PipelineTemplateBenchmark {
+
+    private static final PipelineTemplate<String, Integer> PARSE = PipelineTemplate.<String>of()
+            .filter(s -> s.length() <= 2)
+            .map(Integer::parseInt)
+            .map(x -> x + 11);
+
+    private static final Collector<Integer, ?, Set<Integer>> TO_SET = Collectors.toSet();
+
+    @Param({"1", "3", "6", "100", "1000"})
+    int size;
+
+    List<String> input;
+
+    @Setup
+    public void setUp() {
+        input = IntStream.range(0, size).mapToObj(i -> Integer.toString(i % 200)).toList();
+    }
+
+    @Benchmark
+    public List<Integer> streamToList() {
+        return input.stream()
+                .filter(s -> s.length() <= 2)
+                .map(Integer::parseInt)
+                .map(x -> x + 11)
+                .collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public List<Integer> templateToList() {
+        return PARSE.toList(input);
+    }
+
+    @Benchmark
+    public List<Integer> loop() {
+        List<Integer> result = new ArrayList<>();
+        for (String s : input) {
+            if (s.length() <= 2) {
+                result.add(Integer.parseInt(s) + 11);
+            }
+        }
+        return result;
+    }
+
+    @Benchmark
+    public Set<Integer> streamToSet() {
+        return input.stream()
+                .filter(s -> s.length() <= 2)
+                .map(Integer::parseInt)
+                .map(x -> x + 11)
+                .collect(TO_SET);
+    }
+
+    @Benchmark
+    public Set<Integer> templateToSet() {
+        return PARSE.collect(input, TO_SET);
+    }
+}
@@ -0,0 +1,96 @@
+package streamapi.jmh;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import streamapi.Planner;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ *  Примеры 3 и 4 при разных размерах: всегда sequential, всегда parallel и решение Planner.
+ *  На 3 элементах должен выигрывать sequential, на миллионе - parallel; planned - не хуже лучшего
+ *  из двух (за вычетом редких пробных запусков). Решения planned за итерацию - счетчики
+ *  parallelRuns и sequentialRuns.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+@State(Scope.Benchmark)
+public class PlannerBenchmark {
+
+    @Param({"3", "10000", "1000000"})
+    int size;
+
+    List<Integer> list;
+    Planner planner;
+
+    @Setup
+    public void setUp() {
+        list = IntStream.range(0, size).boxed().collect(Collectors.toList());
+        planner = Planner.builder().build();
+    }
+
+    @Benchmark
+    public long sequential() {
+        return list.stream()
+                .filter(x -> x % 3 != 0)
+                .mapToLong(x -> x * 2L)
+                .sum();
+    }
+
+    @Benchmark
+    public long parallel() {
+        return list.parallelStream()
+                .filter(x -> x % 3 != 0)
+                .mapToLong(x -> x * 2L)
+                .sum();
+    }
+
+    @Benchmark
+    public long planned(Decisions decisions) {
+        return planner.execute("filter-sum", list.stream(), s -> {
+            decisions.count(s.isParallel());
+            return s.filter(x -> x % 3 != 0)
+                    .mapToLong(x -> x * 2L)
+                    .sum();
+        });
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Decisions {
+
+        public long parallelRuns;
+        public long sequentialRuns;
+
+        @Setup(Level.Iteration)
+        public void clear() {
+            parallelRuns = 0;
+            sequentialRuns = 0;
+        }
+
+        void count(boolean parallel) {
+            if (parallel) {
+                parallelRuns++;
+            } else {
+                sequentialRuns++;
+            }
+        }
+    }
+}
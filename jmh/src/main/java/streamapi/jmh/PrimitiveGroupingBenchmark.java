@@ -0,0 +1,137 @@
+package streamapi.jmh;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import streamapi.IntArrayList;
+import streamapi.IntLongHashMap;
+import streamapi.IntObjectHashMap;
+import streamapi.Partition;
+import streamapi.PrimitiveCollectors;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static streamapi.jmh.Modes.mode;
+
+/**
+ *  Collectors п.13.1 - п.13.3 и п.15.1 (упакованные ключи/значения) против PrimitiveCollectors.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+@State(Scope.Benchmark)
+public class PrimitiveGroupingBenchmark {
+
+    @Param({"1000", "100000", "10000000"})
+    int size;
+
+    @Param({"false", "true"})
+    boolean parallel;
+
+    @Param({"16", "65536"})
+    int buckets;
+
+    int[] values;
+    String[] words;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        values = new int[size];
+        words = new String[size];
+        for (int i = 0; i < size; i++) {
+            values[i] = random.nextInt();
+            words[i] = "abcdefghij".substring(0, 1 + random.nextInt(10));
+        }
+    }
+
+    // п.13.1 над IntStream: boxed() + groupingBy
+    @Benchmark
+    public Map<Integer, List<Integer>> boxedGroupingBy() {
+        int n = buckets;
+        return mode(Arrays.stream(values), parallel)
+                .boxed()
+                .collect(Collectors.groupingBy(x -> Math.floorMod(x, n)));
+    }
+
+    @Benchmark
+    public IntObjectHashMap<IntArrayList> primitiveGroupingBy() {
+        int n = buckets;
+        return PrimitiveCollectors.intGroupingBy(x -> Math.floorMod(x, n))
+                .collect(mode(Arrays.stream(values), parallel));
+    }
+
+    // п.13.2 с counting()
+    @Benchmark
+    public Map<Integer, Long> boxedGroupingByCounting() {
+        int n = buckets;
+        return mode(Arrays.stream(values), parallel)
+                .boxed()
+                .collect(Collectors.groupingBy(x -> Math.floorMod(x, n), Collectors.counting()));
+    }
+
+    @Benchmark
+    public IntLongHashMap primitiveGroupingByCounting() {
+        int n = buckets;
+        return PrimitiveCollectors.intGroupingByCounting(x -> Math.floorMod(x, n))
+                .collect(mode(Arrays.stream(values), parallel));
+    }
+
+    // п.13.2 с summingLong()
+    @Benchmark
+    public Map<Integer, Long> boxedGroupingBySumming() {
+        int n = buckets;
+        return mode(Arrays.stream(values), parallel)
+                .boxed()
+                .collect(Collectors.groupingBy(x -> Math.floorMod(x, n), Collectors.summingLong(x -> x)));
+    }
+
+    @Benchmark
+    public IntLongHashMap primitiveGroupingBySumming() {
+        int n = buckets;
+        return PrimitiveCollectors.intGroupingBySumming(x -> Math.floorMod(x, n), x -> x)
+                .collect(mode(Arrays.stream(values), parallel));
+    }
+
+    // п.13.1 как в шпаргалке: объекты, ключ String::length
+    @Benchmark
+    public Map<Integer, Long> stringLengthCounting() {
+        return mode(Arrays.stream(words), parallel)
+                .collect(Collectors.groupingBy(String::length, Collectors.counting()));
+    }
+
+    @Benchmark
+    public IntLongHashMap stringLengthPrimitiveCounting() {
+        return mode(Arrays.stream(words), parallel)
+                .collect(PrimitiveCollectors.groupingByIntCounting(String::length));
+    }
+
+    // п.15.1
+    @Benchmark
+    public Map<Boolean, List<Integer>> boxedPartitioningBy() {
+        return mode(Arrays.stream(values), parallel)
+                .boxed()
+                .collect(Collectors.partitioningBy(x -> x >= 0));
+    }
+
+    @Benchmark
+    public Partition<IntArrayList> primitivePartitioningBy() {
+        return PrimitiveCollectors.intPartitioningBy(x -> x >= 0)
+                .collect(mode(Arrays.stream(values), parallel));
+    }
+}
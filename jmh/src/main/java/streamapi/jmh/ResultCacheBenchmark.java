@@ -0,0 +1,120 @@
+package streamapi.jmh;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import streamapi.ResultCache;
+import streamapi.VersionedList;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ *  groupingBy(String::length) (Collectors п.13.1) над неизменным справочником на каждый запрос
+ *  против ResultCache. updateEvery - через сколько запросов справочник меняется
+ *  (0 - никогда): каждое изменение - промах и полный пересчет. cachedConcurrent - попадания
+ *  из 8 потоков без изменений справочника: проверяет, что чтение кеша не упирается в блокировку.
+ *  У cached счетчики кеша за итерацию - hits, misses и evictions (hitRate = hits / (hits + misses)).
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+@State(Scope.Benchmark)
+public class ResultCacheBenchmark {
+
+    @Param({"100", "10000"})
+    int size;
+
+    @Param({"0", "100"})
+    int updateEvery;
+
+    VersionedList<String> words;
+    ResultCache cache;
+    int requests;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        List<String> list = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            list.add("abcdefghijklmnop".substring(0, 1 + random.nextInt(16)));
+        }
+        words = new VersionedList<>(list);
+        cache = ResultCache.builder().maximumSize(100).build();
+    }
+
+    private void maybeUpdate() {
+        if (updateEvery > 0 && ++requests % updateEvery == 0) {
+            words.set(0, words.get(0));
+        }
+    }
+
+    @Benchmark
+    public Map<Integer, List<String>> direct() {
+        maybeUpdate();
+        return words.stream()
+                .collect(Collectors.collectingAndThen(
+                        Collectors.groupingBy(String::length),
+                        Collections::unmodifiableMap));
+    }
+
+    @Benchmark
+    public Map<Integer, List<String>> cached(CacheCounters counters) {
+        maybeUpdate();
+        return cache.collect(words, "byLength", Collectors.collectingAndThen(
+                Collectors.groupingBy(String::length),
+                Collections::unmodifiableMap));
+    }
+
+    /** Без maybeUpdate: счетчик запросов и справочник не рассчитаны на несколько потоков. */
+    @Benchmark
+    @Threads(8)
+    public Map<Integer, List<String>> cachedConcurrent() {
+        return cache.collect(words, "byLength", Collectors.collectingAndThen(
+                Collectors.groupingBy(String::length),
+                Collections::unmodifiableMap));
+    }
+
+    /** Разница ResultCache.stats() за итерацию; в JMH события суммируются по итерациям. */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class CacheCounters {
+
+        public long hits;
+        public long misses;
+        public long evictions;
+        private ResultCache.Stats start;
+
+        @Setup(Level.Iteration)
+        public void start(ResultCacheBenchmark benchmark) {
+            start = benchmark.cache.stats();
+        }
+
+        @TearDown(Level.Iteration)
+        public void stop(ResultCacheBenchmark benchmark) {
+            ResultCache.Stats end = benchmark.cache.stats();
+            hits = end.hits() - start.hits();
+            misses = end.misses() - start.misses();
+            evictions = end.evictions() - start.evictions();
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package streamapi.jmh;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import streamapi.Scan;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static streamapi.jmh.Modes.mode;
+
+/**
+ *  Нарастающий баланс по операциям: toArray() и цикл в одном потоке против Scan.scan
+ *  (последовательно - лениво за один проход, параллельно - Arrays.parallelPrefix).
+ *  Результат сворачивается в max, чтобы нужны были все промежуточные значения.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+@State(Scope.Benchmark)
+public class ScanBenchmark {
+
+    @Param({"1000000", "50000000"})
+    int size;
+
+    @Param({"false", "true"})
+    boolean parallel;
+
+    long[] deltas;
+
+    @Setup
+    public void setUp() {
+        deltas = new Random(42).longs(size, -1000, 1000).toArray();
+    }
+
+    @Benchmark
+    public long toArrayLoop() {
+        long[] balances = mode(Arrays.stream(deltas), parallel).map(x -> x * 3).toArray();
+        long max = Long.MIN_VALUE;
+        for (int i = 0; i < balances.length; i++) {
+            if (i > 0) {
+                balances[i] += balances[i - 1];
+            }
+            max = Math.max(max, balances[i]);
+        }
+        return max;
+    }
+
+    @Benchmark
+    public long scan() {
+        return Scan.scan(mode(Arrays.stream(deltas), parallel).map(x -> x * 3), Long::sum)
+                .max()
+                .orElse(0);
+    }
+}
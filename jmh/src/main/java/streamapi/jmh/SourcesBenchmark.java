@@ -0,0 +1,213 @@
+package streamapi.jmh;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+import static streamapi.jmh.Modes.mode;
+
+/**
+ *  "Получение объекта Stream", "Параллельные стримы" и "ИСТОЧНИКИ" из StreamApi.java.
+ *  Номера в комментариях - номера пунктов/примеров шпаргалки.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+@State(Scope.Benchmark)
+public class SourcesBenchmark {
+
+    @Param({"10", "1000", "100000", "10000000"})
+    int size;
+
+    @Param({"false", "true"})
+    boolean parallel;
+
+    List<Integer> list;
+    Integer[] array;
+    String[] strings;
+    Map<String, String> map;
+
+    @Setup
+    public void setUp() {
+        array = new Integer[size];
+        strings = new String[size];
+        for (int i = 0; i < size; i++) {
+            array[i] = i;
+            strings[i] = String.valueOf(i % 1000);
+        }
+        list = new ArrayList<>(Arrays.asList(array));
+        map = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            map.put("k" + i, strings[i]);
+        }
+    }
+
+    // Получение объекта Stream, п.1
+    @Benchmark
+    public long empty() {
+        return mode(Stream.<String>empty(), parallel).count();
+    }
+
+    // Получение объекта Stream, п.2
+    @Benchmark
+    public void listStream(Blackhole bh) {
+        mode(list.stream(), parallel).forEach(bh::consume);
+    }
+
+    // Получение объекта Stream, п.3
+    @Benchmark
+    public void mapEntrySetStream(Blackhole bh) {
+        mode(map.entrySet().stream(), parallel).forEach(bh::consume);
+    }
+
+    // Получение объекта Stream, п.4
+    @Benchmark
+    public void arraysStream(Blackhole bh) {
+        mode(Arrays.stream(array), parallel).forEach(bh::consume);
+    }
+
+    // Получение объекта Stream, п.5
+    @Benchmark
+    public void streamOfVarargs(Blackhole bh) {
+        mode(Stream.of(array), parallel).forEach(bh::consume);
+    }
+
+    // Пример 1
+    @Benchmark
+    public List<String> example1FilterToList() {
+        return mode(Arrays.stream(strings), parallel)
+                .filter(s -> s.length() <= 2)
+                .collect(Collectors.toList());
+    }
+
+    // Пример 2
+    @Benchmark
+    public void example2FilterMapLimit(Blackhole bh) {
+        mode(Arrays.stream(array).mapToInt(Integer::intValue), parallel)
+                .filter(x -> x < 300)
+                .map(x -> x + 11)
+                .limit(3)
+                .forEach(bh::consume);
+    }
+
+    // Пример 3 (при parallel=false - list.stream() для сравнения)
+    @Benchmark
+    public List<Integer> example3ParallelStream() {
+        return (parallel ? list.parallelStream() : list.stream())
+                .filter(x -> x > 10)
+                .map(x -> x * 2)
+                .collect(Collectors.toList());
+    }
+
+    // Пример 4
+    @Benchmark
+    public int example4RangeMapSum() {
+        return mode(IntStream.range(0, size), parallel)
+                .map(x -> x * 10)
+                .sum();
+    }
+
+    // ИСТОЧНИКИ, п.2
+    @Benchmark
+    public void of(Blackhole bh) {
+        mode(Stream.of(array), parallel).forEach(bh::consume);
+    }
+
+    // ИСТОЧНИКИ, п.3 - по одному ofNullable на элемент
+    @Benchmark
+    public void ofNullable(Blackhole bh) {
+        mode(list.stream(), parallel)
+                .flatMap(x -> Stream.ofNullable((x & 1) == 0 ? x : null))
+                .forEach(bh::consume);
+    }
+
+    // ИСТОЧНИКИ, п.4
+    @Benchmark
+    public void generate(Blackhole bh) {
+        mode(Stream.generate(() -> 6), parallel)
+                .limit(size)
+                .forEach(bh::consume);
+    }
+
+    // ИСТОЧНИКИ, п.5
+    @Benchmark
+    public void iterate(Blackhole bh) {
+        mode(Stream.iterate(2, x -> x + 6), parallel)
+                .limit(size)
+                .forEach(bh::consume);
+    }
+
+    // ИСТОЧНИКИ, п.6
+    @Benchmark
+    public void iterateHasNext(Blackhole bh) {
+        int bound = 2 + 6 * size;
+        mode(Stream.iterate(2, x -> x < bound, x -> x + 6), parallel)
+                .forEach(bh::consume);
+    }
+
+    // ИСТОЧНИКИ, п.7
+    @Benchmark
+    public void concat(Blackhole bh) {
+        int half = size / 2;
+        mode(Stream.concat(
+                        list.subList(0, half).stream(),
+                        list.subList(half, size).stream()), parallel)
+                .forEach(bh::consume);
+    }
+
+    // ИСТОЧНИКИ, п.8
+    @Benchmark
+    public void builder(Blackhole bh) {
+        Stream.Builder<Integer> builder = Stream.builder();
+        for (int i = 0; i < size; i++) {
+            builder.accept(array[i]);
+        }
+        mode(builder.build(), parallel).forEach(bh::consume);
+    }
+
+    // ИСТОЧНИКИ, п.9.1
+    @Benchmark
+    public void intRange(Blackhole bh) {
+        mode(IntStream.range(0, size), parallel).forEach(bh::consume);
+    }
+
+    // ИСТОЧНИКИ, п.9.2
+    @Benchmark
+    public void longRange(Blackhole bh) {
+        mode(LongStream.range(-size, 0L), parallel).forEach(bh::consume);
+    }
+
+    // ИСТОЧНИКИ, п.10.1
+    @Benchmark
+    public void intRangeClosed(Blackhole bh) {
+        mode(IntStream.rangeClosed(0, size - 1), parallel).forEach(bh::consume);
+    }
+
+    // ИСТОЧНИКИ, п.10.2
+    @Benchmark
+    public void longRangeClosed(Blackhole bh) {
+        mode(LongStream.rangeClosed(-size, -1L), parallel).forEach(bh::consume);
+    }
+}
@@ -0,0 +1,67 @@
+package streamapi.jmh;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import streamapi.StreamPools;
+
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ *  Пример 4: IntStream.range(...).parallel().map(...).sum() в общем пуле и в изолированном пуле
+ *  заданного размера (накладные расходы invoke и влияние размера пула).
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+@State(Scope.Benchmark)
+public class StreamPoolsBenchmark {
+
+    @Param({"10", "100000", "10000000"})
+    int size;
+
+    @Param({"1", "4", "16"})
+    int poolParallelism;
+
+    StreamPools.Pool pool;
+
+    @Setup
+    public void setUp() {
+        pool = StreamPools.named("bench-" + poolParallelism, poolParallelism);
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.close();
+    }
+
+    @Benchmark
+    public long commonPool() {
+        return IntStream.range(0, size)
+                .parallel()
+                .map(x -> x * 10)
+                .asLongStream()
+                .sum();
+    }
+
+    @Benchmark
+    public long isolatedPool() {
+        return pool.invoke(() -> IntStream.range(0, size)
+                .parallel()
+                .map(x -> x * 10)
+                .asLongStream()
+                .sum());
+    }
+}
@@ -0,0 +1,227 @@
+package streamapi.jmh;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.LongSummaryStatistics;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+
+import static streamapi.jmh.Modes.mode;
+
+/**
+ *  "Терминальные операторы" из StreamApi.java (п.1 - п.11.3).
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+@State(Scope.Benchmark)
+public class TerminalBenchmark {
+
+    @Param({"10", "1000", "100000", "10000000"})
+    int size;
+
+    @Param({"false", "true"})
+    boolean parallel;
+
+    Integer[] numbers;
+    String[] words;
+    int[] ints;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        numbers = new Integer[size];
+        words = new String[size];
+        ints = new int[size];
+        for (int i = 0; i < size; i++) {
+            numbers[i] = random.nextInt(1_000_000);
+            words[i] = "one-" + (i % 1000);
+            ints[i] = numbers[i];
+        }
+    }
+
+    // п.1
+    @Benchmark
+    public void forEach(Blackhole bh) {
+        mode(Arrays.stream(numbers), parallel).forEach(bh::consume);
+    }
+
+    // п.2, forEach
+    @Benchmark
+    public void rangeFilterMapForEach(Blackhole bh) {
+        mode(IntStream.range(0, size), parallel)
+                .filter(x -> x % 10 == 0)
+                .map(x -> x / 10)
+                .forEach(bh::consume);
+    }
+
+    // п.2, forEachOrdered
+    @Benchmark
+    public void rangeFilterMapForEachOrdered(Blackhole bh) {
+        mode(IntStream.range(0, size), parallel)
+                .filter(x -> x % 10 == 0)
+                .map(x -> x / 10)
+                .forEachOrdered(bh::consume);
+    }
+
+    // п.3
+    @Benchmark
+    public long count() {
+        return mode(Arrays.stream(numbers), parallel).count();
+    }
+
+    // п.4
+    @Benchmark
+    public List<Integer> collectToList() {
+        return mode(Arrays.stream(numbers), parallel).collect(Collectors.toList());
+    }
+
+    // п.4
+    @Benchmark
+    public String collectJoining() {
+        return mode(Arrays.stream(numbers), parallel)
+                .map(String::valueOf)
+                .collect(Collectors.joining("-", "<", ">"));
+    }
+
+    // п.5
+    @Benchmark
+    public List<String> collectSupplierAccumulatorCombiner() {
+        return mode(Arrays.stream(words), parallel)
+                .collect(ArrayList::new, ArrayList::add, ArrayList::addAll);
+    }
+
+    // п.6.1
+    @Benchmark
+    public Object[] toArray() {
+        return mode(Arrays.stream(words), parallel).toArray();
+    }
+
+    // п.6.2
+    @Benchmark
+    public String[] toArrayTyped() {
+        return mode(Arrays.stream(words), parallel).toArray(String[]::new);
+    }
+
+    // п.7.1
+    @Benchmark
+    public int reduceIdentitySum() {
+        return mode(Arrays.stream(numbers), parallel)
+                .reduce(10, (acc, x) -> acc + x);
+    }
+
+    // п.7.1
+    @Benchmark
+    public int reduceIdentityMin() {
+        return mode(Arrays.stream(numbers), parallel)
+                .reduce(Integer.MAX_VALUE, (left, right) -> left < right ? left : right);
+    }
+
+    // п.7.2
+    @Benchmark
+    public long reduceCombiner() {
+        return mode(Arrays.stream(words), parallel)
+                .reduce(0L, (acc, s) -> acc + s.length(), Long::sum);
+    }
+
+    // п.7.3
+    @Benchmark
+    public Optional<Integer> reduceOptionalSum() {
+        return mode(Arrays.stream(numbers), parallel)
+                .reduce((acc, x) -> acc + x);
+    }
+
+    // п.7.3
+    @Benchmark
+    public Optional<Integer> reduceOptionalMin() {
+        return mode(Arrays.stream(numbers), parallel)
+                .reduce((left, right) -> left < right ? left : right);
+    }
+
+    // п.8.1
+    @Benchmark
+    public Optional<Integer> min() {
+        return mode(Arrays.stream(numbers), parallel).min(Integer::compare);
+    }
+
+    // п.8.1, компаратор String::indexOf
+    @Benchmark
+    public Optional<String> minIndexOf() {
+        return mode(Arrays.stream(words), parallel).min(String::indexOf);
+    }
+
+    // п.8.2
+    @Benchmark
+    public Optional<Integer> max() {
+        return mode(Arrays.stream(numbers), parallel).max(Integer::compare);
+    }
+
+    // п.9.1
+    @Benchmark
+    public Optional<String> findAny() {
+        return mode(Arrays.stream(words), parallel).findAny();
+    }
+
+    // п.9.2
+    @Benchmark
+    public int findFirst() {
+        return mode(Arrays.stream(ints), parallel).findFirst().getAsInt();
+    }
+
+    // п.10.1 - проходит весь стрим
+    @Benchmark
+    public boolean allMatch() {
+        return mode(Arrays.stream(numbers), parallel).allMatch(x -> x >= 0);
+    }
+
+    // п.10.2 - совпадение в середине
+    @Benchmark
+    public boolean anyMatch() {
+        int middle = numbers[size / 2];
+        return mode(Arrays.stream(numbers), parallel).anyMatch(x -> x == middle);
+    }
+
+    // п.10.3
+    @Benchmark
+    public boolean noneMatch() {
+        return mode(Arrays.stream(numbers), parallel).noneMatch(x -> x < 0);
+    }
+
+    // п.11.1
+    @Benchmark
+    public double average() {
+        return mode(IntStream.range(0, size), parallel).average().getAsDouble();
+    }
+
+    // п.11.2
+    @Benchmark
+    public long sum() {
+        return mode(LongStream.range(0, size), parallel).sum();
+    }
+
+    // п.11.3
+    @Benchmark
+    public LongSummaryStatistics summaryStatistics() {
+        return mode(LongStream.range(0, size), parallel).summaryStatistics();
+    }
+}
@@ -0,0 +1,100 @@
+package streamapi.jmh;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import streamapi.TopK;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static streamapi.jmh.Modes.mode;
+
+/**
+ *  Промежуточный оператор п.6: sorted(cmp).limit(k) против TopK.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+@State(Scope.Benchmark)
+public class TopKBenchmark {
+
+    public static final class Candidate {
+        final int id;
+        final double score;
+
+        Candidate(int id, double score) {
+            this.id = id;
+            this.score = score;
+        }
+    }
+
+    private static final Comparator<Candidate> BY_SCORE_DESC =
+            Comparator.comparingDouble((Candidate c) -> c.score).reversed();
+
+    @Param({"1000", "1000000"})
+    int size;
+
+    @Param({"3", "20", "1000"})
+    int k;
+
+    @Param({"false", "true"})
+    boolean parallel;
+
+    List<Candidate> candidates;
+    int[] ints;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        candidates = new ArrayList<>(size);
+        ints = new int[size];
+        for (int i = 0; i < size; i++) {
+            candidates.add(new Candidate(i, random.nextDouble()));
+            ints[i] = random.nextInt();
+        }
+    }
+
+    @Benchmark
+    public List<Candidate> sortedLimit() {
+        return mode(candidates.stream(), parallel)
+                .sorted(BY_SCORE_DESC)
+                .limit(k)
+                .collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public List<Candidate> topK() {
+        return mode(candidates.stream(), parallel)
+                .collect(TopK.collector(k, BY_SCORE_DESC));
+    }
+
+    // п.6 как в шпаргалке, но на неотсортированных данных
+    @Benchmark
+    public int[] intSortedLimit() {
+        return mode(IntStream.of(ints), parallel)
+                .sorted()
+                .limit(k)
+                .toArray();
+    }
+
+    @Benchmark
+    public int[] intTopK() {
+        return TopK.smallest(k).collect(mode(IntStream.of(ints), parallel));
+    }
+}
@@ -0,0 +1,78 @@
+package streamapi.jmh;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import streamapi.VirtualThreads;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ *  Пример 3 с блокирующим map: parallelStream() против VirtualThreads.mapConcurrent.
+ *  "Сервис" - локальная заглушка, которая отвечает через latencyMillis (Thread.sleep).
+ *  Виртуальные потоки будут только при запуске на Java 21+: java -jar target/benchmarks.jar VirtualThreads
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+@State(Scope.Benchmark)
+public class VirtualThreadsBenchmark {
+
+    @Param({"1000"})
+    int size;
+
+    @Param({"1", "10"})
+    int latencyMillis;
+
+    @Param({"64", "1024"})
+    int maxConcurrency;
+
+    List<Integer> ids;
+
+    @Setup
+    public void setUp() {
+        ids = IntStream.range(0, size).boxed().collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public List<String> parallelStream() {
+        return ids.parallelStream()
+                .map(this::lookup)
+                .collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public List<String> mapConcurrentOrdered() {
+        return VirtualThreads.mapConcurrent(ids.stream(), maxConcurrency, true, this::lookup)
+                .collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public List<String> mapConcurrentUnordered() {
+        return VirtualThreads.mapConcurrent(ids.stream(), maxConcurrency, false, this::lookup)
+                .collect(Collectors.toList());
+    }
+
+    /** Заглушка удаленного сервиса. */
+    private String lookup(int id) {
+        try {
+            Thread.sleep(latencyMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return "profile-" + id;
+    }
+}
@@ -0,0 +1,71 @@
+package streamapi;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ *  Joining.ints / longs в параллельном стриме против Collectors.joining - в том числе когда
+ *  левые части пусты и все элементы собраны правыми (комбайнер - BiConsumer, сливать нужно в левую).
+ */
+class JoiningTest {
+
+    @Test
+    void parallelInts() {
+        assertInts(() -> IntStream.range(0, 100_000));
+    }
+
+    @Test
+    void parallelIntsEmptyLeftParts() {
+        assertInts(() -> IntStream.range(0, 100_000).filter(v -> v >= 99_990));
+    }
+
+    @Test
+    void parallelIntsEmptyRightParts() {
+        assertInts(() -> IntStream.range(0, 100_000).filter(v -> v < 10));
+    }
+
+    @Test
+    void parallelIntsSparse() {
+        assertInts(() -> IntStream.range(-50_000, 50_000).filter(v -> v % 7_919 == 0));
+    }
+
+    @Test
+    void parallelIntsEmpty() {
+        assertInts(() -> IntStream.range(0, 100_000).filter(v -> v < 0));
+    }
+
+    @Test
+    void parallelLongs() {
+        assertLongs(() -> LongStream.range(Long.MAX_VALUE - 100_000, Long.MAX_VALUE));
+    }
+
+    @Test
+    void parallelLongsEmptyLeftParts() {
+        assertLongs(() -> LongStream.range(0, 100_000).filter(v -> v >= 99_990).map(v -> -v));
+    }
+
+    // ---------------------------------------------------------------------------
+
+    /** values дает один и тот же стрим; фильтр работает уже в параллельном стриме, и части бывают пустыми. */
+    private static void assertInts(Supplier<IntStream> values) {
+        String expected = values.get().mapToObj(String::valueOf).collect(Collectors.joining(",", "[", "]"));
+        StringBuilder sb = new StringBuilder();
+        assertEquals(expected, Joining.ints(sb, ",", "[", "]").collect(values.get().parallel()).toString());
+        sb.setLength(0);
+        assertEquals(expected, Joining.ints(sb, ",", "[", "]").collect(values.get()).toString());
+    }
+
+    private static void assertLongs(Supplier<LongStream> values) {
+        String expected = values.get().mapToObj(String::valueOf).collect(Collectors.joining(", ", "<", ">"));
+        StringBuilder sb = new StringBuilder();
+        assertEquals(expected, Joining.longs(sb, ", ", "<", ">").collect(values.get().parallel()).toString());
+        sb.setLength(0);
+        assertEquals(expected, Joining.longs(sb, ", ", "<", ">").collect(values.get()).toString());
+    }
+}
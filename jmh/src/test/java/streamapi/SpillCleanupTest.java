@@ -0,0 +1,167 @@
+package streamapi;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ *  Временные файлы ExternalSort, BoundedDistinct и HashJoin: после недочитанного результата
+ *  и после исключения при сборе в каталоге не остается ни файлов, ни открытых на них дескрипторов.
+ *  Дескрипторы проверяются через /proc/self/fd; без /proc проверка дескрипторов пропускается.
+ */
+class SpillCleanupTest {
+
+    @TempDir
+    Path dir;
+
+    // ---------------------------------------------------------------- ExternalSort
+
+    @Test
+    void sortedIntsClosedAfterLimit() throws IOException {
+        try (IntStream sorted = ExternalSort.sorted(IntStream.range(0, 100_000).map(i -> -i), 1_000, dir)) {
+            assertArrayEquals(new int[]{-99_999, -99_998, -99_997}, sorted.limit(3).toArray());
+        }
+        assertClean();
+    }
+
+    /** 400 отрезков - больше MAX_FAN_IN, слияние идет через промежуточные отрезки. */
+    @Test
+    void sortedObjectsClosedAfterLimit() throws IOException {
+        Stream<String> input = IntStream.range(0, 100_000).mapToObj(i -> String.format("%06d", 99_999 - i));
+        try (Stream<String> sorted = ExternalSort.sorted(input, 250, String::compareTo, Codec.strings(), dir)) {
+            assertEquals(List.of("000000", "000001"), sorted.limit(2).collect(Collectors.toList()));
+        }
+        assertClean();
+    }
+
+    @Test
+    void sortedCleanedAfterFailure() throws IOException {
+        IntStream input = IntStream.range(0, 100_000).map(i -> {
+            if (i == 50_000) {
+                throw new IllegalStateException("boom");
+            }
+            return -i;
+        });
+        IntStream sorted = ExternalSort.sorted(input, 1_000, dir);
+        assertThrows(IllegalStateException.class, sorted::sum);
+        assertClean();
+    }
+
+    @Test
+    void sortedParallelCleanedAfterFailure() throws IOException {
+        IntStream input = IntStream.range(0, 100_000).parallel().map(i -> {
+            if (i == 99_000) {
+                throw new IllegalStateException("boom");
+            }
+            return -i;
+        });
+        IntStream sorted = ExternalSort.sorted(input, 1_000, dir);
+        assertThrows(IllegalStateException.class, sorted::sum);
+        assertClean();
+    }
+
+    // ------------------------------------------------------------- BoundedDistinct
+
+    @Test
+    void distinctClosedAfterLimit() throws IOException {
+        try (IntStream distinct = BoundedDistinct.distinct(IntStream.range(0, 100_000).map(i -> i % 50_000), 1_000,
+                dir)) {
+            assertArrayEquals(new int[]{0, 1, 2}, distinct.limit(3).toArray());
+        }
+        assertClean();
+    }
+
+    @Test
+    void distinctCleanedAfterFailure() throws IOException {
+        IntStream input = IntStream.range(0, 100_000).map(i -> {
+            if (i == 50_000) {
+                throw new IllegalStateException("boom");
+            }
+            return i;
+        });
+        IntStream distinct = BoundedDistinct.distinct(input, 1_000, dir);
+        assertThrows(IllegalStateException.class, distinct::count);
+        assertClean();
+    }
+
+    // -------------------------------------------------------------------- HashJoin
+
+    @Test
+    void joinClosedAfterLimit() throws IOException {
+        HashJoin join = HashJoin.builder().maxInMemory(100).tempDirectory(dir).build();
+        try (Stream<Integer> joined = join.inner(
+                HashJoin.intSide(IntStream.range(0, 20_000).boxed(), i -> i).codec(Codec.ints()),
+                HashJoin.intSide(IntStream.range(0, 10_000).boxed(), i -> i).codec(Codec.ints()),
+                Integer::sum)) {
+            assertEquals(3, joined.limit(3).count());
+        }
+        assertClean();
+    }
+
+    @Test
+    void joinParallelClosedAfterLimit() throws IOException {
+        HashJoin join = HashJoin.builder().maxInMemory(100).tempDirectory(dir).build();
+        try (Stream<Integer> joined = join.inner(
+                HashJoin.intSide(IntStream.range(0, 20_000).boxed().parallel(), i -> i).codec(Codec.ints()),
+                HashJoin.intSide(IntStream.range(0, 10_000).boxed().parallel(), i -> i).codec(Codec.ints()),
+                Integer::sum)) {
+            assertEquals(3, joined.limit(3).count());
+        }
+        assertClean();
+    }
+
+    @Test
+    void joinCleanedAfterFailure() throws IOException {
+        HashJoin join = HashJoin.builder().maxInMemory(100).tempDirectory(dir).build();
+        Stream<Integer> probe = IntStream.range(0, 20_000).boxed().parallel().map(i -> {
+            if (i == 15_000) {
+                throw new IllegalStateException("boom");
+            }
+            return i;
+        });
+        Stream<Integer> joined = join.inner(
+                HashJoin.intSide(probe, i -> i).codec(Codec.ints()),
+                HashJoin.intSide(IntStream.range(0, 10_000).boxed().parallel(), i -> i).codec(Codec.ints()),
+                Integer::sum);
+        assertThrows(IllegalStateException.class, joined::count);
+        assertClean();
+    }
+
+    // ---------------------------------------------------------------------------
+
+    private void assertClean() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            assertEquals(List.of(), files.collect(Collectors.toList()), "files left in " + dir);
+        }
+        assertEquals(List.of(), openFiles(), "descriptors left open in " + dir);
+    }
+
+    /** Дескрипторы процесса на файлы каталога dir (в том числе уже удаленные). */
+    private List<String> openFiles() throws IOException {
+        Path fds = Path.of("/proc/self/fd");
+        if (!Files.isDirectory(fds)) {
+            return List.of();
+        }
+        String prefix = dir.toRealPath().toString();
+        try (Stream<Path> links = Files.list(fds)) {
+            return links.map(link -> {
+                try {
+                    return Files.readSymbolicLink(link).toString();
+                } catch (IOException e) {
+                    return "";   // дескриптор закрылся, пока шел обход
+                }
+            }).filter(target -> target.startsWith(prefix)).collect(Collectors.toList());
+        }
+    }
+}
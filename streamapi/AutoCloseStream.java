@@ -0,0 +1,310 @@
+package streamapi;
+
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.Spliterator;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.BinaryOperator;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
+import java.util.stream.Collector;
+import java.util.stream.DoubleStream;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+/**
+ *  Stream, который закрывает себя после терминальной операции - в том числе после
+ *  короткого замыкания findFirst/anyMatch, когда источник больше не опрашивают и иначе
+ *  узнать об этом нельзя. Промежуточные операции возвращают такой же стрим.
+ *
+ *  Не закрываются сами: iterator(), spliterator() (результат живет дольше вызова)
+ *  и переходы к примитивным стримам (mapToInt и т.п.) - для них нужен close() вручную.
+ */
+final class AutoCloseStream<T> implements Stream<T> {
+
+    private final Stream<T> delegate;
+
+    private AutoCloseStream(Stream<T> delegate) {
+        this.delegate = delegate;
+    }
+
+    static <T> Stream<T> of(Stream<T> delegate) {
+        return delegate instanceof AutoCloseStream ? delegate : new AutoCloseStream<>(delegate);
+    }
+
+    private static <R> Stream<R> wrap(Stream<R> stream) {
+        return new AutoCloseStream<>(stream);
+    }
+
+    // ---------------------------------------------------------------- промежуточные
+
+    @Override
+    public Stream<T> filter(Predicate<? super T> predicate) {
+        return wrap(delegate.filter(predicate));
+    }
+
+    @Override
+    public <R> Stream<R> map(Function<? super T, ? extends R> mapper) {
+        return wrap(delegate.map(mapper));
+    }
+
+    @Override
+    public <R> Stream<R> flatMap(Function<? super T, ? extends Stream<? extends R>> mapper) {
+        return wrap(delegate.flatMap(mapper));
+    }
+
+    @Override
+    public <R> Stream<R> mapMulti(BiConsumer<? super T, ? super Consumer<R>> mapper) {
+        return wrap(delegate.mapMulti(mapper));
+    }
+
+    @Override
+    public Stream<T> distinct() {
+        return wrap(delegate.distinct());
+    }
+
+    @Override
+    public Stream<T> sorted() {
+        return wrap(delegate.sorted());
+    }
+
+    @Override
+    public Stream<T> sorted(Comparator<? super T> comparator) {
+        return wrap(delegate.sorted(comparator));
+    }
+
+    @Override
+    public Stream<T> peek(Consumer<? super T> action) {
+        return wrap(delegate.peek(action));
+    }
+
+    @Override
+    public Stream<T> limit(long maxSize) {
+        return wrap(delegate.limit(maxSize));
+    }
+
+    @Override
+    public Stream<T> skip(long n) {
+        return wrap(delegate.skip(n));
+    }
+
+    @Override
+    public Stream<T> takeWhile(Predicate<? super T> predicate) {
+        return wrap(delegate.takeWhile(predicate));
+    }
+
+    @Override
+    public Stream<T> dropWhile(Predicate<? super T> predicate) {
+        return wrap(delegate.dropWhile(predicate));
+    }
+
+    @Override
+    public Stream<T> sequential() {
+        return wrap(delegate.sequential());
+    }
+
+    @Override
+    public Stream<T> parallel() {
+        return wrap(delegate.parallel());
+    }
+
+    @Override
+    public Stream<T> unordered() {
+        return wrap(delegate.unordered());
+    }
+
+    @Override
+    public Stream<T> onClose(Runnable closeHandler) {
+        return wrap(delegate.onClose(closeHandler));
+    }
+
+    @Override
+    public boolean isParallel() {
+        return delegate.isParallel();
+    }
+
+    @Override
+    public void close() {
+        delegate.close();
+    }
+
+    // ---------------------------------------------------- примитивы (без автозакрытия)
+
+    @Override
+    public IntStream mapToInt(ToIntFunction<? super T> mapper) {
+        return delegate.mapToInt(mapper);
+    }
+
+    @Override
+    public LongStream mapToLong(ToLongFunction<? super T> mapper) {
+        return delegate.mapToLong(mapper);
+    }
+
+    @Override
+    public DoubleStream mapToDouble(ToDoubleFunction<? super T> mapper) {
+        return delegate.mapToDouble(mapper);
+    }
+
+    @Override
+    public IntStream flatMapToInt(Function<? super T, ? extends IntStream> mapper) {
+        return delegate.flatMapToInt(mapper);
+    }
+
+    @Override
+    public LongStream flatMapToLong(Function<? super T, ? extends LongStream> mapper) {
+        return delegate.flatMapToLong(mapper);
+    }
+
+    @Override
+    public DoubleStream flatMapToDouble(Function<? super T, ? extends DoubleStream> mapper) {
+        return delegate.flatMapToDouble(mapper);
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        return delegate.iterator();
+    }
+
+    @Override
+    public Spliterator<T> spliterator() {
+        return delegate.spliterator();
+    }
+
+    // --------------------------------------------------------------- терминальные
+
+    @Override
+    public void forEach(Consumer<? super T> action) {
+        try (Stream<T> s = delegate) {
+            s.forEach(action);
+        }
+    }
+
+    @Override
+    public void forEachOrdered(Consumer<? super T> action) {
+        try (Stream<T> s = delegate) {
+            s.forEachOrdered(action);
+        }
+    }
+
+    @Override
+    public Object[] toArray() {
+        try (Stream<T> s = delegate) {
+            return s.toArray();
+        }
+    }
+
+    @Override
+    public <A> A[] toArray(IntFunction<A[]> generator) {
+        try (Stream<T> s = delegate) {
+            return s.toArray(generator);
+        }
+    }
+
+    @Override
+    public T reduce(T identity, BinaryOperator<T> accumulator) {
+        try (Stream<T> s = delegate) {
+            return s.reduce(identity, accumulator);
+        }
+    }
+
+    @Override
+    public Optional<T> reduce(BinaryOperator<T> accumulator) {
+        try (Stream<T> s = delegate) {
+            return s.reduce(accumulator);
+        }
+    }
+
+    @Override
+    public <U> U reduce(U identity, BiFunction<U, ? super T, U> accumulator, BinaryOperator<U> combiner) {
+        try (Stream<T> s = delegate) {
+            return s.reduce(identity, accumulator, combiner);
+        }
+    }
+
+    @Override
+    public <R> R collect(Supplier<R> supplier, BiConsumer<R, ? super T> accumulator, BiConsumer<R, R> combiner) {
+        try (Stream<T> s = delegate) {
+            return s.collect(supplier, accumulator, combiner);
+        }
+    }
+
+    @Override
+    public <R, A> R collect(Collector<? super T, A, R> collector) {
+        try (Stream<T> s = delegate) {
+            return s.collect(collector);
+        }
+    }
+
+    @Override
+    public List<T> toList() {
+        try (Stream<T> s = delegate) {
+            return s.toList();
+        }
+    }
+
+    @Override
+    public Optional<T> min(Comparator<? super T> comparator) {
+        try (Stream<T> s = delegate) {
+            return s.min(comparator);
+        }
+    }
+
+    @Override
+    public Optional<T> max(Comparator<? super T> comparator) {
+        try (Stream<T> s = delegate) {
+            return s.max(comparator);
+        }
+    }
+
+    @Override
+    public long count() {
+        try (Stream<T> s = delegate) {
+            return s.count();
+        }
+    }
+
+    @Override
+    public boolean anyMatch(Predicate<? super T> predicate) {
+        try (Stream<T> s = delegate) {
+            return s.anyMatch(predicate);
+        }
+    }
+
+    @Override
+    public boolean allMatch(Predicate<? super T> predicate) {
+        try (Stream<T> s = delegate) {
+            return s.allMatch(predicate);
+        }
+    }
+
+    @Override
+    public boolean noneMatch(Predicate<? super T> predicate) {
+        try (Stream<T> s = delegate) {
+            return s.noneMatch(predicate);
+        }
+    }
+
+    @Override
+    public Optional<T> findFirst() {
+        try (Stream<T> s = delegate) {
+            return s.findFirst();
+        }
+    }
+
+    @Override
+    public Optional<T> findAny() {
+        try (Stream<T> s = delegate) {
+            return s.findAny();
+        }
+    }
+}
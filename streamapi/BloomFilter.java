@@ -0,0 +1,56 @@
+package streamapi;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ *  Фильтр Блума над AtomicLongArray: add можно вызывать из нескольких потоков без блокировок.
+ *
+ *  Размер выбирается по ожидаемому числу элементов n и доле ложных срабатываний p:
+ *  m = -n ln p / (ln 2)^2 бит, k = m / n ln 2 хеш-функций (двойное хеширование Кирша-Митценмахера).
+ *  Если элементов больше n, доля ложных срабатываний растет.
+ */
+final class BloomFilter {
+
+    private final AtomicLongArray words;
+    private final long bits;
+    private final int hashes;
+
+    BloomFilter(long expectedInsertions, double falsePositiveRate) {
+        if (expectedInsertions <= 0) {
+            throw new IllegalArgumentException("expectedInsertions: " + expectedInsertions);
+        }
+        if (!(falsePositiveRate > 0 && falsePositiveRate < 1)) {
+            throw new IllegalArgumentException("falsePositiveRate: " + falsePositiveRate);
+        }
+        double ln2 = Math.log(2);
+        long m = (long) Math.ceil(-expectedInsertions * Math.log(falsePositiveRate) / (ln2 * ln2));
+        long wordCount = (Math.max(64, m) + 63) >>> 6;
+        if (wordCount > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Filter too large: " + m + " bits");
+        }
+        this.words = new AtomicLongArray((int) wordCount);
+        this.bits = wordCount << 6;
+        this.hashes = Math.max(1, (int) Math.round((double) bits / expectedInsertions * ln2));
+    }
+
+    /** true, если значения (вероятно) еще не было; ложное false - с вероятностью около p. */
+    boolean add(long hash) {
+        long h1 = hash;
+        long h2 = HyperLogLog.hash(hash) | 1;
+        boolean added = false;
+        for (int i = 0; i < hashes; i++) {
+            long bit = Math.floorMod(h1 + i * h2, bits);
+            int word = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            long current = words.get(word);
+            while ((current & mask) == 0) {
+                if (words.compareAndSet(word, current, current | mask)) {
+                    added = true;
+                    break;
+                }
+                current = words.get(word);
+            }
+        }
+        return added;
+    }
+}
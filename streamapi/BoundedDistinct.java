@@ -0,0 +1,353 @@
+package streamapi;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.PrimitiveIterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.ToLongFunction;
+import java.util.stream.DoubleStream;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ *  distinct() с ограничением памяти (промежуточный оператор п.7).
+ *
+ *  Стоковый distinct() держит все встреченные элементы в HashSet. Здесь в памяти хранится
+ *  не больше maxInMemory различных элементов; при переполнении они сортируются и сбрасываются
+ *  во временный файл, а в конце отрезки сливаются с удалением повторов.
+ *
+ *      Stream<String> ids = BoundedDistinct.distinct(lines, 1_000_000, Codec.strings());
+ *      IntStream codes = BoundedDistinct.distinct(IntStream.of(...), 10_000_000);
+ *
+ *  Порядок результата:
+ *  - если все поместилось в память - порядок встречи, как у distinct();
+ *  - если был сброс на диск - порядок сортировки (comparator, для примитивов - по возрастанию).
+ *  Компаратор должен быть согласован с equals.
+ *
+ *  Бюджет считается в элементах. В параллельном стриме каждая часть получает maxInMemory / ядер;
+ *  граница приблизительная: частей (листьев разбиения) больше, чем ядер - обычно около
+ *  4 * parallelism, - и готовая часть держит свои элементы до слияния с соседней, так что в худшем
+ *  случае в памяти до (частей / ядер) * maxInMemory. Точная граница - только у последовательного стрима.
+ *  Сброс и слияние происходят, когда терминальная операция начинает читать результат;
+ *  файлы удаляются по исчерпании результата, при close() стрима (в том числе недочитанного -
+ *  открытые курсоры слияния закрываются) или сразу, если сбор упал.
+ *
+ *  approximate(...) - без диска и без барьера: фильтр Блума пропускает элемент, если не видел его.
+ *  Повторов на выходе нет (кроме редкой гонки одинаковых элементов в параллельном стриме),
+ *  зато примерно доля falsePositiveRate уникальных элементов теряется. Для объектов фильтр видит
+ *  только 32 бита hashCode: элементы с равным hashCode ("Aa" и "BB") неразличимы, и таких совпадений
+ *  среди n различных около n / 2^32 - фильтр берется с меньшей долей, чтобы вместе выйти на
+ *  falsePositiveRate, но не меньше ее половины (при n больше falsePositiveRate * 2^31 потерь больше).
+ *  Пробы фильтра из 64-битного хеша элемента - approximate(stream, n, p, hash), для строк - hash64:
+ *
+ *      BoundedDistinct.approximate(lines, 100_000_000, 0.001, BoundedDistinct::hash64)
+ */
+public final class BoundedDistinct {
+
+    private static final int CHARACTERISTICS = Spliterator.ORDERED | Spliterator.DISTINCT;
+
+    private BoundedDistinct() {
+    }
+
+    // ------------------------------------------------------------------- Stream
+
+    public static <T extends Comparable<? super T>> Stream<T> distinct(Stream<T> stream, int maxInMemory,
+                                                                      Codec<T> codec) {
+        return distinct(stream, maxInMemory, Comparator.naturalOrder(), codec, null);
+    }
+
+    public static <T> Stream<T> distinct(Stream<T> stream, int maxInMemory, Comparator<? super T> comparator,
+                                         Codec<T> codec) {
+        return distinct(stream, maxInMemory, comparator, codec, null);
+    }
+
+    /** tempDirectory == null - каталог java.io.tmpdir. */
+    public static <T> Stream<T> distinct(Stream<T> stream, int maxInMemory, Comparator<? super T> comparator,
+                                         Codec<T> codec, Path tempDirectory) {
+        int budget = partBudget(maxInMemory, stream.isParallel());
+        ExternalRuns.TempFiles files = new ExternalRuns.TempFiles(tempDirectory);
+        return StreamSupport.stream(files.guard(() -> {
+            RefSpill<T> result = stream.collect(
+                    () -> new RefSpill<>(budget, comparator, codec, files),
+                    RefSpill::add,
+                    RefSpill::merge);
+            if (result.runs.isEmpty()) {
+                return Spliterators.spliteratorUnknownSize(result.seen.iterator(), CHARACTERISTICS);
+            }
+            result.spill();
+            Iterator<T> merged = ExternalRuns.merge(files, result.runs, codec, comparator);
+            return Spliterators.spliteratorUnknownSize(new Iterator<T>() {
+                private T next;
+                private boolean hasNext;
+                private boolean first = true;
+
+                @Override
+                public boolean hasNext() {
+                    while (!hasNext && merged.hasNext()) {
+                        T candidate = merged.next();
+                        if (first || comparator.compare(next, candidate) != 0) {
+                            first = false;
+                            next = candidate;
+                            hasNext = true;
+                        }
+                    }
+                    return hasNext;
+                }
+
+                @Override
+                public T next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    hasNext = false;
+                    return next;
+                }
+            }, CHARACTERISTICS);
+        }), CHARACTERISTICS, stream.isParallel()).onClose(() -> {
+            files.close();
+            stream.close();
+        });
+    }
+
+    /** По hashCode элементов; совпадения 32-битных hashCode учтены в размере фильтра, см. описание класса. */
+    public static <T> Stream<T> approximate(Stream<T> stream, long expectedDistinct, double falsePositiveRate) {
+        double collisions = expectedDistinct / 0x1p32;
+        BloomFilter filter = new BloomFilter(expectedDistinct,
+                Math.max(falsePositiveRate - collisions, falsePositiveRate / 2));
+        return stream.filter(t -> filter.add(HyperLogLog.hash(Objects.hashCode(t))));
+    }
+
+    /** hash - 64-битный хеш элемента, согласованный с equals; из него выводятся все пробы фильтра. */
+    public static <T> Stream<T> approximate(Stream<T> stream, long expectedDistinct, double falsePositiveRate,
+                                            ToLongFunction<? super T> hash) {
+        BloomFilter filter = new BloomFilter(expectedDistinct, falsePositiveRate);
+        return stream.filter(t -> filter.add(HyperLogLog.hash(hash.applyAsLong(t))));
+    }
+
+    /** 64-битный FNV-1a по символам: в отличие от String.hashCode, у "Aa" и "BB" разный. */
+    public static long hash64(CharSequence s) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0, n = s.length(); i < n; i++) {
+            h ^= s.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        return h;
+    }
+
+    // -------------------------------------------------------------- примитивы
+
+    public static IntStream distinct(IntStream stream, int maxInMemory) {
+        return distinct(stream, maxInMemory, null);
+    }
+
+    public static IntStream distinct(IntStream stream, int maxInMemory, Path tempDirectory) {
+        return distinctLongs(stream.asLongStream(), maxInMemory, Integer.BYTES, tempDirectory, stream.isParallel())
+                .mapToInt(x -> (int) x)
+                .onClose(stream::close);
+    }
+
+    public static LongStream distinct(LongStream stream, int maxInMemory) {
+        return distinct(stream, maxInMemory, null);
+    }
+
+    public static LongStream distinct(LongStream stream, int maxInMemory, Path tempDirectory) {
+        return distinctLongs(stream, maxInMemory, Long.BYTES, tempDirectory, stream.isParallel())
+                .onClose(stream::close);
+    }
+
+    /** Равенство - как у DoubleStream.distinct() (Double.equals: 0.0 != -0.0, все NaN равны). */
+    public static DoubleStream distinct(DoubleStream stream, int maxInMemory) {
+        return distinct(stream, maxInMemory, null);
+    }
+
+    public static DoubleStream distinct(DoubleStream stream, int maxInMemory, Path tempDirectory) {
+        return distinctLongs(stream.mapToLong(ExternalRuns::sortableBits), maxInMemory, Long.BYTES, tempDirectory,
+                stream.isParallel())
+                .mapToDouble(ExternalRuns::fromSortableBits)
+                .onClose(stream::close);
+    }
+
+    public static IntStream approximate(IntStream stream, long expectedDistinct, double falsePositiveRate) {
+        BloomFilter filter = new BloomFilter(expectedDistinct, falsePositiveRate);
+        return stream.filter(x -> filter.add(HyperLogLog.hash(x)));
+    }
+
+    public static LongStream approximate(LongStream stream, long expectedDistinct, double falsePositiveRate) {
+        BloomFilter filter = new BloomFilter(expectedDistinct, falsePositiveRate);
+        return stream.filter(x -> filter.add(HyperLogLog.hash(x)));
+    }
+
+    public static DoubleStream approximate(DoubleStream stream, long expectedDistinct, double falsePositiveRate) {
+        BloomFilter filter = new BloomFilter(expectedDistinct, falsePositiveRate);
+        return stream.filter(x -> filter.add(HyperLogLog.hash(Double.doubleToLongBits(x))));
+    }
+
+    /** int, long и double (через sortableBits) - одна реализация над long; width - формат отрезков. */
+    private static LongStream distinctLongs(LongStream stream, int maxInMemory, int width, Path tempDirectory,
+                                            boolean parallel) {
+        int budget = partBudget(maxInMemory, parallel);
+        ExternalRuns.TempFiles files = new ExternalRuns.TempFiles(tempDirectory);
+        return StreamSupport.longStream(files.guard(() -> {
+            LongSpill result = stream.collect(
+                    () -> new LongSpill(budget, width, files),
+                    LongSpill::add,
+                    LongSpill::merge);
+            if (result.runs.isEmpty()) {
+                return Spliterators.spliteratorUnknownSize(result.order.stream().iterator(), CHARACTERISTICS);
+            }
+            result.spill();
+            PrimitiveIterator.OfLong merged = ExternalRuns.mergeLongs(files, result.runs, width);
+            return Spliterators.spliteratorUnknownSize(new PrimitiveIterator.OfLong() {
+                private long next;
+                private boolean hasNext;
+                private boolean first = true;
+
+                @Override
+                public boolean hasNext() {
+                    while (!hasNext && merged.hasNext()) {
+                        long candidate = merged.nextLong();
+                        if (first || candidate != next) {
+                            first = false;
+                            next = candidate;
+                            hasNext = true;
+                        }
+                    }
+                    return hasNext;
+                }
+
+                @Override
+                public long nextLong() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    hasNext = false;
+                    return next;
+                }
+            }, CHARACTERISTICS);
+        }), CHARACTERISTICS, parallel).onClose(files::close);
+    }
+
+    /** Доля части в параллельном стриме - по ядрам, а не по числу частей: граница приблизительная. */
+    private static int partBudget(int maxInMemory, boolean parallel) {
+        if (maxInMemory <= 0) {
+            throw new IllegalArgumentException("maxInMemory: " + maxInMemory);
+        }
+        return parallel ? Math.max(1, maxInMemory / Runtime.getRuntime().availableProcessors()) : maxInMemory;
+    }
+
+    // ------------------------------------------------------------- контейнеры
+
+    /** Различные элементы части стрима в порядке встречи плюс сброшенные отрезки. */
+    private static final class RefSpill<T> {
+
+        private final int budget;
+        private final Comparator<? super T> comparator;
+        private final Codec<T> codec;
+        private final ExternalRuns.TempFiles files;
+        LinkedHashSet<T> seen = new LinkedHashSet<>();
+        final List<ExternalRuns.Run> runs = new ArrayList<>();
+
+        RefSpill(int budget, Comparator<? super T> comparator, Codec<T> codec, ExternalRuns.TempFiles files) {
+            this.budget = budget;
+            this.comparator = comparator;
+            this.codec = codec;
+            this.files = files;
+        }
+
+        void add(T element) {
+            if (seen.add(element) && seen.size() >= budget) {
+                spill();
+            }
+        }
+
+        void merge(RefSpill<T> right) {
+            if (runs.isEmpty() && right.runs.isEmpty()) {
+                seen.addAll(right.seen);
+                if (seen.size() >= budget) {
+                    spill();
+                }
+                return;
+            }
+            spill();
+            right.spill();
+            runs.addAll(right.runs);
+        }
+
+        void spill() {
+            if (seen.isEmpty()) {
+                return;
+            }
+            List<T> sorted = new ArrayList<>(seen);
+            seen = new LinkedHashSet<>();
+            sorted.sort(comparator);
+            runs.add(ExternalRuns.write(files, sorted, codec));
+        }
+    }
+
+    private static final class LongSpill {
+
+        private final int budget;
+        private final int width;
+        private final ExternalRuns.TempFiles files;
+        LongLongHashMap seen = new LongLongHashMap();
+        LongArrayList order = new LongArrayList();
+        final List<ExternalRuns.Run> runs = new ArrayList<>();
+
+        LongSpill(int budget, int width, ExternalRuns.TempFiles files) {
+            this.budget = budget;
+            this.width = width;
+            this.files = files;
+        }
+
+        void add(long value) {
+            if (!seen.containsKey(value)) {
+                seen.put(value, 0);
+                order.add(value);
+                if (order.size() >= budget) {
+                    spill();
+                }
+            }
+        }
+
+        void merge(LongSpill right) {
+            if (runs.isEmpty() && right.runs.isEmpty()) {
+                for (int i = 0; i < right.order.size(); i++) {
+                    add(right.order.get(i));
+                }
+                return;
+            }
+            spill();
+            right.spill();
+            runs.addAll(right.runs);
+        }
+
+        void spill() {
+            if (order.isEmpty()) {
+                return;
+            }
+            long[] sorted = order.toArray();
+            seen = new LongLongHashMap();
+            order = new LongArrayList();
+            Arrays.sort(sorted);
+            if (width == Integer.BYTES) {
+                int[] ints = new int[sorted.length];
+                for (int i = 0; i < ints.length; i++) {
+                    ints[i] = (int) sorted[i];
+                }
+                runs.add(ExternalRuns.writeInts(files, ints, 0, ints.length));
+            } else {
+                runs.add(ExternalRuns.writeLongs(files, sorted, 0, sorted.length));
+            }
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package streamapi;
+
+import java.util.Arrays;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ *  Stream.builder() (источник п.8), который хорошо делится в parallel().
+ *
+ *  Элементы лежат в чанках фиксированного размера (первый чанк растет, как ArrayList, до CHUNK):
+ *  добавление не копирует уже собранное, а позиция i - это chunks[i / CHUNK][i % CHUNK].
+ *  Поэтому сплитератор build() делит любой диапазон ровно пополам за O(1) и знает точные
+ *  размеры частей (SIZED | SUBSIZED), как ArrayList.
+ *
+ *      ChunkedStreamBuilder<Row> builder = new ChunkedStreamBuilder<>();
+ *      for (Batch batch : batches) {
+ *          batch.forEach(builder);
+ *      }
+ *      builder.build().parallel()...
+ */
+public final class ChunkedStreamBuilder<T> implements Stream.Builder<T> {
+
+    private static final int SHIFT = 12;
+    private static final int CHUNK = 1 << SHIFT;
+    private static final int MASK = CHUNK - 1;
+
+    private Object[][] chunks = {new Object[16]};
+    private Object[] current = chunks[0];
+    /** size, на котором current заполнен. */
+    private int limit = 16;
+    private int size;
+    private boolean built;
+
+    public ChunkedStreamBuilder() {
+    }
+
+    @Override
+    public void accept(T t) {
+        if (size == limit) {
+            grow();
+        }
+        current[size & MASK] = t;
+        size++;
+    }
+
+    private void grow() {
+        if (built) {
+            throw new IllegalStateException("Stream already built");
+        }
+        if (size < CHUNK) {
+            // растет только первый чанк
+            current = Arrays.copyOf(current, Math.min(size * 2, CHUNK));
+            chunks[0] = current;
+            limit = current.length;
+            return;
+        }
+        int chunk = size >>> SHIFT;
+        if (chunk == chunks.length) {
+            chunks = Arrays.copyOf(chunks, chunks.length * 2);
+        }
+        current = new Object[CHUNK];
+        chunks[chunk] = current;
+        limit = size + CHUNK;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /** Последовательный стрим; дальше добавлять элементы нельзя. */
+    @Override
+    public Stream<T> build() {
+        if (built) {
+            throw new IllegalStateException("Stream already built");
+        }
+        built = true;
+        // следующий accept уйдет в grow() и там упадет
+        limit = size;
+        return StreamSupport.stream(new ChunkSpliterator<>(chunks, 0, size), false);
+    }
+
+    // ----------------------------------------------------------------------------
+
+    private static final class ChunkSpliterator<T> implements Spliterator<T> {
+
+        private final Object[][] chunks;
+        private int index;
+        private final int fence;
+
+        ChunkSpliterator(Object[][] chunks, int index, int fence) {
+            this.chunks = chunks;
+            this.index = index;
+            this.fence = fence;
+        }
+
+        @Override
+        public Spliterator<T> trySplit() {
+            int mid = (index + fence) >>> 1;
+            if (mid <= index) {
+                return null;
+            }
+            Spliterator<T> prefix = new ChunkSpliterator<>(chunks, index, mid);
+            index = mid;
+            return prefix;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public boolean tryAdvance(Consumer<? super T> action) {
+            if (index >= fence) {
+                return false;
+            }
+            action.accept((T) chunks[index >>> SHIFT][index & MASK]);
+            index++;
+            return true;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public void forEachRemaining(Consumer<? super T> action) {
+            int i = index;
+            index = fence;
+            // по чанку за раз - внутренний цикл по обычному массиву
+            while (i < fence) {
+                Object[] chunk = chunks[i >>> SHIFT];
+                int end = Math.min(fence - (i & ~MASK), CHUNK);
+                for (int j = i & MASK; j < end; j++) {
+                    action.accept((T) chunk[j]);
+                }
+                i = (i & ~MASK) + end;
+            }
+        }
+
+        @Override
+        public long estimateSize() {
+            return fence - index;
+        }
+
+        @Override
+        public int characteristics() {
+            return Spliterator.ORDERED | Spliterator.SIZED | Spliterator.SUBSIZED | Spliterator.IMMUTABLE;
+        }
+    }
+}
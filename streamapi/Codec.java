@@ -0,0 +1,72 @@
+package streamapi;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ *  Двоичный формат элемента для сброса на диск (BoundedDistinct, ExternalSort, HashJoin).
+ *  Запись и чтение должны быть симметричны: read читает ровно то, что записал write.
+ *
+ *      Codec<Order> orders = Codec.of(
+ *              (out, o) -> { out.writeLong(o.id); out.writeUTF(o.customer); },
+ *              in -> new Order(in.readLong(), in.readUTF()));
+ */
+public interface Codec<T> {
+
+    void write(DataOutput out, T value) throws IOException;
+
+    T read(DataInput in) throws IOException;
+
+    @FunctionalInterface
+    interface Writer<T> {
+        void write(DataOutput out, T value) throws IOException;
+    }
+
+    @FunctionalInterface
+    interface Reader<T> {
+        T read(DataInput in) throws IOException;
+    }
+
+    static <T> Codec<T> of(Writer<? super T> writer, Reader<? extends T> reader) {
+        return new Codec<T>() {
+            @Override
+            public void write(DataOutput out, T value) throws IOException {
+                writer.write(out, value);
+            }
+
+            @Override
+            public T read(DataInput in) throws IOException {
+                return reader.read(in);
+            }
+        };
+    }
+
+    /** Строки любой длины в UTF-8 (writeUTF ограничен 64 КБ). */
+    static Codec<String> strings() {
+        return of(
+                (out, s) -> {
+                    byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+                    out.writeInt(bytes.length);
+                    out.write(bytes);
+                },
+                in -> {
+                    byte[] bytes = new byte[in.readInt()];
+                    in.readFully(bytes);
+                    return new String(bytes, StandardCharsets.UTF_8);
+                });
+    }
+
+    static Codec<Integer> ints() {
+        return of(DataOutput::writeInt, DataInput::readInt);
+    }
+
+    static Codec<Long> longs() {
+        return of(DataOutput::writeLong, DataInput::readLong);
+    }
+
+    static Codec<Double> doubles() {
+        return of(DataOutput::writeDouble, DataInput::readDouble);
+    }
+}
@@ -0,0 +1,207 @@
+package streamapi;
+
+import java.util.Comparator;
+import java.util.Spliterator;
+import java.util.function.DoubleConsumer;
+import java.util.function.IntConsumer;
+import java.util.function.IntPredicate;
+import java.util.function.LongConsumer;
+
+/**
+ *  Обход строк [index, fence) таблицы Columnar: фильтр проверяется по номеру строки (читает только
+ *  свои колонки), наружу уходит значение одной колонки. Объект строки не создается.
+ *
+ *  Деление - пополам по номерам строк. Без фильтра размеры частей точные (SIZED + SUBSIZED),
+ *  с фильтром estimateSize() - верхняя граница.
+ */
+abstract class ColumnSpliterator<T, S extends Spliterator<T>> implements Spliterator<T> {
+
+    /** null - все строки. */
+    final IntPredicate filter;
+    int index;
+    final int fence;
+
+    ColumnSpliterator(IntPredicate filter, int index, int fence) {
+        this.filter = filter;
+        this.index = index;
+        this.fence = fence;
+    }
+
+    abstract S makePrefix(int mid);
+
+    @Override
+    public S trySplit() {
+        int mid = (index + fence) >>> 1;
+        if (mid <= index) {
+            return null;
+        }
+        S prefix = makePrefix(mid);
+        index = mid;
+        return prefix;
+    }
+
+    @Override
+    public long estimateSize() {
+        return fence - index;
+    }
+
+    @Override
+    public int characteristics() {
+        int sized = filter == null ? Spliterator.SIZED | Spliterator.SUBSIZED : 0;
+        return Spliterator.ORDERED | Spliterator.IMMUTABLE | Spliterator.NONNULL | sized;
+    }
+
+    /** values == null - номера строк вместо значений колонки. */
+    static final class OfInt extends ColumnSpliterator<Integer, Spliterator.OfInt> implements Spliterator.OfInt {
+
+        private final int[] values;
+
+        OfInt(int[] values, IntPredicate filter, int index, int fence) {
+            super(filter, index, fence);
+            this.values = values;
+        }
+
+        @Override
+        Spliterator.OfInt makePrefix(int mid) {
+            return new ColumnSpliterator.OfInt(values, filter, index, mid);
+        }
+
+        @Override
+        public Spliterator.OfInt trySplit() {
+            return super.trySplit();
+        }
+
+        @Override
+        public boolean tryAdvance(IntConsumer action) {
+            while (index < fence) {
+                int row = index++;
+                if (filter == null || filter.test(row)) {
+                    action.accept(values == null ? row : values[row]);
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public void forEachRemaining(IntConsumer action) {
+            int[] values = this.values;
+            IntPredicate filter = this.filter;
+            int from = index;
+            int to = fence;
+            index = fence;
+            for (int row = from; row < to; row++) {
+                if (filter == null || filter.test(row)) {
+                    action.accept(values == null ? row : values[row]);
+                }
+            }
+        }
+
+        /** Номера строк растут и не повторяются. */
+        @Override
+        public int characteristics() {
+            int rows = values == null ? Spliterator.SORTED | Spliterator.DISTINCT : 0;
+            return super.characteristics() | rows;
+        }
+
+        @Override
+        public Comparator<? super Integer> getComparator() {
+            if (values == null) {
+                return null;
+            }
+            throw new IllegalStateException();
+        }
+    }
+
+    static final class OfLong extends ColumnSpliterator<Long, Spliterator.OfLong> implements Spliterator.OfLong {
+
+        private final long[] values;
+
+        OfLong(long[] values, IntPredicate filter, int index, int fence) {
+            super(filter, index, fence);
+            this.values = values;
+        }
+
+        @Override
+        Spliterator.OfLong makePrefix(int mid) {
+            return new ColumnSpliterator.OfLong(values, filter, index, mid);
+        }
+
+        @Override
+        public Spliterator.OfLong trySplit() {
+            return super.trySplit();
+        }
+
+        @Override
+        public boolean tryAdvance(LongConsumer action) {
+            while (index < fence) {
+                int row = index++;
+                if (filter == null || filter.test(row)) {
+                    action.accept(values[row]);
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public void forEachRemaining(LongConsumer action) {
+            long[] values = this.values;
+            IntPredicate filter = this.filter;
+            int from = index;
+            int to = fence;
+            index = fence;
+            for (int row = from; row < to; row++) {
+                if (filter == null || filter.test(row)) {
+                    action.accept(values[row]);
+                }
+            }
+        }
+    }
+
+    static final class OfDouble extends ColumnSpliterator<Double, Spliterator.OfDouble> implements Spliterator.OfDouble {
+
+        private final double[] values;
+
+        OfDouble(double[] values, IntPredicate filter, int index, int fence) {
+            super(filter, index, fence);
+            this.values = values;
+        }
+
+        @Override
+        Spliterator.OfDouble makePrefix(int mid) {
+            return new ColumnSpliterator.OfDouble(values, filter, index, mid);
+        }
+
+        @Override
+        public Spliterator.OfDouble trySplit() {
+            return super.trySplit();
+        }
+
+        @Override
+        public boolean tryAdvance(DoubleConsumer action) {
+            while (index < fence) {
+                int row = index++;
+                if (filter == null || filter.test(row)) {
+                    action.accept(values[row]);
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public void forEachRemaining(DoubleConsumer action) {
+            double[] values = this.values;
+            IntPredicate filter = this.filter;
+            int from = index;
+            int to = fence;
+            index = fence;
+            for (int row = from; row < to; row++) {
+                if (filter == null || filter.test(row)) {
+                    action.accept(values[row]);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,404 @@
+package streamapi;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.DoublePredicate;
+import java.util.function.IntPredicate;
+import java.util.function.IntToDoubleFunction;
+import java.util.function.IntToLongFunction;
+import java.util.function.IntUnaryOperator;
+import java.util.function.LongPredicate;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
+import java.util.stream.Collector;
+import java.util.stream.DoubleStream;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+import java.util.stream.StreamSupport;
+
+/**
+ *  Таблица "структура массивов": каждое поле - отдельный int[] / long[] / double[], строка - индекс.
+ *
+ *  Список объектов-строк - это заголовок объекта, ссылка на него и упакованные поля на каждую
+ *  строку, а конвейер из примеров toMap/groupingBy/summingLong читает из них два-три поля.
+ *  Здесь хранятся только сами значения (long - 8 байт на строку), а фильтр и проекция
+ *  выполняются по колонкам, без объектов строк:
+ *
+ *      Columnar sales = orders.stream().collect(Columnar.<Order>layout()
+ *              .intColumn("region", Order::getRegion)
+ *              .longColumn("amount", Order::getAmount)
+ *              .collector());
+ *
+ *      long total = sales.query()
+ *              .whereInt("region", r -> r == 3)
+ *              .longs("amount")                    // LongStream только по строкам региона 3
+ *              .sum();
+ *
+ *      IntLongHashMap byRegion = sales.query()
+ *              .whereLong("amount", a -> a > 100)
+ *              .sumBy("region", "amount");         // groupingBy + summingLong без упаковки
+ *
+ *  Строки - колонки одной длины; готовые массивы собираются через builder() (без копирования).
+ *  Query неизменяем: whereX() возвращает новый запрос, условия объединяются через И.
+ *  Ключ группировки - int-колонка (для строк - номер в словаре).
+ */
+public final class Columnar {
+
+    private final int size;
+    /** Имя -> int[] / long[] / double[] в порядке добавления. */
+    private final Map<String, Object> columns;
+    private final Map<String, OffHeapColumn.Type> types;
+
+    private Columnar(int size, Map<String, Object> columns, Map<String, OffHeapColumn.Type> types) {
+        this.size = size;
+        this.columns = columns;
+        this.types = types;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /** Раскладка объектов T по колонкам для collector(). */
+    public static <T> Layout<T> layout() {
+        return new Layout<>();
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public List<String> columns() {
+        return Collections.unmodifiableList(new ArrayList<>(columns.keySet()));
+    }
+
+    public OffHeapColumn.Type type(String column) {
+        OffHeapColumn.Type type = types.get(column);
+        if (type == null) {
+            throw new IllegalArgumentException("Unknown column: " + column);
+        }
+        return type;
+    }
+
+    /** Байт под значения всех колонок. */
+    public long bytes() {
+        long bytes = 0;
+        for (OffHeapColumn.Type type : types.values()) {
+            bytes += (long) size * type.width;
+        }
+        return bytes;
+    }
+
+    /** Доступ к значению колонки по номеру строки - например, в query().rows().map(...). */
+    public IntUnaryOperator intColumn(String column) {
+        int[] values = ints(column);
+        return row -> values[row];
+    }
+
+    public IntToLongFunction longColumn(String column) {
+        long[] values = longs(column);
+        return row -> values[row];
+    }
+
+    public IntToDoubleFunction doubleColumn(String column) {
+        double[] values = doubles(column);
+        return row -> values[row];
+    }
+
+    /** Запрос по всем строкам. */
+    public Query query() {
+        return new Query(this, null, false);
+    }
+
+    @Override
+    public String toString() {
+        return "Columnar" + types + " x " + size;
+    }
+
+    private int[] ints(String column) {
+        return (int[]) column(column, OffHeapColumn.Type.INT);
+    }
+
+    private long[] longs(String column) {
+        return (long[]) column(column, OffHeapColumn.Type.LONG);
+    }
+
+    private double[] doubles(String column) {
+        return (double[]) column(column, OffHeapColumn.Type.DOUBLE);
+    }
+
+    private Object column(String column, OffHeapColumn.Type expected) {
+        OffHeapColumn.Type type = type(column);
+        if (type != expected) {
+            throw new IllegalArgumentException(column + " is " + type + ", not " + expected);
+        }
+        return columns.get(column);
+    }
+
+    // ---------------------------------------------------------------------- запрос
+
+    /** Фильтр по строкам и проекция в примитивный стрим одной колонки. */
+    public static final class Query {
+
+        private final Columnar table;
+        /** null - без условий. */
+        private final IntPredicate filter;
+        private final boolean parallel;
+
+        private Query(Columnar table, IntPredicate filter, boolean parallel) {
+            this.table = table;
+            this.filter = filter;
+            this.parallel = parallel;
+        }
+
+        public Query whereInt(String column, IntPredicate predicate) {
+            int[] values = table.ints(column);
+            return and(row -> predicate.test(values[row]));
+        }
+
+        public Query whereLong(String column, LongPredicate predicate) {
+            long[] values = table.longs(column);
+            return and(row -> predicate.test(values[row]));
+        }
+
+        public Query whereDouble(String column, DoublePredicate predicate) {
+            double[] values = table.doubles(column);
+            return and(row -> predicate.test(values[row]));
+        }
+
+        /** Стримы и группировки этого запроса будут параллельными. */
+        public Query parallel() {
+            return new Query(table, filter, true);
+        }
+
+        /** Номера подходящих строк по возрастанию. */
+        public IntStream rows() {
+            return StreamSupport.intStream(new ColumnSpliterator.OfInt(null, filter, 0, table.size), parallel);
+        }
+
+        public IntStream ints(String column) {
+            return StreamSupport.intStream(
+                    new ColumnSpliterator.OfInt(table.ints(column), filter, 0, table.size), parallel);
+        }
+
+        public LongStream longs(String column) {
+            return StreamSupport.longStream(
+                    new ColumnSpliterator.OfLong(table.longs(column), filter, 0, table.size), parallel);
+        }
+
+        public DoubleStream doubles(String column) {
+            return StreamSupport.doubleStream(
+                    new ColumnSpliterator.OfDouble(table.doubles(column), filter, 0, table.size), parallel);
+        }
+
+        public long count() {
+            return filter == null ? table.size : rows().count();
+        }
+
+        /** groupingBy(key, counting()) по int-колонке. */
+        public IntLongHashMap countBy(String key) {
+            int[] keys = table.ints(key);
+            return rows().collect(IntLongHashMap::new, (map, row) -> map.addTo(keys[row], 1), IntLongHashMap::addAll);
+        }
+
+        /** groupingBy(key, summingLong(value)). */
+        public IntLongHashMap sumBy(String key, String value) {
+            int[] keys = table.ints(key);
+            long[] values = table.longs(value);
+            return rows().collect(IntLongHashMap::new,
+                    (map, row) -> map.addTo(keys[row], values[row]), IntLongHashMap::addAll);
+        }
+
+        private Query and(IntPredicate condition) {
+            return new Query(table, filter == null ? condition : filter.and(condition), parallel);
+        }
+    }
+
+    // ------------------------------------------------------------------- builder
+
+    /** Таблица из готовых массивов одной длины; массивы не копируются. */
+    public static final class Builder {
+
+        private final Map<String, Object> columns = new LinkedHashMap<>();
+        private final Map<String, OffHeapColumn.Type> types = new LinkedHashMap<>();
+        private int size = -1;
+
+        private Builder() {
+        }
+
+        public Builder column(String name, int[] values) {
+            return add(name, values, values.length, OffHeapColumn.Type.INT);
+        }
+
+        public Builder column(String name, long[] values) {
+            return add(name, values, values.length, OffHeapColumn.Type.LONG);
+        }
+
+        public Builder column(String name, double[] values) {
+            return add(name, values, values.length, OffHeapColumn.Type.DOUBLE);
+        }
+
+        public Columnar build() {
+            return new Columnar(Math.max(size, 0), new LinkedHashMap<>(columns), new LinkedHashMap<>(types));
+        }
+
+        private Builder add(String name, Object values, int length, OffHeapColumn.Type type) {
+            if (columns.containsKey(name)) {
+                throw new IllegalArgumentException("Duplicate column: " + name);
+            }
+            if (size >= 0 && length != size) {
+                throw new IllegalArgumentException(name + ": " + length + " rows, expected " + size);
+            }
+            size = length;
+            columns.put(name, values);
+            types.put(name, type);
+            return this;
+        }
+    }
+
+    // -------------------------------------------------------------------- layout
+
+    /** Какие поля T и в какие колонки попадут; collector() раскладывает стрим объектов в таблицу. */
+    public static final class Layout<T> {
+
+        private final List<String> names = new ArrayList<>();
+        private final List<OffHeapColumn.Type> types = new ArrayList<>();
+        private final List<Object> extractors = new ArrayList<>();
+
+        private Layout() {
+        }
+
+        public Layout<T> intColumn(String name, ToIntFunction<? super T> extractor) {
+            return add(name, OffHeapColumn.Type.INT, extractor);
+        }
+
+        public Layout<T> longColumn(String name, ToLongFunction<? super T> extractor) {
+            return add(name, OffHeapColumn.Type.LONG, extractor);
+        }
+
+        public Layout<T> doubleColumn(String name, ToDoubleFunction<? super T> extractor) {
+            return add(name, OffHeapColumn.Type.DOUBLE, extractor);
+        }
+
+        public Collector<T, ?, Columnar> collector() {
+            String[] names = this.names.toArray(new String[0]);
+            OffHeapColumn.Type[] types = this.types.toArray(new OffHeapColumn.Type[0]);
+            Object[] extractors = this.extractors.toArray();
+            return Collector.of(
+                    () -> new Accumulator<T>(types, extractors),
+                    Accumulator::add,
+                    Accumulator::addAll,
+                    accumulator -> accumulator.build(names));
+        }
+
+        private Layout<T> add(String name, OffHeapColumn.Type type, Object extractor) {
+            if (names.contains(name)) {
+                throw new IllegalArgumentException("Duplicate column: " + name);
+            }
+            names.add(name);
+            types.add(type);
+            extractors.add(extractor);
+            return this;
+        }
+    }
+
+    /** Растущие массивы колонок для collector(). */
+    private static final class Accumulator<T> {
+
+        private final OffHeapColumn.Type[] types;
+        private final Object[] extractors;
+        private final Object[] arrays;
+        private int size;
+        private int capacity = 16;
+
+        Accumulator(OffHeapColumn.Type[] types, Object[] extractors) {
+            this.types = types;
+            this.extractors = extractors;
+            this.arrays = new Object[types.length];
+            for (int c = 0; c < types.length; c++) {
+                arrays[c] = allocate(types[c], capacity);
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        void add(T row) {
+            if (size == capacity) {
+                ensureCapacity(size + 1);
+            }
+            for (int c = 0; c < types.length; c++) {
+                switch (types[c]) {
+                    case INT:
+                        ((int[]) arrays[c])[size] = ((ToIntFunction<? super T>) extractors[c]).applyAsInt(row);
+                        break;
+                    case LONG:
+                        ((long[]) arrays[c])[size] = ((ToLongFunction<? super T>) extractors[c]).applyAsLong(row);
+                        break;
+                    default:
+                        ((double[]) arrays[c])[size] = ((ToDoubleFunction<? super T>) extractors[c]).applyAsDouble(row);
+                }
+            }
+            size++;
+        }
+
+        Accumulator<T> addAll(Accumulator<T> other) {
+            ensureCapacity(size + other.size);
+            for (int c = 0; c < types.length; c++) {
+                System.arraycopy(other.arrays[c], 0, arrays[c], size, other.size);
+            }
+            size += other.size;
+            return this;
+        }
+
+        Columnar build(String[] names) {
+            Map<String, Object> columns = new LinkedHashMap<>();
+            Map<String, OffHeapColumn.Type> columnTypes = new LinkedHashMap<>();
+            for (int c = 0; c < types.length; c++) {
+                columns.put(names[c], trim(arrays[c]));
+                columnTypes.put(names[c], types[c]);
+            }
+            return new Columnar(size, columns, columnTypes);
+        }
+
+        private void ensureCapacity(int required) {
+            if (required <= capacity) {
+                return;
+            }
+            int grown = (int) Math.min(Integer.MAX_VALUE - 8, Math.max(required, capacity + (long) (capacity >> 1)));
+            for (int c = 0; c < types.length; c++) {
+                Object grownArray = allocate(types[c], grown);
+                System.arraycopy(arrays[c], 0, grownArray, 0, size);
+                arrays[c] = grownArray;
+            }
+            capacity = grown;
+        }
+
+        private Object trim(Object array) {
+            if (size == capacity) {
+                return array;
+            }
+            if (array instanceof int[]) {
+                return Arrays.copyOf((int[]) array, size);
+            }
+            if (array instanceof long[]) {
+                return Arrays.copyOf((long[]) array, size);
+            }
+            return Arrays.copyOf((double[]) array, size);
+        }
+
+        private static Object allocate(OffHeapColumn.Type type, int capacity) {
+            switch (type) {
+                case INT:
+                    return new int[capacity];
+                case LONG:
+                    return new long[capacity];
+                default:
+                    return new double[capacity];
+            }
+        }
+    }
+}
@@ -0,0 +1,447 @@
+package streamapi;
+
+import java.util.AbstractList;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.RandomAccess;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.stream.Collector;
+import java.util.stream.DoubleStream;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+/**
+ *  Неизменяемые результаты collect без лишней емкости и без обертки (Collectors п.6, пример из main).
+ *
+ *  collectingAndThen(toList(), Collections::unmodifiableList) - это ArrayList с запасом до 50%
+ *  плюс объект-обертка; toSet()/toMap() - HashMap с объектом Node на каждый элемент. Здесь:
+ *
+ *   - список - один массив ровно по размеру;
+ *   - IntList/LongList/DoubleList - int[]/long[]/double[] без упаковки;
+ *   - множество и словарь - массивы элементов (ключей, значений) в порядке встречи
+ *     и int[] таблица открытой адресации с индексами в них.
+ *
+ *      List<String> names = Compact.toList(users.stream().map(User::name));      // SIZED - массив сразу нужного размера
+ *      Compact.IntList ids = Compact.toList(users.stream().mapToInt(User::id));
+ *
+ *      Map<Integer, List<String>> byLength = words.stream()
+ *              .collect(Collectors.groupingBy(String::length, Compact.toList()));
+ *      Map<String, Integer> index = words.stream()
+ *              .collect(Compact.toMap(Function.identity(), String::length));
+ *
+ *  toList(stream) и т.п. - через stream.toArray(): для SIZED стрима массив выделяется сразу
+ *  нужного размера и становится содержимым списка без копирования (как Stream.toList(), Java 16).
+ *  Коллекторы toList()/toSet()/toMap() размер заранее не знают: буфер растет и в конце
+ *  обрезается одной копией, если остался запас.
+ *
+ *  null в множестве и словаре (ключи и значения) не допускается, как в Set.of/Map.of;
+ *  повтор ключа в toMap - IllegalStateException, как в Collectors.toMap.
+ */
+public final class Compact {
+
+    private Compact() {
+    }
+
+    // -------------------------------------------------------------- из стрима
+
+    public static <T> List<T> toList(Stream<T> stream) {
+        return new FrozenList<>(stream.toArray());
+    }
+
+    public static <T> Set<T> toSet(Stream<T> stream) {
+        return FrozenSet.of(stream.toArray());
+    }
+
+    public static IntList toList(IntStream stream) {
+        return new IntList(stream.toArray());
+    }
+
+    public static LongList toList(LongStream stream) {
+        return new LongList(stream.toArray());
+    }
+
+    public static DoubleList toList(DoubleStream stream) {
+        return new DoubleList(stream.toArray());
+    }
+
+    // -------------------------------------------------------------- коллекторы
+
+    public static <T> Collector<T, ?, List<T>> toList() {
+        return Collector.of(Buffer::new, Buffer::add, Buffer::addAll, buffer -> new FrozenList<>(buffer.trimmed()));
+    }
+
+    public static <T> Collector<T, ?, Set<T>> toSet() {
+        return Collector.of(Buffer::new, Buffer::add, Buffer::addAll, buffer -> FrozenSet.of(buffer.trimmed()));
+    }
+
+    public static <T, K, V> Collector<T, ?, Map<K, V>> toMap(Function<? super T, ? extends K> keyMapper,
+                                                           Function<? super T, ? extends V> valueMapper) {
+        BiConsumer<Buffer[], T> accumulator = (buffers, t) -> {
+            buffers[0].add(Objects.requireNonNull(keyMapper.apply(t), "key"));
+            buffers[1].add(Objects.requireNonNull(valueMapper.apply(t), "value"));
+        };
+        return Collector.of(
+                () -> new Buffer[]{new Buffer(), new Buffer()},
+                accumulator,
+                (left, right) -> {
+                    left[0].addAll(right[0]);
+                    left[1].addAll(right[1]);
+                    return left;
+                },
+                buffers -> FrozenMap.of(buffers[0].trimmed(), buffers[1].trimmed()));
+    }
+
+    /** Растущий Object[]; обрезанный массив сразу становится содержимым результата. */
+    private static final class Buffer {
+
+        private Object[] elements = new Object[8];
+        private int size;
+
+        void add(Object element) {
+            if (size == elements.length) {
+                elements = Arrays.copyOf(elements, size << 1);
+            }
+            elements[size++] = element;
+        }
+
+        Buffer addAll(Buffer right) {
+            if (size + right.size > elements.length) {
+                elements = Arrays.copyOf(elements, size + right.size);
+            }
+            System.arraycopy(right.elements, 0, elements, size, right.size);
+            size += right.size;
+            return this;
+        }
+
+        Object[] trimmed() {
+            return size == elements.length ? elements : Arrays.copyOf(elements, size);
+        }
+    }
+
+    // ---------------------------------------------------------------- списки
+
+    private static final class FrozenList<T> extends AbstractList<T> implements RandomAccess {
+
+        private final Object[] elements;
+
+        FrozenList(Object[] elements) {
+            this.elements = elements;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public T get(int index) {
+            return (T) elements[index];
+        }
+
+        @Override
+        public int size() {
+            return elements.length;
+        }
+
+        @Override
+        public Object[] toArray() {
+            return elements.clone();
+        }
+
+        @Override
+        public Spliterator<T> spliterator() {
+            return Spliterators.spliterator(elements, Spliterator.ORDERED | Spliterator.IMMUTABLE);
+        }
+    }
+
+    /** Неизменяемый список int; get(i) упаковывает, getInt(i) и stream() - нет. */
+    public static final class IntList extends AbstractList<Integer> implements RandomAccess {
+
+        private final int[] elements;
+
+        private IntList(int[] elements) {
+            this.elements = elements;
+        }
+
+        public int getInt(int index) {
+            return elements[index];
+        }
+
+        @Override
+        public Integer get(int index) {
+            return elements[index];
+        }
+
+        @Override
+        public int size() {
+            return elements.length;
+        }
+
+        public int[] toIntArray() {
+            return elements.clone();
+        }
+
+        public IntStream intStream() {
+            return Arrays.stream(elements);
+        }
+    }
+
+    public static final class LongList extends AbstractList<Long> implements RandomAccess {
+
+        private final long[] elements;
+
+        private LongList(long[] elements) {
+            this.elements = elements;
+        }
+
+        public long getLong(int index) {
+            return elements[index];
+        }
+
+        @Override
+        public Long get(int index) {
+            return elements[index];
+        }
+
+        @Override
+        public int size() {
+            return elements.length;
+        }
+
+        public long[] toLongArray() {
+            return elements.clone();
+        }
+
+        public LongStream longStream() {
+            return Arrays.stream(elements);
+        }
+    }
+
+    public static final class DoubleList extends AbstractList<Double> implements RandomAccess {
+
+        private final double[] elements;
+
+        private DoubleList(double[] elements) {
+            this.elements = elements;
+        }
+
+        public double getDouble(int index) {
+            return elements[index];
+        }
+
+        @Override
+        public Double get(int index) {
+            return elements[index];
+        }
+
+        @Override
+        public int size() {
+            return elements.length;
+        }
+
+        public double[] toDoubleArray() {
+            return elements.clone();
+        }
+
+        public DoubleStream doubleStream() {
+            return Arrays.stream(elements);
+        }
+    }
+
+    // ------------------------------------------------------ множество и словарь
+
+    /** Ячейка таблицы хранит индекс + 1 (0 - пусто); линейное пробирование. */
+    private static int slot(Object key, int mask) {
+        int h = key.hashCode() * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    private static final class FrozenSet<T> extends AbstractSet<T> {
+
+        private final Object[] elements;
+        private final int[] table;
+
+        private FrozenSet(Object[] elements, int[] table) {
+            this.elements = elements;
+            this.table = table;
+        }
+
+        /** Повторы выбрасываются сдвигом внутри того же массива; копия - только если они были. */
+        static <T> FrozenSet<T> of(Object[] elements) {
+            int[] table = new int[IntObjectHashMap.tableSizeFor(elements.length)];
+            int mask = table.length - 1;
+            int size = 0;
+            next:
+            for (Object element : elements) {
+                Objects.requireNonNull(element, "element");
+                int slot = slot(element, mask);
+                while (table[slot] != 0) {
+                    if (elements[table[slot] - 1].equals(element)) {
+                        continue next;
+                    }
+                    slot = (slot + 1) & mask;
+                }
+                elements[size++] = element;
+                table[slot] = size;
+            }
+            return new FrozenSet<>(size == elements.length ? elements : Arrays.copyOf(elements, size), table);
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            if (o == null) {
+                return false;
+            }
+            int mask = table.length - 1;
+            for (int slot = slot(o, mask); table[slot] != 0; slot = (slot + 1) & mask) {
+                if (elements[table[slot] - 1].equals(o)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public int size() {
+            return elements.length;
+        }
+
+        @Override
+        public Iterator<T> iterator() {
+            return new ArrayIterator<>(elements);
+        }
+
+        @Override
+        public Spliterator<T> spliterator() {
+            return Spliterators.spliterator(elements,
+                    Spliterator.DISTINCT | Spliterator.NONNULL | Spliterator.IMMUTABLE);
+        }
+    }
+
+    private static final class FrozenMap<K, V> extends AbstractMap<K, V> {
+
+        private final Object[] keys;
+        private final Object[] values;
+        private final int[] table;
+
+        private FrozenMap(Object[] keys, Object[] values, int[] table) {
+            this.keys = keys;
+            this.values = values;
+            this.table = table;
+        }
+
+        /** keys и values одной длины; массивы не копируются. */
+        static <K, V> FrozenMap<K, V> of(Object[] keys, Object[] values) {
+            int[] table = new int[IntObjectHashMap.tableSizeFor(keys.length)];
+            int mask = table.length - 1;
+            for (int i = 0; i < keys.length; i++) {
+                Object key = keys[i];
+                int slot = slot(key, mask);
+                while (table[slot] != 0) {
+                    int existing = table[slot] - 1;
+                    if (keys[existing].equals(key)) {
+                        throw new IllegalStateException("Duplicate key " + key + " (attempted merging values "
+                                + values[existing] + " and " + values[i] + ")");
+                    }
+                    slot = (slot + 1) & mask;
+                }
+                table[slot] = i + 1;
+            }
+            return new FrozenMap<>(keys, values, table);
+        }
+
+        private int indexOf(Object key) {
+            if (key == null) {
+                return -1;
+            }
+            int mask = table.length - 1;
+            for (int slot = slot(key, mask); table[slot] != 0; slot = (slot + 1) & mask) {
+                if (keys[table[slot] - 1].equals(key)) {
+                    return table[slot] - 1;
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public V get(Object key) {
+            int index = indexOf(key);
+            return index < 0 ? null : (V) values[index];
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return indexOf(key) >= 0;
+        }
+
+        @Override
+        public int size() {
+            return keys.length;
+        }
+
+        @Override
+        public Set<Entry<K, V>> entrySet() {
+            return new AbstractSet<>() {
+                @Override
+                public Iterator<Entry<K, V>> iterator() {
+                    return new Iterator<>() {
+                        private int next;
+
+                        @Override
+                        public boolean hasNext() {
+                            return next < keys.length;
+                        }
+
+                        @Override
+                        @SuppressWarnings("unchecked")
+                        public Entry<K, V> next() {
+                            if (!hasNext()) {
+                                throw new NoSuchElementException();
+                            }
+                            int i = next++;
+                            return new SimpleImmutableEntry<>((K) keys[i], (V) values[i]);
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return keys.length;
+                }
+            };
+        }
+    }
+
+    /** Итератор без remove(). */
+    private static final class ArrayIterator<T> implements Iterator<T> {
+
+        private final Object[] elements;
+        private int next;
+
+        ArrayIterator(Object[] elements) {
+            this.elements = elements;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next < elements.length;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return (T) elements[next++];
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package streamapi;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.stream.BaseStream;
+import java.util.stream.DoubleStream;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ *  concat (источник п.7) сразу для N стримов.
+ *
+ *  Stream.concat склеивает только два стрима; склейка сотни подзапросов через reduce(Stream::concat)
+ *  дает вырожденное дерево глубины N: при обходе стек растет на каждый уровень (на тысячах
+ *  стримов - StackOverflowError), а параллельное деление сначала отрезает одну часть от
+ *  остальных N-1. Здесь все части лежат в одном массиве:
+ *
+ *      Stream<Row> rows = Concat.of(subQueries.stream().map(Query::rows).collect(Collectors.toList()))
+ *              .parallel();
+ *
+ *  Деление - пополам по числу элементов (а не частей), с точными размерами, если все части
+ *  SIZED (коллекции, массивы, range). Результат параллельный, если параллельна хотя бы одна
+ *  часть; close() закрывает все части.
+ *
+ *  Собрать источник поэлементно - ChunkedStreamBuilder (вместо Stream.builder(), п.8).
+ */
+public final class Concat {
+
+    private Concat() {
+    }
+
+    @SafeVarargs
+    public static <T> Stream<T> of(Stream<? extends T>... streams) {
+        // поэлементно, а не Arrays.asList(streams): сам массив varargs дальше не передается
+        List<Stream<? extends T>> list = new ArrayList<>(streams.length);
+        for (Stream<? extends T> stream : streams) {
+            list.add(stream);
+        }
+        return of(list);
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <T> Stream<T> of(List<? extends Stream<? extends T>> streams) {
+        Spliterator<T>[] parts = (Spliterator<T>[]) new Spliterator<?>[streams.size()];
+        for (int i = 0; i < parts.length; i++) {
+            parts[i] = (Spliterator<T>) streams.get(i).spliterator();
+        }
+        Stream<T> result = StreamSupport.stream(new ConcatSpliterator.OfRef<>(parts), anyParallel(streams));
+        return result.onClose(() -> closeAll(streams));
+    }
+
+    public static IntStream of(IntStream... streams) {
+        return ofInts(Arrays.asList(streams));
+    }
+
+    public static IntStream ofInts(List<? extends IntStream> streams) {
+        Spliterator.OfInt[] parts = new Spliterator.OfInt[streams.size()];
+        for (int i = 0; i < parts.length; i++) {
+            parts[i] = streams.get(i).spliterator();
+        }
+        IntStream result = StreamSupport.intStream(new ConcatSpliterator.OfInt(parts), anyParallel(streams));
+        return result.onClose(() -> closeAll(streams));
+    }
+
+    public static LongStream of(LongStream... streams) {
+        return ofLongs(Arrays.asList(streams));
+    }
+
+    public static LongStream ofLongs(List<? extends LongStream> streams) {
+        Spliterator.OfLong[] parts = new Spliterator.OfLong[streams.size()];
+        for (int i = 0; i < parts.length; i++) {
+            parts[i] = streams.get(i).spliterator();
+        }
+        LongStream result = StreamSupport.longStream(new ConcatSpliterator.OfLong(parts), anyParallel(streams));
+        return result.onClose(() -> closeAll(streams));
+    }
+
+    public static DoubleStream of(DoubleStream... streams) {
+        return ofDoubles(Arrays.asList(streams));
+    }
+
+    public static DoubleStream ofDoubles(List<? extends DoubleStream> streams) {
+        Spliterator.OfDouble[] parts = new Spliterator.OfDouble[streams.size()];
+        for (int i = 0; i < parts.length; i++) {
+            parts[i] = streams.get(i).spliterator();
+        }
+        DoubleStream result = StreamSupport.doubleStream(new ConcatSpliterator.OfDouble(parts), anyParallel(streams));
+        return result.onClose(() -> closeAll(streams));
+    }
+
+    // ----------------------------------------------------------------------------
+
+    private static boolean anyParallel(List<? extends BaseStream<?, ?>> streams) {
+        for (BaseStream<?, ?> stream : streams) {
+            if (stream.isParallel()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Как у Stream.concat: закрываются все части, первое исключение бросается, остальные - suppressed. */
+    private static void closeAll(List<? extends BaseStream<?, ?>> streams) {
+        RuntimeException failure = null;
+        for (BaseStream<?, ?> stream : streams) {
+            try {
+                stream.close();
+            } catch (RuntimeException e) {
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+}
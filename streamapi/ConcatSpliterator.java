@@ -0,0 +1,263 @@
+package streamapi;
+
+import java.util.Arrays;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.DoubleConsumer;
+import java.util.function.IntConsumer;
+import java.util.function.LongConsumer;
+
+/**
+ *  Плоская конкатенация parts[lo, hi) - вместо дерева из вложенных Stream.concat.
+ *
+ *  prefix[i] - суммарный размер parts[0, i) на момент создания, поэтому:
+ *   - trySplit() делит набор частей пополам по числу элементов (двоичный поиск по prefix),
+ *     а не по числу частей; одна оставшаяся часть делится своим trySplit();
+ *   - estimateSize() считается за O(1): prefix для нетронутых частей плюс остаток текущей.
+ *
+ *  SIZED/SUBSIZED/ORDERED/NONNULL/IMMUTABLE сохраняются, только если они есть у всех частей;
+ *  DISTINCT и SORTED после склейки теряются.
+ */
+abstract class ConcatSpliterator<T, S extends Spliterator<T>> implements Spliterator<T> {
+
+    private static final int KEPT = Spliterator.ORDERED | Spliterator.SIZED | Spliterator.SUBSIZED
+            | Spliterator.NONNULL | Spliterator.IMMUTABLE;
+
+    final S[] parts;
+    final long[] prefix;
+    final int characteristics;
+    /** Текущая (возможно, частично пройденная) часть. */
+    int lo;
+    final int hi;
+    /** Последняя оставшаяся часть уже делится сама - prefix для нее не используется. */
+    boolean single;
+
+    ConcatSpliterator(S[] parts, long[] prefix, int characteristics, int lo, int hi) {
+        this.parts = parts;
+        this.prefix = prefix;
+        this.characteristics = characteristics;
+        this.lo = lo;
+        this.hi = hi;
+    }
+
+    /** prefix-суммы размеров; при переполнении или неизвестном размере - без SIZED. */
+    static long[] prefix(Spliterator<?>[] parts) {
+        long[] prefix = new long[parts.length + 1];
+        for (int i = 0; i < parts.length; i++) {
+            long size = parts[i].estimateSize();
+            prefix[i + 1] = prefix[i] + size < prefix[i] ? Long.MAX_VALUE : prefix[i] + size;
+        }
+        return prefix;
+    }
+
+    static int characteristics(Spliterator<?>[] parts, long[] prefix) {
+        int c = KEPT;
+        for (Spliterator<?> part : parts) {
+            c &= part.characteristics();
+        }
+        if (prefix[parts.length] == Long.MAX_VALUE) {
+            c &= ~(Spliterator.SIZED | Spliterator.SUBSIZED);
+        }
+        return c;
+    }
+
+    abstract S makeRange(int lo, int hi);
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public S trySplit() {
+        if (hi - lo > 1) {
+            // граница, на которой набрана половина оставшихся элементов
+            long target = (prefix[lo] + prefix[hi]) >>> 1;
+            int mid = Arrays.binarySearch(prefix, lo + 1, hi, target);
+            mid = mid >= 0 ? mid : Math.min(Math.max(-mid - 1, lo + 1), hi - 1);
+            S left = makeRange(lo, mid);
+            lo = mid;
+            return left;
+        }
+        if (lo < hi) {
+            single = true;
+            return (S) parts[lo].trySplit();
+        }
+        return null;
+    }
+
+    @Override
+    public long estimateSize() {
+        if (lo >= hi) {
+            return 0;
+        }
+        long rest = prefix[hi] - prefix[lo + 1];
+        long size = parts[lo].estimateSize() + rest;
+        return size < rest ? Long.MAX_VALUE : size;
+    }
+
+    @Override
+    public int characteristics() {
+        // поделенная часть может потерять SIZED (если она не SUBSIZED)
+        return single && lo < hi ? parts[lo].characteristics() & characteristics : characteristics;
+    }
+
+    static final class OfRef<T> extends ConcatSpliterator<T, Spliterator<T>> {
+
+        OfRef(Spliterator<T>[] parts) {
+            this(parts, prefix(parts));
+        }
+
+        private OfRef(Spliterator<T>[] parts, long[] prefix) {
+            super(parts, prefix, characteristics(parts, prefix), 0, parts.length);
+        }
+
+        private OfRef(OfRef<T> from, int lo, int hi) {
+            super(from.parts, from.prefix, from.characteristics, lo, hi);
+        }
+
+        @Override
+        Spliterator<T> makeRange(int lo, int hi) {
+            return new OfRef<>(this, lo, hi);
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super T> action) {
+            for (; lo < hi; lo++) {
+                if (parts[lo].tryAdvance(action)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super T> action) {
+            for (; lo < hi; lo++) {
+                parts[lo].forEachRemaining(action);
+            }
+        }
+    }
+
+    static final class OfInt extends ConcatSpliterator<Integer, Spliterator.OfInt> implements Spliterator.OfInt {
+
+        OfInt(Spliterator.OfInt[] parts) {
+            this(parts, prefix(parts));
+        }
+
+        private OfInt(Spliterator.OfInt[] parts, long[] prefix) {
+            super(parts, prefix, characteristics(parts, prefix), 0, parts.length);
+        }
+
+        private OfInt(ConcatSpliterator.OfInt from, int lo, int hi) {
+            super(from.parts, from.prefix, from.characteristics, lo, hi);
+        }
+
+        @Override
+        Spliterator.OfInt makeRange(int lo, int hi) {
+            return new ConcatSpliterator.OfInt(this, lo, hi);
+        }
+
+        @Override
+        public Spliterator.OfInt trySplit() {
+            return super.trySplit();
+        }
+
+        @Override
+        public boolean tryAdvance(IntConsumer action) {
+            for (; lo < hi; lo++) {
+                if (parts[lo].tryAdvance(action)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public void forEachRemaining(IntConsumer action) {
+            for (; lo < hi; lo++) {
+                parts[lo].forEachRemaining(action);
+            }
+        }
+    }
+
+    static final class OfLong extends ConcatSpliterator<Long, Spliterator.OfLong> implements Spliterator.OfLong {
+
+        OfLong(Spliterator.OfLong[] parts) {
+            this(parts, prefix(parts));
+        }
+
+        private OfLong(Spliterator.OfLong[] parts, long[] prefix) {
+            super(parts, prefix, characteristics(parts, prefix), 0, parts.length);
+        }
+
+        private OfLong(ConcatSpliterator.OfLong from, int lo, int hi) {
+            super(from.parts, from.prefix, from.characteristics, lo, hi);
+        }
+
+        @Override
+        Spliterator.OfLong makeRange(int lo, int hi) {
+            return new ConcatSpliterator.OfLong(this, lo, hi);
+        }
+
+        @Override
+        public Spliterator.OfLong trySplit() {
+            return super.trySplit();
+        }
+
+        @Override
+        public boolean tryAdvance(LongConsumer action) {
+            for (; lo < hi; lo++) {
+                if (parts[lo].tryAdvance(action)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public void forEachRemaining(LongConsumer action) {
+            for (; lo < hi; lo++) {
+                parts[lo].forEachRemaining(action);
+            }
+        }
+    }
+
+    static final class OfDouble extends ConcatSpliterator<Double, Spliterator.OfDouble> implements Spliterator.OfDouble {
+
+        OfDouble(Spliterator.OfDouble[] parts) {
+            this(parts, prefix(parts));
+        }
+
+        private OfDouble(Spliterator.OfDouble[] parts, long[] prefix) {
+            super(parts, prefix, characteristics(parts, prefix), 0, parts.length);
+        }
+
+        private OfDouble(ConcatSpliterator.OfDouble from, int lo, int hi) {
+            super(from.parts, from.prefix, from.characteristics, lo, hi);
+        }
+
+        @Override
+        Spliterator.OfDouble makeRange(int lo, int hi) {
+            return new ConcatSpliterator.OfDouble(this, lo, hi);
+        }
+
+        @Override
+        public Spliterator.OfDouble trySplit() {
+            return super.trySplit();
+        }
+
+        @Override
+        public boolean tryAdvance(DoubleConsumer action) {
+            for (; lo < hi; lo++) {
+                if (parts[lo].tryAdvance(action)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public void forEachRemaining(DoubleConsumer action) {
+            for (; lo < hi; lo++) {
+                parts[lo].forEachRemaining(action);
+            }
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package streamapi;
+
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.ObjDoubleConsumer;
+import java.util.function.Supplier;
+import java.util.stream.DoubleStream;
+
+/**
+ *  Аналог java.util.stream.Collector для DoubleStream (см. IntCollector).
+ *
+ *  @param <A> изменяемый контейнер
+ *  @param <R> результат
+ */
+public interface DoubleCollector<A, R> {
+
+    Supplier<A> supplier();
+
+    ObjDoubleConsumer<A> accumulator();
+
+    /** Сливает правый контейнер в левый (нужен для параллельных стримов). */
+    BiConsumer<A, A> combiner();
+
+    Function<A, R> finisher();
+
+    default R collect(DoubleStream stream) {
+        return finisher().apply(stream.collect(supplier(), accumulator(), combiner()));
+    }
+
+    static <A, R> DoubleCollector<A, R> of(Supplier<A> supplier,
+                                         ObjDoubleConsumer<A> accumulator,
+                                         BiConsumer<A, A> combiner,
+                                         Function<A, R> finisher) {
+        return new DoubleCollector<>() {
+            @Override
+            public Supplier<A> supplier() {
+                return supplier;
+            }
+
+            @Override
+            public ObjDoubleConsumer<A> accumulator() {
+                return accumulator;
+            }
+
+            @Override
+            public BiConsumer<A, A> combiner() {
+                return combiner;
+            }
+
+            @Override
+            public Function<A, R> finisher() {
+                return finisher;
+            }
+        };
+    }
+
+    static <A> DoubleCollector<A, A> of(Supplier<A> supplier,
+                                      ObjDoubleConsumer<A> accumulator,
+                                      BiConsumer<A, A> combiner) {
+        return of(supplier, accumulator, combiner, Function.identity());
+    }
+}
@@ -0,0 +1,334 @@
+package streamapi;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.Spliterator;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.DoubleConsumer;
+import java.util.function.Function;
+import java.util.function.IntConsumer;
+import java.util.function.LongConsumer;
+import java.util.stream.DoubleStream;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ *  flatMap / flatMapToInt (промежуточный оператор п.3) без нового Stream на каждый внешний элемент.
+ *
+ *  flatMap(Stream::of) и flatMapToInt(x -> Arrays.stream(x)) создают конвейер (стрим, сплитератор,
+ *  лямбды) на каждую строку, а внутренний стрим обходится в одном потоке - длинная строка
+ *  не делится в parallel(). Вместо этого:
+ *
+ *   - mapMulti (Java 16): mapper сам отдает значения в sink, без промежуточных объектов:
+ *
+ *         Stream.of(new int[][]{{1, 2}, {3, 4}, {5, 6}})
+ *                 .mapMultiToInt(Expand.intArrays())
+ *                 .sum();
+ *
+ *     intArrays()/longArrays()/doubleArrays()/elements() - готовые mapper для массивов и коллекций;
+ *     mapMultiToObj(...) - то же для IntStream/LongStream/DoubleStream -> Stream<R>, которого нет в JDK;
+ *
+ *   - flatten(int[][]) и т.п. - если двумерные данные уже в памяти: сквозной сплитератор делит
+ *     их пополам по числу элементов (в том числе внутри строк) и знает точный размер;
+ *     flatten(Collection<Collection<T>>) делит по границам внутренних коллекций, а последнюю -
+ *     ее собственным сплитератором.
+ */
+public final class Expand {
+
+    private Expand() {
+    }
+
+    // -------------------------------------------------------------- плоские источники
+
+    public static IntStream flatten(int[][] rows) {
+        return StreamSupport.intStream(new FlatSpliterator.OfInt(rows), false);
+    }
+
+    public static LongStream flatten(long[][] rows) {
+        return StreamSupport.longStream(new FlatSpliterator.OfLong(rows), false);
+    }
+
+    public static DoubleStream flatten(double[][] rows) {
+        return StreamSupport.doubleStream(new FlatSpliterator.OfDouble(rows), false);
+    }
+
+    public static <T> Stream<T> flatten(Collection<? extends Collection<? extends T>> rows) {
+        return StreamSupport.stream(new RowsSpliterator<T>(rows), false);
+    }
+
+    // ----------------------------------------------------------- mapper для mapMulti
+
+    /** stream.mapMultiToInt(Expand.intArrays()) вместо flatMapToInt(Arrays::stream). */
+    public static BiConsumer<int[], IntConsumer> intArrays() {
+        return (values, sink) -> {
+            for (int value : values) {
+                sink.accept(value);
+            }
+        };
+    }
+
+    public static BiConsumer<long[], LongConsumer> longArrays() {
+        return (values, sink) -> {
+            for (long value : values) {
+                sink.accept(value);
+            }
+        };
+    }
+
+    public static BiConsumer<double[], DoubleConsumer> doubleArrays() {
+        return (values, sink) -> {
+            for (double value : values) {
+                sink.accept(value);
+            }
+        };
+    }
+
+    /** stream.mapMulti(Expand.elements()) вместо flatMap(Collection::stream). */
+    public static <T> BiConsumer<Iterable<? extends T>, Consumer<T>> elements() {
+        return Iterable::forEach;
+    }
+
+    // ------------------------------------------------------- примитивы -> Stream<R>
+
+    @FunctionalInterface
+    public interface IntExpander<R> {
+        void expand(int value, Consumer<? super R> sink);
+    }
+
+    @FunctionalInterface
+    public interface LongExpander<R> {
+        void expand(long value, Consumer<? super R> sink);
+    }
+
+    @FunctionalInterface
+    public interface DoubleExpander<R> {
+        void expand(double value, Consumer<? super R> sink);
+    }
+
+    public static <R> Stream<R> mapMultiToObj(IntStream stream, IntExpander<R> expander) {
+        Function<Consumer<? super R>, IntConsumer> adapter = sink -> value -> expander.expand(value, sink);
+        Stream<R> result = StreamSupport.stream(new ExpandSpliterator<>(stream.spliterator(), adapter), stream.isParallel());
+        return result.onClose(stream::close);
+    }
+
+    public static <R> Stream<R> mapMultiToObj(LongStream stream, LongExpander<R> expander) {
+        Function<Consumer<? super R>, LongConsumer> adapter = sink -> value -> expander.expand(value, sink);
+        Stream<R> result = StreamSupport.stream(new ExpandSpliterator<>(stream.spliterator(), adapter), stream.isParallel());
+        return result.onClose(stream::close);
+    }
+
+    public static <R> Stream<R> mapMultiToObj(DoubleStream stream, DoubleExpander<R> expander) {
+        Function<Consumer<? super R>, DoubleConsumer> adapter = sink -> value -> expander.expand(value, sink);
+        Stream<R> result = StreamSupport.stream(new ExpandSpliterator<>(stream.spliterator(), adapter), stream.isParallel());
+        return result.onClose(stream::close);
+    }
+
+    // ---------------------------------------------------------------- сплитераторы
+
+    /**
+     *  Разворачивает каждый элемент примитивного источника в sink. forEachRemaining передает
+     *  значения прямо в action; tryAdvance (короткое замыкание) - через переиспользуемый буфер.
+     */
+    private static final class ExpandSpliterator<C, S extends Spliterator.OfPrimitive<?, C, S>, R>
+            implements Spliterator<R>, Consumer<R> {
+
+        private final S source;
+        private final Function<Consumer<? super R>, C> adapter;
+        private final C fill;
+        private final List<R> buffer = new ArrayList<>();
+        private int next;
+
+        ExpandSpliterator(S source, Function<Consumer<? super R>, C> adapter) {
+            this.source = source;
+            this.adapter = adapter;
+            this.fill = adapter.apply(this);
+        }
+
+        @Override
+        public void accept(R value) {
+            buffer.add(value);
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super R> action) {
+            while (next == buffer.size()) {
+                buffer.clear();
+                next = 0;
+                if (!source.tryAdvance(fill)) {
+                    return false;
+                }
+            }
+            action.accept(buffer.get(next++));
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super R> action) {
+            while (next < buffer.size()) {
+                action.accept(buffer.get(next++));
+            }
+            source.forEachRemaining(adapter.apply(action));
+        }
+
+        @Override
+        public Spliterator<R> trySplit() {
+            if (next < buffer.size()) {
+                return null;
+            }
+            S prefix = source.trySplit();
+            return prefix == null ? null : new ExpandSpliterator<>(prefix, adapter);
+        }
+
+        /** Размер источника - оценка: сколько значений даст каждый элемент, неизвестно. */
+        @Override
+        public long estimateSize() {
+            return source.estimateSize();
+        }
+
+        @Override
+        public int characteristics() {
+            return source.characteristics() & Spliterator.ORDERED;
+        }
+    }
+
+    /**
+     *  Плоский обход коллекций rows[lo, hi): деление - по границам строк пополам по числу элементов
+     *  (как в ConcatSpliterator), сплитератор строки создается, только когда ее начинают делить
+     *  или обходить по одному.
+     */
+    private static final class RowsSpliterator<T> implements Spliterator<T> {
+
+        /** Нетронутый корень обходится прямо по source; rows и prefix строятся при первом делении. */
+        private Collection<? extends Collection<? extends T>> source;
+        private final long total;
+        private Collection<? extends T>[] rows;
+        private long[] prefix;
+        /** ORDERED, если все - списки; SUBSIZED, если внутренние еще и RandomAccess. */
+        private final int flags;
+        private int lo;
+        private int hi;
+        /** Сплитератор строки lo, если ее уже начали обходить или делить. */
+        private Spliterator<T> current;
+
+        RowsSpliterator(Collection<? extends Collection<? extends T>> source) {
+            this.source = source;
+            long total = 0;
+            boolean lists = source instanceof List;
+            boolean randomAccess = true;
+            for (Collection<? extends T> row : source) {
+                total += row.size();
+                lists &= row instanceof List;
+                randomAccess &= row instanceof RandomAccess;
+            }
+            this.total = total;
+            this.flags = (lists ? Spliterator.ORDERED : 0) | (randomAccess ? Spliterator.SUBSIZED : 0);
+            this.hi = source.size();
+        }
+
+        private RowsSpliterator(RowsSpliterator<T> from, int lo, int hi, Spliterator<T> current) {
+            this.total = 0;
+            this.rows = from.rows;
+            this.prefix = from.prefix;
+            this.flags = from.flags;
+            this.lo = lo;
+            this.hi = hi;
+            this.current = current;
+        }
+
+        @SuppressWarnings("unchecked")
+        private void materialize() {
+            if (source != null) {
+                rows = (Collection<? extends T>[]) source.toArray(new Collection<?>[0]);
+                prefix = new long[rows.length + 1];
+                for (int i = 0; i < rows.length; i++) {
+                    prefix[i + 1] = prefix[i] + rows[i].size();
+                }
+                hi = rows.length;
+                source = null;
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private Spliterator<T> current() {
+            if (current == null) {
+                current = (Spliterator<T>) rows[lo].spliterator();
+            }
+            return current;
+        }
+
+        @Override
+        public Spliterator<T> trySplit() {
+            materialize();
+            if (hi - lo > 1) {
+                long target = (prefix[lo] + prefix[hi]) >>> 1;
+                int mid = Arrays.binarySearch(prefix, lo + 1, hi, target);
+                mid = mid >= 0 ? mid : Math.min(Math.max(-mid - 1, lo + 1), hi - 1);
+                Spliterator<T> left = new RowsSpliterator<>(this, lo, mid, current);
+                current = null;
+                lo = mid;
+                return left;
+            }
+            return lo < hi ? current().trySplit() : null;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super T> action) {
+            materialize();
+            for (; lo < hi; lo++) {
+                if (current().tryAdvance(action)) {
+                    return true;
+                }
+                current = null;
+            }
+            return false;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public void forEachRemaining(Consumer<? super T> action) {
+            if (source != null) {
+                for (Collection<? extends T> row : source) {
+                    ((Collection<T>) row).forEach(action);
+                }
+                source = null;
+                lo = hi;
+                return;
+            }
+            if (current != null && lo < hi) {
+                current.forEachRemaining(action);
+                current = null;
+                lo++;
+            }
+            for (; lo < hi; lo++) {
+                ((Collection<T>) rows[lo]).forEach(action);
+            }
+        }
+
+        @Override
+        public long estimateSize() {
+            if (source != null) {
+                return total;
+            }
+            if (lo >= hi) {
+                return 0;
+            }
+            return current == null ? prefix[hi] - prefix[lo] : current.estimateSize() + prefix[hi] - prefix[lo + 1];
+        }
+
+        @Override
+        public int characteristics() {
+            int sized = Spliterator.SIZED | flags & Spliterator.SUBSIZED;
+            if (current != null) {
+                // начатая строка может быть уже поделена и без точного размера
+                sized &= current.characteristics();
+            }
+            return flags & Spliterator.ORDERED | sized;
+        }
+    }
+}
@@ -0,0 +1,592 @@
+package streamapi;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+/**
+ *  Отсортированные отрезки во временных файлах и их ленивое k-путевое слияние.
+ *  Общая часть BoundedDistinct, ExternalSort и HashJoin.
+ *
+ *  Формат отрезка - подряд записанные элементы: Codec для объектов, 4 байта на int,
+ *  8 байт на long (double хранятся как long, см. sortableBits). Число элементов
+ *  хранится в Run, а не в файле.
+ *
+ *  Слияние стабильно: из равных элементов раньше выходит элемент из отрезка с меньшим номером.
+ *  Если отрезков больше MAX_FAN_IN, они предварительно сливаются группами, и список runs
+ *  заменяется на промежуточные отрезки.
+ *
+ *  Все файлы и открытые на них потоки одного стрима учитываются в TempFiles сразу при создании.
+ *  Исчерпанный итератор слияния сам закрывает и удаляет свои файлы; TempFiles.close() (из onClose
+ *  стрима) закрывает курсоры недочитанного слияния и удаляет остальное - в том числе отрезки
+ *  частей, которые не дошли до слияния из-за исключения.
+ *
+ *  Appender и concat - то же без сортировки: разделы HashJoin дописываются по одному элементу
+ *  и читаются подряд.
+ */
+final class ExternalRuns {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /** Открытых Appender много (до HashJoin.MAX_OPEN на сторону), поэтому буфер меньше. */
+    private static final int APPEND_BUFFER_SIZE = 1 << 13;
+
+    /** Больше отрезков сливаются в несколько проходов, чтобы не упереться в лимит открытых файлов. */
+    private static final int MAX_FAN_IN = 128;
+
+    private ExternalRuns() {
+    }
+
+    /**
+     *  Временные файлы и открытые потоки одного стрима. Части параллельного стрима регистрируют
+     *  их одновременно. Создание файла и открытие потока идут под общей частью lock, close() берет
+     *  исключительную: после исключения в параллельном стриме соседние части еще работают, и без
+     *  этого файл, созданный на диске, но еще не учтенный, пережил бы close().
+     */
+    static final class TempFiles {
+
+        private final Path directory;
+        private final Set<Path> files = ConcurrentHashMap.newKeySet();
+        private final Set<Closeable> open = ConcurrentHashMap.newKeySet();
+        private final ReadWriteLock lock = new ReentrantReadWriteLock();
+        private volatile boolean closed;
+
+        /** directory == null - каталог java.io.tmpdir. */
+        TempFiles(Path directory) {
+            this.directory = directory;
+        }
+
+        Path create() {
+            lock.readLock().lock();
+            try {
+                checkOpen();
+                Path file = newFile(directory);
+                files.add(file);
+                return file;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        void delete(Path file) {
+            ExternalRuns.delete(file);
+            files.remove(file);
+        }
+
+        /** Поток из input/output: его close() сам снимает регистрацию. */
+        private <C extends Closeable> C opened(Opener<C> opener) throws IOException {
+            lock.readLock().lock();
+            try {
+                checkOpen();
+                C stream = opener.open();
+                open.add(stream);
+                return stream;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        private void checkOpen() {
+            if (closed) {
+                throw new IllegalStateException("stream is closed");
+            }
+        }
+
+        /** Закрывает поток без исключений: ошибка закрытия временного файла - не повод ронять стрим. */
+        void release(Closeable stream) {
+            try {
+                stream.close();
+            } catch (IOException ignored) {
+                // файл удаляется отдельно
+            }
+        }
+
+        /** Исключение внутри supplier (сбор и сброс частей) сразу удаляет уже записанные файлы. */
+        <S> Supplier<S> guard(Supplier<S> supplier) {
+            return () -> {
+                try {
+                    return supplier.get();
+                } catch (RuntimeException | Error e) {
+                    close();
+                    throw e;
+                }
+            };
+        }
+
+        /** Повторный вызов безопасен. */
+        void close() {
+            lock.writeLock().lock();
+            try {
+                closed = true;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            for (Closeable stream : open) {
+                release(stream);
+            }
+            for (Path file : files) {
+                delete(file);
+            }
+        }
+    }
+
+    /** Открытие потока, которое может бросить IOException. */
+    private interface Opener<C extends Closeable> {
+        C open() throws IOException;
+    }
+
+    static final class Run {
+
+        final Path file;
+        final long count;
+
+        Run(Path file, long count) {
+            this.file = file;
+            this.count = count;
+        }
+    }
+
+    // ------------------------------------------------------------------- запись
+
+    static <T> Run write(TempFiles files, Iterable<? extends T> elements, Codec<? super T> codec) {
+        Path file = files.create();
+        long count = 0;
+        try (DataOutputStream out = output(files, file)) {
+            for (T element : elements) {
+                codec.write(out, element);
+                count++;
+            }
+        } catch (IOException e) {
+            files.delete(file);
+            throw new UncheckedIOException(e);
+        }
+        return new Run(file, count);
+    }
+
+    /**
+     *  Отрезок, дописываемый по одному элементу; finish() закрывает файл. Файл открывается
+     *  при первом add, suspend() закрывает его до следующего add - так число открытых
+     *  дескрипторов не зависит от числа отрезков.
+     */
+    static final class Appender<T> {
+
+        private final TempFiles files;
+        private final Path file;
+        private final Codec<? super T> codec;
+        private DataOutputStream out;
+        private long count;
+
+        Appender(TempFiles files, Codec<? super T> codec) {
+            this.files = files;
+            this.file = files.create();
+            this.codec = codec;
+        }
+
+        void add(T element) {
+            try {
+                if (out == null) {
+                    out = output(files, file, APPEND_BUFFER_SIZE);
+                }
+                codec.write(out, element);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            count++;
+        }
+
+        boolean isOpen() {
+            return out != null;
+        }
+
+        void suspend() {
+            if (out == null) {
+                return;
+            }
+            try {
+                out.close();
+            } catch (IOException e) {
+                files.delete(file);
+                throw new UncheckedIOException(e);
+            } finally {
+                out = null;
+            }
+        }
+
+        Run finish() {
+            suspend();
+            return new Run(file, count);
+        }
+    }
+
+    static Run writeInts(TempFiles files, int[] elements, int from, int to) {
+        Path file = files.create();
+        try (DataOutputStream out = output(files, file)) {
+            for (int i = from; i < to; i++) {
+                out.writeInt(elements[i]);
+            }
+        } catch (IOException e) {
+            files.delete(file);
+            throw new UncheckedIOException(e);
+        }
+        return new Run(file, to - from);
+    }
+
+    static Run writeLongs(TempFiles files, long[] elements, int from, int to) {
+        Path file = files.create();
+        try (DataOutputStream out = output(files, file)) {
+            for (int i = from; i < to; i++) {
+                out.writeLong(elements[i]);
+            }
+        } catch (IOException e) {
+            files.delete(file);
+            throw new UncheckedIOException(e);
+        }
+        return new Run(file, to - from);
+    }
+
+    /**
+     *  double как long с тем же порядком, что у Double.compare: отрицательные числа
+     *  инвертируются, чтобы сравнение long совпадало со сравнением double.
+     */
+    static long sortableBits(double value) {
+        long bits = Double.doubleToLongBits(value);
+        return bits ^ ((bits >> 63) & Long.MAX_VALUE);
+    }
+
+    static double fromSortableBits(long sortable) {
+        return Double.longBitsToDouble(sortable ^ ((sortable >> 63) & Long.MAX_VALUE));
+    }
+
+    // ------------------------------------------------------------------ слияние
+
+    static <T> Iterator<T> merge(TempFiles files, List<Run> runs, Codec<T> codec, Comparator<? super T> comparator) {
+        while (runs.size() > MAX_FAN_IN) {
+            List<Run> merged = new ArrayList<>();
+            for (int from = 0; from < runs.size(); from += MAX_FAN_IN) {
+                List<Run> group = runs.subList(from, Math.min(runs.size(), from + MAX_FAN_IN));
+                merged.add(write(files, () -> mergeAll(files, group, codec, comparator), codec));
+            }
+            runs.clear();
+            runs.addAll(merged);
+        }
+        return mergeAll(files, runs, codec, comparator);
+    }
+
+    private static <T> Iterator<T> mergeAll(TempFiles files, List<Run> runs, Codec<? extends T> codec,
+                                            Comparator<? super T> comparator) {
+        List<RefCursor<T>> cursors = new ArrayList<>(runs.size());
+        for (int i = 0; i < runs.size(); i++) {
+            cursors.add(new RefCursor<>(files, runs.get(i), i, codec));
+        }
+        PriorityQueue<RefCursor<T>> queue = new PriorityQueue<>(Math.max(1, runs.size()), (a, b) -> {
+            int c = comparator.compare(a.head, b.head);
+            return c != 0 ? c : Integer.compare(a.index, b.index);
+        });
+        return new Iterator<T>() {
+            private boolean started;
+
+            @Override
+            public boolean hasNext() {
+                start();
+                return !queue.isEmpty();
+            }
+
+            @Override
+            public T next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                RefCursor<T> cursor = queue.poll();
+                T result = cursor.head;
+                if (cursor.advance()) {
+                    queue.add(cursor);
+                }
+                return result;
+            }
+
+            private void start() {
+                if (!started) {
+                    started = true;
+                    for (RefCursor<T> cursor : cursors) {
+                        if (cursor.advance()) {
+                            queue.add(cursor);
+                        }
+                    }
+                }
+            }
+        };
+    }
+
+    /** Отрезки один за другим, без слияния; прочитанный отрезок удаляется. */
+    static <T> Iterator<T> concat(TempFiles files, List<Run> runs, Codec<T> codec) {
+        return new Iterator<T>() {
+            private int index;
+            private RefCursor<T> cursor;
+            private boolean ready;
+
+            @Override
+            public boolean hasNext() {
+                while (!ready) {
+                    if (cursor != null && cursor.advance()) {
+                        ready = true;
+                    } else if (index < runs.size()) {
+                        cursor = new RefCursor<>(files, runs.get(index), index, codec);
+                        index++;
+                    } else {
+                        return false;
+                    }
+                }
+                return true;
+            }
+
+            @Override
+            public T next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                ready = false;
+                return cursor.head;
+            }
+        };
+    }
+
+    static PrimitiveIterator.OfInt mergeInts(TempFiles files, List<Run> runs) {
+        PrimitiveIterator.OfLong merged = mergeLongs(files, runs, Integer.BYTES);
+        return new PrimitiveIterator.OfInt() {
+            @Override
+            public boolean hasNext() {
+                return merged.hasNext();
+            }
+
+            @Override
+            public int nextInt() {
+                return (int) merged.nextLong();
+            }
+        };
+    }
+
+    static PrimitiveIterator.OfLong mergeLongs(TempFiles files, List<Run> runs) {
+        return mergeLongs(files, runs, Long.BYTES);
+    }
+
+    /** Слияние отрезков writeInts (width = 4) или writeLongs (width = 8) как long. */
+    static PrimitiveIterator.OfLong mergeLongs(TempFiles files, List<Run> runs, int width) {
+        while (runs.size() > MAX_FAN_IN) {
+            List<Run> merged = new ArrayList<>();
+            for (int from = 0; from < runs.size(); from += MAX_FAN_IN) {
+                List<Run> group = runs.subList(from, Math.min(runs.size(), from + MAX_FAN_IN));
+                merged.add(write(files, mergeAllLongs(files, group, width), width));
+            }
+            runs.clear();
+            runs.addAll(merged);
+        }
+        return mergeAllLongs(files, runs, width);
+    }
+
+    private static Run write(TempFiles files, PrimitiveIterator.OfLong elements, int width) {
+        Path file = files.create();
+        long count = 0;
+        try (DataOutputStream out = output(files, file)) {
+            while (elements.hasNext()) {
+                long value = elements.nextLong();
+                if (width == Integer.BYTES) {
+                    out.writeInt((int) value);
+                } else {
+                    out.writeLong(value);
+                }
+                count++;
+            }
+        } catch (IOException e) {
+            files.delete(file);
+            throw new UncheckedIOException(e);
+        }
+        return new Run(file, count);
+    }
+
+    private static PrimitiveIterator.OfLong mergeAllLongs(TempFiles files, List<Run> runs, int width) {
+        List<LongCursor> cursors = new ArrayList<>(runs.size());
+        for (int i = 0; i < runs.size(); i++) {
+            cursors.add(new LongCursor(files, runs.get(i), i, width));
+        }
+        PriorityQueue<LongCursor> queue = new PriorityQueue<>(Math.max(1, runs.size()), (a, b) -> {
+            int c = Long.compare(a.head, b.head);
+            return c != 0 ? c : Integer.compare(a.index, b.index);
+        });
+        return new PrimitiveIterator.OfLong() {
+            private boolean started;
+
+            @Override
+            public boolean hasNext() {
+                if (!started) {
+                    started = true;
+                    for (LongCursor cursor : cursors) {
+                        if (cursor.advance()) {
+                            queue.add(cursor);
+                        }
+                    }
+                }
+                return !queue.isEmpty();
+            }
+
+            @Override
+            public long nextLong() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                LongCursor cursor = queue.poll();
+                long result = cursor.head;
+                if (cursor.advance()) {
+                    queue.add(cursor);
+                }
+                return result;
+            }
+        };
+    }
+
+    // ------------------------------------------------------------------- курсоры
+
+    /** Читает отрезок по одному элементу; после последнего закрывает и удаляет файл. */
+    private abstract static class Cursor {
+
+        private final TempFiles files;
+        final Run run;
+        final int index;
+        private DataInputStream in;
+        private long remaining;
+
+        Cursor(TempFiles files, Run run, int index) {
+            this.files = files;
+            this.run = run;
+            this.index = index;
+            this.remaining = run.count;
+        }
+
+        final boolean advance() {
+            if (remaining == 0) {
+                finish();
+                return false;
+            }
+            try {
+                if (in == null) {
+                    in = input(files, run.file);
+                }
+                read(in);
+            } catch (IOException e) {
+                finish();
+                throw new UncheckedIOException(e);
+            }
+            remaining--;
+            return true;
+        }
+
+        abstract void read(DataInputStream in) throws IOException;
+
+        private void finish() {
+            if (in != null) {
+                files.release(in);
+                in = null;
+            }
+            files.delete(run.file);
+        }
+    }
+
+    private static final class RefCursor<T> extends Cursor {
+
+        private final Codec<? extends T> codec;
+        T head;
+
+        RefCursor(TempFiles files, Run run, int index, Codec<? extends T> codec) {
+            super(files, run, index);
+            this.codec = codec;
+        }
+
+        @Override
+        void read(DataInputStream in) throws IOException {
+            head = codec.read(in);
+        }
+    }
+
+    private static final class LongCursor extends Cursor {
+
+        private final int width;
+        long head;
+
+        LongCursor(TempFiles files, Run run, int index, int width) {
+            super(files, run, index);
+            this.width = width;
+        }
+
+        @Override
+        void read(DataInputStream in) throws IOException {
+            head = width == Integer.BYTES ? in.readInt() : in.readLong();
+        }
+    }
+
+    // -------------------------------------------------------------------- файлы
+
+    private static Path newFile(Path directory) {
+        try {
+            return directory == null
+                    ? Files.createTempFile("streamapi-run", ".bin")
+                    : Files.createTempFile(directory, "streamapi-run", ".bin");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static DataOutputStream output(TempFiles files, Path file) throws IOException {
+        return output(files, file, BUFFER_SIZE);
+    }
+
+    /**
+     *  Поток учтен в files: если запись прервется исключением, close() стрима все равно его закроет.
+     *  Запись - в конец файла: новый файл пуст, а Appender после suspend() продолжает свой.
+     */
+    private static DataOutputStream output(TempFiles files, Path file, int bufferSize) throws IOException {
+        return files.opened(() -> new DataOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(file, StandardOpenOption.APPEND), bufferSize)) {
+            @Override
+            public void close() throws IOException {
+                files.open.remove(this);
+                super.close();
+            }
+        });
+    }
+
+    private static DataInputStream input(TempFiles files, Path file) throws IOException {
+        return files.opened(() -> new DataInputStream(new BufferedInputStream(Files.newInputStream(file), BUFFER_SIZE)) {
+            @Override
+            public void close() throws IOException {
+                files.open.remove(this);
+                super.close();
+            }
+        });
+    }
+
+    private static void delete(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException ignored) {
+            // временный файл; удалить не вышло - не повод ронять стрим
+        }
+    }
+}
@@ -0,0 +1,326 @@
+package streamapi;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PrimitiveIterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.DoubleStream;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ *  sorted() с ограничением памяти (промежуточный оператор п.6): внешняя сортировка слиянием.
+ *
+ *  Стоковый sorted() копирует весь стрим в массив и сортирует его. Здесь в памяти не больше
+ *  maxInMemory элементов: заполненный буфер сортируется и сбрасывается во временный файл
+ *  (отрезок), а результат - ленивое k-путевое слияние отрезков (ExternalRuns).
+ *
+ *      LongStream ids = ExternalSort.sorted(hugeIds, 50_000_000);
+ *      Stream<String> lines = ExternalSort.sorted(input, 5_000_000, Codec.strings());
+ *
+ *      ExternalSort.sorted(hugeIds, 50_000_000).limit(10)    // первые элементы - сразу после записи
+ *                                                            // отрезков, без полного слияния
+ *
+ *  В параллельном стриме каждая часть сортирует и пишет свои отрезки в своем потоке,
+ *  бюджет делится между частями по числу ядер. Формат отрезков компактный: 4 байта на int,
+ *  8 на long и double (double - как sortableBits, порядок как у Double.compare), объекты - через Codec.
+ *
+ *  Как и sorted(), сортировка устойчива: равные элементы выходят в порядке встречи. Если все
+ *  поместилось в бюджет - диск не используется. Сортировка и сброс происходят, когда терминальная
+ *  операция начинает читать результат; файлы удаляются по исчерпании результата, при close() стрима
+ *  (в том числе недочитанного - открытые курсоры слияния закрываются) или сразу, если сбор упал.
+ */
+public final class ExternalSort {
+
+    private static final int CHARACTERISTICS = Spliterator.ORDERED;
+
+    private ExternalSort() {
+    }
+
+    // ------------------------------------------------------------------- Stream
+
+    public static <T extends Comparable<? super T>> Stream<T> sorted(Stream<T> stream, int maxInMemory,
+                                                                    Codec<T> codec) {
+        return sorted(stream, maxInMemory, Comparator.naturalOrder(), codec, null);
+    }
+
+    public static <T> Stream<T> sorted(Stream<T> stream, int maxInMemory, Comparator<? super T> comparator,
+                                       Codec<T> codec) {
+        return sorted(stream, maxInMemory, comparator, codec, null);
+    }
+
+    /** tempDirectory == null - каталог java.io.tmpdir. */
+    @SuppressWarnings("unchecked")
+    public static <T> Stream<T> sorted(Stream<T> stream, int maxInMemory, Comparator<? super T> comparator,
+                                       Codec<T> codec, Path tempDirectory) {
+        int budget = partBudget(maxInMemory, stream.isParallel());
+        ExternalRuns.TempFiles files = new ExternalRuns.TempFiles(tempDirectory);
+        return StreamSupport.stream(files.guard(() -> {
+            RefRuns<T> result = stream.collect(
+                    () -> new RefRuns<>(budget, comparator, codec, files),
+                    RefRuns::add,
+                    RefRuns::merge);
+            if (result.runs.isEmpty()) {
+                Object[] sorted = result.buffer.toArray();
+                if (stream.isParallel()) {
+                    Arrays.parallelSort(sorted, (Comparator<Object>) comparator);
+                } else {
+                    Arrays.sort(sorted, (Comparator<Object>) comparator);
+                }
+                return Spliterators.spliterator(sorted, CHARACTERISTICS);
+            }
+            result.spill();
+            long count = count(result.runs);
+            return Spliterators.spliterator(ExternalRuns.merge(files, result.runs, codec, comparator), count,
+                    CHARACTERISTICS);
+        }), CHARACTERISTICS | Spliterator.SIZED | Spliterator.SUBSIZED, stream.isParallel()).onClose(() -> {
+            files.close();
+            stream.close();
+        });
+    }
+
+    // -------------------------------------------------------------- примитивы
+
+    public static IntStream sorted(IntStream stream, int maxInMemory) {
+        return sorted(stream, maxInMemory, null);
+    }
+
+    public static IntStream sorted(IntStream stream, int maxInMemory, Path tempDirectory) {
+        int budget = partBudget(maxInMemory, stream.isParallel());
+        ExternalRuns.TempFiles files = new ExternalRuns.TempFiles(tempDirectory);
+        return StreamSupport.intStream(files.guard(() -> {
+            IntRuns result = stream.collect(() -> new IntRuns(budget, files), IntRuns::add, IntRuns::merge);
+            if (result.runs.isEmpty()) {
+                int[] sorted = Arrays.copyOf(result.buffer, result.size);
+                sort(sorted, stream.isParallel());
+                return Spliterators.spliterator(sorted, CHARACTERISTICS);
+            }
+            result.spill();
+            long count = count(result.runs);
+            return Spliterators.spliterator(ExternalRuns.mergeInts(files, result.runs), count, CHARACTERISTICS);
+        }), CHARACTERISTICS | Spliterator.SIZED | Spliterator.SUBSIZED, stream.isParallel()).onClose(() -> {
+            files.close();
+            stream.close();
+        });
+    }
+
+    public static LongStream sorted(LongStream stream, int maxInMemory) {
+        return sorted(stream, maxInMemory, null);
+    }
+
+    public static LongStream sorted(LongStream stream, int maxInMemory, Path tempDirectory) {
+        return sortedLongs(stream, maxInMemory, tempDirectory, stream.isParallel())
+                .onClose(stream::close);
+    }
+
+    /** Порядок - как у DoubleStream.sorted() (Double.compare: -0.0 < 0.0, NaN в конце). */
+    public static DoubleStream sorted(DoubleStream stream, int maxInMemory) {
+        return sorted(stream, maxInMemory, null);
+    }
+
+    public static DoubleStream sorted(DoubleStream stream, int maxInMemory, Path tempDirectory) {
+        return sortedLongs(stream.mapToLong(ExternalRuns::sortableBits), maxInMemory, tempDirectory,
+                stream.isParallel())
+                .mapToDouble(ExternalRuns::fromSortableBits)
+                .onClose(stream::close);
+    }
+
+    /** long и double (через sortableBits) - одна реализация над long. */
+    private static LongStream sortedLongs(LongStream stream, int maxInMemory, Path tempDirectory, boolean parallel) {
+        int budget = partBudget(maxInMemory, parallel);
+        ExternalRuns.TempFiles files = new ExternalRuns.TempFiles(tempDirectory);
+        return StreamSupport.longStream(files.guard(() -> {
+            LongRuns result = stream.collect(() -> new LongRuns(budget, files), LongRuns::add, LongRuns::merge);
+            if (result.runs.isEmpty()) {
+                long[] sorted = Arrays.copyOf(result.buffer, result.size);
+                sort(sorted, parallel);
+                return Spliterators.spliterator(sorted, CHARACTERISTICS);
+            }
+            result.spill();
+            long count = count(result.runs);
+            PrimitiveIterator.OfLong merged = ExternalRuns.mergeLongs(files, result.runs);
+            return Spliterators.spliterator(merged, count, CHARACTERISTICS);
+        }), CHARACTERISTICS | Spliterator.SIZED | Spliterator.SUBSIZED, parallel)
+                .onClose(files::close);
+    }
+
+    private static int partBudget(int maxInMemory, boolean parallel) {
+        if (maxInMemory <= 0) {
+            throw new IllegalArgumentException("maxInMemory: " + maxInMemory);
+        }
+        return parallel ? Math.max(1, maxInMemory / Runtime.getRuntime().availableProcessors()) : maxInMemory;
+    }
+
+    private static long count(List<ExternalRuns.Run> runs) {
+        long count = 0;
+        for (ExternalRuns.Run run : runs) {
+            count += run.count;
+        }
+        return count;
+    }
+
+    private static void sort(int[] values, boolean parallel) {
+        if (parallel) {
+            Arrays.parallelSort(values);
+        } else {
+            Arrays.sort(values);
+        }
+    }
+
+    private static void sort(long[] values, boolean parallel) {
+        if (parallel) {
+            Arrays.parallelSort(values);
+        } else {
+            Arrays.sort(values);
+        }
+    }
+
+    // ------------------------------------------------------------- контейнеры
+
+    /**
+     *  Несортированный буфер части стрима плюс ее отрезки в порядке встречи: слияние отрезков
+     *  устойчиво по номеру отрезка, поэтому равные элементы выходят в исходном порядке.
+     */
+    private static final class RefRuns<T> {
+
+        private final int budget;
+        private final Comparator<? super T> comparator;
+        private final Codec<T> codec;
+        private final ExternalRuns.TempFiles files;
+        final ArrayList<T> buffer = new ArrayList<>();
+        final List<ExternalRuns.Run> runs = new ArrayList<>();
+
+        RefRuns(int budget, Comparator<? super T> comparator, Codec<T> codec, ExternalRuns.TempFiles files) {
+            this.budget = budget;
+            this.comparator = comparator;
+            this.codec = codec;
+            this.files = files;
+        }
+
+        void add(T element) {
+            buffer.add(element);
+            if (buffer.size() >= budget) {
+                spill();
+            }
+        }
+
+        void merge(RefRuns<T> right) {
+            if (runs.isEmpty() && right.runs.isEmpty() && buffer.size() + right.buffer.size() < budget) {
+                buffer.addAll(right.buffer);
+                return;
+            }
+            spill();
+            right.spill();
+            runs.addAll(right.runs);
+        }
+
+        void spill() {
+            if (buffer.isEmpty()) {
+                return;
+            }
+            buffer.sort(comparator);
+            runs.add(ExternalRuns.write(files, buffer, codec));
+            buffer.clear();
+        }
+    }
+
+    private static final class IntRuns {
+
+        private final int budget;
+        private final ExternalRuns.TempFiles files;
+        int[] buffer = new int[16];
+        int size;
+        final List<ExternalRuns.Run> runs = new ArrayList<>();
+
+        IntRuns(int budget, ExternalRuns.TempFiles files) {
+            this.budget = budget;
+            this.files = files;
+        }
+
+        void add(int value) {
+            if (size == buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.min(budget, size * 2));
+            }
+            buffer[size++] = value;
+            if (size >= budget) {
+                spill();
+            }
+        }
+
+        void merge(IntRuns right) {
+            if (runs.isEmpty() && right.runs.isEmpty() && size + right.size < budget) {
+                if (size + right.size > buffer.length) {
+                    buffer = Arrays.copyOf(buffer, size + right.size);
+                }
+                System.arraycopy(right.buffer, 0, buffer, size, right.size);
+                size += right.size;
+                return;
+            }
+            spill();
+            right.spill();
+            runs.addAll(right.runs);
+        }
+
+        void spill() {
+            if (size == 0) {
+                return;
+            }
+            Arrays.sort(buffer, 0, size);
+            runs.add(ExternalRuns.writeInts(files, buffer, 0, size));
+            size = 0;
+        }
+    }
+
+    private static final class LongRuns {
+
+        private final int budget;
+        private final ExternalRuns.TempFiles files;
+        long[] buffer = new long[16];
+        int size;
+        final List<ExternalRuns.Run> runs = new ArrayList<>();
+
+        LongRuns(int budget, ExternalRuns.TempFiles files) {
+            this.budget = budget;
+            this.files = files;
+        }
+
+        void add(long value) {
+            if (size == buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.min(budget, size * 2));
+            }
+            buffer[size++] = value;
+            if (size >= budget) {
+                spill();
+            }
+        }
+
+        void merge(LongRuns right) {
+            if (runs.isEmpty() && right.runs.isEmpty() && size + right.size < budget) {
+                if (size + right.size > buffer.length) {
+                    buffer = Arrays.copyOf(buffer, size + right.size);
+                }
+                System.arraycopy(right.buffer, 0, buffer, size, right.size);
+                size += right.size;
+                return;
+            }
+            spill();
+            right.spill();
+            runs.addAll(right.runs);
+        }
+
+        void spill() {
+            if (size == 0) {
+                return;
+            }
+            Arrays.sort(buffer, 0, size);
+            runs.add(ExternalRuns.writeLongs(files, buffer, 0, size));
+            size = 0;
+        }
+    }
+}
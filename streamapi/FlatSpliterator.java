@@ -0,0 +1,304 @@
+package streamapi;
+
+import java.util.Spliterator;
+import java.util.function.DoubleConsumer;
+import java.util.function.IntConsumer;
+import java.util.function.LongConsumer;
+
+/**
+ *  Плоский обход рваного двумерного массива rows[][] без промежуточного стрима на каждую строку.
+ *
+ *  Позиция - сквозной индекс элемента; prefix[r] - число элементов в rows[0, r). trySplit()
+ *  делит [index, fence) ровно пополам по элементам (строка середины - двоичным поиском по prefix),
+ *  так что одна длинная строка тоже делится между потоками. Размеры частей точные.
+ */
+abstract class FlatSpliterator<T, S extends Spliterator<T>> implements Spliterator<T> {
+
+    /** Строится при первом trySplit(): последовательному обходу он не нужен. */
+    long[] prefix;
+    /** Сквозной индекс следующего элемента. */
+    long index;
+    final long fence;
+    /** Строка и позиция в ней для index. */
+    int row;
+    int offset;
+
+    FlatSpliterator(long[] prefix, long index, long fence, int row, int offset) {
+        this.prefix = prefix;
+        this.index = index;
+        this.fence = fence;
+        this.row = row;
+        this.offset = offset;
+    }
+
+    /** Последняя строка r с prefix[r] <= index (пустые строки пропускаются). */
+    static int rowOf(long[] prefix, long index) {
+        int lo = 0;
+        int hi = prefix.length - 1;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (prefix[mid] <= index) {
+                lo = mid;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        return Math.min(lo, prefix.length - 2);
+    }
+
+    abstract int rows();
+
+    abstract int rowLength(int row);
+
+    /** Часть [index, mid) с текущими row/offset. */
+    abstract S makePrefix(long mid);
+
+    @Override
+    public S trySplit() {
+        long mid = (index + fence) >>> 1;
+        if (mid <= index) {
+            return null;
+        }
+        if (this.prefix == null) {
+            long[] sums = new long[rows() + 1];
+            for (int i = 0; i < sums.length - 1; i++) {
+                sums[i + 1] = sums[i] + rowLength(i);
+            }
+            this.prefix = sums;
+        }
+        S prefix = makePrefix(mid);
+        index = mid;
+        row = rowOf(this.prefix, mid);
+        offset = (int) (mid - this.prefix[row]);
+        return prefix;
+    }
+
+    @Override
+    public long estimateSize() {
+        return fence - index;
+    }
+
+    @Override
+    public int characteristics() {
+        return Spliterator.ORDERED | Spliterator.SIZED | Spliterator.SUBSIZED | Spliterator.IMMUTABLE;
+    }
+
+    static final class OfInt extends FlatSpliterator<Integer, Spliterator.OfInt> implements Spliterator.OfInt {
+
+        private final int[][] rows;
+
+        OfInt(int[][] rows) {
+            this(rows, null, 0, total(rows), 0, 0);
+        }
+
+        private OfInt(int[][] rows, long[] prefix, long index, long fence, int row, int offset) {
+            super(prefix, index, fence, row, offset);
+            this.rows = rows;
+        }
+
+        private static long total(int[][] rows) {
+            long total = 0;
+            for (int[] values : rows) {
+                total += values.length;
+            }
+            return total;
+        }
+
+        @Override
+        int rows() {
+            return rows.length;
+        }
+
+        @Override
+        int rowLength(int row) {
+            return rows[row].length;
+        }
+
+        @Override
+        Spliterator.OfInt makePrefix(long mid) {
+            return new FlatSpliterator.OfInt(rows, prefix, index, mid, row, offset);
+        }
+
+        @Override
+        public Spliterator.OfInt trySplit() {
+            return super.trySplit();
+        }
+
+        @Override
+        public boolean tryAdvance(IntConsumer action) {
+            if (index >= fence) {
+                return false;
+            }
+            while (offset >= rows[row].length) {
+                row++;
+                offset = 0;
+            }
+            action.accept(rows[row][offset++]);
+            index++;
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(IntConsumer action) {
+            long remaining = fence - index;
+            int r = row;
+            int from = offset;
+            index = fence;
+            while (remaining > 0) {
+                int[] values = rows[r++];
+                int to = (int) Math.min(values.length, from + remaining);
+                for (int i = from; i < to; i++) {
+                    action.accept(values[i]);
+                }
+                remaining -= Math.max(0, to - from);
+                from = 0;
+            }
+        }
+    }
+
+    static final class OfLong extends FlatSpliterator<Long, Spliterator.OfLong> implements Spliterator.OfLong {
+
+        private final long[][] rows;
+
+        OfLong(long[][] rows) {
+            this(rows, null, 0, total(rows), 0, 0);
+        }
+
+        private OfLong(long[][] rows, long[] prefix, long index, long fence, int row, int offset) {
+            super(prefix, index, fence, row, offset);
+            this.rows = rows;
+        }
+
+        private static long total(long[][] rows) {
+            long total = 0;
+            for (long[] values : rows) {
+                total += values.length;
+            }
+            return total;
+        }
+
+        @Override
+        int rows() {
+            return rows.length;
+        }
+
+        @Override
+        int rowLength(int row) {
+            return rows[row].length;
+        }
+
+        @Override
+        Spliterator.OfLong makePrefix(long mid) {
+            return new FlatSpliterator.OfLong(rows, prefix, index, mid, row, offset);
+        }
+
+        @Override
+        public Spliterator.OfLong trySplit() {
+            return super.trySplit();
+        }
+
+        @Override
+        public boolean tryAdvance(LongConsumer action) {
+            if (index >= fence) {
+                return false;
+            }
+            while (offset >= rows[row].length) {
+                row++;
+                offset = 0;
+            }
+            action.accept(rows[row][offset++]);
+            index++;
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(LongConsumer action) {
+            long remaining = fence - index;
+            int r = row;
+            int from = offset;
+            index = fence;
+            while (remaining > 0) {
+                long[] values = rows[r++];
+                int to = (int) Math.min(values.length, from + remaining);
+                for (int i = from; i < to; i++) {
+                    action.accept(values[i]);
+                }
+                remaining -= Math.max(0, to - from);
+                from = 0;
+            }
+        }
+    }
+
+    static final class OfDouble extends FlatSpliterator<Double, Spliterator.OfDouble> implements Spliterator.OfDouble {
+
+        private final double[][] rows;
+
+        OfDouble(double[][] rows) {
+            this(rows, null, 0, total(rows), 0, 0);
+        }
+
+        private OfDouble(double[][] rows, long[] prefix, long index, long fence, int row, int offset) {
+            super(prefix, index, fence, row, offset);
+            this.rows = rows;
+        }
+
+        private static long total(double[][] rows) {
+            long total = 0;
+            for (double[] values : rows) {
+                total += values.length;
+            }
+            return total;
+        }
+
+        @Override
+        int rows() {
+            return rows.length;
+        }
+
+        @Override
+        int rowLength(int row) {
+            return rows[row].length;
+        }
+
+        @Override
+        Spliterator.OfDouble makePrefix(long mid) {
+            return new FlatSpliterator.OfDouble(rows, prefix, index, mid, row, offset);
+        }
+
+        @Override
+        public Spliterator.OfDouble trySplit() {
+            return super.trySplit();
+        }
+
+        @Override
+        public boolean tryAdvance(DoubleConsumer action) {
+            if (index >= fence) {
+                return false;
+            }
+            while (offset >= rows[row].length) {
+                row++;
+                offset = 0;
+            }
+            action.accept(rows[row][offset++]);
+            index++;
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(DoubleConsumer action) {
+            long remaining = fence - index;
+            int r = row;
+            int from = offset;
+            index = fence;
+            while (remaining > 0) {
+                double[] values = rows[r++];
+                int to = (int) Math.min(values.length, from + remaining);
+                for (int i = from; i < to; i++) {
+                    action.accept(values[i]);
+                }
+                remaining -= Math.max(0, to - from);
+                from = 0;
+            }
+        }
+    }
+}
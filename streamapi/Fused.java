@@ -0,0 +1,423 @@
+package streamapi;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
+import java.util.stream.DoubleStream;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ *  Конвейер, который перед запуском склеивает и выбрасывает лишние стадии (промежуточные операторы п.1-7).
+ *
+ *  Каждая стадия Stream - отдельный Sink: элемент проходит map -> filter -> map через цепочку
+ *  вызовов downstream.accept, и в программе с сотнями конвейеров эти места вызова видят десятки
+ *  разных классов - JIT не встраивает их друг в друга. Здесь:
+ *
+ *   - подряд идущие filter / map / peek - одна стадия (mapMulti с циклом по шагам): один Sink
+ *     вместо N, вызываются только сами лямбды;
+ *   - sorted() на уже отсортированном тем же порядком источнике (SORTED, например TreeSet) выбрасывается;
+ *   - distinct() на DISTINCT источнике (Set) или после другого distinct() выбрасывается;
+ *   - sorted(cmp).limit(k) заменяется на TopK (куча из k элементов вместо сортировки всего);
+ *   - limit(a).limit(b) -> limit(min(a, b)), skip(a).skip(b) -> skip(a + b).
+ *
+ *      List<Integer> r = Fused.of(Stream.of("10", "20", "x"))
+ *              .filter(s -> s.chars().allMatch(Character::isDigit))
+ *              .map(Integer::parseInt)
+ *              .map(x -> x + 10)
+ *              .stream()
+ *              .collect(Collectors.toList());        // [20, 30] - filter и два map в одной стадии
+ *
+ *  Как и у Stream, каждая стадия возвращает новый Fused, а прежний не меняется; источник при этом
+ *  общий, поэтому запустить (stream(), mapToInt(..)) можно только один из них и один раз.
+ *
+ *  explain() показывает итоговые стадии. Склеенная стадия ведет себя как исходные: тот же порядок
+ *  вызовов лямбд для каждого элемента, короткое замыкание (findFirst, limit) и parallel() работают.
+ *  Лямбды внутри склеенной стадии по-прежнему вызываются через интерфейс - выигрыш в числе стадий,
+ *  а не во встраивании самих лямбд.
+ */
+public final class Fused<T> {
+
+    /** Маркер естественного порядка в отслеживании SORTED. */
+    private static final Object NATURAL = new Object();
+
+    private final Stream<?> source;
+    private final List<Op> ops;
+
+    private Fused(Stream<?> source, List<Op> ops) {
+        this.source = source;
+        this.ops = ops;
+    }
+
+    public static <T> Fused<T> of(Stream<T> source) {
+        return new Fused<>(source, List.of());
+    }
+
+    // ---------------------------------------------------------------------- стадии
+
+    public Fused<T> filter(Predicate<? super T> predicate) {
+        return then(new Op(Kind.FILTER, predicate));
+    }
+
+    public <R> Fused<R> map(Function<? super T, ? extends R> mapper) {
+        return then(new Op(Kind.MAP, mapper));
+    }
+
+    public Fused<T> peek(Consumer<? super T> action) {
+        return then(new Op(Kind.PEEK, action));
+    }
+
+    public Fused<T> sorted() {
+        return then(new Op(Kind.SORTED, NATURAL));
+    }
+
+    public Fused<T> sorted(Comparator<? super T> comparator) {
+        return then(new Op(Kind.SORTED, comparator));
+    }
+
+    public Fused<T> distinct() {
+        return then(new Op(Kind.DISTINCT, null));
+    }
+
+    public Fused<T> limit(long maxSize) {
+        if (maxSize < 0) {
+            throw new IllegalArgumentException("maxSize: " + maxSize);
+        }
+        return then(new Op(Kind.LIMIT, maxSize));
+    }
+
+    public Fused<T> skip(long n) {
+        if (n < 0) {
+            throw new IllegalArgumentException("n: " + n);
+        }
+        return then(new Op(Kind.SKIP, n));
+    }
+
+    /** Стадии не копятся в общем списке: прежний Fused остается со своими стадиями и своим типом элемента. */
+    private <R> Fused<R> then(Op op) {
+        List<Op> ops = new ArrayList<>(this.ops.size() + 1);
+        ops.addAll(this.ops);
+        ops.add(op);
+        return new Fused<>(source, ops);
+    }
+
+    // --------------------------------------------------------------------- запуск
+
+    @SuppressWarnings("unchecked")
+    public Stream<T> stream() {
+        Spliterator<?> s = source.spliterator();
+        List<Op> plan = optimize(s, ops);
+        Stream<Object> stream = StreamSupport.stream((Spliterator<Object>) s, source.isParallel());
+        for (Op op : plan) {
+            stream = apply(stream, op);
+        }
+        return (Stream<T>) stream.onClose(source::close);
+    }
+
+    /** Хвост из filter/map/peek склеивается вместе с mapToInt в одну стадию. */
+    public IntStream mapToInt(ToIntFunction<? super T> mapper) {
+        Tail tail = tail();
+        Chain chain = tail.chain;
+        return tail.head.mapMultiToInt((t, sink) -> {
+            Object r = chain.apply(t);
+            if (r != Chain.SKIP) {
+                sink.accept(mapper.applyAsInt(cast(r)));
+            }
+        });
+    }
+
+    public LongStream mapToLong(ToLongFunction<? super T> mapper) {
+        Tail tail = tail();
+        Chain chain = tail.chain;
+        return tail.head.mapMultiToLong((t, sink) -> {
+            Object r = chain.apply(t);
+            if (r != Chain.SKIP) {
+                sink.accept(mapper.applyAsLong(cast(r)));
+            }
+        });
+    }
+
+    public DoubleStream mapToDouble(ToDoubleFunction<? super T> mapper) {
+        Tail tail = tail();
+        Chain chain = tail.chain;
+        return tail.head.mapMultiToDouble((t, sink) -> {
+            Object r = chain.apply(t);
+            if (r != Chain.SKIP) {
+                sink.accept(mapper.applyAsDouble(cast(r)));
+            }
+        });
+    }
+
+    /**
+     *  Стадии после оптимизации - по одной строке на стадию. Источник не трогается, поэтому
+     *  sorted/distinct, лишние из-за SORTED/DISTINCT источника, здесь еще видны.
+     */
+    public List<String> explain() {
+        List<String> result = new ArrayList<>();
+        for (Op op : optimize(null, ops)) {
+            result.add(op.toString());
+        }
+        return result;
+    }
+
+    // -------------------------------------------------------------- оптимизация
+
+    /**
+     *  s == null - источник неизвестен (для explain): SORTED/DISTINCT источника не учитываются,
+     *  только то, что следует из самих стадий.
+     */
+    private static List<Op> optimize(Spliterator<?> s, List<Op> ops) {
+        Object sortedBy = null;
+        boolean distinct = false;
+        if (s != null) {
+            if (s.hasCharacteristics(Spliterator.SORTED)) {
+                Comparator<?> comparator = s.getComparator();
+                sortedBy = comparator == null ? NATURAL : comparator;
+            }
+            distinct = s.hasCharacteristics(Spliterator.DISTINCT);
+        }
+        List<Op> result = new ArrayList<>();
+        List<Op> run = new ArrayList<>();
+        for (int i = 0; i < ops.size(); i++) {
+            Op op = ops.get(i);
+            switch (op.kind) {
+                case FILTER:
+                case PEEK:
+                    run.add(op);
+                    break;
+                case MAP:
+                    // map может поменять и порядок, и равенство элементов
+                    run.add(op);
+                    sortedBy = null;
+                    distinct = false;
+                    break;
+                case SORTED:
+                    flush(run, result);
+                    if (op.arg == sortedBy) {
+                        break;
+                    }
+                    sortedBy = op.arg;
+                    Op next = i + 1 < ops.size() ? ops.get(i + 1) : null;
+                    if (next != null && next.kind == Kind.LIMIT && (long) next.arg <= Integer.MAX_VALUE) {
+                        result.add(new Op(Kind.TOP_K, new Object[]{op.arg, (int) (long) next.arg}));
+                        i++;
+                    } else {
+                        result.add(op);
+                    }
+                    break;
+                case DISTINCT:
+                    flush(run, result);
+                    if (!distinct) {
+                        result.add(op);
+                        distinct = true;
+                    }
+                    break;
+                case LIMIT:
+                case SKIP:
+                    flush(run, result);
+                    Op last = result.isEmpty() ? null : result.get(result.size() - 1);
+                    if (last != null && last.kind == op.kind) {
+                        long a = (long) last.arg;
+                        long b = (long) op.arg;
+                        long merged = op.kind == Kind.LIMIT ? Math.min(a, b) : (a + b < 0 ? Long.MAX_VALUE : a + b);
+                        result.set(result.size() - 1, new Op(op.kind, merged));
+                    } else {
+                        result.add(op);
+                    }
+                    break;
+                default:
+                    throw new AssertionError(op.kind);
+            }
+        }
+        flush(run, result);
+        return result;
+    }
+
+    /** Одна стадия остается как есть, несколько подряд - склеиваются. */
+    private static void flush(List<Op> run, List<Op> result) {
+        if (run.size() == 1) {
+            result.add(run.get(0));
+        } else if (run.size() > 1) {
+            result.add(new Op(Kind.FUSED, new Chain(run)));
+        }
+        run.clear();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Stream<Object> apply(Stream<Object> stream, Op op) {
+        switch (op.kind) {
+            case FILTER:
+                return stream.filter((Predicate<Object>) op.arg);
+            case MAP:
+                return stream.map((Function<Object, Object>) op.arg);
+            case PEEK:
+                return stream.peek((Consumer<Object>) op.arg);
+            case FUSED:
+                return stream.mapMulti((Chain) op.arg);
+            case SORTED:
+                return op.arg == NATURAL ? stream.sorted() : stream.sorted((Comparator<Object>) op.arg);
+            case DISTINCT:
+                return stream.distinct();
+            case LIMIT:
+                return stream.limit((long) op.arg);
+            case SKIP:
+                return stream.skip((long) op.arg);
+            case TOP_K:
+                Object[] args = (Object[]) op.arg;
+                Comparator<Object> comparator = args[0] == NATURAL
+                        ? (Comparator<Object>) (Comparator<?>) Comparator.naturalOrder()
+                        : (Comparator<Object>) args[0];
+                int k = (int) args[1];
+                boolean parallel = stream.isParallel();
+                // лениво, как sorted(): куча собирается только при терминальной операции
+                return StreamSupport.stream(
+                        () -> TopK.topK(stream, k, comparator).spliterator(),
+                        Spliterator.ORDERED | Spliterator.SIZED | Spliterator.SUBSIZED, parallel);
+            default:
+                throw new AssertionError(op.kind);
+        }
+    }
+
+    /** Оптимизированный конвейер, у которого хвостовые filter/map/peek вынесены в одну Chain. */
+    @SuppressWarnings("unchecked")
+    private Tail tail() {
+        Spliterator<?> s = source.spliterator();
+        List<Op> plan = optimize(s, ops);
+        List<Op> run = new ArrayList<>();
+        while (!plan.isEmpty()) {
+            Op last = plan.get(plan.size() - 1);
+            if (last.kind == Kind.FUSED) {
+                run.addAll(0, ((Chain) last.arg).ops);
+            } else if (last.kind == Kind.FILTER || last.kind == Kind.MAP || last.kind == Kind.PEEK) {
+                run.add(0, last);
+            } else {
+                break;
+            }
+            plan.remove(plan.size() - 1);
+        }
+        Stream<Object> head = StreamSupport.stream((Spliterator<Object>) s, source.isParallel());
+        for (Op op : plan) {
+            head = apply(head, op);
+        }
+        return new Tail(head.onClose(source::close), new Chain(run));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T cast(Object value) {
+        return (T) value;
+    }
+
+    // ------------------------------------------------------------------ операции
+
+    private enum Kind {
+        FILTER, MAP, PEEK, FUSED, SORTED, DISTINCT, LIMIT, SKIP, TOP_K
+    }
+
+    private static final class Op {
+
+        final Kind kind;
+        final Object arg;
+
+        Op(Kind kind, Object arg) {
+            this.kind = kind;
+            this.arg = arg;
+        }
+
+        @Override
+        public String toString() {
+            switch (kind) {
+                case FUSED:
+                    List<String> steps = new ArrayList<>();
+                    for (Op op : ((Chain) arg).ops) {
+                        steps.add(op.kind.name().toLowerCase());
+                    }
+                    return "fused" + steps;
+                case SORTED:
+                    return arg == NATURAL ? "sorted()" : "sorted(comparator)";
+                case LIMIT:
+                case SKIP:
+                    return kind.name().toLowerCase() + '(' + arg + ')';
+                case TOP_K:
+                    return "topK(" + ((Object[]) arg)[1] + ')';
+                default:
+                    return kind.name().toLowerCase();
+            }
+        }
+    }
+
+    private static final class Tail {
+
+        final Stream<Object> head;
+        final Chain chain;
+
+        Tail(Stream<Object> head, Chain chain) {
+            this.head = head;
+            this.chain = chain;
+        }
+    }
+
+    /** Склеенные filter/map/peek: один проход по массиву шагов на элемент. */
+    private static final class Chain implements BiConsumer<Object, Consumer<Object>> {
+
+        static final Object SKIP = new Object();
+
+        private static final byte FILTER = 0;
+        private static final byte MAP = 1;
+        private static final byte PEEK = 2;
+
+        final List<Op> ops;
+        private final byte[] kinds;
+        private final Object[] steps;
+
+        Chain(List<Op> ops) {
+            this.ops = new ArrayList<>(ops);
+            this.kinds = new byte[ops.size()];
+            this.steps = new Object[ops.size()];
+            for (int i = 0; i < kinds.length; i++) {
+                Op op = ops.get(i);
+                kinds[i] = op.kind == Kind.FILTER ? FILTER : op.kind == Kind.MAP ? MAP : PEEK;
+                steps[i] = op.arg;
+            }
+        }
+
+        /** Результат шагов или SKIP, если элемент отброшен фильтром. */
+        @SuppressWarnings("unchecked")
+        Object apply(Object t) {
+            byte[] kinds = this.kinds;
+            Object[] steps = this.steps;
+            for (int i = 0; i < kinds.length; i++) {
+                switch (kinds[i]) {
+                    case FILTER:
+                        if (!((Predicate<Object>) steps[i]).test(t)) {
+                            return SKIP;
+                        }
+                        break;
+                    case MAP:
+                        t = ((Function<Object, Object>) steps[i]).apply(t);
+                        break;
+                    default:
+                        ((Consumer<Object>) steps[i]).accept(t);
+                }
+            }
+            return t;
+        }
+
+        @Override
+        public void accept(Object t, Consumer<Object> sink) {
+            Object r = apply(t);
+            if (r != SKIP) {
+                sink.accept(r);
+            }
+        }
+    }
+}
@@ -0,0 +1,723 @@
+package streamapi;
+
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.BinaryOperator;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
+import java.util.function.UnaryOperator;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ *  Соединение двух стримов по ключу (Collectors п.4: toMap по справочнику и ручной поиск в нем).
+ *
+ *  Сторона build (справочник) собирается в хеш-таблицу, сторона probe (поток событий)
+ *  проходит мимо нее: каждый элемент ищет пары по своему ключу.
+ *
+ *      HashJoin join = HashJoin.builder().build();
+ *      Stream<Enriched> enriched = join.inner(
+ *              HashJoin.intSide(events, Event::refId),          // probe
+ *              HashJoin.intSide(refs.stream(), Ref::id),        // build
+ *              Enriched::new);                                  // (event, ref) -> результат
+ *
+ *      join.left(probe, build, joiner)     // без пары - joiner(p, null)
+ *      join.semi(probe, build)             // элементы probe, у которых есть пара
+ *      join.anti(probe, build)             // элементы probe без пары
+ *      join.coGroup(left, right, (key, lefts, rights) -> ...)    // все ключи обеих сторон
+ *
+ *  Ключи int и long (intSide/longSide) хранятся в IntObjectHashMap/LongObjectHashMap без упаковки,
+ *  остальные - в HashMap (equals/hashCode, null равен null). Обе стороны должны быть одного вида.
+ *  Единственный элемент build по ключу хранится как есть, список заводится только на повторах.
+ *
+ *  Probe идет в режиме своего стрима: parallel() - по всем ядрам, таблица только читается.
+ *  Build собирается в режиме своего стрима, части сливаются. Порядок результата без сброса -
+ *  порядок встречи probe, пары одного элемента - в порядке встречи build; у coGroup порядок ключей
+ *  не определен.
+ *
+ *  maxInMemory ограничивает число элементов build в таблице (в coGroup - обеих сторон, поровну).
+ *  При переполнении - grace hash join: обе стороны раскладываются по хешу ключа на partitions
+ *  разделов во временных файлах (нужен Codec - side(...).codec(...)), затем разделы соединяются
+ *  по одному. Таблица раздела - примерно build / partitions элементов; не влезший в бюджет раздел
+ *  все равно читается целиком - увеличьте partitions. После сброса порядок не определен.
+ *  Файл раздела один на сторону, его пишут все части параллельного стрима; открыто не больше
+ *  MAX_OPEN = 64 файлов на сторону при любом числе частей и разделов.
+ *  Сбор и сброс происходят, когда терминальная операция начинает читать результат; файлы удаляются
+ *  по мере чтения разделов, при close() стрима (вместе с открытыми на них потоками) или сразу,
+ *  если сбор упал. close() закрывает и оба исходных стрима.
+ *
+ *  Элементы - не null.
+ */
+public final class HashJoin {
+
+    private static final byte REF = 0;
+    private static final byte INT = 1;
+    private static final byte LONG = 2;
+    private static final String[] KINDS = {"object", "int", "long"};
+
+    private final int maxInMemory;
+    private final int partitions;
+    private final Path tempDirectory;
+
+    /** Открытых файлов разделов на сторону, см. Spill. */
+    private static final int MAX_OPEN = 64;
+
+    /** Элементов в пачке части перед записью в общие файлы стороны. */
+    private static final int BATCH = 1024;
+
+    private final AtomicLong spills = new AtomicLong();
+
+    private HashJoin(Builder builder) {
+        this.maxInMemory = builder.maxInMemory;
+        this.partitions = builder.partitions;
+        this.tempDirectory = builder.tempDirectory;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    // -------------------------------------------------------------------- стороны
+
+    public static <T, K> Side<T, K> side(Stream<T> stream, Function<? super T, ? extends K> key) {
+        return new Side<>(stream, REF, key, null, null, null);
+    }
+
+    public static <T> Side<T, Integer> intSide(Stream<T> stream, ToIntFunction<? super T> key) {
+        return new Side<>(stream, INT, null, key, null, null);
+    }
+
+    public static <T> Side<T, Long> longSide(Stream<T> stream, ToLongFunction<? super T> key) {
+        return new Side<>(stream, LONG, null, null, key, null);
+    }
+
+    /** Стрим и ключ его элементов; codec нужен, только если сторона может не влезть в maxInMemory. */
+    public static final class Side<T, K> {
+
+        private final Stream<T> stream;
+        private final byte kind;
+        private final Function<? super T, ? extends K> key;
+        private final ToIntFunction<? super T> intKey;
+        private final ToLongFunction<? super T> longKey;
+        private final Codec<T> codec;
+
+        private Side(Stream<T> stream, byte kind, Function<? super T, ? extends K> key,
+                     ToIntFunction<? super T> intKey, ToLongFunction<? super T> longKey, Codec<T> codec) {
+            this.stream = Objects.requireNonNull(stream, "stream");
+            this.kind = kind;
+            this.key = key;
+            this.intKey = intKey;
+            this.longKey = longKey;
+            this.codec = codec;
+        }
+
+        public Side<T, K> codec(Codec<T> codec) {
+            return new Side<>(stream, kind, key, intKey, longKey, Objects.requireNonNull(codec, "codec"));
+        }
+
+        @SuppressWarnings("unchecked")
+        Object key(Object element) {
+            return key.apply((T) element);
+        }
+
+        @SuppressWarnings("unchecked")
+        int intKey(Object element) {
+            return intKey.applyAsInt((T) element);
+        }
+
+        @SuppressWarnings("unchecked")
+        long longKey(Object element) {
+            return longKey.applyAsLong((T) element);
+        }
+
+        /** Хеш ключа для выбора раздела: у равных ключей обеих сторон одинаков. */
+        int hash(Object element) {
+            switch (kind) {
+                case INT:
+                    return intKey(element);
+                case LONG:
+                    return Long.hashCode(longKey(element));
+                default:
+                    return Objects.hashCode(key(element));
+            }
+        }
+    }
+
+    /** Результат coGroup по одному ключу; списки пустые, если на стороне ключа нет. */
+    @FunctionalInterface
+    public interface CoGroup<K, A, B, R> {
+        R apply(K key, List<A> left, List<B> right);
+    }
+
+    // -------------------------------------------------------------- соединения
+
+    @SuppressWarnings("unchecked")
+    public <P, B, K, R> Stream<R> inner(Side<P, K> probe, Side<B, K> build,
+                                        BiFunction<? super P, ? super B, ? extends R> joiner) {
+        return join(probe, build, BUCKET, (p, match, downstream) -> {
+            if (match instanceof Bucket) {
+                for (Object b : (Bucket) match) {
+                    downstream.accept(joiner.apply(p, (B) b));
+                }
+            } else if (match != null) {
+                downstream.accept(joiner.apply(p, (B) match));
+            }
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    public <P, B, K, R> Stream<R> left(Side<P, K> probe, Side<B, K> build,
+                                       BiFunction<? super P, ? super B, ? extends R> joiner) {
+        return join(probe, build, BUCKET, (p, match, downstream) -> {
+            if (match instanceof Bucket) {
+                for (Object b : (Bucket) match) {
+                    downstream.accept(joiner.apply(p, (B) b));
+                }
+            } else {
+                downstream.accept(joiner.apply(p, (B) match));
+            }
+        });
+    }
+
+    /** Build хранит по одному элементу на ключ - повторы справочника память не занимают. */
+    public <P, B, K> Stream<P> semi(Side<P, K> probe, Side<B, K> build) {
+        return join(probe, build, FIRST, (p, match, downstream) -> {
+            if (match != null) {
+                downstream.accept(p);
+            }
+        });
+    }
+
+    public <P, B, K> Stream<P> anti(Side<P, K> probe, Side<B, K> build) {
+        return join(probe, build, FIRST, (p, match, downstream) -> {
+            if (match == null) {
+                downstream.accept(p);
+            }
+        });
+    }
+
+    /** Для каждого ключа, встреченного хотя бы на одной стороне, - один вызов group. */
+    public <A, B, K, R> Stream<R> coGroup(Side<A, K> left, Side<B, K> right, CoGroup<? super K, A, B, R> group) {
+        checkKinds(left, right);
+        boolean parallel = left.stream.isParallel() || right.stream.isParallel();
+        ExternalRuns.TempFiles files = new ExternalRuns.TempFiles(tempDirectory);
+        return StreamSupport.stream(files.guard(() -> {
+            Part lefts = collect(left, Group::left, GROUPS, Math.max(1, maxInMemory / 2), files);
+            Part rights = collect(right, Group::right, GROUPS, Math.max(1, maxInMemory / 2), files);
+            if (lefts.index != null && rights.index != null) {
+                lefts.index.mergeAll(rights.index, GROUPS);
+                return groups(lefts.index, group).spliterator();
+            }
+            List<List<ExternalRuns.Run>> leftRuns = lefts.finish();
+            List<List<ExternalRuns.Run>> rightRuns = rights.finish();
+            return partitions(parallel).flatMap(i -> {
+                Index index = Index.create(left.kind);
+                load(index, left, leftRuns.get(i), Group::left, GROUPS, files);
+                load(index, right, rightRuns.get(i), Group::right, GROUPS, files);
+                return groups(index, group);
+            }).spliterator();
+        }), 0, parallel).onClose(() -> close(files, left, right));
+    }
+
+    // -------------------------------------------------------------------- метрики
+
+    /** Сколько частей сторон ушло на диск (по части на поток; probe после сброса build - тоже). */
+    public long spills() {
+        return spills.get();
+    }
+
+    @Override
+    public String toString() {
+        return "HashJoin[maxInMemory=" + maxInMemory + ", partitions=" + partitions + ", spills=" + spills() + ']';
+    }
+
+    // ---------------------------------------------------------------- реализация
+
+    /** Что probe-элемент выдает вниз по найденному значению таблицы (null, элемент или Bucket). */
+    @FunctionalInterface
+    private interface Matcher<P, R> {
+        void accept(P probe, Object match, Consumer<? super R> downstream);
+    }
+
+    private <P, B, K, R> Stream<R> join(Side<P, K> probe, Side<B, K> build, BinaryOperator<Object> merge,
+                                        Matcher<P, R> matcher) {
+        checkKinds(probe, build);
+        boolean parallel = probe.stream.isParallel();
+        ExternalRuns.TempFiles files = new ExternalRuns.TempFiles(tempDirectory);
+        return StreamSupport.stream(files.guard(() -> {
+            Part built = collect(build, UnaryOperator.identity(), merge, maxInMemory, files);
+            if (built.index != null) {
+                Index index = built.index;
+                return probe.stream.<R>mapMulti((p, downstream) -> matcher.accept(p, index.get(probe, p), downstream))
+                        .spliterator();
+            }
+            List<List<ExternalRuns.Run>> buildRuns = built.finish();
+            List<List<ExternalRuns.Run>> probeRuns = collect(probe, UnaryOperator.identity(), merge, 0, files).finish();
+            return partitions(parallel).flatMap(i -> {
+                Index index = Index.create(build.kind);
+                load(index, build, buildRuns.get(i), UnaryOperator.identity(), merge, files);
+                Iterator<P> probes = ExternalRuns.concat(files, probeRuns.get(i), probe.codec);
+                return StreamSupport.stream(Spliterators.spliteratorUnknownSize(probes, Spliterator.ORDERED), false)
+                        .<R>mapMulti((p, downstream) -> matcher.accept(p, index.get(probe, p), downstream));
+            }).spliterator();
+        }), Spliterator.ORDERED, parallel).onClose(() -> close(files, probe, build));
+    }
+
+    /** budget == 0 - сторона сразу раскладывается по разделам (probe после сброса build). */
+    private Part collect(Side<?, ?> side, UnaryOperator<Object> wrap, BinaryOperator<Object> merge, int budget,
+                         ExternalRuns.TempFiles files) {
+        int partBudget = side.stream.isParallel() && budget > 0
+                ? Math.max(1, budget / Runtime.getRuntime().availableProcessors())
+                : budget;
+        Spill spill = new Spill(side, files);
+        return side.stream.collect(() -> new Part(side, wrap, merge, partBudget, budget, spill), Part::add,
+                Part::combine);
+    }
+
+    private Stream<Integer> partitions(boolean parallel) {
+        IntStream range = IntStream.range(0, partitions);
+        return (parallel ? range.parallel() : range).boxed();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void load(Index index, Side<?, ?> side, List<ExternalRuns.Run> runs, UnaryOperator<Object> wrap,
+                             BinaryOperator<Object> merge, ExternalRuns.TempFiles files) {
+        Iterator<Object> elements = ExternalRuns.concat(files, runs, (Codec<Object>) side.codec);
+        while (elements.hasNext()) {
+            Object element = elements.next();
+            index.merge(side, element, wrap.apply(element), merge);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <A, B, K, R> Stream<R> groups(Index index, CoGroup<? super K, A, B, R> group) {
+        List<R> result = new ArrayList<>();
+        index.forEach((key, value) -> {
+            Group g = (Group) value;
+            result.add(group.apply((K) key, g.left == null ? List.of() : (List<A>) g.left,
+                    g.right == null ? List.of() : (List<B>) g.right));
+        });
+        return result.stream();
+    }
+
+    private static void checkKinds(Side<?, ?> a, Side<?, ?> b) {
+        if (a.kind != b.kind) {
+            throw new IllegalArgumentException("key kinds differ: " + KINDS[a.kind] + " and " + KINDS[b.kind]);
+        }
+    }
+
+    private static void close(ExternalRuns.TempFiles files, Side<?, ?> a, Side<?, ?> b) {
+        files.close();
+        try {
+            a.stream.close();
+        } finally {
+            b.stream.close();
+        }
+    }
+
+    // -------------------------------------------------------------------- значения
+
+    /** Несколько элементов build с одним ключом. */
+    private static final class Bucket extends ArrayList<Object> {
+        private static final long serialVersionUID = 1L;
+    }
+
+    private static final BinaryOperator<Object> BUCKET = (current, added) -> {
+        Bucket bucket;
+        if (current instanceof Bucket) {
+            bucket = (Bucket) current;
+        } else {
+            bucket = new Bucket();
+            bucket.add(current);
+        }
+        if (added instanceof Bucket) {
+            bucket.addAll((Bucket) added);
+        } else {
+            bucket.add(added);
+        }
+        return bucket;
+    };
+
+    private static final BinaryOperator<Object> FIRST = (current, added) -> current;
+
+    /** Элементы обеих сторон coGroup с одним ключом; пустая сторона - null. */
+    private static final class Group {
+
+        ArrayList<Object> left;
+        ArrayList<Object> right;
+
+        static Object left(Object element) {
+            Group group = new Group();
+            group.left = new ArrayList<>(1);
+            group.left.add(element);
+            return group;
+        }
+
+        static Object right(Object element) {
+            Group group = new Group();
+            group.right = new ArrayList<>(1);
+            group.right.add(element);
+            return group;
+        }
+
+        private static ArrayList<Object> append(ArrayList<Object> to, ArrayList<Object> from) {
+            if (to == null) {
+                return from;
+            }
+            if (from != null) {
+                to.addAll(from);
+            }
+            return to;
+        }
+    }
+
+    private static final BinaryOperator<Object> GROUPS = (current, added) -> {
+        Group group = (Group) current;
+        Group other = (Group) added;
+        group.left = Group.append(group.left, other.left);
+        group.right = Group.append(group.right, other.right);
+        return group;
+    };
+
+    /** Элементы, из которых составлено значение таблицы. */
+    private static void forEachElement(Object value, Consumer<Object> action) {
+        if (value instanceof Bucket) {
+            ((Bucket) value).forEach(action);
+        } else if (value instanceof Group) {
+            Group group = (Group) value;
+            if (group.left != null) {
+                group.left.forEach(action);
+            }
+            if (group.right != null) {
+                group.right.forEach(action);
+            }
+        } else {
+            action.accept(value);
+        }
+    }
+
+    // ---------------------------------------------------------------------- таблицы
+
+    /** Ключ -> значение; ключ берется из элемента через Side, int и long - без упаковки. */
+    private abstract static class Index {
+
+        static Index create(byte kind) {
+            switch (kind) {
+                case INT:
+                    return new IntIndex();
+                case LONG:
+                    return new LongIndex();
+                default:
+                    return new RefIndex();
+            }
+        }
+
+        abstract Object get(Side<?, ?> side, Object element);
+
+        abstract void merge(Side<?, ?> side, Object element, Object value, BinaryOperator<Object> merge);
+
+        abstract void mergeAll(Index other, BinaryOperator<Object> merge);
+
+        /** key - упакованный ключ. */
+        abstract void forEach(BiConsumer<Object, Object> action);
+    }
+
+    private static final class RefIndex extends Index {
+
+        private final HashMap<Object, Object> map = new HashMap<>();
+
+        @Override
+        Object get(Side<?, ?> side, Object element) {
+            return map.get(side.key(element));
+        }
+
+        @Override
+        void merge(Side<?, ?> side, Object element, Object value, BinaryOperator<Object> merge) {
+            map.merge(side.key(element), value, merge);
+        }
+
+        @Override
+        void mergeAll(Index other, BinaryOperator<Object> merge) {
+            ((RefIndex) other).map.forEach((key, value) -> map.merge(key, value, merge));
+        }
+
+        @Override
+        void forEach(BiConsumer<Object, Object> action) {
+            map.forEach(action);
+        }
+    }
+
+    private static final class IntIndex extends Index {
+
+        private final IntObjectHashMap<Object> map = new IntObjectHashMap<>();
+
+        @Override
+        Object get(Side<?, ?> side, Object element) {
+            return map.get(side.intKey(element));
+        }
+
+        @Override
+        void merge(Side<?, ?> side, Object element, Object value, BinaryOperator<Object> merge) {
+            int key = side.intKey(element);
+            Object current = map.get(key);
+            map.put(key, current == null ? value : merge.apply(current, value));
+        }
+
+        @Override
+        void mergeAll(Index other, BinaryOperator<Object> merge) {
+            map.mergeAll(((IntIndex) other).map, merge);
+        }
+
+        @Override
+        void forEach(BiConsumer<Object, Object> action) {
+            map.forEach(action::accept);
+        }
+    }
+
+    private static final class LongIndex extends Index {
+
+        private final LongObjectHashMap<Object> map = new LongObjectHashMap<>();
+
+        @Override
+        Object get(Side<?, ?> side, Object element) {
+            return map.get(side.longKey(element));
+        }
+
+        @Override
+        void merge(Side<?, ?> side, Object element, Object value, BinaryOperator<Object> merge) {
+            long key = side.longKey(element);
+            Object current = map.get(key);
+            map.put(key, current == null ? value : merge.apply(current, value));
+        }
+
+        @Override
+        void mergeAll(Index other, BinaryOperator<Object> merge) {
+            map.mergeAll(((LongIndex) other).map, merge);
+        }
+
+        @Override
+        void forEach(BiConsumer<Object, Object> action) {
+            map.forEach(action::accept);
+        }
+    }
+
+    // ---------------------------------------------------------------------- части
+
+    /**
+     *  Часть одной стороны: пока влезает в budget - таблица, потом - элементы уходят в общие
+     *  для всей стороны файлы разделов (index == null). Части параллельного стрима копят по budget
+     *  (доля maxInMemory на ядро), а при слиянии остаются в памяти, пока вместе не больше total.
+     *  После сброса часть копит до BATCH элементов с номерами разделов и дописывает их в Spill
+     *  одним захватом его монитора.
+     */
+    private final class Part {
+
+        private final Side<?, ?> side;
+        private final UnaryOperator<Object> wrap;
+        private final BinaryOperator<Object> merge;
+        private final int budget;
+        private final int total;
+        private final Spill spill;
+        Index index;
+        long size;
+        private Object[] batch;
+        private int[] batchPartitions;
+        private int batchSize;
+
+        Part(Side<?, ?> side, UnaryOperator<Object> wrap, BinaryOperator<Object> merge, int budget, int total,
+             Spill spill) {
+            this.side = side;
+            this.wrap = wrap;
+            this.merge = merge;
+            this.budget = budget;
+            this.total = total;
+            this.spill = spill;
+            this.index = Index.create(side.kind);
+        }
+
+        void add(Object element) {
+            if (index != null && size >= budget) {
+                spill();
+            }
+            if (index != null) {
+                index.merge(side, element, wrap.apply(element), merge);
+            } else {
+                append(element);
+            }
+            size++;
+        }
+
+        Part combine(Part right) {
+            if (index != null && right.index != null && size + right.size <= total) {
+                index.mergeAll(right.index, merge);
+                size += right.size;
+                return this;
+            }
+            spill();
+            right.spill();
+            right.flush();
+            size += right.size;
+            return this;
+        }
+
+        void spill() {
+            if (index == null) {
+                return;
+            }
+            if (side.codec == null) {
+                throw new IllegalStateException("side exceeds maxInMemory = " + maxInMemory + " and has no codec");
+            }
+            batch = new Object[BATCH];
+            batchPartitions = new int[BATCH];
+            Index full = index;
+            index = null;
+            full.forEach((key, value) -> forEachElement(value, this::append));
+            spills.incrementAndGet();
+        }
+
+        /** Раздел - старшие биты перемешанного хеша ключа, чтобы внутри раздела таблица не теряла младшие. */
+        private void append(Object element) {
+            long hash = HyperLogLog.hash(side.hash(element)) >>> 32;
+            batch[batchSize] = element;
+            batchPartitions[batchSize] = (int) ((hash * partitions) >>> 32);
+            if (++batchSize == BATCH) {
+                flush();
+            }
+        }
+
+        private void flush() {
+            if (batchSize > 0) {
+                spill.addAll(batch, batchPartitions, batchSize);
+                Arrays.fill(batch, 0, batchSize, null);
+                batchSize = 0;
+            }
+        }
+
+        /** Сбрасывает часть и закрывает файлы стороны; runs.get(i) - отрезки раздела i. */
+        List<List<ExternalRuns.Run>> finish() {
+            spill();
+            flush();
+            return spill.finish();
+        }
+    }
+
+    /**
+     *  Файлы разделов одной стороны, общие для всех ее частей: по файлу на раздел, из них открыто
+     *  не больше MAX_OPEN. Открытие раздела сверх лимита закрывает давнее из открытых (Appender.suspend),
+     *  следующая запись в тот раздел откроет файл заново и допишет в конец. Если разделов больше
+     *  MAX_OPEN, пачка части сначала сортируется по разделу, чтобы каждый раздел открывался за пачку
+     *  не больше одного раза.
+     */
+    private final class Spill {
+
+        private final Side<?, ?> side;
+        private final ExternalRuns.TempFiles files;
+        private final ExternalRuns.Appender<Object>[] appenders;
+        private final ArrayDeque<Integer> open = new ArrayDeque<>();
+
+        @SuppressWarnings("unchecked")
+        Spill(Side<?, ?> side, ExternalRuns.TempFiles files) {
+            this.side = side;
+            this.files = files;
+            this.appenders = (ExternalRuns.Appender<Object>[]) new ExternalRuns.Appender<?>[partitions];
+        }
+
+        synchronized void addAll(Object[] elements, int[] elementPartitions, int size) {
+            if (partitions <= MAX_OPEN) {
+                for (int i = 0; i < size; i++) {
+                    appender(elementPartitions[i]).add(elements[i]);
+                }
+                return;
+            }
+            long[] order = new long[size];
+            for (int i = 0; i < size; i++) {
+                order[i] = (long) elementPartitions[i] << 32 | i;
+            }
+            Arrays.sort(order);
+            for (long entry : order) {
+                int i = (int) entry;
+                appender(elementPartitions[i]).add(elements[i]);
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private ExternalRuns.Appender<Object> appender(int partition) {
+            ExternalRuns.Appender<Object> appender = appenders[partition];
+            if (appender == null) {
+                appender = new ExternalRuns.Appender<>(files, (Codec<Object>) side.codec);
+                appenders[partition] = appender;
+            }
+            if (!appender.isOpen()) {
+                if (open.size() == MAX_OPEN) {
+                    appenders[open.poll()].suspend();
+                }
+                open.add(partition);
+            }
+            return appender;
+        }
+
+        /** Отрезки по разделам; пустой раздел - пустой список. */
+        synchronized List<List<ExternalRuns.Run>> finish() {
+            List<List<ExternalRuns.Run>> runs = new ArrayList<>(partitions);
+            for (ExternalRuns.Appender<Object> appender : appenders) {
+                runs.add(appender == null ? List.of() : List.of(appender.finish()));
+            }
+            open.clear();
+            return runs;
+        }
+    }
+
+    // ------------------------------------------------------------------- builder
+
+    public static final class Builder {
+
+        private int maxInMemory = Integer.MAX_VALUE;
+        private int partitions = 64;
+        private Path tempDirectory;
+
+        private Builder() {
+        }
+
+        /** Сколько элементов build держать в таблице; по умолчанию - без ограничения. */
+        public Builder maxInMemory(int maxInMemory) {
+            if (maxInMemory <= 0) {
+                throw new IllegalArgumentException("maxInMemory: " + maxInMemory);
+            }
+            this.maxInMemory = maxInMemory;
+            return this;
+        }
+
+        /** Число разделов при сбросе на диск. */
+        public Builder partitions(int partitions) {
+            if (partitions <= 0 || partitions > 1 << 16) {
+                throw new IllegalArgumentException("partitions: " + partitions);
+            }
+            this.partitions = partitions;
+            return this;
+        }
+
+        /** null - каталог java.io.tmpdir. */
+        public Builder tempDirectory(Path tempDirectory) {
+            this.tempDirectory = tempDirectory;
+            return this;
+        }
+
+        public HashJoin build() {
+            return new HashJoin(this);
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package streamapi;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ *  PipelineListener, который хранит последний отчет каждого конвейера.
+ *
+ *      InMemoryReporter reporter = new InMemoryReporter();
+ *      ...
+ *      reporter.latest("report").flatMap(PipelineReport::slowest).ifPresent(System.out::println);
+ */
+public final class InMemoryReporter implements PipelineListener {
+
+    private final Map<String, PipelineReport> latest = new ConcurrentHashMap<>();
+
+    @Override
+    public void onReport(PipelineReport report) {
+        latest.put(report.pipeline(), report);
+    }
+
+    public Optional<PipelineReport> latest(String pipeline) {
+        return Optional.ofNullable(latest.get(pipeline));
+    }
+
+    public List<PipelineReport> all() {
+        return new ArrayList<>(latest.values());
+    }
+
+    public void clear() {
+        latest.clear();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (PipelineReport report : latest.values()) {
+            sb.append(report).append(System.lineSeparator());
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,734 @@
+package streamapi;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.DoubleConsumer;
+import java.util.function.DoubleFunction;
+import java.util.function.DoublePredicate;
+import java.util.function.DoubleUnaryOperator;
+import java.util.function.Function;
+import java.util.function.IntConsumer;
+import java.util.function.IntFunction;
+import java.util.function.IntPredicate;
+import java.util.function.IntUnaryOperator;
+import java.util.function.LongConsumer;
+import java.util.function.LongFunction;
+import java.util.function.LongPredicate;
+import java.util.function.LongUnaryOperator;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
+import java.util.stream.DoubleStream;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ *  Метрики по стадиям конвейера вместо peek(System.out::print) (промежуточный оператор п.8).
+ *
+ *  Лямбды стадий оборачиваются с именем: обертка считает элементы на входе и выходе, время
+ *  внутри лямбды и (по желанию) выделенную память. Источник оборачивается в Spliterator,
+ *  который считает элементы, trySplit и "кражи" частей другими потоками.
+ *
+ *      Instrumented m = Instrumented.builder("report").listener(new InMemoryReporter()).build();
+ *
+ *      long n = m.run(() -> m.source("orders", orders.parallelStream())
+ *              .filter(m.filter("paid", Order::isPaid))
+ *              .map(m.map("toDto", Dto::of))
+ *              .count());
+ *
+ *  report() (и run, и close() стрима из source) отдает PipelineReport слушателю. Выключенный
+ *  экземпляр (disabled() или enabled(false)) возвращает исходные лямбды и стримы как есть,
+ *  поэтому инструментирование можно оставить в коде.
+ *
+ *  Время меряется System.nanoTime вокруг каждого вызова - это десятки наносекунд на элемент,
+ *  для дешевых лямбд метрика времени заметно завышена. Сравнивать стадии между собой это не мешает.
+ */
+public final class Instrumented {
+
+    private static final Instrumented DISABLED = new Instrumented("disabled", PipelineListener.none(), false, false);
+
+    private final String name;
+    private final PipelineListener listener;
+    private final boolean enabled;
+    private final com.sun.management.ThreadMXBean allocations;
+    private final Map<String, Stage> stages = new LinkedHashMap<>();
+    private final LongAdder splits = new LongAdder();
+    private final LongAdder steals = new LongAdder();
+
+    private Instrumented(String name, PipelineListener listener, boolean enabled, boolean trackAllocations) {
+        this.name = name;
+        this.listener = listener;
+        this.enabled = enabled;
+        this.allocations = trackAllocations ? allocationBean() : null;
+    }
+
+    public static Instrumented disabled() {
+        return DISABLED;
+    }
+
+    public static Builder builder(String pipeline) {
+        return new Builder(pipeline);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // ------------------------------------------------------------------ отчет
+
+    public PipelineReport snapshot() {
+        List<PipelineReport.Stage> result = new ArrayList<>();
+        synchronized (stages) {
+            for (Stage stage : stages.values()) {
+                result.add(stage.snapshot(allocations != null));
+            }
+        }
+        return new PipelineReport(name, result, splits.sum(), steals.sum());
+    }
+
+    public PipelineReport report() {
+        PipelineReport report = snapshot();
+        if (enabled) {
+            listener.onReport(report);
+        }
+        return report;
+    }
+
+    /** Выполняет конвейер (обычно - вместе с терминальной операцией) и сообщает метрики. */
+    public <R> R run(Supplier<R> pipeline) {
+        try {
+            return pipeline.get();
+        } finally {
+            report();
+        }
+    }
+
+    public void reset() {
+        synchronized (stages) {
+            stages.values().forEach(Stage::reset);
+        }
+        splits.reset();
+        steals.reset();
+    }
+
+    // -------------------------------------------------------------- источники
+
+    public <T> Stream<T> source(String stage, Stream<T> stream) {
+        if (!enabled) {
+            return stream;
+        }
+        return StreamSupport.stream(new RefSource<>(stream.spliterator(), stage(stage, "source")), stream.isParallel())
+                .onClose(this::report)
+                .onClose(stream::close);
+    }
+
+    public IntStream source(String stage, IntStream stream) {
+        if (!enabled) {
+            return stream;
+        }
+        return StreamSupport.intStream(new IntSource(stream.spliterator(), stage(stage, "source")), stream.isParallel())
+                .onClose(this::report)
+                .onClose(stream::close);
+    }
+
+    public LongStream source(String stage, LongStream stream) {
+        if (!enabled) {
+            return stream;
+        }
+        return StreamSupport.longStream(new LongSource(stream.spliterator(), stage(stage, "source")), stream.isParallel())
+                .onClose(this::report)
+                .onClose(stream::close);
+    }
+
+    public DoubleStream source(String stage, DoubleStream stream) {
+        if (!enabled) {
+            return stream;
+        }
+        return StreamSupport.doubleStream(new DoubleSource(stream.spliterator(), stage(stage, "source")),
+                stream.isParallel())
+                .onClose(this::report)
+                .onClose(stream::close);
+    }
+
+    // ------------------------------------------------------------------ Stream
+
+    public <T> Predicate<T> filter(String stage, Predicate<T> predicate) {
+        if (!enabled) {
+            return predicate;
+        }
+        Stage s = stage(stage, "filter");
+        return t -> {
+            long start = s.start();
+            long bytes = s.startBytes();
+            boolean passed = predicate.test(t);
+            s.finish(start, bytes, passed ? 1 : 0);
+            return passed;
+        };
+    }
+
+    public <T, R> Function<T, R> map(String stage, Function<T, R> mapper) {
+        if (!enabled) {
+            return mapper;
+        }
+        Stage s = stage(stage, "map");
+        return t -> {
+            long start = s.start();
+            long bytes = s.startBytes();
+            R result = mapper.apply(t);
+            s.finish(start, bytes, 1);
+            return result;
+        };
+    }
+
+    /** Выход считается по элементам вернувшегося стрима; время - только вызов mapper. */
+    public <T, R> Function<T, Stream<R>> flatMap(String stage, Function<T, Stream<R>> mapper) {
+        if (!enabled) {
+            return mapper;
+        }
+        Stage s = stage(stage, "flatMap");
+        return t -> {
+            long start = s.start();
+            long bytes = s.startBytes();
+            Stream<R> result = mapper.apply(t);
+            s.finish(start, bytes, 0);
+            return result == null ? null : result.peek(r -> s.out.increment());
+        };
+    }
+
+    public <T> Consumer<T> peek(String stage, Consumer<T> action) {
+        if (!enabled) {
+            return action;
+        }
+        Stage s = stage(stage, "peek");
+        return t -> {
+            long start = s.start();
+            long bytes = s.startBytes();
+            action.accept(t);
+            s.finish(start, bytes, 1);
+        };
+    }
+
+    public <T> ToIntFunction<T> mapToInt(String stage, ToIntFunction<T> mapper) {
+        if (!enabled) {
+            return mapper;
+        }
+        Stage s = stage(stage, "map");
+        return t -> {
+            long start = s.start();
+            long bytes = s.startBytes();
+            int result = mapper.applyAsInt(t);
+            s.finish(start, bytes, 1);
+            return result;
+        };
+    }
+
+    public <T> ToLongFunction<T> mapToLong(String stage, ToLongFunction<T> mapper) {
+        if (!enabled) {
+            return mapper;
+        }
+        Stage s = stage(stage, "map");
+        return t -> {
+            long start = s.start();
+            long bytes = s.startBytes();
+            long result = mapper.applyAsLong(t);
+            s.finish(start, bytes, 1);
+            return result;
+        };
+    }
+
+    public <T> ToDoubleFunction<T> mapToDouble(String stage, ToDoubleFunction<T> mapper) {
+        if (!enabled) {
+            return mapper;
+        }
+        Stage s = stage(stage, "map");
+        return t -> {
+            long start = s.start();
+            long bytes = s.startBytes();
+            double result = mapper.applyAsDouble(t);
+            s.finish(start, bytes, 1);
+            return result;
+        };
+    }
+
+    // --------------------------------------------------------------- IntStream
+
+    public IntPredicate filterInt(String stage, IntPredicate predicate) {
+        if (!enabled) {
+            return predicate;
+        }
+        Stage s = stage(stage, "filter");
+        return x -> {
+            long start = s.start();
+            long bytes = s.startBytes();
+            boolean passed = predicate.test(x);
+            s.finish(start, bytes, passed ? 1 : 0);
+            return passed;
+        };
+    }
+
+    public IntUnaryOperator mapInt(String stage, IntUnaryOperator mapper) {
+        if (!enabled) {
+            return mapper;
+        }
+        Stage s = stage(stage, "map");
+        return x -> {
+            long start = s.start();
+            long bytes = s.startBytes();
+            int result = mapper.applyAsInt(x);
+            s.finish(start, bytes, 1);
+            return result;
+        };
+    }
+
+    public <R> IntFunction<R> mapIntToObj(String stage, IntFunction<R> mapper) {
+        if (!enabled) {
+            return mapper;
+        }
+        Stage s = stage(stage, "map");
+        return x -> {
+            long start = s.start();
+            long bytes = s.startBytes();
+            R result = mapper.apply(x);
+            s.finish(start, bytes, 1);
+            return result;
+        };
+    }
+
+    public IntConsumer peekInt(String stage, IntConsumer action) {
+        if (!enabled) {
+            return action;
+        }
+        Stage s = stage(stage, "peek");
+        return x -> {
+            long start = s.start();
+            long bytes = s.startBytes();
+            action.accept(x);
+            s.finish(start, bytes, 1);
+        };
+    }
+
+    // -------------------------------------------------------------- LongStream
+
+    public LongPredicate filterLong(String stage, LongPredicate predicate) {
+        if (!enabled) {
+            return predicate;
+        }
+        Stage s = stage(stage, "filter");
+        return x -> {
+            long start = s.start();
+            long bytes = s.startBytes();
+            boolean passed = predicate.test(x);
+            s.finish(start, bytes, passed ? 1 : 0);
+            return passed;
+        };
+    }
+
+    public LongUnaryOperator mapLong(String stage, LongUnaryOperator mapper) {
+        if (!enabled) {
+            return mapper;
+        }
+        Stage s = stage(stage, "map");
+        return x -> {
+            long start = s.start();
+            long bytes = s.startBytes();
+            long result = mapper.applyAsLong(x);
+            s.finish(start, bytes, 1);
+            return result;
+        };
+    }
+
+    public <R> LongFunction<R> mapLongToObj(String stage, LongFunction<R> mapper) {
+        if (!enabled) {
+            return mapper;
+        }
+        Stage s = stage(stage, "map");
+        return x -> {
+            long start = s.start();
+            long bytes = s.startBytes();
+            R result = mapper.apply(x);
+            s.finish(start, bytes, 1);
+            return result;
+        };
+    }
+
+    public LongConsumer peekLong(String stage, LongConsumer action) {
+        if (!enabled) {
+            return action;
+        }
+        Stage s = stage(stage, "peek");
+        return x -> {
+            long start = s.start();
+            long bytes = s.startBytes();
+            action.accept(x);
+            s.finish(start, bytes, 1);
+        };
+    }
+
+    // ------------------------------------------------------------ DoubleStream
+
+    public DoublePredicate filterDouble(String stage, DoublePredicate predicate) {
+        if (!enabled) {
+            return predicate;
+        }
+        Stage s = stage(stage, "filter");
+        return x -> {
+            long start = s.start();
+            long bytes = s.startBytes();
+            boolean passed = predicate.test(x);
+            s.finish(start, bytes, passed ? 1 : 0);
+            return passed;
+        };
+    }
+
+    public DoubleUnaryOperator mapDouble(String stage, DoubleUnaryOperator mapper) {
+        if (!enabled) {
+            return mapper;
+        }
+        Stage s = stage(stage, "map");
+        return x -> {
+            long start = s.start();
+            long bytes = s.startBytes();
+            double result = mapper.applyAsDouble(x);
+            s.finish(start, bytes, 1);
+            return result;
+        };
+    }
+
+    public <R> DoubleFunction<R> mapDoubleToObj(String stage, DoubleFunction<R> mapper) {
+        if (!enabled) {
+            return mapper;
+        }
+        Stage s = stage(stage, "map");
+        return x -> {
+            long start = s.start();
+            long bytes = s.startBytes();
+            R result = mapper.apply(x);
+            s.finish(start, bytes, 1);
+            return result;
+        };
+    }
+
+    public DoubleConsumer peekDouble(String stage, DoubleConsumer action) {
+        if (!enabled) {
+            return action;
+        }
+        Stage s = stage(stage, "peek");
+        return x -> {
+            long start = s.start();
+            long bytes = s.startBytes();
+            action.accept(x);
+            s.finish(start, bytes, 1);
+        };
+    }
+
+    // ------------------------------------------------------------------ стадии
+
+    /** Стадия с тем же именем переиспользуется: конвейер, собранный в цикле, копит метрики в одном месте. */
+    private Stage stage(String stage, String kind) {
+        synchronized (stages) {
+            return stages.computeIfAbsent(stage, n -> new Stage(n, kind, allocations));
+        }
+    }
+
+    private static final class Stage {
+
+        final String name;
+        final String kind;
+        private final com.sun.management.ThreadMXBean allocations;
+        final LongAdder in = new LongAdder();
+        final LongAdder out = new LongAdder();
+        final LongAdder nanos = new LongAdder();
+        final LongAdder bytes = new LongAdder();
+
+        Stage(String name, String kind, com.sun.management.ThreadMXBean allocations) {
+            this.name = name;
+            this.kind = kind;
+            this.allocations = allocations;
+        }
+
+        long start() {
+            return System.nanoTime();
+        }
+
+        long startBytes() {
+            return allocations == null ? 0 : allocations.getCurrentThreadAllocatedBytes();
+        }
+
+        void finish(long start, long startBytes, int passed) {
+            nanos.add(System.nanoTime() - start);
+            if (allocations != null) {
+                bytes.add(allocations.getCurrentThreadAllocatedBytes() - startBytes);
+            }
+            in.increment();
+            if (passed != 0) {
+                out.increment();
+            }
+        }
+
+        void reset() {
+            in.reset();
+            out.reset();
+            nanos.reset();
+            bytes.reset();
+        }
+
+        PipelineReport.Stage snapshot(boolean withBytes) {
+            long passed = out.sum();
+            // источник только отдает элементы: вход равен выходу
+            long received = "source".equals(kind) ? passed : in.sum();
+            return new PipelineReport.Stage(name, kind, received, passed, nanos.sum(), withBytes ? bytes.sum() : -1);
+        }
+    }
+
+    private static com.sun.management.ThreadMXBean allocationBean() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
+            if (sunBean.isThreadAllocatedMemorySupported()) {
+                sunBean.setThreadAllocatedMemoryEnabled(true);
+                return sunBean;
+            }
+        }
+        return null;
+    }
+
+    // ------------------------------------------------------------ Spliterator
+
+    /**
+     *  Обертка источника. Часть, отделенная trySplit, запоминает поток, который ее отделил;
+     *  если обходить ее начинает другой поток, это кража.
+     */
+    private abstract class Source<T, S extends Spliterator<T>> implements Spliterator<T> {
+
+        final S source;
+        final Stage stage;
+        private final Thread owner = Thread.currentThread();
+        private boolean started;
+
+        Source(S source, Stage stage) {
+            this.source = source;
+            this.stage = stage;
+        }
+
+        final void started() {
+            if (!started) {
+                started = true;
+                if (Thread.currentThread() != owner) {
+                    steals.increment();
+                }
+            }
+        }
+
+        final S splitSource() {
+            @SuppressWarnings("unchecked")
+            S prefix = (S) source.trySplit();
+            if (prefix != null) {
+                splits.increment();
+            }
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return source.estimateSize();
+        }
+
+        @Override
+        public long getExactSizeIfKnown() {
+            return source.getExactSizeIfKnown();
+        }
+
+        @Override
+        public int characteristics() {
+            return source.characteristics();
+        }
+
+        @Override
+        public Comparator<? super T> getComparator() {
+            return source.getComparator();
+        }
+    }
+
+    private final class RefSource<T> extends Source<T, Spliterator<T>> {
+
+        RefSource(Spliterator<T> source, Stage stage) {
+            super(source, stage);
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super T> action) {
+            started();
+            boolean advanced = source.tryAdvance(action);
+            if (advanced) {
+                stage.out.increment();
+            }
+            return advanced;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super T> action) {
+            started();
+            long[] count = new long[1];
+            source.forEachRemaining(t -> {
+                count[0]++;
+                action.accept(t);
+            });
+            stage.out.add(count[0]);
+        }
+
+        @Override
+        public Spliterator<T> trySplit() {
+            Spliterator<T> prefix = splitSource();
+            return prefix == null ? null : new RefSource<>(prefix, stage);
+        }
+    }
+
+    private final class IntSource extends Source<Integer, Spliterator.OfInt> implements Spliterator.OfInt {
+
+        IntSource(Spliterator.OfInt source, Stage stage) {
+            super(source, stage);
+        }
+
+        @Override
+        public boolean tryAdvance(IntConsumer action) {
+            started();
+            boolean advanced = source.tryAdvance(action);
+            if (advanced) {
+                stage.out.increment();
+            }
+            return advanced;
+        }
+
+        @Override
+        public void forEachRemaining(IntConsumer action) {
+            started();
+            long[] count = new long[1];
+            source.forEachRemaining((int x) -> {
+                count[0]++;
+                action.accept(x);
+            });
+            stage.out.add(count[0]);
+        }
+
+        @Override
+        public Spliterator.OfInt trySplit() {
+            Spliterator.OfInt prefix = splitSource();
+            return prefix == null ? null : new IntSource(prefix, stage);
+        }
+    }
+
+    private final class LongSource extends Source<Long, Spliterator.OfLong> implements Spliterator.OfLong {
+
+        LongSource(Spliterator.OfLong source, Stage stage) {
+            super(source, stage);
+        }
+
+        @Override
+        public boolean tryAdvance(LongConsumer action) {
+            started();
+            boolean advanced = source.tryAdvance(action);
+            if (advanced) {
+                stage.out.increment();
+            }
+            return advanced;
+        }
+
+        @Override
+        public void forEachRemaining(LongConsumer action) {
+            started();
+            long[] count = new long[1];
+            source.forEachRemaining((long x) -> {
+                count[0]++;
+                action.accept(x);
+            });
+            stage.out.add(count[0]);
+        }
+
+        @Override
+        public Spliterator.OfLong trySplit() {
+            Spliterator.OfLong prefix = splitSource();
+            return prefix == null ? null : new LongSource(prefix, stage);
+        }
+    }
+
+    private final class DoubleSource extends Source<Double, Spliterator.OfDouble> implements Spliterator.OfDouble {
+
+        DoubleSource(Spliterator.OfDouble source, Stage stage) {
+            super(source, stage);
+        }
+
+        @Override
+        public boolean tryAdvance(DoubleConsumer action) {
+            started();
+            boolean advanced = source.tryAdvance(action);
+            if (advanced) {
+                stage.out.increment();
+            }
+            return advanced;
+        }
+
+        @Override
+        public void forEachRemaining(DoubleConsumer action) {
+            started();
+            long[] count = new long[1];
+            source.forEachRemaining((double x) -> {
+                count[0]++;
+                action.accept(x);
+            });
+            stage.out.add(count[0]);
+        }
+
+        @Override
+        public Spliterator.OfDouble trySplit() {
+            Spliterator.OfDouble prefix = splitSource();
+            return prefix == null ? null : new DoubleSource(prefix, stage);
+        }
+    }
+
+    // ----------------------------------------------------------------------- билдер
+
+    public static final class Builder {
+
+        private final String pipeline;
+        private PipelineListener listener = PipelineListener.none();
+        private boolean enabled = true;
+        private boolean trackAllocations;
+
+        private Builder(String pipeline) {
+            this.pipeline = pipeline;
+        }
+
+        public Builder listener(PipelineListener listener) {
+            this.listener = listener;
+            return this;
+        }
+
+        /** enabled(false) - то же, что disabled(): обертки возвращают исходные лямбды. */
+        public Builder enabled(boolean enabled) {
+            this.enabled = enabled;
+            return this;
+        }
+
+        /** Учет выделенной памяти через ThreadMXBean - еще два вызова на элемент. */
+        public Builder trackAllocations(boolean trackAllocations) {
+            this.trackAllocations = trackAllocations;
+            return this;
+        }
+
+        public Instrumented build() {
+            return enabled ? new Instrumented(pipeline, listener, true, trackAllocations) : DISABLED;
+        }
+    }
+}
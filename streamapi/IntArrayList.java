@@ -0,0 +1,65 @@
+package streamapi;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ *  Растущий список int без упаковки в Integer.
+ */
+public final class IntArrayList {
+
+    private int[] elements;
+    private int size;
+
+    public IntArrayList() {
+        this(8);
+    }
+
+    public IntArrayList(int initialCapacity) {
+        elements = new int[Math.max(1, initialCapacity)];
+    }
+
+    public void add(int value) {
+        if (size == elements.length) {
+            elements = Arrays.copyOf(elements, size + (size >> 1) + 1);
+        }
+        elements[size++] = value;
+    }
+
+    public void addAll(IntArrayList other) {
+        int required = size + other.size;
+        if (required > elements.length) {
+            elements = Arrays.copyOf(elements, Math.max(required, size + (size >> 1)));
+        }
+        System.arraycopy(other.elements, 0, elements, size, other.size);
+        size = required;
+    }
+
+    public int get(int index) {
+        if (index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+        }
+        return elements[index];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int[] toArray() {
+        return Arrays.copyOf(elements, size);
+    }
+
+    public IntStream stream() {
+        return Arrays.stream(elements, 0, size);
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(toArray());
+    }
+}
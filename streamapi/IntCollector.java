@@ -0,0 +1,69 @@
+package streamapi;
+
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.ObjIntConsumer;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+
+/**
+ *  Аналог java.util.stream.Collector для IntStream.
+ *
+ *  У IntStream нет collect(Collector), есть только collect(supplier, accumulator, combiner),
+ *  поэтому коллектор - это та же тройка плюс finisher:
+ *
+ *      IntObjectHashMap<IntArrayList> groups = PrimitiveCollectors
+ *              .intGroupingBy(x -> x % 10)
+ *              .collect(IntStream.range(0, 100));
+ *
+ *  @param <A> изменяемый контейнер
+ *  @param <R> результат
+ */
+public interface IntCollector<A, R> {
+
+    Supplier<A> supplier();
+
+    ObjIntConsumer<A> accumulator();
+
+    /** Сливает правый контейнер в левый (нужен для параллельных стримов). */
+    BiConsumer<A, A> combiner();
+
+    Function<A, R> finisher();
+
+    default R collect(IntStream stream) {
+        return finisher().apply(stream.collect(supplier(), accumulator(), combiner()));
+    }
+
+    static <A, R> IntCollector<A, R> of(Supplier<A> supplier,
+                                        ObjIntConsumer<A> accumulator,
+                                        BiConsumer<A, A> combiner,
+                                        Function<A, R> finisher) {
+        return new IntCollector<>() {
+            @Override
+            public Supplier<A> supplier() {
+                return supplier;
+            }
+
+            @Override
+            public ObjIntConsumer<A> accumulator() {
+                return accumulator;
+            }
+
+            @Override
+            public BiConsumer<A, A> combiner() {
+                return combiner;
+            }
+
+            @Override
+            public Function<A, R> finisher() {
+                return finisher;
+            }
+        };
+    }
+
+    static <A> IntCollector<A, A> of(Supplier<A> supplier,
+                                     ObjIntConsumer<A> accumulator,
+                                     BiConsumer<A, A> combiner) {
+        return of(supplier, accumulator, combiner, Function.identity());
+    }
+}
@@ -0,0 +1,195 @@
+package streamapi;
+
+/**
+ *  Хеш-таблица int -> long с открытой адресацией. Подходит для сумм и счетчиков по int-ключу:
+ *  ни ключ, ни значение не упаковываются.
+ *
+ *  Ключ 0 служит маркером пустой ячейки, поэтому хранится отдельно.
+ */
+public final class IntLongHashMap {
+
+    /** Обход пар ключ-значение без упаковки. */
+    @FunctionalInterface
+    public interface Visitor {
+        void accept(int key, long value);
+    }
+
+    private static final float LOAD_FACTOR = 0.5f;
+
+    private int[] keys;
+    private long[] values;
+    private int mask;
+    private int size;
+    private int threshold;
+
+    private boolean hasZeroKey;
+    private long zeroValue;
+
+    public IntLongHashMap() {
+        this(16);
+    }
+
+    public IntLongHashMap(int expectedSize) {
+        allocate(IntObjectHashMap.tableSizeFor(expectedSize));
+    }
+
+    /** Значение по ключу или 0, если ключа нет. */
+    public long get(int key) {
+        if (key == 0) {
+            return zeroValue;
+        }
+        int slot = slot(key);
+        while (true) {
+            int k = keys[slot];
+            if (k == key) {
+                return values[slot];
+            }
+            if (k == 0) {
+                return 0L;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    public boolean containsKey(int key) {
+        if (key == 0) {
+            return hasZeroKey;
+        }
+        int slot = slot(key);
+        while (true) {
+            int k = keys[slot];
+            if (k == key) {
+                return true;
+            }
+            if (k == 0) {
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    public void put(int key, long value) {
+        int slot = insertionSlot(key);
+        if (slot < 0) {
+            zeroValue = value;
+        } else {
+            values[slot] = value;
+        }
+    }
+
+    /** Прибавляет delta к значению по ключу (отсутствующий ключ считается равным 0). */
+    public void addTo(int key, long delta) {
+        int slot = insertionSlot(key);
+        if (slot < 0) {
+            zeroValue += delta;
+        } else {
+            values[slot] += delta;
+        }
+    }
+
+    /** Складывает значения other в эту таблицу. */
+    public void addAll(IntLongHashMap other) {
+        other.forEach(this::addTo);
+    }
+
+    public void forEach(Visitor visitor) {
+        if (hasZeroKey) {
+            visitor.accept(0, zeroValue);
+        }
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (keys[slot] != 0) {
+                visitor.accept(keys[slot], values[slot]);
+            }
+        }
+    }
+
+    public int[] keys() {
+        int[] result = new int[size];
+        int i = 0;
+        if (hasZeroKey) {
+            result[i++] = 0;
+        }
+        for (int k : keys) {
+            if (k != 0) {
+                result[i++] = k;
+            }
+        }
+        return result;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("{");
+        forEach((key, value) -> {
+            if (sb.length() > 1) {
+                sb.append(", ");
+            }
+            sb.append(key).append('=').append(value);
+        });
+        return sb.append('}').toString();
+    }
+
+    /** Ячейка для ключа (создается при отсутствии); -1 означает ключ 0. */
+    private int insertionSlot(int key) {
+        if (key == 0) {
+            if (!hasZeroKey) {
+                hasZeroKey = true;
+                size++;
+            }
+            return -1;
+        }
+        int slot = slot(key);
+        while (true) {
+            int k = keys[slot];
+            if (k == key) {
+                return slot;
+            }
+            if (k == 0) {
+                keys[slot] = key;
+                if (++size > threshold) {
+                    rehash();
+                    return insertionSlot(key);
+                }
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    private int slot(int key) {
+        int h = key * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        values = new long[capacity];
+        mask = capacity - 1;
+        threshold = (int) (capacity * LOAD_FACTOR);
+    }
+
+    private void rehash() {
+        int[] oldKeys = keys;
+        long[] oldValues = values;
+        allocate(keys.length << 1);
+        for (int i = 0; i < oldKeys.length; i++) {
+            int key = oldKeys[i];
+            if (key != 0) {
+                int slot = slot(key);
+                while (keys[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = key;
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+}
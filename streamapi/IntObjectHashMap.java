@@ -0,0 +1,225 @@
+package streamapi;
+
+import java.util.function.BinaryOperator;
+import java.util.function.IntFunction;
+
+/**
+ *  Хеш-таблица int -> V с открытой адресацией (линейное пробирование).
+ *  Ключи не упаковываются в Integer, на элемент не создается Map.Entry.
+ *
+ *  Ключ 0 служит маркером пустой ячейки, поэтому хранится отдельно.
+ */
+public final class IntObjectHashMap<V> {
+
+    /** Обход пар ключ-значение без упаковки ключа. */
+    @FunctionalInterface
+    public interface Visitor<V> {
+        void accept(int key, V value);
+    }
+
+    private static final float LOAD_FACTOR = 0.5f;
+
+    private int[] keys;
+    private Object[] values;
+    private int mask;
+    private int size;
+    private int threshold;
+
+    private boolean hasZeroKey;
+    private V zeroValue;
+
+    public IntObjectHashMap() {
+        this(16);
+    }
+
+    public IntObjectHashMap(int expectedSize) {
+        allocate(tableSizeFor(expectedSize));
+    }
+
+    public V get(int key) {
+        if (key == 0) {
+            return hasZeroKey ? zeroValue : null;
+        }
+        int slot = slot(key);
+        while (true) {
+            int k = keys[slot];
+            if (k == key) {
+                return value(slot);
+            }
+            if (k == 0) {
+                return null;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    public boolean containsKey(int key) {
+        if (key == 0) {
+            return hasZeroKey;
+        }
+        int slot = slot(key);
+        while (true) {
+            int k = keys[slot];
+            if (k == key) {
+                return true;
+            }
+            if (k == 0) {
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    public V put(int key, V value) {
+        if (key == 0) {
+            V previous = zeroValue;
+            if (!hasZeroKey) {
+                hasZeroKey = true;
+                size++;
+            }
+            zeroValue = value;
+            return previous;
+        }
+        int slot = slot(key);
+        while (true) {
+            int k = keys[slot];
+            if (k == key) {
+                V previous = value(slot);
+                values[slot] = value;
+                return previous;
+            }
+            if (k == 0) {
+                keys[slot] = key;
+                values[slot] = value;
+                if (++size > threshold) {
+                    rehash();
+                }
+                return null;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    public V computeIfAbsent(int key, IntFunction<? extends V> factory) {
+        if (key == 0) {
+            if (!hasZeroKey) {
+                hasZeroKey = true;
+                zeroValue = factory.apply(0);
+                size++;
+            }
+            return zeroValue;
+        }
+        int slot = slot(key);
+        while (true) {
+            int k = keys[slot];
+            if (k == key) {
+                return value(slot);
+            }
+            if (k == 0) {
+                V value = factory.apply(key);
+                keys[slot] = key;
+                values[slot] = value;
+                if (++size > threshold) {
+                    rehash();
+                }
+                return value;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    /** Переносит все пары из other, совпадающие ключи сливаются функцией merge. */
+    public void mergeAll(IntObjectHashMap<V> other, BinaryOperator<V> merge) {
+        other.forEach((key, value) -> {
+            V current = get(key);
+            put(key, current == null ? value : merge.apply(current, value));
+        });
+    }
+
+    public void forEach(Visitor<? super V> visitor) {
+        if (hasZeroKey) {
+            visitor.accept(0, zeroValue);
+        }
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (keys[slot] != 0) {
+                visitor.accept(keys[slot], value(slot));
+            }
+        }
+    }
+
+    public int[] keys() {
+        int[] result = new int[size];
+        int i = 0;
+        if (hasZeroKey) {
+            result[i++] = 0;
+        }
+        for (int k : keys) {
+            if (k != 0) {
+                result[i++] = k;
+            }
+        }
+        return result;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("{");
+        forEach((key, value) -> {
+            if (sb.length() > 1) {
+                sb.append(", ");
+            }
+            sb.append(key).append('=').append(value);
+        });
+        return sb.append('}').toString();
+    }
+
+    @SuppressWarnings("unchecked")
+    private V value(int slot) {
+        return (V) values[slot];
+    }
+
+    private int slot(int key) {
+        int h = key * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        values = new Object[capacity];
+        mask = capacity - 1;
+        threshold = (int) (capacity * LOAD_FACTOR);
+    }
+
+    private void rehash() {
+        int[] oldKeys = keys;
+        Object[] oldValues = values;
+        allocate(keys.length << 1);
+        for (int i = 0; i < oldKeys.length; i++) {
+            int key = oldKeys[i];
+            if (key != 0) {
+                int slot = slot(key);
+                while (keys[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = key;
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    static int tableSizeFor(int expectedSize) {
+        long required = Math.max(4L, (long) Math.ceil(expectedSize / (double) LOAD_FACTOR));
+        if (required > (1 << 30)) {
+            throw new IllegalArgumentException("Too many keys: " + expectedSize);
+        }
+        return Integer.highestOneBit((int) required - 1) << 1;
+    }
+}
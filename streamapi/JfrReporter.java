@@ -0,0 +1,92 @@
+package streamapi;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ *  PipelineListener, который пишет отчеты в JFR: событие streamapi.Pipeline на конвейер
+ *  и streamapi.Stage на каждую стадию. События видны в JDK Mission Control, если запись включена:
+ *
+ *      java -XX:StartFlightRecording=filename=streams.jfr ...
+ *      jfr print --events streamapi.Stage streams.jfr
+ */
+public final class JfrReporter implements PipelineListener {
+
+    @Override
+    public void onReport(PipelineReport report) {
+        PipelineEvent pipeline = new PipelineEvent();
+        if (pipeline.isEnabled()) {
+            pipeline.pipeline = report.pipeline();
+            pipeline.splits = report.splits();
+            pipeline.steals = report.steals();
+            pipeline.commit();
+        }
+        for (PipelineReport.Stage stage : report.stages()) {
+            StageEvent event = new StageEvent();
+            if (!event.isEnabled()) {
+                return;
+            }
+            event.pipeline = report.pipeline();
+            event.stage = stage.name();
+            event.kind = stage.kind();
+            event.in = stage.in();
+            event.out = stage.out();
+            event.time = stage.nanos();
+            event.allocated = stage.allocatedBytes();
+            event.commit();
+        }
+    }
+
+    @Name("streamapi.Pipeline")
+    @Label("Stream Pipeline")
+    @Category("Stream API")
+    @StackTrace(false)
+    static final class PipelineEvent extends Event {
+
+        @Label("Pipeline")
+        String pipeline;
+
+        @Label("Splits")
+        long splits;
+
+        @Label("Steals")
+        @Description("Source parts traversed by a thread other than the one that split them")
+        long steals;
+    }
+
+    @Name("streamapi.Stage")
+    @Label("Stream Stage")
+    @Category("Stream API")
+    @StackTrace(false)
+    static final class StageEvent extends Event {
+
+        @Label("Pipeline")
+        String pipeline;
+
+        @Label("Stage")
+        String stage;
+
+        @Label("Kind")
+        String kind;
+
+        @Label("Elements In")
+        long in;
+
+        @Label("Elements Out")
+        long out;
+
+        @Label("Time In Lambda")
+        @Timespan(Timespan.NANOSECONDS)
+        long time;
+
+        @Label("Allocated")
+        @DataAmount(DataAmount.BYTES)
+        long allocated;
+    }
+}
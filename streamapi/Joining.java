@@ -0,0 +1,409 @@
+package streamapi;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.ObjIntConsumer;
+import java.util.function.ObjLongConsumer;
+import java.util.function.Supplier;
+import java.util.stream.Collector;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+/**
+ *  joining (Collectors п.7.1-7.3) прямо в Appendable: StringBuilder, Writer, CharBuffer.
+ *
+ *  Collectors.joining строит StringBuilder, потом String, а map(String::valueOf) - еще строку
+ *  на каждый элемент. Здесь числа форматируются без строк, элементы пишутся через Formatter:
+ *
+ *   - join(stream, ...) и ints/longs(...).collect(stream) на последовательном стриме пишут прямо
+ *     в target, без промежуточных буферов;
+ *   - в параллельном стриме (и в to(...) как Collector - он не знает режим стрима) каждая часть
+ *     копит символьные блоки, части склеиваются переносом ссылок на блоки, и в конце блоки один раз
+ *     копируются в target. Буферы нужны только ради порядка частей.
+ *
+ *      StringBuilder sb = Joining.pooledBuilder();
+ *      Joining.ints(sb, "-", "<", ">").collect(IntStream.rangeClosed(1, 4));       // <1-2-3-4>
+ *
+ *      Joining.join(rows.stream(), writer, "\n", "", "\n",
+ *              (row, out) -> out.append(row.id).append(',').append(row.name));
+ *
+ *  Результат - сам target (к нему дописывается). CharBuffer без места бросает BufferOverflowException,
+ *  ошибки Writer оборачиваются в UncheckedIOException.
+ */
+public final class Joining {
+
+    private static final ThreadLocal<StringBuilder> POOL = ThreadLocal.withInitial(() -> new StringBuilder(1024));
+
+    private Joining() {
+    }
+
+    /** Записывает элемент в Sink без промежуточных строк. */
+    @FunctionalInterface
+    public interface Formatter<T> {
+        void format(T element, Sink out);
+    }
+
+    /**
+     *  StringBuilder текущего потока, очищенный перед выдачей. Годится, пока результат
+     *  не нужен после следующего вызова pooledBuilder() в этом же потоке.
+     */
+    public static StringBuilder pooledBuilder() {
+        StringBuilder sb = POOL.get();
+        sb.setLength(0);
+        return sb;
+    }
+
+    // ------------------------------------------------------------------ коллекторы
+
+    /** Аналог joining(delimiter, prefix, suffix) для CharSequence; копит блоки, см. описание класса. */
+    public static <T extends CharSequence, A extends Appendable> Collector<T, ?, A> to(
+            A target, CharSequence delimiter, CharSequence prefix, CharSequence suffix) {
+        return to(target, delimiter, prefix, suffix, (element, out) -> out.append(element));
+    }
+
+    public static <T, A extends Appendable> Collector<T, ?, A> to(
+            A target, CharSequence delimiter, CharSequence prefix, CharSequence suffix,
+            Formatter<? super T> formatter) {
+        return Collector.of(
+                () -> new Part(delimiter),
+                (part, element) -> formatter.format(element, part.next()),
+                Part::merge,
+                part -> part.writeTo(target, prefix, suffix));
+    }
+
+    /** Последовательный стрим - прямо в target, параллельный - через блоки частей, как to(...). */
+    public static <T extends CharSequence, A extends Appendable> A join(
+            Stream<T> stream, A target, CharSequence delimiter, CharSequence prefix, CharSequence suffix) {
+        return join(stream, target, delimiter, prefix, suffix, (element, out) -> out.append(element));
+    }
+
+    public static <T, A extends Appendable> A join(
+            Stream<T> stream, A target, CharSequence delimiter, CharSequence prefix, CharSequence suffix,
+            Formatter<? super T> formatter) {
+        if (stream.isParallel()) {
+            return stream.collect(to(target, delimiter, prefix, suffix, formatter));
+        }
+        Part part = Part.direct(target, delimiter, prefix);
+        stream.forEach(element -> formatter.format(element, part.next()));
+        return part.finish(target, suffix);
+    }
+
+    /**
+     *  Аналог mapToObj(String::valueOf).collect(joining(...)) без строк на элемент.
+     *  collect(stream) последовательного стрима пишет прямо в target.
+     */
+    public static <A extends Appendable> IntCollector<?, A> ints(
+            A target, CharSequence delimiter, CharSequence prefix, CharSequence suffix) {
+        ObjIntConsumer<Part> accumulator = (part, value) -> part.next().append(value);
+        return new IntCollector<Part, A>() {
+            @Override
+            public Supplier<Part> supplier() {
+                return () -> new Part(delimiter);
+            }
+
+            @Override
+            public ObjIntConsumer<Part> accumulator() {
+                return accumulator;
+            }
+
+            @Override
+            public BiConsumer<Part, Part> combiner() {
+                return Part::merge;
+            }
+
+            @Override
+            public Function<Part, A> finisher() {
+                return part -> part.writeTo(target, prefix, suffix);
+            }
+
+            @Override
+            public A collect(IntStream stream) {
+                if (stream.isParallel()) {
+                    return IntCollector.super.collect(stream);
+                }
+                Part part = Part.direct(target, delimiter, prefix);
+                stream.forEach(value -> part.next().append(value));
+                return part.finish(target, suffix);
+            }
+        };
+    }
+
+    public static <A extends Appendable> LongCollector<?, A> longs(
+            A target, CharSequence delimiter, CharSequence prefix, CharSequence suffix) {
+        ObjLongConsumer<Part> accumulator = (part, value) -> part.next().append(value);
+        return new LongCollector<Part, A>() {
+            @Override
+            public Supplier<Part> supplier() {
+                return () -> new Part(delimiter);
+            }
+
+            @Override
+            public ObjLongConsumer<Part> accumulator() {
+                return accumulator;
+            }
+
+            @Override
+            public BiConsumer<Part, Part> combiner() {
+                return Part::merge;
+            }
+
+            @Override
+            public Function<Part, A> finisher() {
+                return part -> part.writeTo(target, prefix, suffix);
+            }
+
+            @Override
+            public A collect(LongStream stream) {
+                if (stream.isParallel()) {
+                    return LongCollector.super.collect(stream);
+                }
+                Part part = Part.direct(target, delimiter, prefix);
+                stream.forEach(value -> part.next().append(value));
+                return part.finish(target, suffix);
+            }
+        };
+    }
+
+    /**
+     *  Часть результата: Sink и признак, что элементов еще не было (для разделителя).
+     *  direct - единственная часть последовательного стрима, Sink пишет прямо в target.
+     */
+    private static final class Part {
+
+        private final CharSequence delimiter;
+        private final Sink sink;
+        private boolean empty = true;
+
+        Part(CharSequence delimiter) {
+            this(delimiter, new Sink(null));
+        }
+
+        private Part(CharSequence delimiter, Sink sink) {
+            this.delimiter = delimiter;
+            this.sink = sink;
+        }
+
+        static Part direct(Appendable target, CharSequence delimiter, CharSequence prefix) {
+            Part part = new Part(delimiter, new Sink(target));
+            part.sink.append(prefix);
+            return part;
+        }
+
+        <A extends Appendable> A finish(A target, CharSequence suffix) {
+            sink.append(suffix);
+            return target;
+        }
+
+        Sink next() {
+            if (empty) {
+                empty = false;
+            } else {
+                sink.append(delimiter);
+            }
+            return sink;
+        }
+
+        /** Всегда в this: в IntCollector/LongCollector комбайнер - BiConsumer, результат не используется. */
+        Part merge(Part right) {
+            if (right.empty) {
+                return this;
+            }
+            if (empty) {
+                empty = false;
+            } else {
+                sink.append(delimiter);
+            }
+            sink.appendAll(right.sink);
+            return this;
+        }
+
+        /** Блоки части в target - финишер коллектора и параллельного стрима. */
+        <A extends Appendable> A writeTo(A target, CharSequence prefix, CharSequence suffix) {
+            try {
+                target.append(prefix);
+                sink.writeTo(target);
+                target.append(suffix);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return target;
+        }
+    }
+
+    // ------------------------------------------------------------------------ Sink
+
+    /**
+     *  Куда Formatter пишет элемент. В последовательном join - прямо в target (цифры чисел
+     *  собираются в маленьком буфере и пишутся одним вызовом), в частях параллельного стрима -
+     *  цепочка символьных блоков: блоки растут от 256 до 64К символов, заполненный блок не копируется.
+     */
+    public static final class Sink {
+
+        private static final int FIRST_CHUNK = 256;
+        private static final int MAX_CHUNK = 1 << 16;
+
+        /** Цифр в long с минусом. */
+        private static final int MAX_DIGITS = 20;
+
+        private final Appendable target;
+        private final List<char[]> chunks = new ArrayList<>();
+        private final IntArrayList lengths = new IntArrayList();
+        private char[] current;
+        private int position;
+        private long length;
+
+        /** target == null - блоки. */
+        private Sink(Appendable target) {
+            this.target = target;
+            if (target != null) {
+                current = new char[MAX_DIGITS];
+            }
+        }
+
+        public Sink append(char c) {
+            if (target != null) {
+                try {
+                    target.append(c);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                length++;
+                return this;
+            }
+            ensure(1);
+            current[position++] = c;
+            length++;
+            return this;
+        }
+
+        public Sink append(CharSequence s) {
+            int n = s.length();
+            if (target != null) {
+                try {
+                    target.append(s);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                length += n;
+                return this;
+            }
+            ensure(n);
+            if (s instanceof String) {
+                ((String) s).getChars(0, n, current, position);
+            } else {
+                for (int i = 0; i < n; i++) {
+                    current[position + i] = s.charAt(i);
+                }
+            }
+            position += n;
+            length += n;
+            return this;
+        }
+
+        public Sink append(int value) {
+            return append((long) value);
+        }
+
+        public Sink append(long value) {
+            int digits = digits(value);
+            if (target == null) {
+                ensure(digits);
+            }
+            int end = position + digits;
+            int i = end;
+            // в отрицательных числах, чтобы не споткнуться о Long.MIN_VALUE
+            long v = value < 0 ? value : -value;
+            do {
+                current[--i] = (char) ('0' - (int) (v % 10));
+                v /= 10;
+            } while (v != 0);
+            if (value < 0) {
+                current[--i] = '-';
+            }
+            length += digits;
+            if (target != null) {
+                try {
+                    put(target, current, 0, digits);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                return this;
+            }
+            position = end;
+            return this;
+        }
+
+        /** Число символов. */
+        public long length() {
+            return length;
+        }
+
+        private static int digits(long value) {
+            int n = value < 0 ? 2 : 1;
+            long v = value < 0 ? value : -value;
+            while (v <= -10) {
+                v /= 10;
+                n++;
+            }
+            return n;
+        }
+
+        private void ensure(int n) {
+            if (current != null && current.length - position >= n) {
+                return;
+            }
+            int size = current == null ? FIRST_CHUNK : Math.min(MAX_CHUNK, current.length << 1);
+            seal();
+            current = new char[Math.max(n, size)];
+        }
+
+        private void seal() {
+            if (current != null && position > 0) {
+                chunks.add(current);
+                lengths.add(position);
+            }
+            current = null;
+            position = 0;
+        }
+
+        /** Забирает блоки right к себе, не копируя символы. */
+        void appendAll(Sink right) {
+            seal();
+            right.seal();
+            chunks.addAll(right.chunks);
+            lengths.addAll(right.lengths);
+            length += right.length;
+        }
+
+        /** Только для блоков: у Sink последовательного join символы уже в target. */
+        void writeTo(Appendable target) throws IOException {
+            seal();
+            if (target instanceof StringBuilder) {
+                StringBuilder sb = (StringBuilder) target;
+                sb.ensureCapacity((int) Math.min(Integer.MAX_VALUE - 8, sb.length() + length));
+            }
+            for (int i = 0; i < chunks.size(); i++) {
+                put(target, chunks.get(i), 0, lengths.get(i));
+            }
+        }
+
+        private static void put(Appendable target, char[] chars, int from, int n) throws IOException {
+            if (target instanceof StringBuilder) {
+                ((StringBuilder) target).append(chars, from, n);
+            } else if (target instanceof Writer) {
+                ((Writer) target).write(chars, from, n);
+            } else if (target instanceof CharBuffer) {
+                ((CharBuffer) target).put(chars, from, n);
+            } else {
+                target.append(CharBuffer.wrap(chars, from, n));
+            }
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package streamapi;
+
+import java.util.Comparator;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.DoubleConsumer;
+import java.util.function.IntConsumer;
+import java.util.function.LongConsumer;
+
+/**
+ *  Делится, пока в части больше leafSize элементов. Параллельный стрим сам останавливает деление
+ *  на size / (4 * parallelism); для дешевых лямбд такие части слишком мелкие - накладные расходы
+ *  на задачи больше самой работы. Обертка только укрупняет части, мельче они не станут.
+ */
+abstract class LeafSpliterator<T, S extends Spliterator<T>> implements Spliterator<T> {
+
+    final S s;
+    final long leafSize;
+
+    LeafSpliterator(S s, long leafSize) {
+        this.s = s;
+        this.leafSize = leafSize;
+    }
+
+    abstract S wrap(S prefix);
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public S trySplit() {
+        if (s.estimateSize() <= leafSize) {
+            return null;
+        }
+        S prefix = (S) s.trySplit();
+        return prefix == null ? null : wrap(prefix);
+    }
+
+    @Override
+    public long estimateSize() {
+        return s.estimateSize();
+    }
+
+    @Override
+    public long getExactSizeIfKnown() {
+        return s.getExactSizeIfKnown();
+    }
+
+    @Override
+    public int characteristics() {
+        return s.characteristics();
+    }
+
+    @Override
+    public Comparator<? super T> getComparator() {
+        return s.getComparator();
+    }
+
+    static final class OfRef<T> extends LeafSpliterator<T, Spliterator<T>> {
+
+        OfRef(Spliterator<T> s, long leafSize) {
+            super(s, leafSize);
+        }
+
+        @Override
+        Spliterator<T> wrap(Spliterator<T> prefix) {
+            return new OfRef<>(prefix, leafSize);
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super T> action) {
+            return s.tryAdvance(action);
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super T> action) {
+            s.forEachRemaining(action);
+        }
+    }
+
+    static final class OfInt extends LeafSpliterator<Integer, Spliterator.OfInt> implements Spliterator.OfInt {
+
+        OfInt(Spliterator.OfInt s, long leafSize) {
+            super(s, leafSize);
+        }
+
+        @Override
+        Spliterator.OfInt wrap(Spliterator.OfInt prefix) {
+            return new LeafSpliterator.OfInt(prefix, leafSize);
+        }
+
+        @Override
+        public Spliterator.OfInt trySplit() {
+            return super.trySplit();
+        }
+
+        @Override
+        public boolean tryAdvance(IntConsumer action) {
+            return s.tryAdvance(action);
+        }
+
+        @Override
+        public void forEachRemaining(IntConsumer action) {
+            s.forEachRemaining(action);
+        }
+    }
+
+    static final class OfLong extends LeafSpliterator<Long, Spliterator.OfLong> implements Spliterator.OfLong {
+
+        OfLong(Spliterator.OfLong s, long leafSize) {
+            super(s, leafSize);
+        }
+
+        @Override
+        Spliterator.OfLong wrap(Spliterator.OfLong prefix) {
+            return new LeafSpliterator.OfLong(prefix, leafSize);
+        }
+
+        @Override
+        public Spliterator.OfLong trySplit() {
+            return super.trySplit();
+        }
+
+        @Override
+        public boolean tryAdvance(LongConsumer action) {
+            return s.tryAdvance(action);
+        }
+
+        @Override
+        public void forEachRemaining(LongConsumer action) {
+            s.forEachRemaining(action);
+        }
+    }
+
+    static final class OfDouble extends LeafSpliterator<Double, Spliterator.OfDouble> implements Spliterator.OfDouble {
+
+        OfDouble(Spliterator.OfDouble s, long leafSize) {
+            super(s, leafSize);
+        }
+
+        @Override
+        Spliterator.OfDouble wrap(Spliterator.OfDouble prefix) {
+            return new LeafSpliterator.OfDouble(prefix, leafSize);
+        }
+
+        @Override
+        public Spliterator.OfDouble trySplit() {
+            return super.trySplit();
+        }
+
+        @Override
+        public boolean tryAdvance(DoubleConsumer action) {
+            return s.tryAdvance(action);
+        }
+
+        @Override
+        public void forEachRemaining(DoubleConsumer action) {
+            s.forEachRemaining(action);
+        }
+    }
+}
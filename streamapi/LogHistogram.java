@@ -0,0 +1,110 @@
+package streamapi;
+
+/**
+ *  Логарифмическая гистограмма для перцентилей: корзина определяется экспонентой double
+ *  и старшими SUB_BITS битами мантиссы, так что ширина корзины - не больше 1/128 значения.
+ *  Представитель корзины - ее середина, поэтому относительная ошибка меньше 0.4%.
+ *
+ *  Гистограммы частей параллельного стрима сливаются сложением счетчиков, без потери точности.
+ *  Массивы мантисс выделяются только для встретившихся экспонент.
+ */
+final class LogHistogram {
+
+    private static final int SUB_BITS = 7;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int MANTISSA_SHIFT = 52 - SUB_BITS;
+    private static final int EXPONENTS = 2048;
+
+    private final long[][] positive = new long[EXPONENTS][];
+    private final long[][] negative = new long[EXPONENTS][];
+    private long zeros;
+    private long nans;
+
+    void add(double x) {
+        if (x == 0) {
+            zeros++;
+            return;
+        }
+        if (x != x) {
+            nans++;
+            return;
+        }
+        long bits = Double.doubleToRawLongBits(x);
+        int exponent = (int) (bits >>> 52) & (EXPONENTS - 1);
+        int sub = (int) (bits >>> MANTISSA_SHIFT) & (SUB_BUCKETS - 1);
+        long[][] side = bits < 0 ? negative : positive;
+        long[] row = side[exponent];
+        if (row == null) {
+            row = side[exponent] = new long[SUB_BUCKETS];
+        }
+        row[sub]++;
+    }
+
+    void merge(LogHistogram other) {
+        zeros += other.zeros;
+        nans += other.nans;
+        mergeSide(positive, other.positive);
+        mergeSide(negative, other.negative);
+    }
+
+    private static void mergeSide(long[][] into, long[][] from) {
+        for (int e = 0; e < EXPONENTS; e++) {
+            long[] row = from[e];
+            if (row == null) {
+                continue;
+            }
+            if (into[e] == null) {
+                into[e] = row.clone();
+            } else {
+                for (int s = 0; s < SUB_BUCKETS; s++) {
+                    into[e][s] += row[s];
+                }
+            }
+        }
+    }
+
+    /**
+     *  Значение с данным рангом (с 1) в порядке возрастания. NaN идут последними,
+     *  как в Double.compare.
+     */
+    double valueAtRank(long rank) {
+        long seen = 0;
+        for (int e = EXPONENTS - 1; e >= 0; e--) {
+            long[] row = negative[e];
+            if (row == null) {
+                continue;
+            }
+            for (int s = SUB_BUCKETS - 1; s >= 0; s--) {
+                seen += row[s];
+                if (seen >= rank) {
+                    return -midpoint(e, s);
+                }
+            }
+        }
+        seen += zeros;
+        if (seen >= rank) {
+            return 0.0;
+        }
+        for (int e = 0; e < EXPONENTS; e++) {
+            long[] row = positive[e];
+            if (row == null) {
+                continue;
+            }
+            for (int s = 0; s < SUB_BUCKETS; s++) {
+                seen += row[s];
+                if (seen >= rank) {
+                    return midpoint(e, s);
+                }
+            }
+        }
+        return Double.NaN;
+    }
+
+    private static double midpoint(int exponent, int sub) {
+        if (exponent == EXPONENTS - 1) {
+            return Double.POSITIVE_INFINITY;
+        }
+        long bits = ((long) exponent << 52) | ((long) sub << MANTISSA_SHIFT) | (1L << (MANTISSA_SHIFT - 1));
+        return Double.longBitsToDouble(bits);
+    }
+}
@@ -0,0 +1,62 @@
+package streamapi;
+
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.ObjLongConsumer;
+import java.util.function.Supplier;
+import java.util.stream.LongStream;
+
+/**
+ *  Аналог java.util.stream.Collector для LongStream (см. IntCollector).
+ *
+ *  @param <A> изменяемый контейнер
+ *  @param <R> результат
+ */
+public interface LongCollector<A, R> {
+
+    Supplier<A> supplier();
+
+    ObjLongConsumer<A> accumulator();
+
+    /** Сливает правый контейнер в левый (нужен для параллельных стримов). */
+    BiConsumer<A, A> combiner();
+
+    Function<A, R> finisher();
+
+    default R collect(LongStream stream) {
+        return finisher().apply(stream.collect(supplier(), accumulator(), combiner()));
+    }
+
+    static <A, R> LongCollector<A, R> of(Supplier<A> supplier,
+                                         ObjLongConsumer<A> accumulator,
+                                         BiConsumer<A, A> combiner,
+                                         Function<A, R> finisher) {
+        return new LongCollector<>() {
+            @Override
+            public Supplier<A> supplier() {
+                return supplier;
+            }
+
+            @Override
+            public ObjLongConsumer<A> accumulator() {
+                return accumulator;
+            }
+
+            @Override
+            public BiConsumer<A, A> combiner() {
+                return combiner;
+            }
+
+            @Override
+            public Function<A, R> finisher() {
+                return finisher;
+            }
+        };
+    }
+
+    static <A> LongCollector<A, A> of(Supplier<A> supplier,
+                                      ObjLongConsumer<A> accumulator,
+                                      BiConsumer<A, A> combiner) {
+        return of(supplier, accumulator, combiner, Function.identity());
+    }
+}
@@ -0,0 +1,489 @@
+package streamapi;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collector;
+import java.util.stream.Stream;
+
+/**
+ *  Бесконечный источник с push-моделью - в дополнение к generate/iterate (источники п.4-6),
+ *  которые опрашиваются по одному элементу в потоке терминальной операции.
+ *
+ *  Производитель вызывает push(element); элементы копятся в ограниченной очереди и
+ *  поток-диспетчер режет их на пачки по batchSize элементов или по maxDelay с первого элемента
+ *  пачки - что наступит раньше. Каждая пачка - обычный Stream, к ней применяются привычные
+ *  filter/map/collect. Если обработка не успевает, очередь заполняется и push блокируется.
+ *
+ *      MicroBatchStream<Event> feed = MicroBatchStream.<Event>builder()
+ *              .capacity(100_000).batchSize(5_000).maxDelay(Duration.ofMillis(50))
+ *              .build();
+ *
+ *      feed.window(Duration.ofSeconds(1),
+ *              s -> s.filter(Event::isError),
+ *              Collectors.groupingBy(Event::type, Collectors.counting()),
+ *              w -> dashboard.publish(w.start(), w.result()));
+ *
+ *      feed.push(event);       // из потока производителя
+ *      feed.close();           // дообработать очередь, закрыть текущие окна
+ *
+ *  window(...) - окна фиксированной длины по времени обработки. Контейнер коллектора живет
+ *  все окно, а каждая пачка сразу накапливается в него - окно не буферизуется в List.
+ *  Окна, в которые не пришло ни одной пачки, пропускаются.
+ *
+ *  Поток-диспетчер стартует при первом push/offer или явном start(), а не в build(): обработчики
+ *  регистрируются до запуска и первую пачку видят все. close() ждет завершения начатых push/offer,
+ *  и только потом ставит в очередь метку конца - принятый элемент не остается за ней необработанным;
+ *  push/offer после close() бросают IllegalStateException.
+ *
+ *  Обработчики вызываются по очереди в потоке-диспетчере. Исключение обработчика останавливает
+ *  стрим: следующие push бросают IllegalStateException с ним в качестве причины.
+ */
+public final class MicroBatchStream<T> implements AutoCloseable {
+
+    private static final Object END = new Object();
+
+    private final BlockingQueue<Object> queue;
+    private final int batchSize;
+    private final long maxDelayNanos;
+    private final boolean parallel;
+    private final List<Handler<T>> handlers = new CopyOnWriteArrayList<>();
+    private final Thread dispatcher;
+    private final AtomicLong elements = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private volatile Throwable failure;
+
+    /** started, closed и active - под lock; active - число выполняющихся push/offer. */
+    private final Object lock = new Object();
+    private boolean started;
+    private boolean closed;
+    private int active;
+
+    private MicroBatchStream(Builder<T> builder) {
+        this.queue = new ArrayBlockingQueue<>(builder.capacity);
+        this.batchSize = builder.batchSize;
+        this.maxDelayNanos = builder.maxDelay.toNanos();
+        this.parallel = builder.parallel;
+        this.dispatcher = new Thread(this::dispatch, builder.threadName);
+        this.dispatcher.setDaemon(true);
+    }
+
+    public static <T> Builder<T> builder() {
+        return new Builder<>();
+    }
+
+    // ----------------------------------------------------------------- обработчики
+
+    /** pipeline применяется к каждой пачке, результат отдается в sink. */
+    public <R> MicroBatchStream<T> onBatch(Function<? super Stream<T>, ? extends R> pipeline, Consumer<? super R> sink) {
+        handlers.add(new Handler<T>() {
+            @Override
+            void batch(Stream<T> batch, long now) {
+                sink.accept(pipeline.apply(batch));
+            }
+        });
+        return this;
+    }
+
+    /** Окна длины size: pipeline на каждой пачке, результат собирается collector до конца окна. */
+    public <R, A, W> MicroBatchStream<T> window(Duration size, Function<? super Stream<T>, ? extends Stream<R>> pipeline,
+                                                Collector<? super R, A, W> collector,
+                                                Consumer<? super Window<W>> sink) {
+        long sizeNanos = size.toNanos();
+        if (sizeNanos <= 0) {
+            throw new IllegalArgumentException("size: " + size);
+        }
+        handlers.add(new WindowHandler<>(sizeNanos, pipeline, collector, sink));
+        return this;
+    }
+
+    /** Окна без преобразования элементов. */
+    public <A, W> MicroBatchStream<T> window(Duration size, Collector<? super T, A, W> collector,
+                                             Consumer<? super Window<W>> sink) {
+        return window(size, Function.identity(), collector, sink);
+    }
+
+    // ------------------------------------------------------------------ производитель
+
+    /** Запускает поток-диспетчер, если он еще не запущен; push/offer делают это сами. */
+    public MicroBatchStream<T> start() {
+        synchronized (lock) {
+            checkOpen();
+            startDispatcher();
+        }
+        return this;
+    }
+
+    /** Блокируется, пока в очереди нет места. */
+    public void push(T element) throws InterruptedException {
+        enter();
+        try {
+            // не put: диспетчер, упавший на обработчике, место в очереди уже не освободит
+            while (!queue.offer(element, 10, TimeUnit.MILLISECONDS)) {
+                checkRunning();
+            }
+        } finally {
+            leave();
+        }
+    }
+
+    /** false, если место не освободилось за timeout. */
+    public boolean offer(T element, long timeout, TimeUnit unit) throws InterruptedException {
+        enter();
+        try {
+            return queue.offer(element, timeout, unit);
+        } finally {
+            leave();
+        }
+    }
+
+    /**
+     *  Дожидается начатых push/offer, дообрабатывает принятые элементы, закрывает окна
+     *  и останавливает диспетчер. Прерывание не обрывает ожидание - флаг прерывания восстанавливается.
+     */
+    @Override
+    public void close() {
+        boolean interrupted = false;
+        boolean running;
+        synchronized (lock) {
+            closed = true;
+            while (active > 0) {
+                try {
+                    lock.wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            running = started;
+        }
+        // новых элементов больше не будет: END встает после всех принятых
+        while (running && dispatcher.isAlive()) {
+            try {
+                if (queue.offer(END, 10, TimeUnit.MILLISECONDS)) {
+                    break;
+                }
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        while (running) {
+            try {
+                dispatcher.join();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        if (failure != null) {
+            throw new IllegalStateException("Batch handler failed", failure);
+        }
+    }
+
+    /** Элементов ждут обработки в очереди. */
+    public int queued() {
+        return queue.size();
+    }
+
+    public long elements() {
+        return elements.get();
+    }
+
+    public long batches() {
+        return batches.get();
+    }
+
+    private void enter() {
+        synchronized (lock) {
+            checkOpen();
+            startDispatcher();
+            active++;
+        }
+    }
+
+    private void leave() {
+        synchronized (lock) {
+            if (--active == 0) {
+                lock.notifyAll();
+            }
+        }
+    }
+
+    /** Под lock. */
+    private void checkOpen() {
+        if (failure != null) {
+            throw new IllegalStateException("Batch handler failed", failure);
+        }
+        if (closed) {
+            throw new IllegalStateException("Stream is closed");
+        }
+    }
+
+    /** Под lock. */
+    private void startDispatcher() {
+        if (!started) {
+            started = true;
+            dispatcher.start();
+        }
+    }
+
+    private void checkRunning() {
+        if (failure != null) {
+            throw new IllegalStateException("Batch handler failed", failure);
+        }
+        if (!dispatcher.isAlive()) {
+            throw new IllegalStateException("Dispatcher stopped");
+        }
+    }
+
+    // --------------------------------------------------------------------- диспетчер
+
+    @SuppressWarnings("unchecked")
+    private void dispatch() {
+        List<T> batch = new ArrayList<>(batchSize);
+        long deadline = 0;
+        boolean end = false;
+        try {
+            while (!end) {
+                long now = System.nanoTime();
+                tick(now);
+                Object next = queue.poll(batch.isEmpty() ? idleWait(now) : deadline - now, TimeUnit.NANOSECONDS);
+                if (next == END) {
+                    end = true;
+                } else if (next != null) {
+                    if (batch.isEmpty()) {
+                        deadline = System.nanoTime() + maxDelayNanos;
+                    }
+                    batch.add((T) next);
+                    // забрать уже накопившееся без ожидания
+                    while (batch.size() < batchSize && (next = queue.poll()) != null) {
+                        if (next == END) {
+                            end = true;
+                            break;
+                        }
+                        batch.add((T) next);
+                    }
+                }
+                if (!batch.isEmpty() && (end || batch.size() >= batchSize || System.nanoTime() - deadline >= 0)) {
+                    fire(batch);
+                    batch = new ArrayList<>(batchSize);
+                }
+            }
+            for (Handler<T> handler : handlers) {
+                handler.close();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException | Error e) {
+            failure = e;
+            queue.clear();
+        }
+    }
+
+    private void fire(List<T> batch) {
+        long now = System.nanoTime();
+        elements.addAndGet(batch.size());
+        batches.incrementAndGet();
+        for (Handler<T> handler : handlers) {
+            handler.batch(parallel ? batch.parallelStream() : batch.stream(), now);
+        }
+    }
+
+    private void tick(long now) {
+        for (Handler<T> handler : handlers) {
+            handler.tick(now);
+        }
+    }
+
+    /** Без начатой пачки ждем до конца ближайшего окна (чтобы закрыть его вовремя). */
+    private long idleWait(long now) {
+        long wait = TimeUnit.SECONDS.toNanos(1);
+        for (Handler<T> handler : handlers) {
+            wait = Math.min(wait, handler.nanosUntilDeadline(now));
+        }
+        return Math.max(0, wait);
+    }
+
+    private abstract static class Handler<T> {
+
+        abstract void batch(Stream<T> batch, long now);
+
+        void tick(long now) {
+        }
+
+        long nanosUntilDeadline(long now) {
+            return Long.MAX_VALUE;
+        }
+
+        void close() {
+        }
+    }
+
+    private static final class WindowHandler<T, R, A, W> extends Handler<T> {
+
+        private final long size;
+        private final Function<? super Stream<T>, ? extends Stream<R>> pipeline;
+        private final Supplier<A> supplier;
+        private final BiConsumer<A, ? super R> accumulator;
+        private final Function<A, W> finisher;
+        private final Consumer<? super Window<W>> sink;
+        private A container;
+        private long startNanos;
+        private Instant start;
+        private long count;
+
+        WindowHandler(long size, Function<? super Stream<T>, ? extends Stream<R>> pipeline,
+                      Collector<? super R, A, W> collector, Consumer<? super Window<W>> sink) {
+            this.size = size;
+            this.pipeline = pipeline;
+            this.supplier = collector.supplier();
+            this.accumulator = collector.accumulator();
+            this.finisher = collector.finisher();
+            this.sink = sink;
+        }
+
+        @Override
+        void batch(Stream<T> batch, long now) {
+            tick(now);
+            if (container == null) {
+                container = supplier.get();
+                startNanos = now;
+                start = Instant.now();
+                count = 0;
+            }
+            // пачка идет последовательно в один контейнер окна; parallel() пачки распараллелит pipeline
+            pipeline.apply(batch).forEachOrdered(r -> {
+                accumulator.accept(container, r);
+                count++;
+            });
+        }
+
+        @Override
+        void tick(long now) {
+            if (container != null && now - startNanos >= size) {
+                emit();
+            }
+        }
+
+        @Override
+        long nanosUntilDeadline(long now) {
+            return container == null ? Long.MAX_VALUE : startNanos + size - now;
+        }
+
+        @Override
+        void close() {
+            if (container != null) {
+                emit();
+            }
+        }
+
+        private void emit() {
+            A finished = container;
+            container = null;
+            sink.accept(new Window<>(start, start.plusNanos(size), count, finisher.apply(finished)));
+        }
+    }
+
+    // ------------------------------------------------------------------------- окно
+
+    public static final class Window<W> {
+
+        private final Instant start;
+        private final Instant end;
+        private final long count;
+        private final W result;
+
+        Window(Instant start, Instant end, long count, W result) {
+            this.start = start;
+            this.end = end;
+            this.count = count;
+            this.result = result;
+        }
+
+        public Instant start() {
+            return start;
+        }
+
+        public Instant end() {
+            return end;
+        }
+
+        /** Элементов, дошедших до коллектора. */
+        public long count() {
+            return count;
+        }
+
+        public W result() {
+            return result;
+        }
+
+        @Override
+        public String toString() {
+            return "Window[" + start + ", " + end + ") count=" + count + " " + result;
+        }
+    }
+
+    // ------------------------------------------------------------------------ билдер
+
+    public static final class Builder<T> {
+
+        private int capacity = 65_536;
+        private int batchSize = 1_024;
+        private Duration maxDelay = Duration.ofMillis(100);
+        private boolean parallel;
+        private String threadName = "streamapi-microbatch";
+
+        private Builder() {
+        }
+
+        /** Размер очереди; при заполнении push блокируется. */
+        public Builder<T> capacity(int capacity) {
+            if (capacity <= 0) {
+                throw new IllegalArgumentException("capacity: " + capacity);
+            }
+            this.capacity = capacity;
+            return this;
+        }
+
+        public Builder<T> batchSize(int batchSize) {
+            if (batchSize <= 0) {
+                throw new IllegalArgumentException("batchSize: " + batchSize);
+            }
+            this.batchSize = batchSize;
+            return this;
+        }
+
+        public Builder<T> maxDelay(Duration maxDelay) {
+            this.maxDelay = maxDelay;
+            return this;
+        }
+
+        /** Пачка передается обработчикам как parallelStream(). */
+        public Builder<T> parallel(boolean parallel) {
+            this.parallel = parallel;
+            return this;
+        }
+
+        public Builder<T> threadName(String threadName) {
+            this.threadName = threadName;
+            return this;
+        }
+
+        /** Поток-диспетчер запустится при первом push/offer или start(). */
+        public MicroBatchStream<T> build() {
+            return new MicroBatchStream<>(this);
+        }
+    }
+}
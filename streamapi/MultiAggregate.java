@@ -0,0 +1,503 @@
+package streamapi;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
+import java.util.stream.Collector;
+
+/**
+ *  Несколько агрегатов за один проход: summingX (Collectors п.8), averagingX (п.9), summarizingX (п.10),
+ *  counting (п.11), minBy/maxBy (п.12) плюс дисперсия, перцентили и число различных значений.
+ *
+ *  IntSummaryStatistics считает фиксированный набор полей; здесь набор задается билдером,
+ *  и вычисляется только запрошенное. Аккумулятор не упаковывает значения: для int/long
+ *  сумма, минимум и максимум точные (long), для double - сумма с компенсацией (Кэхэн).
+ *
+ *      MultiAggregate stats = MultiAggregate.builder()
+ *              .count().sum().mean().variance().percentiles(0.5, 0.99).distinctCount()
+ *              .build();
+ *
+ *      MultiAggregate.Result r = stats.ints().collect(IntStream.range(0, 1000).parallel());
+ *      r.percentile(0.99);
+ *
+ *      MultiAggregate.Result amounts = orders.stream().collect(stats.collectingLong(Order::amount));
+ *
+ *  Перцентили считаются по логарифмической гистограмме (относительная ошибка меньше 0.5%),
+ *  число различных значений - по HyperLogLog (стандартная ошибка около 0.8%).
+ *  Оба сливаются в параллельном стриме без потери точности.
+ *
+ *  Чтобы посчитать агрегаты по нескольким полям за один проход, коллекторы объединяются
+ *  через teeing(...) - аналог Collectors.teeing для любого числа коллекторов.
+ */
+public final class MultiAggregate {
+
+    public enum Metric {
+        COUNT, SUM, MIN, MAX, MEAN, VARIANCE, PERCENTILES, DISTINCT_COUNT
+    }
+
+    private final Set<Metric> metrics;
+    private final double[] quantiles;
+    private final boolean variance;
+    private final boolean histogram;
+    private final boolean distinct;
+
+    private MultiAggregate(Set<Metric> metrics, double[] quantiles) {
+        this.metrics = Collections.unmodifiableSet(EnumSet.copyOf(metrics));
+        this.quantiles = quantiles;
+        this.variance = metrics.contains(Metric.VARIANCE);
+        this.histogram = metrics.contains(Metric.PERCENTILES);
+        this.distinct = metrics.contains(Metric.DISTINCT_COUNT);
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public Set<Metric> metrics() {
+        return metrics;
+    }
+
+    // ------------------------------------------------------------------ коллекторы
+
+    public IntCollector<?, Result> ints() {
+        return IntCollector.of(LongAccumulator::new, LongAccumulator::add, LongAccumulator::merge, LongAccumulator::result);
+    }
+
+    public LongCollector<?, Result> longs() {
+        return LongCollector.of(LongAccumulator::new, LongAccumulator::add, LongAccumulator::merge, LongAccumulator::result);
+    }
+
+    public DoubleCollector<?, Result> doubles() {
+        return DoubleCollector.of(DoubleAccumulator::new, DoubleAccumulator::add, DoubleAccumulator::merge,
+                DoubleAccumulator::result);
+    }
+
+    public <T> Collector<T, ?, Result> collectingInt(ToIntFunction<? super T> mapper) {
+        return Collector.of(
+                LongAccumulator::new,
+                (acc, t) -> acc.add(mapper.applyAsInt(t)),
+                (left, right) -> {
+                    left.merge(right);
+                    return left;
+                },
+                LongAccumulator::result);
+    }
+
+    public <T> Collector<T, ?, Result> collectingLong(ToLongFunction<? super T> mapper) {
+        return Collector.of(
+                LongAccumulator::new,
+                (acc, t) -> acc.add(mapper.applyAsLong(t)),
+                (left, right) -> {
+                    left.merge(right);
+                    return left;
+                },
+                LongAccumulator::result);
+    }
+
+    public <T> Collector<T, ?, Result> collectingDouble(ToDoubleFunction<? super T> mapper) {
+        return Collector.of(
+                DoubleAccumulator::new,
+                (acc, t) -> acc.add(mapper.applyAsDouble(t)),
+                (left, right) -> {
+                    left.merge(right);
+                    return left;
+                },
+                DoubleAccumulator::result);
+    }
+
+    /**
+     *  Collectors.teeing для N коллекторов: все получают каждый элемент за один проход,
+     *  результат - список их результатов в порядке аргументов.
+     */
+    @SafeVarargs
+    public static <T> Collector<T, ?, List<Object>> teeing(Collector<? super T, ?, ?>... downstreams) {
+        // поэлементно, а не Arrays.asList(downstreams): сам массив varargs дальше не передается
+        List<Collector<? super T, ?, ?>> list = new ArrayList<>(downstreams.length);
+        for (Collector<? super T, ?, ?> downstream : downstreams) {
+            list.add(downstream);
+        }
+        return MultiAggregate.<T>teeing(list);
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <T> Collector<T, ?, List<Object>> teeing(List<? extends Collector<? super T, ?, ?>> downstreams) {
+        int n = downstreams.size();
+        Supplier<Object>[] suppliers = (Supplier<Object>[]) new Supplier<?>[n];
+        BiConsumer<Object, ? super T>[] accumulators = (BiConsumer<Object, ? super T>[]) new BiConsumer<?, ?>[n];
+        BinaryOperator<Object>[] combiners = (BinaryOperator<Object>[]) new BinaryOperator<?>[n];
+        Function<Object, Object>[] finishers = (Function<Object, Object>[]) new Function<?, ?>[n];
+        for (int i = 0; i < n; i++) {
+            Collector<? super T, Object, Object> c = (Collector<? super T, Object, Object>) downstreams.get(i);
+            suppliers[i] = c.supplier();
+            accumulators[i] = c.accumulator();
+            combiners[i] = c.combiner();
+            finishers[i] = c.finisher();
+        }
+        return Collector.of(
+                () -> {
+                    Object[] containers = new Object[n];
+                    for (int i = 0; i < n; i++) {
+                        containers[i] = suppliers[i].get();
+                    }
+                    return containers;
+                },
+                (containers, t) -> {
+                    for (int i = 0; i < n; i++) {
+                        accumulators[i].accept(containers[i], t);
+                    }
+                },
+                (left, right) -> {
+                    for (int i = 0; i < n; i++) {
+                        left[i] = combiners[i].apply(left[i], right[i]);
+                    }
+                    return left;
+                },
+                containers -> {
+                    List<Object> results = new ArrayList<>(n);
+                    for (int i = 0; i < n; i++) {
+                        results.add(finishers[i].apply(containers[i]));
+                    }
+                    return Collections.unmodifiableList(results);
+                });
+    }
+
+    // -------------------------------------------------------------- аккумуляторы
+
+    /** Общая часть: дисперсия (Уэлфорд), гистограмма и HyperLogLog - только если запрошены. */
+    private abstract class Accumulator {
+
+        long count;
+        double mean;
+        double m2;
+        final LogHistogram histogram = MultiAggregate.this.histogram ? new LogHistogram() : null;
+        final HyperLogLog distinct = MultiAggregate.this.distinct ? new HyperLogLog() : null;
+
+        final void addMoments(double x) {
+            if (histogram != null) {
+                histogram.add(x);
+            }
+            if (variance) {
+                double delta = x - mean;
+                mean += delta / count;
+                m2 += delta * (x - mean);
+            }
+        }
+
+        final void mergeMoments(Accumulator other) {
+            if (variance && other.count > 0) {
+                long total = count + other.count;
+                double delta = other.mean - mean;
+                mean += delta * other.count / total;
+                m2 += other.m2 + delta * delta * ((double) count * other.count / total);
+            }
+            if (histogram != null) {
+                histogram.merge(other.histogram);
+            }
+            if (distinct != null) {
+                distinct.merge(other.distinct);
+            }
+        }
+    }
+
+    private final class LongAccumulator extends Accumulator {
+
+        long sum;
+        long min = Long.MAX_VALUE;
+        long max = Long.MIN_VALUE;
+
+        void add(long x) {
+            count++;
+            sum += x;
+            min = Math.min(min, x);
+            max = Math.max(max, x);
+            addMoments(x);
+            if (distinct != null) {
+                distinct.add(HyperLogLog.hash(x));
+            }
+        }
+
+        void merge(LongAccumulator other) {
+            mergeMoments(other);
+            count += other.count;
+            sum += other.sum;
+            min = Math.min(min, other.min);
+            max = Math.max(max, other.max);
+        }
+
+        Result result() {
+            return new Result(MultiAggregate.this, count, sum, sum, min, max, this);
+        }
+    }
+
+    private final class DoubleAccumulator extends Accumulator {
+
+        double sum;
+        double compensation;
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+
+        void add(double x) {
+            count++;
+            addToSum(x);
+            min = Math.min(min, x);
+            max = Math.max(max, x);
+            addMoments(x);
+            if (distinct != null) {
+                distinct.add(HyperLogLog.hash(Double.doubleToLongBits(x)));
+            }
+        }
+
+        void merge(DoubleAccumulator other) {
+            mergeMoments(other);
+            count += other.count;
+            addToSum(other.sum);
+            addToSum(-other.compensation);
+            min = Math.min(min, other.min);
+            max = Math.max(max, other.max);
+        }
+
+        private void addToSum(double x) {
+            double y = x - compensation;
+            double t = sum + y;
+            compensation = (t - sum) - y;
+            sum = t;
+        }
+
+        Result result() {
+            return new Result(MultiAggregate.this, count, 0L, sum - compensation, min, max, this);
+        }
+    }
+
+    // --------------------------------------------------------------------- результат
+
+    public static final class Result {
+
+        private final MultiAggregate spec;
+        private final long count;
+        private final long longSum;
+        private final double sum;
+        private final Number min;
+        private final Number max;
+        private final double m2;
+        private final LogHistogram histogram;
+        private final HyperLogLog distinct;
+
+        private Result(MultiAggregate spec, long count, long longSum, double sum, Number min, Number max,
+                       Accumulator accumulator) {
+            this.spec = spec;
+            this.count = count;
+            this.longSum = longSum;
+            this.sum = sum;
+            this.min = min;
+            this.max = max;
+            this.m2 = accumulator.m2;
+            this.histogram = accumulator.histogram;
+            this.distinct = accumulator.distinct;
+        }
+
+        public long count() {
+            require(Metric.COUNT);
+            return count;
+        }
+
+        /** Сумма как double (для int/long - приведенная точная сумма). */
+        public double sum() {
+            require(Metric.SUM);
+            return min instanceof Long ? longSum : sum;
+        }
+
+        /** Точная сумма для int/long стримов. */
+        public long longSum() {
+            require(Metric.SUM);
+            if (!(min instanceof Long)) {
+                throw new IllegalStateException("longSum() is only available for int/long values");
+            }
+            return longSum;
+        }
+
+        /** Минимум или NaN для пустого стрима. */
+        public double min() {
+            require(Metric.MIN);
+            return count == 0 ? Double.NaN : min.doubleValue();
+        }
+
+        /** Максимум или NaN для пустого стрима. */
+        public double max() {
+            require(Metric.MAX);
+            return count == 0 ? Double.NaN : max.doubleValue();
+        }
+
+        /** Минимум int/long стрима (Long.MAX_VALUE для пустого, как у LongSummaryStatistics). */
+        public long longMin() {
+            require(Metric.MIN);
+            return min.longValue();
+        }
+
+        /** Максимум int/long стрима (Long.MIN_VALUE для пустого). */
+        public long longMax() {
+            require(Metric.MAX);
+            return max.longValue();
+        }
+
+        /** Среднее или NaN для пустого стрима. */
+        public double mean() {
+            require(Metric.MEAN);
+            if (count == 0) {
+                return Double.NaN;
+            }
+            return (min instanceof Long ? (double) longSum : sum) / count;
+        }
+
+        /** Дисперсия генеральной совокупности (делитель n). */
+        public double variance() {
+            require(Metric.VARIANCE);
+            return count == 0 ? Double.NaN : m2 / count;
+        }
+
+        /** Выборочная дисперсия (делитель n - 1). */
+        public double sampleVariance() {
+            require(Metric.VARIANCE);
+            return count < 2 ? Double.NaN : m2 / (count - 1);
+        }
+
+        public double stdDev() {
+            return Math.sqrt(variance());
+        }
+
+        /** Перцентиль q из [0, 1] (метод ближайшего ранга) или NaN для пустого стрима. */
+        public double percentile(double q) {
+            require(Metric.PERCENTILES);
+            if (q < 0 || q > 1) {
+                throw new IllegalArgumentException("q: " + q);
+            }
+            if (count == 0) {
+                return Double.NaN;
+            }
+            double value = histogram.valueAtRank(Math.max(1, (long) Math.ceil(q * count)));
+            return Math.max(min.doubleValue(), Math.min(max.doubleValue(), value));
+        }
+
+        /** Перцентили, заданные в билдере, в том же порядке. */
+        public double[] percentiles() {
+            double[] result = new double[spec.quantiles.length];
+            for (int i = 0; i < result.length; i++) {
+                result[i] = percentile(spec.quantiles[i]);
+            }
+            return result;
+        }
+
+        /** Оценка числа различных значений. */
+        public long distinctCount() {
+            require(Metric.DISTINCT_COUNT);
+            return distinct.estimate();
+        }
+
+        private void require(Metric metric) {
+            if (!spec.metrics.contains(metric)) {
+                throw new IllegalStateException(metric + " was not requested");
+            }
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder("MultiAggregate.Result{");
+            for (Metric metric : spec.metrics) {
+                if (sb.charAt(sb.length() - 1) != '{') {
+                    sb.append(", ");
+                }
+                switch (metric) {
+                    case COUNT: sb.append("count=").append(count); break;
+                    case SUM: sb.append("sum=").append(min instanceof Long ? (Object) longSum : (Object) sum); break;
+                    case MIN: sb.append("min=").append(count == 0 ? "NaN" : min); break;
+                    case MAX: sb.append("max=").append(count == 0 ? "NaN" : max); break;
+                    case MEAN: sb.append("mean=").append(mean()); break;
+                    case VARIANCE: sb.append("variance=").append(variance()); break;
+                    case PERCENTILES: sb.append("percentiles=").append(Arrays.toString(percentiles())); break;
+                    case DISTINCT_COUNT: sb.append("distinctCount=").append(distinctCount()); break;
+                    default: throw new AssertionError(metric);
+                }
+            }
+            return sb.append('}').toString();
+        }
+    }
+
+    // ----------------------------------------------------------------------- билдер
+
+    public static final class Builder {
+
+        private final Set<Metric> metrics = EnumSet.noneOf(Metric.class);
+        private double[] quantiles = new double[0];
+
+        private Builder() {
+        }
+
+        public Builder count() {
+            metrics.add(Metric.COUNT);
+            return this;
+        }
+
+        public Builder sum() {
+            metrics.add(Metric.SUM);
+            return this;
+        }
+
+        public Builder min() {
+            metrics.add(Metric.MIN);
+            return this;
+        }
+
+        public Builder max() {
+            metrics.add(Metric.MAX);
+            return this;
+        }
+
+        public Builder mean() {
+            metrics.add(Metric.MEAN);
+            return this;
+        }
+
+        public Builder variance() {
+            metrics.add(Metric.VARIANCE);
+            return this;
+        }
+
+        /** Перцентили; percentile(q) результата можно вызывать и для других q. */
+        public Builder percentiles(double... quantiles) {
+            for (double q : quantiles) {
+                if (q < 0 || q > 1) {
+                    throw new IllegalArgumentException("q: " + q);
+                }
+            }
+            metrics.add(Metric.PERCENTILES);
+            this.quantiles = quantiles.clone();
+            return this;
+        }
+
+        public Builder distinctCount() {
+            metrics.add(Metric.DISTINCT_COUNT);
+            return this;
+        }
+
+        /** То же, что дает summaryStatistics(): count, sum, min, max, mean. */
+        public Builder summary() {
+            return count().sum().min().max().mean();
+        }
+
+        public MultiAggregate build() {
+            if (metrics.isEmpty()) {
+                throw new IllegalStateException("No metrics requested");
+            }
+            return new MultiAggregate(metrics, quantiles);
+        }
+    }
+}
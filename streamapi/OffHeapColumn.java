@@ -0,0 +1,447 @@
+package streamapi;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.function.DoubleConsumer;
+import java.util.function.IntConsumer;
+import java.util.function.LongConsumer;
+import java.util.stream.DoubleStream;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+import java.util.stream.StreamSupport;
+
+/**
+ *  Колонка int/long/double вне кучи: в memory-mapped файле или в direct ByteBuffer'ах.
+ *
+ *  Источник (см. "Стримы для примитивов"): вместо чтения файла в int[] и Arrays.stream(array)
+ *  стрим читает значения прямо из отображенного файла. Сплитератор SIZED + SUBSIZED и делится
+ *  пополам по диапазону байт, поэтому parallel() работает так же, как для массива.
+ *  Файл колонки - просто подряд записанные значения в порядке байт little-endian:
+ *
+ *      long sum = OffHeapColumn.map(Path.of("prices.bin"), OffHeapColumn.Type.LONG)
+ *              .longs()
+ *              .parallel()
+ *              .sum();
+ *
+ *  Приемник: toOffHeap(...) собирает результат стрима в direct-буферы (части параллельного
+ *  стрима сливаются без копирования - просто объединяются списки сегментов), write(...) пишет
+ *  результат в файл в том же формате.
+ *
+ *  Файл больше 2 ГБ отображается несколькими сегментами по 1 ГБ. Память direct/mapped буферов
+ *  освобождается сборщиком мусора вместе с объектами ByteBuffer.
+ */
+public final class OffHeapColumn {
+
+    public enum Type {
+        INT(4), LONG(8), DOUBLE(8);
+
+        final int width;
+
+        Type(int width) {
+            this.width = width;
+        }
+    }
+
+    /** Порядок байт в файлах колонок. */
+    public static final ByteOrder FILE_ORDER = ByteOrder.LITTLE_ENDIAN;
+
+    private static final long MAX_MAPPED_SEGMENT = 1L << 30;
+    private static final int FIRST_CHUNK_ELEMENTS = 1 << 12;
+    private static final int MAX_CHUNK_ELEMENTS = 1 << 20;
+
+    private static final int CHARACTERISTICS = Spliterator.ORDERED | Spliterator.SIZED | Spliterator.SUBSIZED
+            | Spliterator.IMMUTABLE | Spliterator.NONNULL;
+
+    private final Type type;
+    private final ByteBuffer[] segments;
+    /** starts[i] - номер первого элемента сегмента i, starts[segments.length] - размер колонки. */
+    private final long[] starts;
+
+    private OffHeapColumn(Type type, ByteBuffer[] segments) {
+        this.type = type;
+        this.segments = segments;
+        this.starts = new long[segments.length + 1];
+        for (int i = 0; i < segments.length; i++) {
+            if (segments[i].limit() % type.width != 0) {
+                throw new IllegalArgumentException("Segment " + i + " is not a whole number of " + type);
+            }
+            starts[i + 1] = starts[i] + segments[i].limit() / type.width;
+        }
+    }
+
+    /** Отображает файл колонки в память (только чтение). */
+    public static OffHeapColumn map(Path file, Type type) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long length = channel.size();
+            if (length % type.width != 0) {
+                throw new IOException(file + ": size " + length + " is not a multiple of " + type.width);
+            }
+            List<ByteBuffer> segments = new ArrayList<>();
+            for (long position = 0; position < length; position += MAX_MAPPED_SEGMENT) {
+                long size = Math.min(MAX_MAPPED_SEGMENT, length - position);
+                segments.add(channel.map(FileChannel.MapMode.READ_ONLY, position, size).order(FILE_ORDER));
+            }
+            return new OffHeapColumn(type, segments.toArray(new ByteBuffer[0]));
+        }
+    }
+
+    /** Колонка поверх готовых буферов (от position до limit каждого); порядок байт берется из буфера. */
+    public static OffHeapColumn wrap(Type type, ByteBuffer... buffers) {
+        ByteBuffer[] segments = new ByteBuffer[buffers.length];
+        for (int i = 0; i < buffers.length; i++) {
+            segments[i] = buffers[i].slice().order(buffers[i].order());
+        }
+        return new OffHeapColumn(type, segments);
+    }
+
+    public Type type() {
+        return type;
+    }
+
+    public long size() {
+        return starts[segments.length];
+    }
+
+    public int getInt(long index) {
+        checkType(Type.INT);
+        int segment = segmentOf(index);
+        return segments[segment].getInt(offset(segment, index));
+    }
+
+    public long getLong(long index) {
+        checkType(Type.LONG);
+        int segment = segmentOf(index);
+        return segments[segment].getLong(offset(segment, index));
+    }
+
+    public double getDouble(long index) {
+        checkType(Type.DOUBLE);
+        int segment = segmentOf(index);
+        return segments[segment].getDouble(offset(segment, index));
+    }
+
+    public IntStream ints() {
+        checkType(Type.INT);
+        return StreamSupport.intStream(new IntSplitter(0, size()), false);
+    }
+
+    public LongStream longs() {
+        checkType(Type.LONG);
+        return StreamSupport.longStream(new LongSplitter(0, size()), false);
+    }
+
+    public DoubleStream doubles() {
+        checkType(Type.DOUBLE);
+        return StreamSupport.doubleStream(new DoubleSplitter(0, size()), false);
+    }
+
+    /** Записывает колонку в файл (перезаписывая его) в формате, который читает map(). */
+    public void writeTo(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (ByteBuffer segment : segments) {
+                ByteBuffer source = segment.order() == FILE_ORDER ? segment.duplicate() : reorder(segment);
+                while (source.hasRemaining()) {
+                    channel.write(source);
+                }
+            }
+        }
+    }
+
+    // ------------------------------------------------------------------ приемник
+
+    public static OffHeapColumn toOffHeap(IntStream stream) {
+        return stream.collect(() -> new Builder(Type.INT), Builder::addInt, Builder::addAll).build();
+    }
+
+    public static OffHeapColumn toOffHeap(LongStream stream) {
+        return stream.collect(() -> new Builder(Type.LONG), Builder::addLong, Builder::addAll).build();
+    }
+
+    public static OffHeapColumn toOffHeap(DoubleStream stream) {
+        return stream.collect(() -> new Builder(Type.DOUBLE), Builder::addDouble, Builder::addAll).build();
+    }
+
+    /** Пишет результат стрима в файл; возвращает число записанных элементов. */
+    public static long write(IntStream stream, Path file) throws IOException {
+        OffHeapColumn column = toOffHeap(stream);
+        column.writeTo(file);
+        return column.size();
+    }
+
+    public static long write(LongStream stream, Path file) throws IOException {
+        OffHeapColumn column = toOffHeap(stream);
+        column.writeTo(file);
+        return column.size();
+    }
+
+    public static long write(DoubleStream stream, Path file) throws IOException {
+        OffHeapColumn column = toOffHeap(stream);
+        column.writeTo(file);
+        return column.size();
+    }
+
+    /**
+     *  Накопитель для collect(): direct-буферы растущего размера. addAll только объединяет
+     *  списки сегментов, поэтому слияние частей параллельного стрима ничего не копирует.
+     */
+    static final class Builder {
+
+        private final Type type;
+        private final List<ByteBuffer> filled = new ArrayList<>();
+        private ByteBuffer current;
+        private int nextChunkElements = FIRST_CHUNK_ELEMENTS;
+
+        Builder(Type type) {
+            this.type = type;
+        }
+
+        void addInt(int value) {
+            ensureRoom().putInt(value);
+        }
+
+        void addLong(long value) {
+            ensureRoom().putLong(value);
+        }
+
+        void addDouble(double value) {
+            ensureRoom().putDouble(value);
+        }
+
+        void addAll(Builder other) {
+            seal();
+            other.seal();
+            filled.addAll(other.filled);
+        }
+
+        OffHeapColumn build() {
+            seal();
+            return new OffHeapColumn(type, filled.toArray(new ByteBuffer[0]));
+        }
+
+        private ByteBuffer ensureRoom() {
+            if (current == null || !current.hasRemaining()) {
+                seal();
+                current = ByteBuffer.allocateDirect(nextChunkElements * type.width).order(FILE_ORDER);
+                nextChunkElements = Math.min(MAX_CHUNK_ELEMENTS, nextChunkElements << 1);
+            }
+            return current;
+        }
+
+        /** Переносит заполненную часть текущего буфера в список сегментов. */
+        private void seal() {
+            if (current != null) {
+                if (current.position() > 0) {
+                    filled.add(current.flip().slice().order(FILE_ORDER));
+                }
+                current = null;
+            }
+        }
+    }
+
+    // ------------------------------------------------------------ сплитераторы
+
+    private abstract class Splitter {
+
+        long index;
+        final long fence;
+
+        Splitter(long index, long fence) {
+            this.index = index;
+            this.fence = fence;
+        }
+
+        long splitPoint() {
+            long mid = (index + fence) >>> 1;
+            return mid > index ? mid : -1;
+        }
+
+        public long estimateSize() {
+            return fence - index;
+        }
+
+        public int characteristics() {
+            return CHARACTERISTICS;
+        }
+    }
+
+    private final class IntSplitter extends Splitter implements Spliterator.OfInt {
+
+        IntSplitter(long index, long fence) {
+            super(index, fence);
+        }
+
+        @Override
+        public Spliterator.OfInt trySplit() {
+            long mid = splitPoint();
+            if (mid < 0) {
+                return null;
+            }
+            IntSplitter prefix = new IntSplitter(index, mid);
+            index = mid;
+            return prefix;
+        }
+
+        @Override
+        public boolean tryAdvance(IntConsumer action) {
+            if (index >= fence) {
+                return false;
+            }
+            action.accept(getInt(index++));
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(IntConsumer action) {
+            long i = index;
+            index = fence;
+            if (i >= fence) {
+                return;
+            }
+            for (int segment = segmentOf(i); i < fence; segment++) {
+                ByteBuffer buffer = segments[segment];
+                long end = Math.min(fence, starts[segment + 1]);
+                for (int offset = offset(segment, i); i < end; i++, offset += 4) {
+                    action.accept(buffer.getInt(offset));
+                }
+            }
+        }
+    }
+
+    private final class LongSplitter extends Splitter implements Spliterator.OfLong {
+
+        LongSplitter(long index, long fence) {
+            super(index, fence);
+        }
+
+        @Override
+        public Spliterator.OfLong trySplit() {
+            long mid = splitPoint();
+            if (mid < 0) {
+                return null;
+            }
+            LongSplitter prefix = new LongSplitter(index, mid);
+            index = mid;
+            return prefix;
+        }
+
+        @Override
+        public boolean tryAdvance(LongConsumer action) {
+            if (index >= fence) {
+                return false;
+            }
+            action.accept(getLong(index++));
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(LongConsumer action) {
+            long i = index;
+            index = fence;
+            if (i >= fence) {
+                return;
+            }
+            for (int segment = segmentOf(i); i < fence; segment++) {
+                ByteBuffer buffer = segments[segment];
+                long end = Math.min(fence, starts[segment + 1]);
+                for (int offset = offset(segment, i); i < end; i++, offset += 8) {
+                    action.accept(buffer.getLong(offset));
+                }
+            }
+        }
+    }
+
+    private final class DoubleSplitter extends Splitter implements Spliterator.OfDouble {
+
+        DoubleSplitter(long index, long fence) {
+            super(index, fence);
+        }
+
+        @Override
+        public Spliterator.OfDouble trySplit() {
+            long mid = splitPoint();
+            if (mid < 0) {
+                return null;
+            }
+            DoubleSplitter prefix = new DoubleSplitter(index, mid);
+            index = mid;
+            return prefix;
+        }
+
+        @Override
+        public boolean tryAdvance(DoubleConsumer action) {
+            if (index >= fence) {
+                return false;
+            }
+            action.accept(getDouble(index++));
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(DoubleConsumer action) {
+            long i = index;
+            index = fence;
+            if (i >= fence) {
+                return;
+            }
+            for (int segment = segmentOf(i); i < fence; segment++) {
+                ByteBuffer buffer = segments[segment];
+                long end = Math.min(fence, starts[segment + 1]);
+                for (int offset = offset(segment, i); i < end; i++, offset += 8) {
+                    action.accept(buffer.getDouble(offset));
+                }
+            }
+        }
+    }
+
+    // ---------------------------------------------------------------- служебное
+
+    private int segmentOf(long index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size());
+        }
+        int found = Arrays.binarySearch(starts, index);
+        // пустые сегменты дают одинаковые starts - берем последний сегмент, начинающийся с index
+        if (found >= 0) {
+            while (found + 1 < segments.length && starts[found + 1] == index) {
+                found++;
+            }
+            return found;
+        }
+        return -found - 2;
+    }
+
+    private int offset(int segment, long index) {
+        return (int) ((index - starts[segment]) * type.width);
+    }
+
+    private void checkType(Type expected) {
+        if (type != expected) {
+            throw new IllegalStateException("Column of " + type + ", not " + expected);
+        }
+    }
+
+    /** Копия сегмента в порядке байт FILE_ORDER (значения переставляются по ширине типа). */
+    private ByteBuffer reorder(ByteBuffer segment) {
+        ByteBuffer copy = ByteBuffer.allocateDirect(segment.limit()).order(FILE_ORDER);
+        ByteBuffer source = segment.duplicate().order(segment.order());
+        if (type.width == Integer.BYTES) {
+            while (source.hasRemaining()) {
+                copy.putInt(source.getInt());
+            }
+        } else {
+            while (source.hasRemaining()) {
+                copy.putLong(source.getLong());
+            }
+        }
+        return copy.flip();
+    }
+}
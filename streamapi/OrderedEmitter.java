@@ -0,0 +1,356 @@
+package streamapi;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+import java.util.function.LongConsumer;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+/**
+ *  forEachOrdered (терминальный оператор п.2) для параллельной работы с ограниченной памятью.
+ *
+ *  Параллельный forEachOrdered держит результаты всех частей, которые обогнали самую левую,
+ *  и вызывает action по одному - при медленном action (запись в файл) буфер растет без ограничений.
+ *  Здесь источник делится на части в порядке встречи лениво, по мере того как потоки их берут;
+ *  часть целиком проходит конвейер в своем потоке, затем ждет своей очереди на выдачу.
+ *  Новую часть поток возьмет, только если в окне есть место:
+ *
+ *   - выдано и ждут выдачи не больше window элементов (held());
+ *   - в работе и ждут выдачи не больше window / leafSize частей - иначе поток ждет (backpressure).
+ *
+ *      OrderedEmitter emitter = OrderedEmitter.builder().window(100_000).build();
+ *      emitter.forEachOrdered(
+ *              lines.stream().map(Export::format),      // стрим может быть и последовательным
+ *              writer::println);                        // вызывается по порядку и не одновременно
+ *
+ *  Память - O(window): части по leafSize элементов (по умолчанию window / (2 * parallelism)),
+ *  одновременно в работе и в очереди - не больше window / leafSize. Если стадии (filter, flatMap)
+ *  меняют число элементов, окно соблюдается по частям, а не по элементам точно.
+ *
+ *  Потоки - вызывающий плюс parallelism - 1 задач в executor (по умолчанию общий ForkJoinPool;
+ *  ожидание места в окне - через ForkJoinPool.managedBlock). action вызывает тот поток, который
+ *  закончил самую левую часть. Исключение конвейера или action останавливает выдачу и
+ *  пробрасывается из forEachOrdered.
+ */
+public final class OrderedEmitter {
+
+    private final int window;
+    private final int leafSize;
+    private final int parallelism;
+    private final Executor executor;
+
+    private final AtomicLong held = new AtomicLong();
+    private final AtomicLong peakHeld = new AtomicLong();
+    private final AtomicLong emitted = new AtomicLong();
+    private final AtomicLong leaves = new AtomicLong();
+    private final AtomicLong waits = new AtomicLong();
+
+    private OrderedEmitter(Builder builder) {
+        this.window = builder.window;
+        this.parallelism = builder.parallelism;
+        this.leafSize = builder.leafSize > 0 ? builder.leafSize : Math.max(1, window / (2 * parallelism));
+        this.executor = builder.executor;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public <T> void forEachOrdered(Stream<T> stream, Consumer<? super T> action) {
+        // сплитератор последовательного конвейера со стадиями не делится
+        new Run<>(stream.parallel().spliterator(), action).execute();
+    }
+
+    public void forEachOrdered(IntStream stream, IntConsumer action) {
+        forEachOrdered(stream.boxed(), action::accept);
+    }
+
+    public void forEachOrdered(LongStream stream, LongConsumer action) {
+        forEachOrdered(stream.boxed(), action::accept);
+    }
+
+    /** Элементы в законченных, но еще не выданных частях (всех текущих запусков). */
+    public long held() {
+        return held.get();
+    }
+
+    public long peakHeld() {
+        return peakHeld.get();
+    }
+
+    public long emitted() {
+        return emitted.get();
+    }
+
+    public long leaves() {
+        return leaves.get();
+    }
+
+    /** Сколько раз поток ждал места в окне. */
+    public long waits() {
+        return waits.get();
+    }
+
+    public int window() {
+        return window;
+    }
+
+    public int leafSize() {
+        return leafSize;
+    }
+
+    @Override
+    public String toString() {
+        return "OrderedEmitter[window=" + window + ", leafSize=" + leafSize + ", parallelism=" + parallelism
+                + ", held=" + held() + ", peakHeld=" + peakHeld() + ", emitted=" + emitted()
+                + ", leaves=" + leaves() + ", waits=" + waits() + ']';
+    }
+
+    // ---------------------------------------------------------------------- запуск
+
+    /** Один вызов forEachOrdered; все поля под lock. */
+    private final class Run<T> implements ForkJoinPool.ManagedBlocker {
+
+        private final Object lock = new Object();
+        private final Consumer<? super T> action;
+        private final long maxAhead = Math.max(1, window / leafSize);
+
+        /** Еще не взятые куски источника; первый - следующий по порядку. */
+        private final ArrayDeque<Spliterator<T>> pending = new ArrayDeque<>();
+        private final Map<Long, List<T>> done = new HashMap<>();
+        private long nextClaim;
+        private long nextEmit;
+        private long runHeld;
+        private boolean emitting;
+        private Throwable failure;
+        private int active;
+        private boolean closed;
+
+        Run(Spliterator<T> source, Consumer<? super T> action) {
+            this.action = action;
+            pending.add(source);
+        }
+
+        void execute() {
+            for (int i = 1; i < parallelism; i++) {
+                try {
+                    executor.execute(this::helper);
+                } catch (RejectedExecutionException e) {
+                    break;
+                }
+            }
+            work();
+            synchronized (lock) {
+                closed = true;
+                boolean interrupted = false;
+                while (active > 0) {
+                    try {
+                        lock.wait();
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                    }
+                }
+                if (interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+                if (failure != null) {
+                    held.addAndGet(-runHeld);
+                    if (failure instanceof RuntimeException) {
+                        throw (RuntimeException) failure;
+                    }
+                    if (failure instanceof Error) {
+                        throw (Error) failure;
+                    }
+                    throw new IllegalStateException(failure);
+                }
+            }
+        }
+
+        private void helper() {
+            synchronized (lock) {
+                if (closed) {
+                    return;
+                }
+                active++;
+            }
+            try {
+                work();
+            } finally {
+                synchronized (lock) {
+                    active--;
+                    lock.notifyAll();
+                }
+            }
+        }
+
+        private void work() {
+            try {
+                while (true) {
+                    Spliterator<T> leaf = null;
+                    long sequence = -1;
+                    synchronized (lock) {
+                        if (pending.isEmpty() || failure != null) {
+                            return;
+                        }
+                        if (claimable()) {
+                            leaf = split(pending.pollFirst());
+                            sequence = nextClaim++;
+                        }
+                    }
+                    if (leaf == null) {
+                        waits.incrementAndGet();
+                        ForkJoinPool.managedBlock(this);
+                        continue;
+                    }
+                    List<T> buffer = new ArrayList<>();
+                    leaf.forEachRemaining(buffer::add);
+                    complete(sequence, buffer);
+                    emit();
+                }
+            } catch (Throwable t) {
+                synchronized (lock) {
+                    if (failure == null) {
+                        failure = t;
+                    }
+                    lock.notifyAll();
+                }
+            }
+        }
+
+        /** Место в окне есть, источник кончился или выдача остановлена - ждать не нужно. */
+        private boolean claimable() {
+            return pending.isEmpty() || failure != null || runHeld < window && nextClaim - nextEmit < maxAhead;
+        }
+
+        @Override
+        public boolean isReleasable() {
+            synchronized (lock) {
+                return claimable();
+            }
+        }
+
+        @Override
+        public boolean block() throws InterruptedException {
+            synchronized (lock) {
+                while (!claimable()) {
+                    lock.wait();
+                }
+            }
+            return true;
+        }
+
+        /** Самая левая часть размером не больше leafSize; остатки правее возвращаются в pending. */
+        private Spliterator<T> split(Spliterator<T> s) {
+            while (s.estimateSize() > leafSize) {
+                Spliterator<T> prefix = s.trySplit();
+                if (prefix == null) {
+                    break;
+                }
+                pending.addFirst(s);
+                s = prefix;
+            }
+            leaves.incrementAndGet();
+            return s;
+        }
+
+        private void complete(long sequence, List<T> buffer) {
+            synchronized (lock) {
+                done.put(sequence, buffer);
+                runHeld += buffer.size();
+            }
+            long now = held.addAndGet(buffer.size());
+            peakHeld.accumulateAndGet(now, Math::max);
+        }
+
+        /** Выдает готовые части по порядку; выдачей занят один поток, остальные уходят сразу. */
+        private void emit() {
+            while (true) {
+                List<T> next;
+                synchronized (lock) {
+                    if (emitting || failure != null) {
+                        return;
+                    }
+                    next = done.remove(nextEmit);
+                    if (next == null) {
+                        return;
+                    }
+                    emitting = true;
+                }
+                try {
+                    for (T t : next) {
+                        action.accept(t);
+                    }
+                } finally {
+                    synchronized (lock) {
+                        emitting = false;
+                        nextEmit++;
+                        runHeld -= next.size();
+                        lock.notifyAll();
+                    }
+                    held.addAndGet(-next.size());
+                    emitted.addAndGet(next.size());
+                }
+            }
+        }
+    }
+
+    // ------------------------------------------------------------------- builder
+
+    public static final class Builder {
+
+        private int window = 1 << 16;
+        private int leafSize;
+        private int parallelism = ForkJoinPool.getCommonPoolParallelism();
+        private Executor executor = ForkJoinPool.commonPool();
+
+        private Builder() {
+        }
+
+        /** Сколько элементов может ждать выдачи. */
+        public Builder window(int window) {
+            if (window <= 0) {
+                throw new IllegalArgumentException("window: " + window);
+            }
+            this.window = window;
+            return this;
+        }
+
+        /** Размер части; по умолчанию window / (2 * parallelism). */
+        public Builder leafSize(int leafSize) {
+            if (leafSize <= 0) {
+                throw new IllegalArgumentException("leafSize: " + leafSize);
+            }
+            this.leafSize = leafSize;
+            return this;
+        }
+
+        /** Число потоков вместе с вызывающим. */
+        public Builder parallelism(int parallelism) {
+            if (parallelism <= 0) {
+                throw new IllegalArgumentException("parallelism: " + parallelism);
+            }
+            this.parallelism = parallelism;
+            return this;
+        }
+
+        public Builder executor(Executor executor) {
+            this.executor = executor;
+            return this;
+        }
+
+        public OrderedEmitter build() {
+            return new OrderedEmitter(this);
+        }
+    }
+}
@@ -0,0 +1,313 @@
+package streamapi;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.DoublePredicate;
+import java.util.function.IntPredicate;
+import java.util.function.LongPredicate;
+import java.util.function.Predicate;
+import java.util.stream.DoubleStream;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ *  limit / skip / takeWhile / dropWhile (промежуточные операторы п.4, п.5, п.9, п.10),
+ *  которые масштабируются на ordered parallel стримах.
+ *
+ *  Стандартные limit/skip на упорядоченном параллельном стриме буферизуют результаты частей
+ *  и ждут левых соседей, а takeWhile/dropWhile вообще не могут знать границу заранее.
+ *  Если источник SIZED + SUBSIZED (IntStream.range, ArrayList, массивы), позицию каждой части
+ *  можно вычислить при делении:
+ *
+ *      OrderedSlices.limit(IntStream.range(0, 100_000_000).parallel(), n)
+ *              .map(x -> x * 2)
+ *              .sum();
+ *
+ *  Для других источников методы откатываются к обычным limit/skip/takeWhile/dropWhile.
+ *
+ *  takeWhile/dropWhile ищут позицию первого элемента, не прошедшего условие, параллельно:
+ *  части правее уже найденной позиции прекращают работу, затем результат - это limit/skip
+ *  по найденной позиции. Поэтому им нужен повторно обходимый источник (List, массив, диапазон),
+ *  а поиск выполняется лениво, при вызове терминального оператора.
+ */
+public final class OrderedSlices {
+
+    private static final int SLICEABLE = Spliterator.SIZED | Spliterator.SUBSIZED;
+
+    /** Размер части, ниже которого поиск границы takeWhile/dropWhile идет в одном потоке. */
+    private static final long SEARCH_LEAF_SIZE = 1 << 13;
+
+    private OrderedSlices() {
+    }
+
+    // ------------------------------------------------------------- limit / skip
+
+    public static <T> Stream<T> limit(Stream<T> stream, long maxSize) {
+        return slice(stream, 0, checkCount(maxSize));
+    }
+
+    public static <T> Stream<T> skip(Stream<T> stream, long n) {
+        return slice(stream, checkCount(n), Long.MAX_VALUE);
+    }
+
+    /** Элементы с позициями [from, to). */
+    public static <T> Stream<T> slice(Stream<T> stream, long from, long to) {
+        checkRange(from, to);
+        Spliterator<T> s = stream.spliterator();
+        Stream<T> result = s.hasCharacteristics(SLICEABLE)
+                ? StreamSupport.stream(new SliceSpliterator.OfRef<>(s, 0, from, to), stream.isParallel())
+                : StreamSupport.stream(s, stream.isParallel()).skip(from).limit(to - from);
+        return result.onClose(stream::close);
+    }
+
+    public static IntStream limit(IntStream stream, long maxSize) {
+        return slice(stream, 0, checkCount(maxSize));
+    }
+
+    public static IntStream skip(IntStream stream, long n) {
+        return slice(stream, checkCount(n), Long.MAX_VALUE);
+    }
+
+    public static IntStream slice(IntStream stream, long from, long to) {
+        checkRange(from, to);
+        Spliterator.OfInt s = stream.spliterator();
+        IntStream result = s.hasCharacteristics(SLICEABLE)
+                ? StreamSupport.intStream(new SliceSpliterator.OfInt(s, 0, from, to), stream.isParallel())
+                : StreamSupport.intStream(s, stream.isParallel()).skip(from).limit(to - from);
+        return result.onClose(stream::close);
+    }
+
+    public static LongStream limit(LongStream stream, long maxSize) {
+        return slice(stream, 0, checkCount(maxSize));
+    }
+
+    public static LongStream skip(LongStream stream, long n) {
+        return slice(stream, checkCount(n), Long.MAX_VALUE);
+    }
+
+    public static LongStream slice(LongStream stream, long from, long to) {
+        checkRange(from, to);
+        Spliterator.OfLong s = stream.spliterator();
+        LongStream result = s.hasCharacteristics(SLICEABLE)
+                ? StreamSupport.longStream(new SliceSpliterator.OfLong(s, 0, from, to), stream.isParallel())
+                : StreamSupport.longStream(s, stream.isParallel()).skip(from).limit(to - from);
+        return result.onClose(stream::close);
+    }
+
+    public static DoubleStream limit(DoubleStream stream, long maxSize) {
+        return slice(stream, 0, checkCount(maxSize));
+    }
+
+    public static DoubleStream skip(DoubleStream stream, long n) {
+        return slice(stream, checkCount(n), Long.MAX_VALUE);
+    }
+
+    public static DoubleStream slice(DoubleStream stream, long from, long to) {
+        checkRange(from, to);
+        Spliterator.OfDouble s = stream.spliterator();
+        DoubleStream result = s.hasCharacteristics(SLICEABLE)
+                ? StreamSupport.doubleStream(new SliceSpliterator.OfDouble(s, 0, from, to), stream.isParallel())
+                : StreamSupport.doubleStream(s, stream.isParallel()).skip(from).limit(to - from);
+        return result.onClose(stream::close);
+    }
+
+    // ------------------------------------------------------ takeWhile / dropWhile
+
+    public static <T> Stream<T> takeWhile(List<T> source, Predicate<? super T> predicate) {
+        if (!source.spliterator().hasCharacteristics(SLICEABLE)) {
+            return source.stream().takeWhile(predicate);
+        }
+        return StreamSupport.stream(
+                () -> new SliceSpliterator.OfRef<>(source.spliterator(), 0, 0, firstFailure(source, predicate)),
+                source.spliterator().characteristics(), false);
+    }
+
+    public static <T> Stream<T> dropWhile(List<T> source, Predicate<? super T> predicate) {
+        if (!source.spliterator().hasCharacteristics(SLICEABLE)) {
+            return source.stream().dropWhile(predicate);
+        }
+        return StreamSupport.stream(
+                () -> new SliceSpliterator.OfRef<>(source.spliterator(), 0, firstFailure(source, predicate), Long.MAX_VALUE),
+                source.spliterator().characteristics(), false);
+    }
+
+    public static IntStream takeWhile(int[] source, IntPredicate predicate) {
+        return StreamSupport.intStream(
+                () -> new SliceSpliterator.OfInt(Arrays.spliterator(source), 0, 0, firstFailure(source, predicate)),
+                Arrays.spliterator(source).characteristics(), false);
+    }
+
+    public static IntStream dropWhile(int[] source, IntPredicate predicate) {
+        return StreamSupport.intStream(
+                () -> new SliceSpliterator.OfInt(Arrays.spliterator(source), 0, firstFailure(source, predicate), Long.MAX_VALUE),
+                Arrays.spliterator(source).characteristics(), false);
+    }
+
+    /** takeWhile над IntStream.range(startInclusive, endExclusive). */
+    public static IntStream takeWhile(int startInclusive, int endExclusive, IntPredicate predicate) {
+        return StreamSupport.intStream(
+                () -> new SliceSpliterator.OfInt(IntStream.range(startInclusive, endExclusive).spliterator(), 0, 0,
+                        firstFailure(startInclusive, endExclusive, predicate)),
+                IntStream.range(startInclusive, endExclusive).spliterator().characteristics(), false);
+    }
+
+    /** dropWhile над IntStream.range(startInclusive, endExclusive). */
+    public static IntStream dropWhile(int startInclusive, int endExclusive, IntPredicate predicate) {
+        return StreamSupport.intStream(
+                () -> new SliceSpliterator.OfInt(IntStream.range(startInclusive, endExclusive).spliterator(), 0,
+                        firstFailure(startInclusive, endExclusive, predicate), Long.MAX_VALUE),
+                IntStream.range(startInclusive, endExclusive).spliterator().characteristics(), false);
+    }
+
+    public static LongStream takeWhile(long[] source, LongPredicate predicate) {
+        return StreamSupport.longStream(
+                () -> new SliceSpliterator.OfLong(Arrays.spliterator(source), 0, 0, firstFailure(source, predicate)),
+                Arrays.spliterator(source).characteristics(), false);
+    }
+
+    public static LongStream dropWhile(long[] source, LongPredicate predicate) {
+        return StreamSupport.longStream(
+                () -> new SliceSpliterator.OfLong(Arrays.spliterator(source), 0, firstFailure(source, predicate), Long.MAX_VALUE),
+                Arrays.spliterator(source).characteristics(), false);
+    }
+
+    public static DoubleStream takeWhile(double[] source, DoublePredicate predicate) {
+        return StreamSupport.doubleStream(
+                () -> new SliceSpliterator.OfDouble(Arrays.spliterator(source), 0, 0, firstFailure(source, predicate)),
+                Arrays.spliterator(source).characteristics(), false);
+    }
+
+    public static DoubleStream dropWhile(double[] source, DoublePredicate predicate) {
+        return StreamSupport.doubleStream(
+                () -> new SliceSpliterator.OfDouble(Arrays.spliterator(source), 0, firstFailure(source, predicate), Long.MAX_VALUE),
+                Arrays.spliterator(source).characteristics(), false);
+    }
+
+    // --------------------------------------------------- поиск первой позиции
+
+    private static <T> long firstFailure(List<T> source, Predicate<? super T> predicate) {
+        return firstFailure(source.spliterator(), (split, index, first) -> {
+            boolean[] passed = new boolean[1];
+            for (long i = index; i < first.get() && split.tryAdvance(t -> passed[0] = predicate.test(t)); i++) {
+                if (!passed[0]) {
+                    first.accumulateAndGet(i, Math::min);
+                    return;
+                }
+            }
+        });
+    }
+
+    private static long firstFailure(int[] source, IntPredicate predicate) {
+        return firstFailure(Arrays.spliterator(source), intScanner(predicate));
+    }
+
+    private static long firstFailure(int startInclusive, int endExclusive, IntPredicate predicate) {
+        return firstFailure(IntStream.range(startInclusive, endExclusive).spliterator(), intScanner(predicate));
+    }
+
+    private static Scanner<Spliterator.OfInt> intScanner(IntPredicate predicate) {
+        return (split, index, first) -> {
+            boolean[] passed = new boolean[1];
+            for (long i = index; i < first.get() && split.tryAdvance((int x) -> passed[0] = predicate.test(x)); i++) {
+                if (!passed[0]) {
+                    first.accumulateAndGet(i, Math::min);
+                    return;
+                }
+            }
+        };
+    }
+
+    private static long firstFailure(long[] source, LongPredicate predicate) {
+        return firstFailure(Arrays.spliterator(source), (Spliterator.OfLong split, long index, AtomicLong first) -> {
+            boolean[] passed = new boolean[1];
+            for (long i = index; i < first.get() && split.tryAdvance((long x) -> passed[0] = predicate.test(x)); i++) {
+                if (!passed[0]) {
+                    first.accumulateAndGet(i, Math::min);
+                    return;
+                }
+            }
+        });
+    }
+
+    private static long firstFailure(double[] source, DoublePredicate predicate) {
+        return firstFailure(Arrays.spliterator(source), (Spliterator.OfDouble split, long index, AtomicLong first) -> {
+            boolean[] passed = new boolean[1];
+            for (long i = index; i < first.get() && split.tryAdvance((double x) -> passed[0] = predicate.test(x)); i++) {
+                if (!passed[0]) {
+                    first.accumulateAndGet(i, Math::min);
+                    return;
+                }
+            }
+        });
+    }
+
+    /**
+     *  Последовательный просмотр части, начинающейся с позиции index.
+     *  Останавливается на первом элементе, не прошедшем условие (записывая его позицию в first),
+     *  или как только позиция достигает уже найденной границы.
+     */
+    @FunctionalInterface
+    private interface Scanner<S extends Spliterator<?>> {
+        void scan(S split, long index, AtomicLong first);
+    }
+
+    private static <S extends Spliterator<?>> long firstFailure(S s, Scanner<S> scanner) {
+        AtomicLong first = new AtomicLong(Long.MAX_VALUE);
+        if (s.estimateSize() > SEARCH_LEAF_SIZE) {
+            new FirstFailureTask<>(s, 0, scanner, first).invoke();
+        } else {
+            scanner.scan(s, 0, first);
+        }
+        return first.get();
+    }
+
+    private static final class FirstFailureTask<S extends Spliterator<?>> extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final S s;
+        private final long index;
+        private final Scanner<S> scanner;
+        private final AtomicLong first;
+
+        FirstFailureTask(S s, long index, Scanner<S> scanner, AtomicLong first) {
+            this.s = s;
+            this.index = index;
+            this.scanner = scanner;
+            this.first = first;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        protected void compute() {
+            if (index >= first.get()) {
+                return; // левее уже найдена граница - эта часть не нужна
+            }
+            S prefix;
+            if (s.estimateSize() > SEARCH_LEAF_SIZE && (prefix = (S) s.trySplit()) != null) {
+                invokeAll(new FirstFailureTask<>(prefix, index, scanner, first),
+                        new FirstFailureTask<>(s, index + prefix.estimateSize(), scanner, first));
+            } else {
+                scanner.scan(s, index, first);
+            }
+        }
+    }
+
+    private static void checkRange(long from, long to) {
+        if (from < 0 || to < from) {
+            throw new IllegalArgumentException("[" + from + ", " + to + ")");
+        }
+    }
+
+    private static long checkCount(long n) {
+        if (n < 0) {
+            throw new IllegalArgumentException(Long.toString(n));
+        }
+        return n;
+    }
+}
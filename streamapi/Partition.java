@@ -0,0 +1,27 @@
+package streamapi;
+
+/**
+ *  Результат partitioningBy без Map<Boolean, ...>: две части, доступные по boolean.
+ *
+ *  @param <C> контейнер части (например IntArrayList)
+ */
+public final class Partition<C> {
+
+    private final C matching;
+    private final C rest;
+
+    public Partition(C matching, C rest) {
+        this.matching = matching;
+        this.rest = rest;
+    }
+
+    /** get(true) - элементы, удовлетворяющие условию, get(false) - все остальные. */
+    public C get(boolean key) {
+        return key ? matching : rest;
+    }
+
+    @Override
+    public String toString() {
+        return "{false=" + rest + ", true=" + matching + "}";
+    }
+}
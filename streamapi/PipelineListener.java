@@ -0,0 +1,22 @@
+package streamapi;
+
+/**
+ *  Получатель метрик Instrumented: вызывается при report() и при close() инструментированного стрима.
+ *  Может вызываться из разных потоков.
+ */
+@FunctionalInterface
+public interface PipelineListener {
+
+    void onReport(PipelineReport report);
+
+    static PipelineListener none() {
+        return report -> { };
+    }
+
+    default PipelineListener andThen(PipelineListener next) {
+        return report -> {
+            onReport(report);
+            next.onReport(report);
+        };
+    }
+}
@@ -0,0 +1,116 @@
+package streamapi;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ *  Снимок метрик конвейера Instrumented. Счетчики накопительные с момента создания
+ *  (или последнего reset()) и сняты без общей блокировки, поэтому в работающем параллельном
+ *  стриме стадии могут расходиться на несколько элементов.
+ */
+public final class PipelineReport {
+
+    private final String pipeline;
+    private final List<Stage> stages;
+    private final long splits;
+    private final long steals;
+
+    PipelineReport(String pipeline, List<Stage> stages, long splits, long steals) {
+        this.pipeline = pipeline;
+        this.stages = List.copyOf(stages);
+        this.splits = splits;
+        this.steals = steals;
+    }
+
+    public String pipeline() {
+        return pipeline;
+    }
+
+    /** Стадии в порядке регистрации (обычно - порядок в цепочке). */
+    public List<Stage> stages() {
+        return stages;
+    }
+
+    /** Число trySplit источников, вернувших часть. */
+    public long splits() {
+        return splits;
+    }
+
+    /** Части источника, обойденные не тем потоком, который их отделил. */
+    public long steals() {
+        return steals;
+    }
+
+    /** Стадия с наибольшим временем в лямбде. */
+    public Optional<Stage> slowest() {
+        return stages.stream().max(Comparator.comparingLong(Stage::nanos));
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(pipeline).append(": splits=").append(splits).append(", steals=").append(steals);
+        for (Stage stage : stages) {
+            sb.append(System.lineSeparator()).append("  ").append(stage);
+        }
+        return sb.toString();
+    }
+
+    public static final class Stage {
+
+        private final String name;
+        private final String kind;
+        private final long in;
+        private final long out;
+        private final long nanos;
+        private final long allocatedBytes;
+
+        Stage(String name, String kind, long in, long out, long nanos, long allocatedBytes) {
+            this.name = name;
+            this.kind = kind;
+            this.in = in;
+            this.out = out;
+            this.nanos = nanos;
+            this.allocatedBytes = allocatedBytes;
+        }
+
+        public String name() {
+            return name;
+        }
+
+        /** source, filter, map, flatMap, peek. */
+        public String kind() {
+            return kind;
+        }
+
+        public long in() {
+            return in;
+        }
+
+        public long out() {
+            return out;
+        }
+
+        /** Суммарное время внутри лямбды стадии по всем потокам; для источника - 0. */
+        public long nanos() {
+            return nanos;
+        }
+
+        /** Байты, выделенные внутри лямбды; -1, если учет выделений выключен. */
+        public long allocatedBytes() {
+            return allocatedBytes;
+        }
+
+        /** Доля прошедших элементов: out / in. */
+        public double selectivity() {
+            return in == 0 ? Double.NaN : (double) out / in;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%-20s %-8s in=%d out=%d time=%.3fms%s", name, kind, in, out, nanos / 1e6,
+                    allocatedBytes < 0 ? "" : " alloc=" + allocatedBytes + "B");
+        }
+    }
+}
@@ -0,0 +1,255 @@
+package streamapi;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.RandomAccess;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Collector;
+import java.util.stream.Stream;
+
+/**
+ *  Конвейер filter / map / peek, собранный один раз и применяемый к разным источникам
+ *  без построения стрима (Получение объекта Stream, примеры 1-2).
+ *
+ *  list.stream().filter(..).map(..).collect(..) на каждый вызов создает Spliterator, объект
+ *  каждой стадии, Sink каждой стадии и лямбды с захваченными переменными - на коллекции из 3-6
+ *  элементов это дороже самой работы. Шаблон хранит шаги в массиве, а применение - один цикл
+ *  по источнику с проходом по шагам; на вызов выделяется только результат.
+ *
+ *      static final PipelineTemplate<String, Integer> PARSE = PipelineTemplate.<String>of()
+ *              .filter(s -> !s.isEmpty())
+ *              .map(Integer::parseInt)
+ *              .map(x -> x + 10);
+ *
+ *      List<Integer> r = PARSE.toList(List.of("10", "", "20"));   // [20, 30]
+ *      Set<Integer> s = PARSE.collect(values, TO_SET);           // Collector тоже лучше держать в поле
+ *      Optional<Integer> first = PARSE.findFirst(array);          // короткое замыкание
+ *
+ *  Шаблон неизменяем: filter/map/peek возвращают новый шаблон, поэтому его можно держать
+ *  в static final поле и применять из разных потоков. Шаги вызываются в том же порядке, что и
+ *  в стриме. Источник - Collection (List с RandomAccess обходится по индексу, остальные - итератором)
+ *  или массив; stream(source) - тот же конвейер одной стадией стрима для больших входов и parallel().
+ *
+ *  Как и в Fused, лямбды вызываются через интерфейс: выигрыш - в отсутствии построения конвейера,
+ *  а не во встраивании лямбд.
+ */
+public final class PipelineTemplate<T, R> {
+
+    /** Результат шагов для элемента, отброшенного фильтром. */
+    private static final Object SKIP = new Object();
+
+    private static final byte FILTER = 0;
+    private static final byte MAP = 1;
+    private static final byte PEEK = 2;
+
+    private static final PipelineTemplate<?, ?> IDENTITY = new PipelineTemplate<>(new byte[0], new Object[0]);
+
+    private final byte[] kinds;
+    private final Object[] steps;
+    private final boolean filters;
+
+    private PipelineTemplate(byte[] kinds, Object[] steps) {
+        this.kinds = kinds;
+        this.steps = steps;
+        boolean filters = false;
+        for (byte kind : kinds) {
+            filters |= kind == FILTER;
+        }
+        this.filters = filters;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <T> PipelineTemplate<T, T> of() {
+        return (PipelineTemplate<T, T>) IDENTITY;
+    }
+
+    // -------------------------------------------------------------------- шаги
+
+    public PipelineTemplate<T, R> filter(Predicate<? super R> predicate) {
+        return then(FILTER, predicate);
+    }
+
+    public <U> PipelineTemplate<T, U> map(Function<? super R, ? extends U> mapper) {
+        return then(MAP, mapper);
+    }
+
+    public PipelineTemplate<T, R> peek(Consumer<? super R> action) {
+        return then(PEEK, action);
+    }
+
+    private <U> PipelineTemplate<T, U> then(byte kind, Object step) {
+        byte[] kinds = Arrays.copyOf(this.kinds, this.kinds.length + 1);
+        Object[] steps = Arrays.copyOf(this.steps, this.steps.length + 1);
+        kinds[kinds.length - 1] = kind;
+        steps[steps.length - 1] = Objects.requireNonNull(step);
+        return new PipelineTemplate<>(kinds, steps);
+    }
+
+    // ---------------------------------------------------------------- применение
+
+    public List<R> toList(Collection<? extends T> source) {
+        List<R> result = new ArrayList<>(filters ? Math.min(source.size(), 10) : source.size());
+        into(source, result, List::add);
+        return result;
+    }
+
+    public List<R> toList(T[] source) {
+        List<R> result = new ArrayList<>(filters ? Math.min(source.length, 10) : source.length);
+        into(source, result, List::add);
+        return result;
+    }
+
+    /** Коллектор вызывается напрямую: supplier, accumulator на каждый элемент, finisher. */
+    public <A, C> C collect(Collection<? extends T> source, Collector<? super R, A, C> collector) {
+        A container = collector.supplier().get();
+        into(source, container, collector.accumulator());
+        return finish(container, collector);
+    }
+
+    public <A, C> C collect(T[] source, Collector<? super R, A, C> collector) {
+        A container = collector.supplier().get();
+        into(source, container, collector.accumulator());
+        return finish(container, collector);
+    }
+
+    public void forEach(Collection<? extends T> source, Consumer<? super R> action) {
+        into(source, action, Consumer::accept);
+    }
+
+    public void forEach(T[] source, Consumer<? super R> action) {
+        into(source, action, Consumer::accept);
+    }
+
+    public long count(Collection<? extends T> source) {
+        if (kinds.length == 0) {
+            return source.size();
+        }
+        long count = 0;
+        for (T t : source) {
+            if (apply(t) != SKIP) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /** Шаги выполняются только до первого прошедшего элемента, как в стриме. */
+    @SuppressWarnings("unchecked")
+    public Optional<R> findFirst(Collection<? extends T> source) {
+        for (T t : source) {
+            Object r = apply(t);
+            if (r != SKIP) {
+                return Optional.of((R) r);
+            }
+        }
+        return Optional.empty();
+    }
+
+    @SuppressWarnings("unchecked")
+    public Optional<R> findFirst(T[] source) {
+        for (T t : source) {
+            Object r = apply(t);
+            if (r != SKIP) {
+                return Optional.of((R) r);
+            }
+        }
+        return Optional.empty();
+    }
+
+    /** Те же шаги одной стадией mapMulti - для больших источников и parallel(). */
+    @SuppressWarnings("unchecked")
+    public Stream<R> stream(Stream<? extends T> source) {
+        return source.mapMulti((t, sink) -> {
+            Object r = apply(t);
+            if (r != SKIP) {
+                ((Consumer<Object>) sink).accept(r);
+            }
+        });
+    }
+
+    // ------------------------------------------------------------------- цикл
+
+    /** Цикл по источнику; toList и forEach - через него с List::add и Consumer::accept. */
+    @SuppressWarnings("unchecked")
+    private <A> void into(Collection<? extends T> source, A container, BiConsumer<A, ? super R> accumulator) {
+        BiConsumer<A, Object> acc = (BiConsumer<A, Object>) accumulator;
+        if (source instanceof RandomAccess && source instanceof List) {
+            List<? extends T> list = (List<? extends T>) source;
+            for (int i = 0, n = list.size(); i < n; i++) {
+                Object r = apply(list.get(i));
+                if (r != SKIP) {
+                    acc.accept(container, r);
+                }
+            }
+        } else {
+            Iterator<? extends T> it = source.iterator();
+            while (it.hasNext()) {
+                Object r = apply(it.next());
+                if (r != SKIP) {
+                    acc.accept(container, r);
+                }
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private <A> void into(T[] source, A container, BiConsumer<A, ? super R> accumulator) {
+        BiConsumer<A, Object> acc = (BiConsumer<A, Object>) accumulator;
+        for (T t : source) {
+            Object r = apply(t);
+            if (r != SKIP) {
+                acc.accept(container, r);
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <A, C> C finish(A container, Collector<?, A, C> collector) {
+        return collector.characteristics().contains(Collector.Characteristics.IDENTITY_FINISH)
+                ? (C) container
+                : collector.finisher().apply(container);
+    }
+
+    /** Результат шагов или SKIP, если элемент отброшен фильтром. */
+    @SuppressWarnings("unchecked")
+    private Object apply(Object t) {
+        byte[] kinds = this.kinds;
+        Object[] steps = this.steps;
+        for (int i = 0; i < kinds.length; i++) {
+            switch (kinds[i]) {
+                case FILTER:
+                    if (!((Predicate<Object>) steps[i]).test(t)) {
+                        return SKIP;
+                    }
+                    break;
+                case MAP:
+                    t = ((Function<Object, Object>) steps[i]).apply(t);
+                    break;
+                default:
+                    ((Consumer<Object>) steps[i]).accept(t);
+            }
+        }
+        return t;
+    }
+
+    /** Шаги по порядку, например [filter, map, map]. */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("PipelineTemplate[");
+        for (int i = 0; i < kinds.length; i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append(kinds[i] == FILTER ? "filter" : kinds[i] == MAP ? "map" : "peek");
+        }
+        return sb.append(']').toString();
+    }
+}
@@ -0,0 +1,536 @@
+package streamapi;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Spliterator;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.BaseStream;
+import java.util.stream.DoubleStream;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ *  Выбор sequential / parallel (примеры 3 и 4) по размеру источника, стадиям и замерам прошлых запусков.
+ *
+ *  parallel() окупается, только если работы достаточно: для Stream.of(1, 2, 3) накладные расходы
+ *  на задачи ForkJoinPool больше самой работы, а sorted/distinct/limit/forEachOrdered
+ *  в параллели платят за барьеры и сохранение порядка. Планировщик оценивает работу как
+ *  размер * стоимость элемента и сравнивает с порогом, умноженным на штраф стадий:
+ *
+ *      private static final String PAID_DTOS = Planner.callSite();     // один раз, в поле
+ *
+ *      List<Dto> dtos = Planner.shared().execute(PAID_DTOS, orders.stream(),
+ *              s -> s.filter(Order::isPaid).map(Dto::of).collect(Collectors.toList()));
+ *
+ *      Planner.shared().execute("top-customers", customers.stream(),
+ *              s -> s.sorted(byRevenue).limit(10).collect(Collectors.toList()),
+ *              Planner.Stage.SORTED, Planner.Stage.SLICE);
+ *
+ *  Ключ - форма конвейера (обычно место вызова, см. callSite()). По ключу копятся замеры отдельно
+ *  для последовательного и параллельного запуска: последовательный - EWMA времени на элемент,
+ *  параллельный - fixed + size * perElement (EWMA-регрессия времени по размеру: fixed - запуск задач
+ *  и слияние, не зависящие от размера). Когда известны оба, сравниваются size * seqPerElement и
+ *  fixed + size * parPerElement для текущего размера - маленький источник остается последовательным,
+ *  даже если на больших parallel() выигрывал. Раз в probeEvery запусков для сверки пробуется другой
+ *  режим. Пока замеров нет - модель "размер * стоимость по умолчанию против порога".
+ *
+ *  Для параллельного запуска выбирается и размер листовой части (leafSize): не меньше
+ *  стандартного size / (4 * parallelism) и не меньше leafNanos работы - дешевые элементы
+ *  делятся крупнее. Решение каждого запуска видно через lastPlan(key) и plans().
+ *
+ *  pipeline должен выполнить терминальную операцию: время меряется вокруг pipeline.apply.
+ */
+public final class Planner {
+
+    private static final Planner SHARED = builder().build();
+
+    private final int parallelism;
+    private final long thresholdNanos;
+    private final long leafNanos;
+    private final double defaultCostNanos;
+    private final double alpha;
+    private final int probeEvery;
+    private final Map<String, Stats> stats = new ConcurrentHashMap<>();
+
+    private Planner(Builder builder) {
+        this.parallelism = builder.parallelism;
+        this.thresholdNanos = builder.thresholdNanos;
+        this.leafNanos = builder.leafNanos;
+        this.defaultCostNanos = builder.defaultCostNanos;
+        this.alpha = builder.alpha;
+        this.probeEvery = builder.probeEvery;
+    }
+
+    public static Planner shared() {
+        return SHARED;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     *  Ключ по месту вызова: класс, метод и строка того, кто вызвал callSite(). Обход стека - это
+     *  микросекунды и мусор на каждый вызов, сопоставимые с работой маленького стрима, поэтому
+     *  ключ вычисляется один раз и хранится в static final поле (см. пример в описании класса),
+     *  а не вызывается в execute(Planner.callSite(), ...) на горячем пути.
+     */
+    public static String callSite() {
+        return StackWalker.getInstance()
+                .walk(frames -> frames.skip(1).findFirst())
+                .map(f -> f.getClassName() + '.' + f.getMethodName() + ':' + f.getLineNumber())
+                .orElse("unknown");
+    }
+
+    // ------------------------------------------------------------------ стадии
+
+    /** Виды стадий с их штрафом для параллельного режима (во сколько раз нужно больше работы). */
+    public enum Stage {
+        /** filter, map, peek, flatMap, mapToInt и т.п. */
+        STATELESS(1),
+        /** collect в Map (groupingBy, toMap): слияние частей. */
+        MERGE(2),
+        /** sorted: барьер и слияние отсортированных частей. */
+        SORTED(3),
+        /** distinct на упорядоченном стриме. */
+        DISTINCT(4),
+        /** limit / skip / takeWhile / dropWhile / findFirst на упорядоченном стриме. */
+        SLICE(8),
+        /** forEachOrdered: результат частей ждет левых соседей. */
+        FOR_EACH_ORDERED(16);
+
+        private final int penalty;
+
+        Stage(int penalty) {
+            this.penalty = penalty;
+        }
+
+        public int penalty() {
+            return penalty;
+        }
+    }
+
+    // ---------------------------------------------------------------- выполнение
+
+    public <T, R> R execute(String key, Stream<T> source, Function<? super Stream<T>, R> pipeline, Stage... stages) {
+        Spliterator<T> s = source.spliterator();
+        Plan plan = plan(key, s.getExactSizeIfKnown(), s.characteristics(), stages, true);
+        Stream<T> stream = plan.parallel
+                ? StreamSupport.stream(new LeafSpliterator.OfRef<>(s, plan.leafSize), true)
+                : StreamSupport.stream(s, false);
+        return run(plan, stream.onClose(source::close), pipeline);
+    }
+
+    public <R> R execute(String key, IntStream source, Function<? super IntStream, R> pipeline, Stage... stages) {
+        Spliterator.OfInt s = source.spliterator();
+        Plan plan = plan(key, s.getExactSizeIfKnown(), s.characteristics(), stages, true);
+        IntStream stream = plan.parallel
+                ? StreamSupport.intStream(new LeafSpliterator.OfInt(s, plan.leafSize), true)
+                : StreamSupport.intStream(s, false);
+        return run(plan, stream.onClose(source::close), pipeline);
+    }
+
+    public <R> R execute(String key, LongStream source, Function<? super LongStream, R> pipeline, Stage... stages) {
+        Spliterator.OfLong s = source.spliterator();
+        Plan plan = plan(key, s.getExactSizeIfKnown(), s.characteristics(), stages, true);
+        LongStream stream = plan.parallel
+                ? StreamSupport.longStream(new LeafSpliterator.OfLong(s, plan.leafSize), true)
+                : StreamSupport.longStream(s, false);
+        return run(plan, stream.onClose(source::close), pipeline);
+    }
+
+    public <R> R execute(String key, DoubleStream source, Function<? super DoubleStream, R> pipeline, Stage... stages) {
+        Spliterator.OfDouble s = source.spliterator();
+        Plan plan = plan(key, s.getExactSizeIfKnown(), s.characteristics(), stages, true);
+        DoubleStream stream = plan.parallel
+                ? StreamSupport.doubleStream(new LeafSpliterator.OfDouble(s, plan.leafSize), true)
+                : StreamSupport.doubleStream(s, false);
+        return run(plan, stream.onClose(source::close), pipeline);
+    }
+
+    private <S extends BaseStream<?, S>, R> R run(Plan plan, S stream, Function<? super S, R> pipeline) {
+        long start = System.nanoTime();
+        R result = pipeline.apply(stream);
+        record(plan, System.nanoTime() - start);
+        return result;
+    }
+
+    // ---------------------------------------------------------------- планирование
+
+    /**
+     *  Решение без выполнения (запуск не засчитывается и не попадает в lastPlan). size = -1, если
+     *  размер неизвестен; characteristics - источника (без SUBSIZED источник делится хуже - штраф 2).
+     */
+    public Plan plan(String key, long size, int characteristics, Stage... stages) {
+        return plan(key, size, characteristics, stages, false);
+    }
+
+    private Plan plan(String key, long size, int characteristics, Stage[] stages, boolean execute) {
+        Stats st = execute ? stats.computeIfAbsent(key, k -> new Stats()) : stats.getOrDefault(key, new Stats());
+        int penalty = 1;
+        for (Stage stage : stages) {
+            penalty = Math.min(penalty * stage.penalty, 1 << 10);
+        }
+        if ((characteristics & Spliterator.SUBSIZED) == 0) {
+            penalty *= 2;
+        }
+        // без известного размера считаем запуск одной "единицей" с замеренным временем целиком
+        long units = size >= 0 ? Math.max(size, 1) : 1;
+        boolean parallel;
+        boolean probe = false;
+        Basis basis;
+        double cost;
+        double measuredSeq;
+        double measuredPar;
+        double parFixed = 0;
+        synchronized (st) {
+            if (execute) {
+                st.runs++;
+            }
+            boolean sizeKnown = size >= 0;
+            measuredSeq = sizeKnown ? st.seqPerElement : st.seqPerRun;
+            measuredPar = sizeKnown ? st.parPerElement(parallelism) : st.parPerRun;
+            if (sizeKnown && !Double.isNaN(measuredPar)) {
+                parFixed = st.parFixed(measuredPar);
+            }
+            boolean seqKnown = !Double.isNaN(measuredSeq);
+            boolean parKnown = !Double.isNaN(measuredPar);
+            cost = seqKnown ? measuredSeq : parKnown ? measuredPar * parallelism : defaultCostNanos;
+            if (parallelism <= 1) {
+                parallel = false;
+                basis = Basis.PARALLELISM;
+            } else if (sizeKnown && size < 2) {
+                parallel = false;
+                basis = Basis.SIZE;
+            } else if (seqKnown && parKnown) {
+                parallel = parFixed + units * measuredPar < units * measuredSeq;
+                basis = Basis.MEASURED;
+                if (execute && st.runs % probeEvery == 0) {
+                    parallel = !parallel;
+                    probe = true;
+                }
+            } else {
+                parallel = units * cost > (double) thresholdNanos * penalty;
+                basis = seqKnown || parKnown ? Basis.MODEL : Basis.DEFAULT_COST;
+                // второй режим еще не замерен - пробуем его изредка, чтобы было с чем сравнить
+                if (execute && st.runs % probeEvery == 0) {
+                    parallel = !parKnown;
+                    probe = true;
+                }
+            }
+        }
+        long leafSize = 0;
+        if (parallel) {
+            long defaultLeaf = size >= 0 ? size / (4L * parallelism) : 0;
+            long costLeaf = (long) Math.ceil(leafNanos / Math.max(cost, 0.001));
+            leafSize = Math.max(1, Math.max(defaultLeaf, size >= 0 ? Math.min(costLeaf, size / parallelism) : 0));
+        }
+        Plan plan = new Plan(key, size, List.of(stages), penalty, cost, measuredSeq, measuredPar, parFixed, parallel,
+                leafSize, basis, probe, units * cost, thresholdNanos * penalty, parallelism, execute ? st : null);
+        if (execute) {
+            st.last = plan;
+        }
+        return plan;
+    }
+
+    /**
+     *  Замер идет в те Stats, по которым принято решение: после reset() во время запуска он
+     *  просто не попадет в новые замеры, а результат конвейера не теряется.
+     */
+    private void record(Plan plan, long nanos) {
+        Stats st = plan.stats;
+        double perUnit = plan.size >= 0 ? (double) nanos / Math.max(plan.size, 1) : nanos;
+        synchronized (st) {
+            if (plan.size >= 0) {
+                if (plan.parallel) {
+                    double n = Math.max(plan.size, 1);
+                    st.parSize = ewma(st.parSize, n);
+                    st.parNanos = ewma(st.parNanos, nanos);
+                    st.parSizeSquared = ewma(st.parSizeSquared, n * n);
+                    st.parSizeNanos = ewma(st.parSizeNanos, n * nanos);
+                } else {
+                    st.seqPerElement = ewma(st.seqPerElement, perUnit);
+                }
+            } else if (plan.parallel) {
+                st.parPerRun = ewma(st.parPerRun, perUnit);
+            } else {
+                st.seqPerRun = ewma(st.seqPerRun, perUnit);
+            }
+        }
+    }
+
+    private double ewma(double current, double sample) {
+        return Double.isNaN(current) ? sample : current + alpha * (sample - current);
+    }
+
+    public Optional<Plan> lastPlan(String key) {
+        Stats st = stats.get(key);
+        return st == null ? Optional.empty() : Optional.ofNullable(st.last);
+    }
+
+    /** Последние решения по всем ключам. */
+    public Map<String, Plan> plans() {
+        Map<String, Plan> result = new TreeMap<>();
+        stats.forEach((key, st) -> {
+            Plan last = st.last;
+            if (last != null) {
+                result.put(key, last);
+            }
+        });
+        return result;
+    }
+
+    /** Забывает замеры (например, после смены железа или данных). */
+    public void reset() {
+        stats.clear();
+    }
+
+    /** На чем основано решение - для reason(). */
+    private enum Basis {
+        PARALLELISM, SIZE, MEASURED, MODEL, DEFAULT_COST
+    }
+
+    private static final class Stats {
+
+        long runs;
+        double seqPerElement = Double.NaN;
+        double seqPerRun = Double.NaN;
+        double parPerRun = Double.NaN;
+        volatile Plan last;
+
+        /** EWMA размера, времени и их произведений параллельных запусков - для регрессии fixed + size * k. */
+        double parSize = Double.NaN;
+        double parNanos = Double.NaN;
+        double parSizeSquared = Double.NaN;
+        double parSizeNanos = Double.NaN;
+
+        /**
+         *  Наклон регрессии; NaN - замеров нет. Если размеры почти не менялись, наклон по замерам
+         *  не определить: берется seqPerElement / parallelism (идеальное ускорение), остальное
+         *  время считается постоянной частью; без последовательных замеров - время на элемент.
+         */
+        double parPerElement(int parallelism) {
+            if (Double.isNaN(parSize)) {
+                return Double.NaN;
+            }
+            double variance = parSizeSquared - parSize * parSize;
+            double slope;
+            if (variance > 0.01 * parSize * parSize) {
+                slope = (parSizeNanos - parSize * parNanos) / variance;
+            } else if (!Double.isNaN(seqPerElement)) {
+                slope = Math.min(seqPerElement / parallelism, parNanos / parSize);
+            } else {
+                slope = parNanos / parSize;
+            }
+            return Math.max(slope, 0);
+        }
+
+        /** Постоянная часть параллельного запуска при данном наклоне, нс. */
+        double parFixed(double perElement) {
+            return Math.max(parNanos - perElement * parSize, 0);
+        }
+    }
+
+    // ---------------------------------------------------------------------- план
+
+    public static final class Plan {
+
+        private final String key;
+        private final long size;
+        private final List<Stage> stages;
+        private final int penalty;
+        private final double costNanos;
+        private final double sequentialNanos;
+        private final double parallelNanos;
+        private final double parallelFixedNanos;
+        private final boolean parallel;
+        private final long leafSize;
+        private final Basis basis;
+        private final boolean probe;
+        private final double work;
+        private final long threshold;
+        private final int parallelism;
+        /** Куда record() пишет замер запуска. */
+        private final Stats stats;
+
+        Plan(String key, long size, List<Stage> stages, int penalty, double costNanos, double sequentialNanos,
+             double parallelNanos, double parallelFixedNanos, boolean parallel, long leafSize, Basis basis,
+             boolean probe, double work, long threshold, int parallelism, Stats stats) {
+            this.key = key;
+            this.size = size;
+            this.stages = stages;
+            this.penalty = penalty;
+            this.costNanos = costNanos;
+            this.sequentialNanos = sequentialNanos;
+            this.parallelNanos = parallelNanos;
+            this.parallelFixedNanos = parallelFixedNanos;
+            this.parallel = parallel;
+            this.leafSize = leafSize;
+            this.basis = basis;
+            this.probe = probe;
+            this.work = work;
+            this.threshold = threshold;
+            this.parallelism = parallelism;
+            this.stats = stats;
+        }
+
+        public String key() {
+            return key;
+        }
+
+        /** Размер источника; -1, если неизвестен. */
+        public long size() {
+            return size;
+        }
+
+        public List<Stage> stages() {
+            return stages;
+        }
+
+        /** Произведение штрафов стадий (и 2 за источник без SUBSIZED). */
+        public int penalty() {
+            return penalty;
+        }
+
+        /** Оценка последовательного времени на элемент (на запуск, если размер неизвестен). */
+        public double costNanos() {
+            return costNanos;
+        }
+
+        /** Замеренное (EWMA) время на элемент в последовательном режиме; NaN - замеров еще нет. */
+        public double sequentialNanos() {
+            return sequentialNanos;
+        }
+
+        /**
+         *  То же для параллельного режима (время по часам, не суммарное по потокам): при известном
+         *  размере - наклон модели fixed + size * perElement, без постоянной части.
+         */
+        public double parallelNanos() {
+            return parallelNanos;
+        }
+
+        /** Постоянная часть параллельного запуска (задачи, слияние), нс; 0 - без замеров или размера. */
+        public double parallelFixedNanos() {
+            return parallelFixedNanos;
+        }
+
+        public boolean parallel() {
+            return parallel;
+        }
+
+        /** Минимальный размер листовой части; 0 для последовательного запуска. */
+        public long leafSize() {
+            return leafSize;
+        }
+
+        /** Почему выбран этот режим; строка собирается только здесь, не на каждом запуске. */
+        public String reason() {
+            String reason;
+            switch (basis) {
+                case PARALLELISM:
+                    reason = "parallelism " + parallelism;
+                    break;
+                case SIZE:
+                    reason = "size " + size;
+                    break;
+                case MEASURED:
+                    if (size >= 0) {
+                        long units = Math.max(size, 1);
+                        reason = String.format("measured seq %.0f ns vs par %.0f ns (%.0f fixed + %.1f per element)",
+                                units * sequentialNanos, parallelFixedNanos + units * parallelNanos,
+                                parallelFixedNanos, parallelNanos);
+                    } else {
+                        reason = String.format("measured seq %.1f ns vs par %.1f ns per run", sequentialNanos,
+                                parallelNanos);
+                    }
+                    break;
+                default:
+                    reason = String.format("work %.0f ns %s threshold %d ns (penalty %d)%s", work,
+                            work > threshold ? ">" : "<=", threshold, penalty,
+                            basis == Basis.DEFAULT_COST ? ", default cost" : "");
+            }
+            return probe ? "probe, " + reason : reason;
+        }
+
+        @Override
+        public String toString() {
+            return key + ": " + (parallel ? "parallel, leaf " + leafSize : "sequential") + " (size " + size
+                    + ", stages " + stages + "; " + reason() + ')';
+        }
+    }
+
+    // ---------------------------------------------------------------------- билдер
+
+    public static final class Builder {
+
+        private int parallelism = ForkJoinPool.getCommonPoolParallelism();
+        private long thresholdNanos = TimeUnit.MICROSECONDS.toNanos(100);
+        private long leafNanos = TimeUnit.MICROSECONDS.toNanos(20);
+        private double defaultCostNanos = 20;
+        private double alpha = 0.2;
+        private int probeEvery = 32;
+
+        private Builder() {
+        }
+
+        /** Число потоков общего пула, в котором идут параллельные стримы. */
+        public Builder parallelism(int parallelism) {
+            if (parallelism <= 0) {
+                throw new IllegalArgumentException("parallelism: " + parallelism);
+            }
+            this.parallelism = parallelism;
+            return this;
+        }
+
+        /** Последовательная работа, начиная с которой parallel() окупается (без штрафов стадий). */
+        public Builder threshold(long time, TimeUnit unit) {
+            this.thresholdNanos = unit.toNanos(time);
+            return this;
+        }
+
+        /** Минимальная работа на листовую часть. */
+        public Builder leaf(long time, TimeUnit unit) {
+            this.leafNanos = unit.toNanos(time);
+            return this;
+        }
+
+        /** Стоимость элемента до первых замеров, нс. */
+        public Builder defaultCostNanos(double defaultCostNanos) {
+            if (!(defaultCostNanos > 0)) {
+                throw new IllegalArgumentException("defaultCostNanos: " + defaultCostNanos);
+            }
+            this.defaultCostNanos = defaultCostNanos;
+            return this;
+        }
+
+        /** Вес нового замера в EWMA, (0, 1]. */
+        public Builder alpha(double alpha) {
+            if (!(alpha > 0 && alpha <= 1)) {
+                throw new IllegalArgumentException("alpha: " + alpha);
+            }
+            this.alpha = alpha;
+            return this;
+        }
+
+        /** Как часто пробовать второй режим для сверки; Integer.MAX_VALUE - никогда. */
+        public Builder probeEvery(int probeEvery) {
+            if (probeEvery <= 1) {
+                throw new IllegalArgumentException("probeEvery: " + probeEvery);
+            }
+            this.probeEvery = probeEvery;
+            return this;
+        }
+
+        public Planner build() {
+            return new Planner(this);
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package streamapi;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntPredicate;
+import java.util.function.IntToLongFunction;
+import java.util.function.IntUnaryOperator;
+import java.util.function.LongPredicate;
+import java.util.function.LongUnaryOperator;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
+import java.util.stream.Collector;
+
+/**
+ *  groupingBy / partitioningBy (Collectors п.13, п.15) без упаковки ключей и значений.
+ *
+ *  Collectors.groupingBy(String::length) создает Integer на каждый ключ и List на группу,
+ *  а для IntStream требует boxed(). Здесь ключ - int/long, группы - открытая адресация
+ *  (IntObjectHashMap, IntLongHashMap и т.д.), значения - IntArrayList/LongArrayList или сумма/счетчик.
+ *
+ *      IntObjectHashMap<IntArrayList> byBucket = PrimitiveCollectors
+ *              .intGroupingBy(x -> x % 10)
+ *              .collect(IntStream.range(0, 100).parallel());
+ *
+ *      IntLongHashMap countByLength = Stream.of("ab", "a", "bdc", "lf", "w")
+ *              .collect(PrimitiveCollectors.groupingByIntCounting(String::length));
+ *      // {1=2, 2=2, 3=1}
+ */
+public final class PrimitiveCollectors {
+
+    private PrimitiveCollectors() {
+    }
+
+    // ---------------------------------------------------------------- IntStream
+
+    /** int -> все элементы группы. */
+    public static IntCollector<?, IntObjectHashMap<IntArrayList>> intGroupingBy(IntUnaryOperator classifier) {
+        return IntCollector.of(
+                IntObjectHashMap::new,
+                (map, x) -> map.computeIfAbsent(classifier.applyAsInt(x), k -> new IntArrayList()).add(x),
+                (left, right) -> left.mergeAll(right, (a, b) -> {
+                    a.addAll(b);
+                    return a;
+                }));
+    }
+
+    /** int -> количество элементов группы. */
+    public static IntCollector<?, IntLongHashMap> intGroupingByCounting(IntUnaryOperator classifier) {
+        return IntCollector.of(
+                IntLongHashMap::new,
+                (map, x) -> map.addTo(classifier.applyAsInt(x), 1L),
+                IntLongHashMap::addAll);
+    }
+
+    /** int -> сумма mapper(x) по группе. */
+    public static IntCollector<?, IntLongHashMap> intGroupingBySumming(IntUnaryOperator classifier,
+                                                                       IntToLongFunction mapper) {
+        return IntCollector.of(
+                IntLongHashMap::new,
+                (map, x) -> map.addTo(classifier.applyAsInt(x), mapper.applyAsLong(x)),
+                IntLongHashMap::addAll);
+    }
+
+    public static IntCollector<?, Partition<IntArrayList>> intPartitioningBy(IntPredicate predicate) {
+        return IntCollector.of(
+                () -> new Partition<>(new IntArrayList(), new IntArrayList()),
+                (partition, x) -> partition.get(predicate.test(x)).add(x),
+                (left, right) -> {
+                    left.get(true).addAll(right.get(true));
+                    left.get(false).addAll(right.get(false));
+                });
+    }
+
+    // --------------------------------------------------------------- LongStream
+
+    /** long -> все элементы группы. */
+    public static LongCollector<?, LongObjectHashMap<LongArrayList>> longGroupingBy(LongUnaryOperator classifier) {
+        return LongCollector.of(
+                LongObjectHashMap::new,
+                (map, x) -> map.computeIfAbsent(classifier.applyAsLong(x), k -> new LongArrayList()).add(x),
+                (left, right) -> left.mergeAll(right, (a, b) -> {
+                    a.addAll(b);
+                    return a;
+                }));
+    }
+
+    /** long -> количество элементов группы. */
+    public static LongCollector<?, LongLongHashMap> longGroupingByCounting(LongUnaryOperator classifier) {
+        return LongCollector.of(
+                LongLongHashMap::new,
+                (map, x) -> map.addTo(classifier.applyAsLong(x), 1L),
+                LongLongHashMap::addAll);
+    }
+
+    /** long -> сумма mapper(x) по группе. */
+    public static LongCollector<?, LongLongHashMap> longGroupingBySumming(LongUnaryOperator classifier,
+                                                                          LongUnaryOperator mapper) {
+        return LongCollector.of(
+                LongLongHashMap::new,
+                (map, x) -> map.addTo(classifier.applyAsLong(x), mapper.applyAsLong(x)),
+                LongLongHashMap::addAll);
+    }
+
+    public static LongCollector<?, Partition<LongArrayList>> longPartitioningBy(LongPredicate predicate) {
+        return LongCollector.of(
+                () -> new Partition<>(new LongArrayList(), new LongArrayList()),
+                (partition, x) -> partition.get(predicate.test(x)).add(x),
+                (left, right) -> {
+                    left.get(true).addAll(right.get(true));
+                    left.get(false).addAll(right.get(false));
+                });
+    }
+
+    // ------------------------------------------------- Stream<T> с int-ключом
+
+    /** Группировка объектов по int-ключу: ключ не упаковывается. */
+    public static <T> Collector<T, ?, IntObjectHashMap<List<T>>> groupingByInt(ToIntFunction<? super T> classifier) {
+        return Collector.of(
+                IntObjectHashMap::new,
+                (map, t) -> map.computeIfAbsent(classifier.applyAsInt(t), k -> new ArrayList<>()).add(t),
+                (left, right) -> {
+                    left.mergeAll(right, (a, b) -> {
+                        a.addAll(b);
+                        return a;
+                    });
+                    return left;
+                },
+                Collector.Characteristics.IDENTITY_FINISH);
+    }
+
+    /** int-ключ -> количество объектов. */
+    public static <T> Collector<T, ?, IntLongHashMap> groupingByIntCounting(ToIntFunction<? super T> classifier) {
+        return Collector.of(
+                IntLongHashMap::new,
+                (map, t) -> map.addTo(classifier.applyAsInt(t), 1L),
+                (left, right) -> {
+                    left.addAll(right);
+                    return left;
+                },
+                Collector.Characteristics.IDENTITY_FINISH);
+    }
+
+    /** int-ключ -> сумма mapper(t). */
+    public static <T> Collector<T, ?, IntLongHashMap> groupingByIntSumming(ToIntFunction<? super T> classifier,
+                                                                          ToLongFunction<? super T> mapper) {
+        return Collector.of(
+                IntLongHashMap::new,
+                (map, t) -> map.addTo(classifier.applyAsInt(t), mapper.applyAsLong(t)),
+                (left, right) -> {
+                    left.addAll(right);
+                    return left;
+                },
+                Collector.Characteristics.IDENTITY_FINISH);
+    }
+}
@@ -0,0 +1,338 @@
+package streamapi;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+import java.util.stream.Collector;
+
+/**
+ *  Кеш результатов терминальной операции collect для повторяющихся конвейеров над неизменным источником.
+ *
+ *  Ключ - источник (по ссылке, слабо: источник, который больше никому не нужен, уходит из кеша
+ *  вместе с результатами), его версия и отпечаток конвейера - любой объект с equals/hashCode,
+ *  описывающий, что считается:
+ *
+ *      ResultCache cache = ResultCache.builder().maximumSize(10_000).build();
+ *      VersionedList<String> words = new VersionedList<>(loadWords());
+ *
+ *      Map<Integer, List<String>> byLength = cache.collect(words, "byLength",
+ *              Collectors.groupingBy(String::length));        // O(n) только в первый раз
+ *
+ *      words.add("new");                                        // версия меняется -
+ *      cache.collect(words, "byLength", ...);                    // результат пересчитывается
+ *
+ *  Версию источника дает Versioned (см. VersionedList); у прочих источников версия всегда 0,
+ *  и их изменение кеш не заметит - для них нужен invalidate(source).
+ *
+ *  Ограничения - на число записей и на суммарный вес (weigher - например, размер результата).
+ *  Результат отдается всем вызывающим один и тот же, поэтому он должен быть неизменяемым
+ *  (collectingAndThen(..., Collections::unmodifiableList), пример из main) и не ссылаться
+ *  на сам источник - иначе источник не будет собран GC.
+ *
+ *  Записи лежат в ConcurrentHashMap, попадание идет без блокировок: чтение из map и отметка
+ *  времени доступа в самой записи. Вытеснение - выборочный (приблизительный) LRU: при переполнении
+ *  из очередных SAMPLE записей, взятых по кругу, удаляется давнее всех использованная. Точный
+ *  порядок доступа не хранится - иначе каждое попадание писало бы в общий список под общей
+ *  блокировкой; ценой этого иногда вытесняется не самая старая запись. Лимиты могут ненадолго
+ *  превышаться, пока вставляющий поток не дошел до вытеснения.
+ *  Конвейер считается вне блокировки: одновременные промахи по одному ключу посчитают его
+ *  несколько раз, в кеше останется последний результат.
+ */
+public final class ResultCache {
+
+    /** Источник с номером версии, который меняется при каждом изменении содержимого. */
+    public interface Versioned {
+        long version();
+    }
+
+    /** Записей в одной выборке при вытеснении. */
+    private static final int SAMPLE = 8;
+
+    private final long maximumSize;
+    private final long maximumWeight;
+    private final ToLongFunction<Object> weigher;
+
+    private final ConcurrentHashMap<Key, Entry> entries = new ConcurrentHashMap<>();
+    private final ReferenceQueue<Object> collected = new ReferenceQueue<>();
+    private final AtomicLong weight = new AtomicLong();
+
+    /** Вытесняет один поток за раз; sweep - место, где остановилась прошлая выборка. */
+    private final Object evictLock = new Object();
+    private Iterator<Entry> sweep;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    private ResultCache(Builder builder) {
+        this.maximumSize = builder.maximumSize;
+        this.maximumWeight = builder.maximumWeight;
+        this.weigher = builder.weigher;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /** source.stream().collect(collector), если для этих источника, версии и отпечатка результата еще нет. */
+    public <T, R> R collect(Collection<T> source, Object fingerprint, Collector<? super T, ?, R> collector) {
+        return compute(source, fingerprint, s -> s.stream().collect(collector));
+    }
+
+    /** Любой конвейер над source: pipeline должен зависеть только от source и fingerprint. */
+    @SuppressWarnings("unchecked")
+    public <S, R> R compute(S source, Object fingerprint, Function<? super S, ? extends R> pipeline) {
+        Objects.requireNonNull(source, "source");
+        Objects.requireNonNull(fingerprint, "fingerprint");
+        long version = versionOf(source);
+        expungeCollected();
+        Entry entry = entries.get(new Key(source, fingerprint, null));
+        if (entry != null) {
+            if (entry.version == version) {
+                entry.lastAccess = System.nanoTime();
+                hits.increment();
+                return (R) entry.value;
+            }
+            if (remove(entry)) {
+                invalidations.increment();
+            }
+        }
+        misses.increment();
+        // версия прочитана до запуска: изменение во время подсчета даст промах в следующий раз
+        R value = pipeline.apply(source);
+        long valueWeight = weigher.applyAsLong(value);
+        if (valueWeight < 0) {
+            throw new IllegalStateException("Negative weight " + valueWeight + " for " + fingerprint);
+        }
+        Key key = new Key(source, fingerprint, collected);
+        Entry previous = entries.put(key, new Entry(key, version, value, valueWeight));
+        weight.addAndGet(previous == null ? valueWeight : valueWeight - previous.weight);
+        if (entries.size() > maximumSize || weight.get() > maximumWeight) {
+            evict();
+        }
+        return value;
+    }
+
+    /** Убирает все результаты для source. */
+    public void invalidate(Object source) {
+        expungeCollected();
+        for (Entry entry : entries.values()) {
+            if (entry.key.get() == source && remove(entry)) {
+                invalidations.increment();
+            }
+        }
+    }
+
+    public void invalidateAll() {
+        for (Entry entry : entries.values()) {
+            if (remove(entry)) {
+                invalidations.increment();
+            }
+        }
+    }
+
+    public Stats stats() {
+        expungeCollected();
+        return new Stats(hits.sum(), misses.sum(), evictions.sum(), invalidations.sum(), entries.size(), weight.get());
+    }
+
+    private static long versionOf(Object source) {
+        return source instanceof Versioned ? ((Versioned) source).version() : 0L;
+    }
+
+    /** Пока лимит превышен - удаляет давнее всех использованную из SAMPLE записей, взятых по кругу. */
+    private void evict() {
+        synchronized (evictLock) {
+            while (entries.size() > maximumSize || weight.get() > maximumWeight) {
+                Entry victim = null;
+                for (int i = 0; i < SAMPLE; i++) {
+                    if (sweep == null || !sweep.hasNext()) {
+                        sweep = entries.values().iterator();
+                        if (!sweep.hasNext()) {
+                            return;
+                        }
+                    }
+                    Entry candidate = sweep.next();
+                    if (victim == null || candidate.lastAccess - victim.lastAccess < 0) {
+                        victim = candidate;
+                    }
+                }
+                if (remove(victim)) {
+                    evictions.increment();
+                }
+            }
+        }
+    }
+
+    /** Записи, чьи источники собраны GC; ключ в очереди равен только самому себе. */
+    private void expungeCollected() {
+        for (Object ref; (ref = collected.poll()) != null; ) {
+            Entry removed = entries.remove((Key) ref);
+            if (removed != null) {
+                weight.addAndGet(-removed.weight);
+            }
+        }
+    }
+
+    /** false, если запись уже удалена или заменена другим потоком. */
+    private boolean remove(Entry entry) {
+        if (entries.remove(entry.key, entry)) {
+            weight.addAndGet(-entry.weight);
+            return true;
+        }
+        return false;
+    }
+
+    // ---------------------------------------------------------------- ключ и запись
+
+    /**
+     *  Слабая ссылка на источник + отпечаток. Равенство источников - по ссылке; hashCode
+     *  запоминается, чтобы ключ с собранным источником еще находился при удалении.
+     */
+    private static final class Key extends WeakReference<Object> {
+
+        private final Object fingerprint;
+        private final int hash;
+
+        Key(Object source, Object fingerprint, ReferenceQueue<Object> queue) {
+            super(source, queue);
+            this.fingerprint = fingerprint;
+            this.hash = System.identityHashCode(source) * 31 + fingerprint.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            Object source = get();
+            return source != null && source == other.get() && fingerprint.equals(other.fingerprint);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    /** key - тот ключ, под которым запись лежит в map: по нему ее удаляет вытеснение. */
+    private static final class Entry {
+
+        final Key key;
+        final long version;
+        final Object value;
+        final long weight;
+        volatile long lastAccess = System.nanoTime();
+
+        Entry(Key key, long version, Object value, long weight) {
+            this.key = key;
+            this.version = version;
+            this.value = value;
+            this.weight = weight;
+        }
+    }
+
+    // ------------------------------------------------------------------ builder
+
+    public static final class Builder {
+
+        private long maximumSize = 1_000;
+        private long maximumWeight = Long.MAX_VALUE;
+        private ToLongFunction<Object> weigher = value -> 1;
+
+        private Builder() {
+        }
+
+        public Builder maximumSize(long maximumSize) {
+            if (maximumSize <= 0) {
+                throw new IllegalArgumentException("maximumSize: " + maximumSize);
+            }
+            this.maximumSize = maximumSize;
+            return this;
+        }
+
+        /** Суммарный вес результатов; weigher считается один раз при добавлении. */
+        public Builder maximumWeight(long maximumWeight, ToLongFunction<Object> weigher) {
+            if (maximumWeight <= 0) {
+                throw new IllegalArgumentException("maximumWeight: " + maximumWeight);
+            }
+            this.maximumWeight = maximumWeight;
+            this.weigher = Objects.requireNonNull(weigher, "weigher");
+            return this;
+        }
+
+        public ResultCache build() {
+            return new ResultCache(this);
+        }
+    }
+
+    // -------------------------------------------------------------------- метрики
+
+    public static final class Stats {
+
+        private final long hits;
+        private final long misses;
+        private final long evictions;
+        private final long invalidations;
+        private final int size;
+        private final long weight;
+
+        Stats(long hits, long misses, long evictions, long invalidations, int size, long weight) {
+            this.hits = hits;
+            this.misses = misses;
+            this.evictions = evictions;
+            this.invalidations = invalidations;
+            this.size = size;
+            this.weight = weight;
+        }
+
+        public long hits() {
+            return hits;
+        }
+
+        public long misses() {
+            return misses;
+        }
+
+        /** Вытеснены по размеру или весу. */
+        public long evictions() {
+            return evictions;
+        }
+
+        /** Удалены из-за новой версии источника или invalidate(...). */
+        public long invalidations() {
+            return invalidations;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public long weight() {
+            return weight;
+        }
+
+        public double hitRate() {
+            long requests = hits + misses;
+            return requests == 0 ? 0 : (double) hits / requests;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("hits=%d misses=%d hitRate=%.3f evictions=%d invalidations=%d size=%d weight=%d",
+                    hits, misses, hitRate(), evictions, invalidations, size, weight);
+        }
+    }
+}
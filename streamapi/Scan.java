@@ -0,0 +1,310 @@
+package streamapi;
+
+import java.util.Arrays;
+import java.util.Spliterator;
+import java.util.function.BinaryOperator;
+import java.util.function.Consumer;
+import java.util.function.DoubleBinaryOperator;
+import java.util.function.DoubleConsumer;
+import java.util.function.IntBinaryOperator;
+import java.util.function.IntConsumer;
+import java.util.function.LongBinaryOperator;
+import java.util.function.LongConsumer;
+import java.util.stream.DoubleStream;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ *  Нарастающий итог (scan): reduce (терминальный оператор п.7.3) по каждому префиксу стрима.
+ *  Элемент i результата - op(x0, x1, ..., xi), размер результата равен размеру источника.
+ *
+ *      Scan.scan(LongStream.of(100, -30, 50, -200), Long::sum)
+ *              .forEach(System.out::println);
+ *      // 100, 70, 120, -80  - баланс после каждой операции
+ *
+ *      Scan.scan(IntStream.of(3, 1, 4, 1, 5), Math::max)   // 3, 3, 4, 4, 5
+ *
+ *  Последовательный стрим считается лениво, за один проход, с коротким замыканием (limit, findFirst).
+ *  Параллельный - в два прохода: toArray() источника, затем Arrays.parallelPrefix
+ *  (префиксы частей, затем сдвиг каждой части на итог предыдущих). Массив держит все значения
+ *  в памяти; вычисление начинается только при терминальной операции.
+ *
+ *  op должен быть ассоциативным (sum, max, min, умножение по модулю и т.п.), иначе параллельный
+ *  результат отличается от последовательного. Для double сумма в parallel() может отличаться
+ *  в последних знаках (другой порядок сложения). Источник должен быть ORDERED.
+ */
+public final class Scan {
+
+    private Scan() {
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <T> Stream<T> scan(Stream<T> stream, BinaryOperator<T> op) {
+        Stream<T> result;
+        if (stream.isParallel()) {
+            result = StreamSupport.stream(() -> {
+                T[] values = (T[]) stream.toArray();
+                Arrays.parallelPrefix(values, op);
+                return Arrays.spliterator(values);
+            }, Spliterator.ORDERED | Spliterator.SIZED | Spliterator.SUBSIZED, true);
+        } else {
+            result = StreamSupport.stream(new OfRef<>(stream.spliterator(), op), false);
+        }
+        return result.onClose(stream::close);
+    }
+
+    public static IntStream scan(IntStream stream, IntBinaryOperator op) {
+        IntStream result;
+        if (stream.isParallel()) {
+            result = StreamSupport.intStream(() -> {
+                int[] values = stream.toArray();
+                Arrays.parallelPrefix(values, op);
+                return Arrays.spliterator(values);
+            }, Spliterator.ORDERED | Spliterator.SIZED | Spliterator.SUBSIZED, true);
+        } else {
+            result = StreamSupport.intStream(new OfInt(stream.spliterator(), op), false);
+        }
+        return result.onClose(stream::close);
+    }
+
+    public static LongStream scan(LongStream stream, LongBinaryOperator op) {
+        LongStream result;
+        if (stream.isParallel()) {
+            result = StreamSupport.longStream(() -> {
+                long[] values = stream.toArray();
+                Arrays.parallelPrefix(values, op);
+                return Arrays.spliterator(values);
+            }, Spliterator.ORDERED | Spliterator.SIZED | Spliterator.SUBSIZED, true);
+        } else {
+            result = StreamSupport.longStream(new OfLong(stream.spliterator(), op), false);
+        }
+        return result.onClose(stream::close);
+    }
+
+    public static DoubleStream scan(DoubleStream stream, DoubleBinaryOperator op) {
+        DoubleStream result;
+        if (stream.isParallel()) {
+            result = StreamSupport.doubleStream(() -> {
+                double[] values = stream.toArray();
+                Arrays.parallelPrefix(values, op);
+                return Arrays.spliterator(values);
+            }, Spliterator.ORDERED | Spliterator.SIZED | Spliterator.SUBSIZED, true);
+        } else {
+            result = StreamSupport.doubleStream(new OfDouble(stream.spliterator(), op), false);
+        }
+        return result.onClose(stream::close);
+    }
+
+    // ---------------------------------------------------------------- сплитераторы
+
+    /** Размер и порядок источника; не делится - итог зависит от всех предыдущих элементов. */
+    private static int characteristics(Spliterator<?> source) {
+        return source.characteristics() & (Spliterator.ORDERED | Spliterator.SIZED);
+    }
+
+    private static final class OfRef<T> implements Spliterator<T>, Consumer<T> {
+
+        private final Spliterator<T> source;
+        private final BinaryOperator<T> op;
+        private boolean started;
+        private T acc;
+
+        OfRef(Spliterator<T> source, BinaryOperator<T> op) {
+            this.source = source;
+            this.op = op;
+        }
+
+        @Override
+        public void accept(T value) {
+            acc = started ? op.apply(acc, value) : value;
+            started = true;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super T> action) {
+            if (!source.tryAdvance(this)) {
+                return false;
+            }
+            action.accept(acc);
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super T> action) {
+            source.forEachRemaining(value -> {
+                accept(value);
+                action.accept(acc);
+            });
+        }
+
+        @Override
+        public Spliterator<T> trySplit() {
+            return null;
+        }
+
+        @Override
+        public long estimateSize() {
+            return source.estimateSize();
+        }
+
+        @Override
+        public int characteristics() {
+            return Scan.characteristics(source);
+        }
+    }
+
+    private static final class OfInt implements Spliterator.OfInt, IntConsumer {
+
+        private final Spliterator.OfInt source;
+        private final IntBinaryOperator op;
+        private boolean started;
+        private int acc;
+
+        OfInt(Spliterator.OfInt source, IntBinaryOperator op) {
+            this.source = source;
+            this.op = op;
+        }
+
+        @Override
+        public void accept(int value) {
+            acc = started ? op.applyAsInt(acc, value) : value;
+            started = true;
+        }
+
+        @Override
+        public boolean tryAdvance(IntConsumer action) {
+            if (!source.tryAdvance((IntConsumer) this)) {
+                return false;
+            }
+            action.accept(acc);
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(IntConsumer action) {
+            source.forEachRemaining((int value) -> {
+                accept(value);
+                action.accept(acc);
+            });
+        }
+
+        @Override
+        public Spliterator.OfInt trySplit() {
+            return null;
+        }
+
+        @Override
+        public long estimateSize() {
+            return source.estimateSize();
+        }
+
+        @Override
+        public int characteristics() {
+            return Scan.characteristics(source);
+        }
+    }
+
+    private static final class OfLong implements Spliterator.OfLong, LongConsumer {
+
+        private final Spliterator.OfLong source;
+        private final LongBinaryOperator op;
+        private boolean started;
+        private long acc;
+
+        OfLong(Spliterator.OfLong source, LongBinaryOperator op) {
+            this.source = source;
+            this.op = op;
+        }
+
+        @Override
+        public void accept(long value) {
+            acc = started ? op.applyAsLong(acc, value) : value;
+            started = true;
+        }
+
+        @Override
+        public boolean tryAdvance(LongConsumer action) {
+            if (!source.tryAdvance((LongConsumer) this)) {
+                return false;
+            }
+            action.accept(acc);
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(LongConsumer action) {
+            source.forEachRemaining((long value) -> {
+                accept(value);
+                action.accept(acc);
+            });
+        }
+
+        @Override
+        public Spliterator.OfLong trySplit() {
+            return null;
+        }
+
+        @Override
+        public long estimateSize() {
+            return source.estimateSize();
+        }
+
+        @Override
+        public int characteristics() {
+            return Scan.characteristics(source);
+        }
+    }
+
+    private static final class OfDouble implements Spliterator.OfDouble, DoubleConsumer {
+
+        private final Spliterator.OfDouble source;
+        private final DoubleBinaryOperator op;
+        private boolean started;
+        private double acc;
+
+        OfDouble(Spliterator.OfDouble source, DoubleBinaryOperator op) {
+            this.source = source;
+            this.op = op;
+        }
+
+        @Override
+        public void accept(double value) {
+            acc = started ? op.applyAsDouble(acc, value) : value;
+            started = true;
+        }
+
+        @Override
+        public boolean tryAdvance(DoubleConsumer action) {
+            if (!source.tryAdvance((DoubleConsumer) this)) {
+                return false;
+            }
+            action.accept(acc);
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(DoubleConsumer action) {
+            source.forEachRemaining((double value) -> {
+                accept(value);
+                action.accept(acc);
+            });
+        }
+
+        @Override
+        public Spliterator.OfDouble trySplit() {
+            return null;
+        }
+
+        @Override
+        public long estimateSize() {
+            return source.estimateSize();
+        }
+
+        @Override
+        public int characteristics() {
+            return Scan.characteristics(source);
+        }
+    }
+}
@@ -0,0 +1,233 @@
+package streamapi;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.BiConsumer;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collector;
+import java.util.stream.Collectors;
+
+/**
+ *  toConcurrentMap (Collectors п.5) и groupingByConcurrent (п.14) без общей точки конкуренции.
+ *
+ *  Стандартные коллекторы пишут все элементы параллельного стрима в одну ConcurrentHashMap,
+ *  и на горячих ключах потоки ждут друг друга. Здесь контейнер - набор шардов (HashMap под
+ *  собственной блокировкой), а шард выбирается по потоку, а не по ключу: каждый поток почти
+ *  всегда пишет в "свой" шард без конкуренции, даже если все элементы имеют один и тот же ключ.
+ *  Шарды сливаются один раз - в finisher, функцией слияния значений (mergeFunction) или
+ *  combiner'ом downstream-коллектора.
+ *
+ *  Сигнатуры совпадают с Collectors, дополнительно можно задать число шардов:
+ *
+ *      ConcurrentMap<Integer, List<String>> map = words.parallelStream()
+ *              .collect(ShardedCollectors.groupingByConcurrent(String::length));
+ */
+public final class ShardedCollectors {
+
+    private ShardedCollectors() {
+    }
+
+    /** Число шардов по умолчанию: степень двойки не меньше 4 * число ядер. */
+    public static int defaultShards() {
+        return Integer.highestOneBit(Math.max(1, 4 * Runtime.getRuntime().availableProcessors() - 1)) << 1;
+    }
+
+    // ------------------------------------------------------------ toConcurrentMap
+
+    public static <T, K, U> Collector<T, ?, ConcurrentMap<K, U>> toConcurrentMap(
+            Function<? super T, ? extends K> keyMapper,
+            Function<? super T, ? extends U> valueMapper) {
+        return toConcurrentMap(keyMapper, valueMapper, duplicateKey(), ConcurrentHashMap::new);
+    }
+
+    public static <T, K, U> Collector<T, ?, ConcurrentMap<K, U>> toConcurrentMap(
+            Function<? super T, ? extends K> keyMapper,
+            Function<? super T, ? extends U> valueMapper,
+            BinaryOperator<U> mergeFunction) {
+        return toConcurrentMap(keyMapper, valueMapper, mergeFunction, ConcurrentHashMap::new);
+    }
+
+    public static <T, K, U, M extends ConcurrentMap<K, U>> Collector<T, ?, M> toConcurrentMap(
+            Function<? super T, ? extends K> keyMapper,
+            Function<? super T, ? extends U> valueMapper,
+            BinaryOperator<U> mergeFunction,
+            Supplier<M> mapFactory) {
+        return toConcurrentMap(keyMapper, valueMapper, mergeFunction, mapFactory, defaultShards());
+    }
+
+    public static <T, K, U, M extends ConcurrentMap<K, U>> Collector<T, ?, M> toConcurrentMap(
+            Function<? super T, ? extends K> keyMapper,
+            Function<? super T, ? extends U> valueMapper,
+            BinaryOperator<U> mergeFunction,
+            Supplier<M> mapFactory,
+            int shards) {
+        int count = checkShards(shards);
+        BiConsumer<Map<K, U>, T> accumulator =
+                (map, t) -> merge(map, keyMapper.apply(t), valueMapper.apply(t), mergeFunction);
+        return Collector.of(
+                () -> new Shards<K, U>(count),
+                (container, t) -> container.accumulate(t, accumulator),
+                (left, right) -> left.mergeFrom(right, mergeFunction),
+                container -> {
+                    M result = mapFactory.get();
+                    container.drainTo(result, mergeFunction);
+                    return result;
+                },
+                Collector.Characteristics.CONCURRENT, Collector.Characteristics.UNORDERED);
+    }
+
+    // ------------------------------------------------------- groupingByConcurrent
+
+    public static <T, K> Collector<T, ?, ConcurrentMap<K, List<T>>> groupingByConcurrent(
+            Function<? super T, ? extends K> classifier) {
+        return groupingByConcurrent(classifier, ConcurrentHashMap::new, Collectors.toList());
+    }
+
+    public static <T, K, A, D> Collector<T, ?, ConcurrentMap<K, D>> groupingByConcurrent(
+            Function<? super T, ? extends K> classifier,
+            Collector<? super T, A, D> downstream) {
+        return groupingByConcurrent(classifier, ConcurrentHashMap::new, downstream);
+    }
+
+    public static <T, K, A, D, M extends ConcurrentMap<K, D>> Collector<T, ?, M> groupingByConcurrent(
+            Function<? super T, ? extends K> classifier,
+            Supplier<M> mapFactory,
+            Collector<? super T, A, D> downstream) {
+        return groupingByConcurrent(classifier, mapFactory, downstream, defaultShards());
+    }
+
+    public static <T, K, A, D, M extends ConcurrentMap<K, D>> Collector<T, ?, M> groupingByConcurrent(
+            Function<? super T, ? extends K> classifier,
+            Supplier<M> mapFactory,
+            Collector<? super T, A, D> downstream,
+            int shards) {
+        int count = checkShards(shards);
+        Supplier<A> downstreamSupplier = downstream.supplier();
+        BiConsumer<A, ? super T> downstreamAccumulator = downstream.accumulator();
+        BinaryOperator<A> downstreamCombiner = downstream.combiner();
+        Function<A, D> downstreamFinisher = downstream.finisher();
+        BiConsumer<Map<K, A>, T> accumulator = (map, t) -> {
+            A container = map.computeIfAbsent(classifier.apply(t), k -> downstreamSupplier.get());
+            downstreamAccumulator.accept(container, t);
+        };
+        return Collector.of(
+                () -> new Shards<K, A>(count),
+                (container, t) -> container.accumulate(t, accumulator),
+                (left, right) -> left.mergeFrom(right, downstreamCombiner),
+                container -> {
+                    ConcurrentMap<K, A> merged = new ConcurrentHashMap<>();
+                    container.drainTo(merged, downstreamCombiner);
+                    M result = mapFactory.get();
+                    merged.forEach((key, value) -> result.put(key, downstreamFinisher.apply(value)));
+                    return result;
+                },
+                Collector.Characteristics.CONCURRENT, Collector.Characteristics.UNORDERED);
+    }
+
+    private static <U> BinaryOperator<U> duplicateKey() {
+        return new DuplicateKey<>();
+    }
+
+    /** Маркер toConcurrentMap без mergeFunction: повтор ключа - ошибка, в сообщении - ключ, как в Collectors.toMap. */
+    private static final class DuplicateKey<U> implements BinaryOperator<U> {
+
+        @Override
+        public U apply(U u, U v) {
+            throw new IllegalStateException(String.format("Duplicate key (attempted merging values %s and %s)", u, v));
+        }
+    }
+
+    /** map.merge, но для DuplicateKey - с ключом в сообщении. */
+    private static <K, V> void merge(Map<K, V> map, K key, V value, BinaryOperator<V> merge) {
+        if (merge instanceof DuplicateKey) {
+            V existing = map.putIfAbsent(key, Objects.requireNonNull(value));
+            if (existing != null) {
+                throw new IllegalStateException(String.format(
+                        "Duplicate key %s (attempted merging values %s and %s)", key, existing, value));
+            }
+        } else {
+            map.merge(key, value, merge);
+        }
+    }
+
+    private static int checkShards(int shards) {
+        if (shards <= 0) {
+            throw new IllegalArgumentException("shards: " + shards);
+        }
+        return shards == 1 ? 1 : Integer.highestOneBit(shards - 1) << 1;
+    }
+
+    /**
+     *  Контейнер коллектора: шарды с HashMap, шард выбирается по id текущего потока.
+     *  HashMap шарда создается при первой записи в него.
+     */
+    static final class Shards<K, V> {
+
+        private final Shard<K, V>[] shards;
+        private final int mask;
+
+        @SuppressWarnings("unchecked")
+        Shards(int count) {
+            shards = (Shard<K, V>[]) new Shard<?, ?>[count];
+            for (int i = 0; i < count; i++) {
+                shards[i] = new Shard<>();
+            }
+            mask = count - 1;
+        }
+
+        <T> void accumulate(T t, BiConsumer<Map<K, V>, T> accumulator) {
+            Shard<K, V> shard = shards[index(Thread.currentThread().getId())];
+            synchronized (shard) {
+                if (shard.map == null) {
+                    shard.map = new HashMap<>();
+                }
+                accumulator.accept(shard.map, t);
+            }
+        }
+
+        Shards<K, V> mergeFrom(Shards<K, V> other, BinaryOperator<V> merge) {
+            for (int i = 0; i < shards.length; i++) {
+                Map<K, V> source = other.shards[i].map;
+                if (source == null) {
+                    continue;
+                }
+                Shard<K, V> shard = shards[i];
+                synchronized (shard) {
+                    if (shard.map == null) {
+                        shard.map = source;
+                    } else {
+                        source.forEach((k, v) -> ShardedCollectors.merge(shard.map, k, v, merge));
+                    }
+                }
+            }
+            return this;
+        }
+
+        /** Сливает все шарды в target; шарды обрабатываются параллельно. */
+        void drainTo(ConcurrentMap<K, V> target, BinaryOperator<V> merge) {
+            Arrays.stream(shards)
+                    .parallel()
+                    .filter(shard -> shard.map != null)
+                    .forEach(shard -> shard.map.forEach((k, v) -> ShardedCollectors.merge(target, k, v, merge)));
+        }
+
+        private int index(long threadId) {
+            long h = threadId * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32)) & mask;
+        }
+    }
+
+    /** Поля-заполнители разносят соседние шарды по разным кеш-линиям. */
+    static final class Shard<K, V> {
+        long p1, p2, p3, p4, p5, p6, p7;
+        Map<K, V> map;
+        long q1, q2, q3, q4, q5, q6, q7;
+    }
+}
@@ -0,0 +1,266 @@
+package streamapi;
+
+import java.util.Comparator;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.DoubleConsumer;
+import java.util.function.IntConsumer;
+import java.util.function.LongConsumer;
+
+/**
+ *  Срез [sliceOrigin, sliceFence) SIZED + SUBSIZED источника.
+ *
+ *  Благодаря SUBSIZED абсолютная позиция каждой части известна при делении, поэтому:
+ *   - части целиком до начала среза отбрасываются без обхода;
+ *   - остаток целиком после конца среза отбрасывается сразу (элементы за отсечкой не читаются);
+ *   - части внутри среза делятся дальше и обходятся параллельно без буферизации.
+ *
+ *  В отличие от Stream.limit()/skip() на ordered parallel стриме здесь нет ни сбора
+ *  промежуточных результатов, ни последовательного "кто первый" между задачами.
+ */
+abstract class SliceSpliterator<T, S extends Spliterator<T>> implements Spliterator<T> {
+
+    final long sliceOrigin;
+    final long sliceFence;
+
+    S s;
+    /** Абсолютная позиция первого элемента s. */
+    long index;
+    /** Абсолютная позиция за последним элементом s. */
+    long fence;
+
+    SliceSpliterator(S s, long index, long sliceOrigin, long sliceFence) {
+        this.s = s;
+        this.index = index;
+        this.fence = index + s.estimateSize();
+        this.sliceOrigin = sliceOrigin;
+        this.sliceFence = sliceFence;
+    }
+
+    abstract S makeSlice(S s, long index);
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public S trySplit() {
+        while (sliceOrigin < fence && index < sliceFence) {
+            S prefix = (S) s.trySplit();
+            if (prefix == null) {
+                return null;
+            }
+            long prefixIndex = index;
+            long prefixFence = index + prefix.estimateSize();
+            if (prefixFence <= sliceOrigin) {
+                // префикс целиком до среза - пропускаем его, не обходя
+                index = prefixFence;
+            } else if (prefixFence >= sliceFence) {
+                // остаток целиком за срезом - отменяем его
+                s = prefix;
+                fence = prefixFence;
+            } else {
+                index = prefixFence;
+                return makeSlice(prefix, prefixIndex);
+            }
+        }
+        return null;
+    }
+
+    /** Пропускает элементы до начала среза; false - если внутри среза больше ничего нет. */
+    final boolean prepare() {
+        while (index < sliceOrigin) {
+            if (!skipOne()) {
+                index = fence;
+                return false;
+            }
+            index++;
+        }
+        return index < sliceFence && index < fence;
+    }
+
+    abstract boolean skipOne();
+
+    @Override
+    public long estimateSize() {
+        return Math.max(0, Math.min(fence, sliceFence) - Math.max(index, sliceOrigin));
+    }
+
+    @Override
+    public int characteristics() {
+        return s.characteristics();
+    }
+
+    @Override
+    public Comparator<? super T> getComparator() {
+        return s.getComparator();
+    }
+
+    static final class OfRef<T> extends SliceSpliterator<T, Spliterator<T>> {
+
+        OfRef(Spliterator<T> s, long index, long sliceOrigin, long sliceFence) {
+            super(s, index, sliceOrigin, sliceFence);
+        }
+
+        @Override
+        Spliterator<T> makeSlice(Spliterator<T> s, long index) {
+            return new OfRef<>(s, index, sliceOrigin, sliceFence);
+        }
+
+        @Override
+        boolean skipOne() {
+            return s.tryAdvance(t -> { });
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super T> action) {
+            if (prepare() && s.tryAdvance(action)) {
+                index++;
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super T> action) {
+            if (prepare() && fence <= sliceFence) {
+                // остаток целиком внутри среза - обходим без поэлементных проверок
+                index = fence;
+                s.forEachRemaining(action);
+                return;
+            }
+            while (tryAdvance(action)) {
+                // обход до конца среза
+            }
+        }
+    }
+
+    static final class OfInt extends SliceSpliterator<Integer, Spliterator.OfInt> implements Spliterator.OfInt {
+
+        OfInt(Spliterator.OfInt s, long index, long sliceOrigin, long sliceFence) {
+            super(s, index, sliceOrigin, sliceFence);
+        }
+
+        @Override
+        Spliterator.OfInt makeSlice(Spliterator.OfInt s, long index) {
+            return new SliceSpliterator.OfInt(s, index, sliceOrigin, sliceFence);
+        }
+
+        @Override
+        public Spliterator.OfInt trySplit() {
+            return super.trySplit();
+        }
+
+        @Override
+        boolean skipOne() {
+            return s.tryAdvance((int x) -> { });
+        }
+
+        @Override
+        public boolean tryAdvance(IntConsumer action) {
+            if (prepare() && s.tryAdvance(action)) {
+                index++;
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        public void forEachRemaining(IntConsumer action) {
+            if (prepare() && fence <= sliceFence) {
+                // остаток целиком внутри среза - обходим без поэлементных проверок
+                index = fence;
+                s.forEachRemaining(action);
+                return;
+            }
+            while (tryAdvance(action)) {
+                // обход до конца среза
+            }
+        }
+    }
+
+    static final class OfLong extends SliceSpliterator<Long, Spliterator.OfLong> implements Spliterator.OfLong {
+
+        OfLong(Spliterator.OfLong s, long index, long sliceOrigin, long sliceFence) {
+            super(s, index, sliceOrigin, sliceFence);
+        }
+
+        @Override
+        Spliterator.OfLong makeSlice(Spliterator.OfLong s, long index) {
+            return new SliceSpliterator.OfLong(s, index, sliceOrigin, sliceFence);
+        }
+
+        @Override
+        public Spliterator.OfLong trySplit() {
+            return super.trySplit();
+        }
+
+        @Override
+        boolean skipOne() {
+            return s.tryAdvance((long x) -> { });
+        }
+
+        @Override
+        public boolean tryAdvance(LongConsumer action) {
+            if (prepare() && s.tryAdvance(action)) {
+                index++;
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        public void forEachRemaining(LongConsumer action) {
+            if (prepare() && fence <= sliceFence) {
+                // остаток целиком внутри среза - обходим без поэлементных проверок
+                index = fence;
+                s.forEachRemaining(action);
+                return;
+            }
+            while (tryAdvance(action)) {
+                // обход до конца среза
+            }
+        }
+    }
+
+    static final class OfDouble extends SliceSpliterator<Double, Spliterator.OfDouble> implements Spliterator.OfDouble {
+
+        OfDouble(Spliterator.OfDouble s, long index, long sliceOrigin, long sliceFence) {
+            super(s, index, sliceOrigin, sliceFence);
+        }
+
+        @Override
+        Spliterator.OfDouble makeSlice(Spliterator.OfDouble s, long index) {
+            return new SliceSpliterator.OfDouble(s, index, sliceOrigin, sliceFence);
+        }
+
+        @Override
+        public Spliterator.OfDouble trySplit() {
+            return super.trySplit();
+        }
+
+        @Override
+        boolean skipOne() {
+            return s.tryAdvance((double x) -> { });
+        }
+
+        @Override
+        public boolean tryAdvance(DoubleConsumer action) {
+            if (prepare() && s.tryAdvance(action)) {
+                index++;
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        public void forEachRemaining(DoubleConsumer action) {
+            if (prepare() && fence <= sliceFence) {
+                // остаток целиком внутри среза - обходим без поэлементных проверок
+                index = fence;
+                s.forEachRemaining(action);
+                return;
+            }
+            while (tryAdvance(action)) {
+                // обход до конца среза
+            }
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package streamapi;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ *  Именованные изолированные ForkJoinPool для параллельных стримов (пример 4).
+ *
+ *  Терминальная операция параллельного стрима выполняется в том ForkJoinPool, из потока
+ *  которого она вызвана; из обычного потока - в общем пуле. invoke(...) запускает конвейер
+ *  в потоке своего пула, и все его части остаются там же - тяжелый конвейер одного клиента
+ *  больше не занимает общий пул.
+ *
+ *      StreamPools.Pool reports = StreamPools.named("reports", 4);
+ *
+ *      long sum = reports.invoke(() -> IntStream.range(0, 10)
+ *              .parallel()
+ *              .map(x -> x * 10)
+ *              .sum());
+ *
+ *      reports.metrics();    // очередь, кражи, активные потоки
+ *
+ *  Размер частей подстраивается под пул сам: в потоке ForkJoinPool стрим делит источник
+ *  на 4 * parallelism этого пула (AbstractTask.getLeafTarget), а не общего.
+ */
+public final class StreamPools {
+
+    private static final Map<String, Pool> POOLS = new ConcurrentHashMap<>();
+
+    private StreamPools() {
+    }
+
+    /** Пул с этим именем; создается при первом обращении. */
+    public static Pool named(String name, int parallelism) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("parallelism: " + parallelism);
+        }
+        Pool pool = POOLS.computeIfAbsent(name, n -> new Pool(n, parallelism));
+        if (pool.parallelism() != parallelism) {
+            throw new IllegalStateException("Pool " + name + " already exists with parallelism " + pool.parallelism());
+        }
+        return pool;
+    }
+
+    public static Optional<Pool> get(String name) {
+        return Optional.ofNullable(POOLS.get(name));
+    }
+
+    public static List<Pool> all() {
+        return new ArrayList<>(POOLS.values());
+    }
+
+    public static List<Metrics> allMetrics() {
+        List<Metrics> result = new ArrayList<>();
+        for (Pool pool : POOLS.values()) {
+            result.add(pool.metrics());
+        }
+        return result;
+    }
+
+    // -------------------------------------------------------------------------- пул
+
+    public static final class Pool implements AutoCloseable {
+
+        private final String name;
+        private final ForkJoinPool pool;
+
+        private Pool(String name, int parallelism) {
+            this.name = name;
+            AtomicInteger counter = new AtomicInteger();
+            this.pool = new ForkJoinPool(parallelism, p -> {
+                ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+                thread.setName("streamapi-" + name + "-" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }, null, false);
+        }
+
+        public String name() {
+            return name;
+        }
+
+        public int parallelism() {
+            return pool.getParallelism();
+        }
+
+        /** Выполняет конвейер (вместе с терминальной операцией) в потоках этого пула. */
+        public <R> R invoke(Supplier<R> pipeline) {
+            if (ForkJoinTask.inForkJoinPool() && ForkJoinTask.getPool() == pool) {
+                return pipeline.get();
+            }
+            return pool.invoke(ForkJoinTask.adapt(pipeline::get));
+        }
+
+        public void run(Runnable pipeline) {
+            invoke(() -> {
+                pipeline.run();
+                return null;
+            });
+        }
+
+        public Metrics metrics() {
+            return new Metrics(name, pool.getParallelism(), pool.getPoolSize(), pool.getActiveThreadCount(),
+                    pool.getRunningThreadCount(), pool.getQueuedTaskCount(), pool.getQueuedSubmissionCount(),
+                    pool.getStealCount());
+        }
+
+        /** Останавливает пул и убирает его из реестра; запущенные конвейеры дорабатывают. */
+        @Override
+        public void close() {
+            POOLS.remove(name, this);
+            pool.shutdown();
+        }
+
+        public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+            return pool.awaitTermination(timeout, unit);
+        }
+
+        @Override
+        public String toString() {
+            return metrics().toString();
+        }
+    }
+
+    // ---------------------------------------------------------------------- метрики
+
+    /** Снимок состояния пула (значения ForkJoinPool - оценки, не точные счетчики). */
+    public static final class Metrics {
+
+        private final String name;
+        private final int parallelism;
+        private final int poolSize;
+        private final int activeThreads;
+        private final int runningThreads;
+        private final long queuedTasks;
+        private final int queuedSubmissions;
+        private final long steals;
+
+        Metrics(String name, int parallelism, int poolSize, int activeThreads, int runningThreads,
+                long queuedTasks, int queuedSubmissions, long steals) {
+            this.name = name;
+            this.parallelism = parallelism;
+            this.poolSize = poolSize;
+            this.activeThreads = activeThreads;
+            this.runningThreads = runningThreads;
+            this.queuedTasks = queuedTasks;
+            this.queuedSubmissions = queuedSubmissions;
+            this.steals = steals;
+        }
+
+        public String name() {
+            return name;
+        }
+
+        public int parallelism() {
+            return parallelism;
+        }
+
+        public int poolSize() {
+            return poolSize;
+        }
+
+        /** Потоки, занятые задачами (в том числе заблокированные в join). */
+        public int activeThreads() {
+            return activeThreads;
+        }
+
+        /** Потоки, не заблокированные в ожидании. */
+        public int runningThreads() {
+            return runningThreads;
+        }
+
+        /** Задачи в очередях потоков - глубина очереди. */
+        public long queuedTasks() {
+            return queuedTasks;
+        }
+
+        /** Внешние запуски invoke(...), еще не взятые потоками. */
+        public int queuedSubmissions() {
+            return queuedSubmissions;
+        }
+
+        public long steals() {
+            return steals;
+        }
+
+        @Override
+        public String toString() {
+            return name + "{parallelism=" + parallelism + ", poolSize=" + poolSize + ", active=" + activeThreads
+                    + ", running=" + runningThreads + ", queuedTasks=" + queuedTasks
+                    + ", queuedSubmissions=" + queuedSubmissions + ", steals=" + steals + '}';
+        }
+    }
+}
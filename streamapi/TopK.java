@@ -0,0 +1,389 @@
+package streamapi;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collector;
+import java.util.stream.DoubleStream;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+/**
+ *  Первые k элементов в порядке сортировки - замена sorted().limit(k) (промежуточный оператор п.6).
+ *
+ *  sorted() собирает и сортирует весь стрим, чтобы потом взять 3 элемента. Здесь каждая часть
+ *  стрима держит ограниченную кучу из k лучших элементов (O(k) памяти, O(n log k) времени),
+ *  а в параллельном стриме кучи частей сливаются.
+ *
+ *      List<Item> top = candidates.parallelStream()
+ *              .collect(TopK.collector(20, byScore));      // == sorted(byScore).limit(20).toList()
+ *
+ *      int[] smallest = TopK.smallest(3).collect(IntStream.range(0, 100));   // [0, 1, 2]
+ *
+ *  Результат совпадает с sorted(comparator).limit(k), в том числе при равных элементах:
+ *  из равных остаются встретившиеся раньше (как у стабильной сортировки).
+ */
+public final class TopK {
+
+    private TopK() {
+    }
+
+    public static <T> Collector<T, ?, List<T>> collector(int k, Comparator<? super T> comparator) {
+        checkK(k);
+        return Collector.of(
+                () -> new Heap<T>(k, comparator),
+                Heap::add,
+                Heap::addAll,
+                Heap::toSortedList);
+    }
+
+    public static <T extends Comparable<? super T>> Collector<T, ?, List<T>> collector(int k) {
+        return collector(k, Comparator.naturalOrder());
+    }
+
+    /** Аналог stream.sorted(comparator).limit(k). */
+    public static <T> Stream<T> topK(Stream<T> stream, int k, Comparator<? super T> comparator) {
+        return stream.collect(collector(k, comparator)).stream();
+    }
+
+    /** Аналог stream.sorted().limit(k). */
+    public static IntStream topK(IntStream stream, int k) {
+        return IntStream.of(smallest(k).collect(stream));
+    }
+
+    public static LongStream topK(LongStream stream, int k) {
+        return LongStream.of(smallestLongs(k).collect(stream));
+    }
+
+    public static DoubleStream topK(DoubleStream stream, int k) {
+        return DoubleStream.of(smallestDoubles(k).collect(stream));
+    }
+
+    /** k наименьших int по возрастанию. */
+    public static IntCollector<?, int[]> smallest(int k) {
+        checkK(k);
+        return IntCollector.of(() -> new IntHeap(k), IntHeap::add, IntHeap::addAll, IntHeap::toSortedArray);
+    }
+
+    /** k наименьших long по возрастанию. */
+    public static LongCollector<?, long[]> smallestLongs(int k) {
+        checkK(k);
+        return LongCollector.of(() -> new LongHeap(k), LongHeap::add, LongHeap::addAll, LongHeap::toSortedArray);
+    }
+
+    /** k наименьших double по возрастанию (порядок Double.compare, как у DoubleStream.sorted()). */
+    public static DoubleCollector<?, double[]> smallestDoubles(int k) {
+        checkK(k);
+        return DoubleCollector.of(() -> new DoubleHeap(k), DoubleHeap::add, DoubleHeap::addAll, DoubleHeap::toSortedArray);
+    }
+
+    private static void checkK(int k) {
+        if (k < 0) {
+            throw new IllegalArgumentException("k: " + k);
+        }
+    }
+
+    private static int initialCapacity(int k) {
+        return Math.min(k, 16);
+    }
+
+    /**
+     *  Куча k лучших объектов; на вершине - худший из них. Каждому элементу присваивается номер
+     *  в порядке встречи, чтобы среди равных по компаратору худшим считался более поздний.
+     */
+    static final class Heap<T> {
+
+        private final int k;
+        private final Comparator<? super T> comparator;
+        private Object[] elements;
+        private long[] order;
+        private int size;
+        private long seen;
+
+        Heap(int k, Comparator<? super T> comparator) {
+            this.k = k;
+            this.comparator = comparator;
+            this.elements = new Object[initialCapacity(k)];
+            this.order = new long[elements.length];
+        }
+
+        void add(T element) {
+            offer(element, seen++);
+        }
+
+        /** Элементы правой части встретились позже всех элементов этой. */
+        Heap<T> addAll(Heap<T> right) {
+            for (int i = 0; i < right.size; i++) {
+                offer(right.element(i), seen + right.order[i]);
+            }
+            seen += right.seen;
+            return this;
+        }
+
+        List<T> toSortedList() {
+            Integer[] indexes = new Integer[size];
+            for (int i = 0; i < size; i++) {
+                indexes[i] = i;
+            }
+            Arrays.sort(indexes, (a, b) -> compare(a, b));
+            List<T> result = new ArrayList<>(size);
+            for (Integer index : indexes) {
+                result.add(element(index));
+            }
+            return result;
+        }
+
+        private void offer(T element, long position) {
+            if (k == 0) {
+                return;
+            }
+            if (size < k) {
+                if (size == elements.length) {
+                    int capacity = (int) Math.min(k, (long) size << 1);
+                    elements = Arrays.copyOf(elements, capacity);
+                    order = Arrays.copyOf(order, capacity);
+                }
+                elements[size] = element;
+                order[size] = position;
+                siftUp(size++);
+            } else if (compare(element, position, element(0), order[0]) < 0) {
+                elements[0] = element;
+                order[0] = position;
+                siftDown(0);
+            }
+        }
+
+        private void siftUp(int i) {
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (compare(i, parent) <= 0) {
+                    return;
+                }
+                swap(i, parent);
+                i = parent;
+            }
+        }
+
+        private void siftDown(int i) {
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= size) {
+                    return;
+                }
+                if (child + 1 < size && compare(child + 1, child) > 0) {
+                    child++;
+                }
+                if (compare(child, i) <= 0) {
+                    return;
+                }
+                swap(i, child);
+                i = child;
+            }
+        }
+
+        private int compare(int a, int b) {
+            return compare(element(a), order[a], element(b), order[b]);
+        }
+
+        private int compare(T a, long orderA, T b, long orderB) {
+            int c = comparator.compare(a, b);
+            return c != 0 ? c : Long.compare(orderA, orderB);
+        }
+
+        private void swap(int a, int b) {
+            Object e = elements[a];
+            elements[a] = elements[b];
+            elements[b] = e;
+            long o = order[a];
+            order[a] = order[b];
+            order[b] = o;
+        }
+
+        @SuppressWarnings("unchecked")
+        private T element(int i) {
+            return (T) elements[i];
+        }
+    }
+
+    /** Max-куча k наименьших int. */
+    static final class IntHeap {
+
+        private final int k;
+        private int[] heap;
+        private int size;
+
+        IntHeap(int k) {
+            this.k = k;
+            this.heap = new int[initialCapacity(k)];
+        }
+
+        void add(int x) {
+            if (size < k) {
+                if (size == heap.length) {
+                    heap = Arrays.copyOf(heap, (int) Math.min(k, (long) size << 1));
+                }
+                int i = size++;
+                while (i > 0) {
+                    int parent = (i - 1) >>> 1;
+                    if (heap[parent] >= x) {
+                        break;
+                    }
+                    heap[i] = heap[parent];
+                    i = parent;
+                }
+                heap[i] = x;
+            } else if (k > 0 && x < heap[0]) {
+                int i = 0;
+                while (true) {
+                    int child = 2 * i + 1;
+                    if (child >= size) {
+                        break;
+                    }
+                    if (child + 1 < size && heap[child + 1] > heap[child]) {
+                        child++;
+                    }
+                    if (heap[child] <= x) {
+                        break;
+                    }
+                    heap[i] = heap[child];
+                    i = child;
+                }
+                heap[i] = x;
+            }
+        }
+
+        void addAll(IntHeap other) {
+            for (int i = 0; i < other.size; i++) {
+                add(other.heap[i]);
+            }
+        }
+
+        int[] toSortedArray() {
+            int[] result = Arrays.copyOf(heap, size);
+            Arrays.sort(result);
+            return result;
+        }
+    }
+
+    /** Max-куча k наименьших long. */
+    static final class LongHeap {
+
+        private final int k;
+        private long[] heap;
+        private int size;
+
+        LongHeap(int k) {
+            this.k = k;
+            this.heap = new long[initialCapacity(k)];
+        }
+
+        void add(long x) {
+            if (size < k) {
+                if (size == heap.length) {
+                    heap = Arrays.copyOf(heap, (int) Math.min(k, (long) size << 1));
+                }
+                int i = size++;
+                while (i > 0) {
+                    int parent = (i - 1) >>> 1;
+                    if (heap[parent] >= x) {
+                        break;
+                    }
+                    heap[i] = heap[parent];
+                    i = parent;
+                }
+                heap[i] = x;
+            } else if (k > 0 && x < heap[0]) {
+                int i = 0;
+                while (true) {
+                    int child = 2 * i + 1;
+                    if (child >= size) {
+                        break;
+                    }
+                    if (child + 1 < size && heap[child + 1] > heap[child]) {
+                        child++;
+                    }
+                    if (heap[child] <= x) {
+                        break;
+                    }
+                    heap[i] = heap[child];
+                    i = child;
+                }
+                heap[i] = x;
+            }
+        }
+
+        void addAll(LongHeap other) {
+            for (int i = 0; i < other.size; i++) {
+                add(other.heap[i]);
+            }
+        }
+
+        long[] toSortedArray() {
+            long[] result = Arrays.copyOf(heap, size);
+            Arrays.sort(result);
+            return result;
+        }
+    }
+
+    /** Max-куча k наименьших double в порядке Double.compare. */
+    static final class DoubleHeap {
+
+        private final int k;
+        private double[] heap;
+        private int size;
+
+        DoubleHeap(int k) {
+            this.k = k;
+            this.heap = new double[initialCapacity(k)];
+        }
+
+        void add(double x) {
+            if (size < k) {
+                if (size == heap.length) {
+                    heap = Arrays.copyOf(heap, (int) Math.min(k, (long) size << 1));
+                }
+                int i = size++;
+                while (i > 0) {
+                    int parent = (i - 1) >>> 1;
+                    if (Double.compare(heap[parent], x) >= 0) {
+                        break;
+                    }
+                    heap[i] = heap[parent];
+                    i = parent;
+                }
+                heap[i] = x;
+            } else if (k > 0 && Double.compare(x, heap[0]) < 0) {
+                int i = 0;
+                while (true) {
+                    int child = 2 * i + 1;
+                    if (child >= size) {
+                        break;
+                    }
+                    if (child + 1 < size && Double.compare(heap[child + 1], heap[child]) > 0) {
+                        child++;
+                    }
+                    if (Double.compare(heap[child], x) <= 0) {
+                        break;
+                    }
+                    heap[i] = heap[child];
+                    i = child;
+                }
+                heap[i] = x;
+            }
+        }
+
+        void addAll(DoubleHeap other) {
+            for (int i = 0; i < other.size; i++) {
+                add(other.heap[i]);
+            }
+        }
+
+        double[] toSortedArray() {
+            double[] result = Arrays.copyOf(heap, size);
+            Arrays.sort(result);
+            return result;
+        }
+    }
+}
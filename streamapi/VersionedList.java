@@ -0,0 +1,78 @@
+package streamapi;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.RandomAccess;
+
+/**
+ *  ArrayList с номером версии для ResultCache: любое изменение (в том числе set, через subList
+ *  и итератор) увеличивает version(), и закешированные по старой версии результаты перестают совпадать.
+ */
+public final class VersionedList<E> extends AbstractList<E> implements RandomAccess, ResultCache.Versioned {
+
+    private final ArrayList<E> elements;
+    private volatile long version;
+
+    public VersionedList() {
+        this.elements = new ArrayList<>();
+    }
+
+    public VersionedList(Collection<? extends E> elements) {
+        this.elements = new ArrayList<>(elements);
+    }
+
+    @Override
+    public long version() {
+        return version;
+    }
+
+    @Override
+    public E get(int index) {
+        return elements.get(index);
+    }
+
+    @Override
+    public int size() {
+        return elements.size();
+    }
+
+    @Override
+    public E set(int index, E element) {
+        E previous = elements.set(index, element);
+        version++;
+        return previous;
+    }
+
+    @Override
+    public void add(int index, E element) {
+        elements.add(index, element);
+        modCount++;
+        version++;
+    }
+
+    @Override
+    public E remove(int index) {
+        E removed = elements.remove(index);
+        modCount++;
+        version++;
+        return removed;
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends E> c) {
+        boolean changed = elements.addAll(c);
+        if (changed) {
+            modCount++;
+            version++;
+        }
+        return changed;
+    }
+
+    @Override
+    public void clear() {
+        elements.clear();
+        modCount++;
+        version++;
+    }
+}
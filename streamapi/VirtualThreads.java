@@ -0,0 +1,233 @@
+package streamapi;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ *  map() для блокирующих (I/O) функций - альтернатива parallelStream() (примеры 3 и 4).
+ *
+ *  Параллельный стрим выполняет лямбды в общем ForkJoinPool с числом потоков по числу ядер:
+ *  если map ждет сеть, пул простаивает, а соседние параллельные стримы голодают. Здесь каждый
+ *  вызов mapper идет в своем виртуальном потоке (Java 21+; на более старых JDK - в кешируемом
+ *  пуле платформенных потоков), одновременно - не больше maxConcurrency вызовов.
+ *
+ *      List<Profile> profiles = VirtualThreads.mapConcurrent(userIds.stream(), 256, true, client::fetchProfile)
+ *              .collect(Collectors.toList());
+ *
+ *  ordered = true - результаты в порядке встречи (медленный элемент задерживает выдачу следующих,
+ *  но не запуск новых вызовов внутри окна); false - в порядке готовности.
+ *
+ *  Источник читается в потоке терминальной операции. Результат закрывается сам после терминальной
+ *  операции (кроме iterator(), spliterator() и mapToInt и т.п.): после findFirst/anyMatch
+ *  незавершенные вызовы отменяются с прерыванием потоков. Исключение mapper пробрасывается
+ *  терминальной операции как есть (проверяемое - в CompletionException).
+ */
+public final class VirtualThreads {
+
+    private static final ExecutorService EXECUTOR = createExecutor();
+
+    private VirtualThreads() {
+    }
+
+    /** Виртуальные потоки, если JDK их поддерживает. */
+    public static boolean isVirtual() {
+        return !(EXECUTOR instanceof java.util.concurrent.ThreadPoolExecutor);
+    }
+
+    public static <T, R> Stream<R> mapConcurrent(Stream<T> source, int maxConcurrency, boolean ordered,
+                                                 Function<? super T, ? extends R> mapper) {
+        return mapConcurrent(source, maxConcurrency, ordered, mapper, EXECUTOR);
+    }
+
+    /** То же на заданном ExecutorService (он не закрывается). */
+    public static <T, R> Stream<R> mapConcurrent(Stream<T> source, int maxConcurrency, boolean ordered,
+                                                 Function<? super T, ? extends R> mapper, ExecutorService executor) {
+        if (maxConcurrency <= 0) {
+            throw new IllegalArgumentException("maxConcurrency: " + maxConcurrency);
+        }
+        Window<T, R> window = ordered
+                ? new OrderedWindow<>(source.iterator(), maxConcurrency, mapper, executor)
+                : new UnorderedWindow<>(source.iterator(), maxConcurrency, mapper, executor);
+        int characteristics = ordered ? Spliterator.ORDERED : 0;
+        Stream<R> result = StreamSupport.stream(new Spliterators.AbstractSpliterator<R>(Long.MAX_VALUE, characteristics) {
+            @Override
+            public boolean tryAdvance(Consumer<? super R> action) {
+                return window.next(action);
+            }
+        }, false);
+        return AutoCloseStream.of(result.onClose(window::cancel).onClose(source::close));
+    }
+
+    // ----------------------------------------------------------------------- окна
+
+    /** Держит до limit запущенных вызовов; новые запускаются по мере выдачи результатов. */
+    private abstract static class Window<T, R> {
+
+        final Iterator<T> source;
+        final int limit;
+        final Function<? super T, ? extends R> mapper;
+        final ExecutorService executor;
+        final Set<Future<?>> running = ConcurrentHashMap.newKeySet();
+        volatile boolean cancelled;
+
+        Window(Iterator<T> source, int limit, Function<? super T, ? extends R> mapper, ExecutorService executor) {
+            this.source = source;
+            this.limit = limit;
+            this.mapper = mapper;
+            this.executor = executor;
+        }
+
+        abstract boolean next(Consumer<? super R> action);
+
+        Task submit(T element) {
+            Task task = new Task(element);
+            running.add(task);
+            executor.execute(task);
+            return task;
+        }
+
+        void cancel() {
+            cancelled = true;
+            for (Future<?> future : running) {
+                future.cancel(true);
+            }
+            running.clear();
+        }
+
+        R await(Future<R> future) {
+            try {
+                return future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                cancel();
+                throw new CancellationException("Interrupted while waiting for mapper");
+            } catch (ExecutionException e) {
+                cancel();
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw new CompletionException(cause);
+            }
+        }
+
+        class Task extends FutureTask<R> {
+
+            Task(T element) {
+                super(() -> cancelled ? null : mapper.apply(element));
+            }
+
+            @Override
+            protected void done() {
+                running.remove(this);
+                completed(this);
+            }
+        }
+
+        void completed(Task task) {
+        }
+    }
+
+    private static final class OrderedWindow<T, R> extends Window<T, R> {
+
+        private final ArrayDeque<Future<R>> inFlight = new ArrayDeque<>();
+
+        OrderedWindow(Iterator<T> source, int limit, Function<? super T, ? extends R> mapper,
+                      ExecutorService executor) {
+            super(source, limit, mapper, executor);
+        }
+
+        @Override
+        boolean next(Consumer<? super R> action) {
+            while (inFlight.size() < limit && source.hasNext()) {
+                inFlight.add(submit(source.next()));
+            }
+            Future<R> head = inFlight.poll();
+            if (head == null) {
+                return false;
+            }
+            action.accept(await(head));
+            return true;
+        }
+    }
+
+    private static final class UnorderedWindow<T, R> extends Window<T, R> {
+
+        private final BlockingQueue<Future<R>> done = new LinkedBlockingQueue<>();
+        private int inFlight;
+
+        UnorderedWindow(Iterator<T> source, int limit, Function<? super T, ? extends R> mapper,
+                        ExecutorService executor) {
+            super(source, limit, mapper, executor);
+        }
+
+        @Override
+        boolean next(Consumer<? super R> action) {
+            while (inFlight < limit && source.hasNext()) {
+                submit(source.next());
+                inFlight++;
+            }
+            if (inFlight == 0) {
+                return false;
+            }
+            Future<R> ready;
+            try {
+                ready = done.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                cancel();
+                throw new CancellationException("Interrupted while waiting for mapper");
+            }
+            inFlight--;
+            action.accept(await(ready));
+            return true;
+        }
+
+        @Override
+        void completed(Task task) {
+            done.add(task);
+        }
+    }
+
+    // --------------------------------------------------------------- исполнитель
+
+    /**
+     *  Executors.newVirtualThreadPerTaskExecutor() через reflection: модуль собирается под Java 17.
+     *  На JDK без виртуальных потоков (или с ними в режиме preview) - кешируемый пул демонов.
+     */
+    private static ExecutorService createExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            AtomicInteger counter = new AtomicInteger();
+            ThreadFactory factory = r -> {
+                Thread thread = new Thread(r, "streamapi-io-" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            };
+            return Executors.newCachedThreadPool(factory);
+        }
+    }
+}